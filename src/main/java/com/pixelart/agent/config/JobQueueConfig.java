@@ -0,0 +1,31 @@
+package com.pixelart.agent.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pixelart.agent.service.jobs.FileSystemJobStore;
+import com.pixelart.agent.service.jobs.JobStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Paths;
+import java.time.Clock;
+
+/**
+ * Store behind the shared job queue, enabled by pixelart.jobs.enabled
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(name = "pixelart.jobs.enabled", havingValue = "true")
+public class JobQueueConfig {
+
+    @Bean
+    public JobStore fileSystemJobStore(
+            ObjectMapper objectMapper,
+            @Value("${pixelart.jobs.directory:./data/jobs}") String directory,
+            @Value("${pixelart.jobs.max-attempts:3}") int maxAttempts) {
+        log.info("Sharing the job queue through directory {}", directory);
+        return new FileSystemJobStore(Paths.get(directory), objectMapper, Clock.systemUTC(), maxAttempts);
+    }
+}
@@ -27,6 +27,16 @@ public class MockResponsesConfig {
      */
     private String imageResponseDescription = "pixel-art sprite";
     
+    /**
+     * Simulated chat model latency in milliseconds
+     */
+    private long chatDelayMs = 0;
+    
+    /**
+     * Simulated image generation latency in milliseconds
+     */
+    private long imageDelayMs = 0;
+    
     public MockResponsesConfig() {
         // Initialize with default responses
         initializeDefaultResponses();
@@ -1,12 +1,36 @@
 package com.pixelart.agent.config;
 
+import com.pixelart.agent.service.concurrency.BlockingCallLimiter;
+import com.pixelart.agent.service.model.CascadingModelProvider;
+import com.pixelart.agent.service.model.EmbeddingProvider;
 import com.pixelart.agent.service.model.ImageProvider;
+import com.pixelart.agent.service.model.LimitedEmbeddingProvider;
+import com.pixelart.agent.service.model.LimitedImageProvider;
+import com.pixelart.agent.service.model.LimitedModelProvider;
+import com.pixelart.agent.service.model.LimitedReactiveImageProvider;
+import com.pixelart.agent.service.model.LimitedReactiveModelProvider;
+import com.pixelart.agent.service.model.MockEmbeddingProvider;
 import com.pixelart.agent.service.model.MockImageProvider;
 import com.pixelart.agent.service.model.MockModelProvider;
+import com.pixelart.agent.service.model.MockReactiveImageProvider;
+import com.pixelart.agent.service.model.MockReactiveModelProvider;
 import com.pixelart.agent.service.model.ModelProvider;
+import com.pixelart.agent.service.model.OllamaEmbeddingProvider;
 import com.pixelart.agent.service.model.OllamaModelProvider;
+import com.pixelart.agent.service.model.OllamaReactiveModelProvider;
+import com.pixelart.agent.service.model.RecordingImageProvider;
+import com.pixelart.agent.service.model.RecordingModelProvider;
+import com.pixelart.agent.service.model.ReactiveImageProvider;
+import com.pixelart.agent.service.model.ReactiveModelProvider;
+import com.pixelart.agent.service.model.ScheduledImageProvider;
 import com.pixelart.agent.service.model.StableDiffusionImageProvider;
+import com.pixelart.agent.service.model.StableDiffusionReactiveImageProvider;
+import com.pixelart.agent.service.model.TracedImageProvider;
+import com.pixelart.agent.service.model.TracedModelProvider;
+import com.pixelart.agent.service.scheduling.ModelAffinityScheduler;
+import com.pixelart.agent.service.tracing.PipelineTracing;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
@@ -15,6 +39,16 @@ import org.springframework.context.annotation.Configuration;
 /**
  * Configuration for model providers (real or mock)
  * Use mock providers for local development, real providers for production
+ * Every provider is wrapped so blocking backend calls are capped by permits rather than by
+ * however many threads happen to be handling requests; the reactive providers wait for the
+ * same permits without blocking
+ * Providers are lazy beans looked up only for the selected mode, so mock mode never builds
+ * the Ollama client or the Stable Diffusion pollers, and real mode never builds the mocks
+ * With traffic recording on, the chat and image providers are also wrapped to capture each
+ * call's latency and size, inside the limit so time queued for a permit is not counted
+ * Each backend call also runs in a tracing span, likewise inside the limit
+ * Image calls take their permit before joining the model affinity scheduler's queue, so shedding
+ * and tenant fairness apply to every queued image job rather than only to the one being dispatched
  */
 @Slf4j
 @Configuration
@@ -26,29 +60,71 @@ public class ModelConfig {
     @Value("${pixelart.chat-model.mock-responses-enabled:true}")
     private boolean mockChatResponsesEnabled;
     
+    @Value("${pixelart.chat-model.cascade.enabled:false}")
+    private boolean cascadeEnabled;
+    
     @Value("${pixelart.image-model.mock-responses-enabled:true}")
     private boolean mockImageResponsesEnabled;
     
+    @Value("${pixelart.semantic-cache.mock-embeddings:true}")
+    private boolean mockEmbeddingsEnabled;
+    
+    @Value("${pixelart.traffic.record.enabled:false}")
+    private boolean recordTraffic;
+    
+    @Autowired
+    private ObjectProvider<OllamaModelProvider> ollamaModelProvider;
+    
+    @Autowired
+    private ObjectProvider<CascadingModelProvider> cascadingModelProvider;
+    
+    @Autowired
+    private ObjectProvider<MockModelProvider> mockModelProvider;
+    
+    @Autowired
+    private ObjectProvider<StableDiffusionImageProvider> stableDiffusionImageProvider;
+    
+    @Autowired
+    private ObjectProvider<MockImageProvider> mockImageProvider;
+    
     @Autowired
-    private OllamaModelProvider ollamaModelProvider;
+    private ObjectProvider<OllamaEmbeddingProvider> ollamaEmbeddingProvider;
     
     @Autowired
-    private MockModelProvider mockModelProvider;
+    private ObjectProvider<MockEmbeddingProvider> mockEmbeddingProvider;
     
     @Autowired
-    private StableDiffusionImageProvider stableDiffusionImageProvider;
+    private ObjectProvider<OllamaReactiveModelProvider> ollamaReactiveModelProvider;
     
     @Autowired
-    private MockImageProvider mockImageProvider;
+    private ObjectProvider<MockReactiveModelProvider> mockReactiveModelProvider;
+    
+    @Autowired
+    private ObjectProvider<StableDiffusionReactiveImageProvider> stableDiffusionReactiveImageProvider;
+    
+    @Autowired
+    private ObjectProvider<MockReactiveImageProvider> mockReactiveImageProvider;
+    
+    @Autowired
+    private BlockingCallLimiter blockingCallLimiter;
+    
+    @Autowired
+    private PipelineTracing pipelineTracing;
+    
+    @Autowired
+    private ModelAffinityScheduler modelAffinityScheduler;
     
     @Bean
     public ModelProvider modelProvider() {
         if (useMockModels || mockChatResponsesEnabled) {
             log.info("Using MOCK model provider for AI responses");
-            return mockModelProvider;
+            return new LimitedModelProvider(recorded(traced(mockModelProvider.getObject())), blockingCallLimiter);
+        } else if (cascadeEnabled) {
+            log.info("Using REAL Ollama model cascade for AI responses");
+            return new LimitedModelProvider(recorded(traced(cascadingModelProvider.getObject())), blockingCallLimiter);
         } else {
             log.info("Using REAL Ollama model provider for AI responses");
-            return ollamaModelProvider;
+            return new LimitedModelProvider(recorded(traced(ollamaModelProvider.getObject())), blockingCallLimiter);
         }
     }
     
@@ -56,10 +132,64 @@ public class ModelConfig {
     public ImageProvider imageProvider() {
         if (useMockModels || mockImageResponsesEnabled) {
             log.info("Using MOCK image provider for image generation");
-            return mockImageProvider;
+            return new LimitedImageProvider(scheduled(recorded(traced(mockImageProvider.getObject()))), blockingCallLimiter);
         } else {
             log.info("Using REAL Stable Diffusion image provider for image generation");
-            return stableDiffusionImageProvider;
+            return new LimitedImageProvider(scheduled(recorded(traced(stableDiffusionImageProvider.getObject()))),
+                    blockingCallLimiter);
+        }
+    }
+    
+    private ModelProvider traced(ModelProvider provider) {
+        return new TracedModelProvider(provider, pipelineTracing);
+    }
+    
+    private ImageProvider traced(ImageProvider provider) {
+        return new TracedImageProvider(provider, pipelineTracing);
+    }
+    
+    private ModelProvider recorded(ModelProvider provider) {
+        return recordTraffic ? new RecordingModelProvider(provider) : provider;
+    }
+    
+    private ImageProvider recorded(ImageProvider provider) {
+        return recordTraffic ? new RecordingImageProvider(provider) : provider;
+    }
+    
+    private ImageProvider scheduled(ImageProvider provider) {
+        return new ScheduledImageProvider(provider, modelAffinityScheduler);
+    }
+    
+    @Bean
+    public EmbeddingProvider embeddingProvider() {
+        if (useMockModels || mockEmbeddingsEnabled) {
+            log.info("Using MOCK embedding provider for semantic cache");
+            return new LimitedEmbeddingProvider(mockEmbeddingProvider.getObject(), blockingCallLimiter);
+        } else {
+            log.info("Using REAL Ollama embedding provider for semantic cache");
+            return new LimitedEmbeddingProvider(ollamaEmbeddingProvider.getObject(), blockingCallLimiter);
+        }
+    }
+    
+    @Bean
+    public ReactiveModelProvider reactiveModelProvider() {
+        if (useMockModels || mockChatResponsesEnabled) {
+            log.info("Using MOCK reactive model provider for AI responses");
+            return new LimitedReactiveModelProvider(mockReactiveModelProvider.getObject(), blockingCallLimiter);
+        } else {
+            log.info("Using REAL reactive Ollama model provider for AI responses");
+            return new LimitedReactiveModelProvider(ollamaReactiveModelProvider.getObject(), blockingCallLimiter);
+        }
+    }
+    
+    @Bean
+    public ReactiveImageProvider reactiveImageProvider() {
+        if (useMockModels || mockImageResponsesEnabled) {
+            log.info("Using MOCK reactive image provider for image generation");
+            return new LimitedReactiveImageProvider(mockReactiveImageProvider.getObject(), blockingCallLimiter);
+        } else {
+            log.info("Using REAL reactive Stable Diffusion image provider for image generation");
+            return new LimitedReactiveImageProvider(stableDiffusionReactiveImageProvider.getObject(), blockingCallLimiter);
         }
     }
 }
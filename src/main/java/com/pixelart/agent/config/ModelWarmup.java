@@ -0,0 +1,78 @@
+package com.pixelart.agent.config;
+
+import com.pixelart.agent.service.model.ImageProvider;
+import com.pixelart.agent.service.model.ModelProvider;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Loads the chat and image models before the app reports ready.
+ *
+ * Boot only marks readiness ACCEPTING_TRAFFIC once every ApplicationRunner has finished, so
+ * while this runs /actuator/health/readiness stays OUT_OF_SERVICE and a load balancer keeps
+ * traffic away instead of letting the first requests pay for the cold model loads. Mock
+ * providers have nothing to load.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "pixelart.warmup.enabled", havingValue = "true")
+public class ModelWarmup implements ApplicationRunner {
+
+    private final ModelProvider modelProvider;
+    private final ImageProvider imageProvider;
+    private final MeterRegistry meterRegistry;
+    private final long timeoutMs;
+    private final boolean required;
+
+    public ModelWarmup(ModelProvider modelProvider, ImageProvider imageProvider, MeterRegistry meterRegistry,
+                       @Value("${pixelart.warmup.timeout-ms:300000}") long timeoutMs,
+                       @Value("${pixelart.warmup.required:false}") boolean required) {
+        this.modelProvider = modelProvider;
+        this.imageProvider = imageProvider;
+        this.meterRegistry = meterRegistry;
+        this.timeoutMs = timeoutMs;
+        this.required = required;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        log.info("Warming up models before accepting traffic");
+        long start = System.nanoTime();
+        // The two loads hit different backends, so run them side by side
+        CompletableFuture<Void> chat = CompletableFuture.runAsync(() -> warmUp("chat", modelProvider::warmUp));
+        CompletableFuture<Void> image = CompletableFuture.runAsync(() -> warmUp("image", imageProvider::warmUp));
+        try {
+            CompletableFuture.allOf(chat, image).get(timeoutMs, TimeUnit.MILLISECONDS);
+            log.info("Models warmed up in {}ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (TimeoutException e) {
+            fail("Model warmup did not finish within " + timeoutMs + "ms", e);
+        } catch (Exception e) {
+            fail("Model warmup failed: " + e.getMessage(), e);
+        }
+    }
+
+    private void warmUp(String stage, Runnable warmUp) {
+        Timer.builder("pixelart.startup.warmup")
+                .description("Time spent loading a model before accepting traffic")
+                .tag("stage", stage)
+                .register(meterRegistry)
+                .record(warmUp);
+    }
+
+    private void fail(String message, Exception e) throws Exception {
+        if (required) {
+            throw e;
+        }
+        log.warn("{}; starting anyway, the first requests will load the models", message);
+    }
+}
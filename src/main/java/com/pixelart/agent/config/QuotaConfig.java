@@ -0,0 +1,36 @@
+package com.pixelart.agent.config;
+
+import com.pixelart.agent.controller.QuotaInterceptor;
+import com.pixelart.agent.service.quota.TenantContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Tenant identification and quotas for the API
+ */
+@Configuration
+public class QuotaConfig implements WebMvcConfigurer {
+
+    private final QuotaInterceptor quotaInterceptor;
+
+    public QuotaConfig(QuotaInterceptor quotaInterceptor) {
+        this.quotaInterceptor = quotaInterceptor;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(quotaInterceptor).addPathPatterns("/api/pixelart/**");
+    }
+
+    /**
+     * Boot applies this to the application task executor, so streamed and SSE responses
+     * keep running under the tenant of the request that started them
+     */
+    @Bean
+    public TaskDecorator tenantTaskDecorator() {
+        return TenantContext::wrap;
+    }
+}
@@ -0,0 +1,59 @@
+package com.pixelart.agent.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Per-client request quotas and backend shares
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "pixelart.quota")
+public class QuotaProperties {
+
+    /**
+     * Whether requests over a client's rate get a 429; tenants and weights apply either way
+     */
+    private boolean enabled = false;
+
+    /**
+     * Request header carrying the client's API key
+     */
+    private String header = "X-API-Key";
+
+    /**
+     * Rate for clients without a configured tenant, each tracked by remote address
+     */
+    private double defaultRequestsPerMinute = 60;
+
+    private int defaultBurst = 10;
+
+    /**
+     * Buckets kept for unconfigured clients before refilled ones are dropped
+     */
+    private int maxTrackedClients = 10_000;
+
+    /**
+     * Configured tenants by name
+     */
+    private Map<String, TenantQuota> tenants = new LinkedHashMap<>();
+
+    @Data
+    public static class TenantQuota {
+
+        private String apiKey;
+
+        private double requestsPerMinute = 60;
+
+        private int burst = 10;
+
+        /**
+         * Share of LLM and GPU capacity relative to other tenants with queued calls
+         */
+        private double weight = 1.0;
+    }
+}
@@ -0,0 +1,29 @@
+package com.pixelart.agent.config;
+
+import com.pixelart.agent.service.cache.FileSystemCacheStore;
+import com.pixelart.agent.service.cache.SharedCacheStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Paths;
+import java.time.Clock;
+
+/**
+ * Shared second-level store for the result cache, selected by pixelart.result-cache.shared.type.
+ * Without one, each instance only has its own in-memory level.
+ */
+@Slf4j
+@Configuration
+public class ResultCacheConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "pixelart.result-cache.shared.type", havingValue = "filesystem")
+    public SharedCacheStore fileSystemCacheStore(
+            @Value("${pixelart.result-cache.shared.directory:./data/shared-cache}") String directory) {
+        log.info("Sharing cached results through directory {}", directory);
+        return new FileSystemCacheStore(Paths.get(directory), Clock.systemUTC());
+    }
+}
@@ -0,0 +1,33 @@
+package com.pixelart.agent.config;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+/**
+ * Binary response formats for internal clients.
+ * Requests sent with Accept: application/cbor or application/x-jackson-smile get the same
+ * payload with image data as raw bytes instead of base64 text; JSON stays the default.
+ */
+@Configuration
+@ConditionalOnProperty(name = "pixelart.serialization.binary-formats", havingValue = "true", matchIfMissing = true)
+public class SerializationConfig {
+
+    /**
+     * Boot's builder is prototype-scoped, so each converter gets its own copy with the usual customizations
+     */
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+    }
+
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(builder.factory(new SmileFactory()).build());
+    }
+}
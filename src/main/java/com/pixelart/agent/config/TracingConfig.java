@@ -0,0 +1,76 @@
+package com.pixelart.agent.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pixelart.agent.service.tracing.OtlpJsonFileSpanExporter;
+import com.pixelart.agent.service.tracing.PipelineTracing;
+import com.pixelart.agent.service.tracing.RecentSpanExporter;
+import com.pixelart.agent.service.tracing.SpansEndpoint;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.lang.Nullable;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.file.Path;
+
+/**
+ * Local span exporters and the serialization span
+ * Boot's OpenTelemetry setup sends every SpanExporter bean's spans through its batch processor,
+ * next to the OTLP exporter when management.otlp.tracing.endpoint is set. pixelart.tracing.exporter
+ * adds one for checking traces without a tracing backend: memory keeps recent spans for
+ * /actuator/spans, file appends OTLP/JSON for a collector's otlpjsonfile receiver to pick up
+ */
+@Slf4j
+@Configuration
+public class TracingConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "pixelart.tracing.exporter", havingValue = "memory")
+    public RecentSpanExporter recentSpanExporter(@Value("${pixelart.tracing.memory.max-spans:5000}") int maxSpans) {
+        log.info("Keeping the last {} spans in memory, see /actuator/spans", maxSpans);
+        return new RecentSpanExporter(maxSpans);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "pixelart.tracing.exporter", havingValue = "memory")
+    public SpansEndpoint spansEndpoint(RecentSpanExporter recentSpanExporter) {
+        return new SpansEndpoint(recentSpanExporter);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "pixelart.tracing.exporter", havingValue = "file")
+    public OtlpJsonFileSpanExporter otlpJsonFileSpanExporter(
+            @Value("${pixelart.tracing.file:./data/spans.jsonl}") String file) {
+        log.info("Writing spans as OTLP/JSON to {}", file);
+        return new OtlpJsonFileSpanExporter(Path.of(file), new ObjectMapper());
+    }
+
+    /**
+     * Boot's JSON converter, with writing the response body in a pixelart.response.serialize
+     * span under the request's span; Boot backs off its own when this bean exists
+     */
+    @Bean
+    public MappingJackson2HttpMessageConverter mappingJackson2HttpMessageConverter(ObjectMapper objectMapper,
+                                                                                   PipelineTracing tracing) {
+        return new MappingJackson2HttpMessageConverter(objectMapper) {
+            @Override
+            protected void writeInternal(Object object, @Nullable Type type, HttpOutputMessage outputMessage)
+                    throws IOException, HttpMessageNotWritableException {
+                if (tracing.current() == null) {
+                    super.writeInternal(object, type, outputMessage);
+                    return;
+                }
+                tracing.span(PipelineTracing.SERIALIZE, () -> {
+                    super.writeInternal(object, type, outputMessage);
+                    return null;
+                });
+            }
+        };
+    }
+}
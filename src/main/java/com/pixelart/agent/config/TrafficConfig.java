@@ -0,0 +1,26 @@
+package com.pixelart.agent.config;
+
+import com.pixelart.agent.controller.TrafficInterceptor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Traffic recording and playback for the API, see TrafficRecorder and TrafficReplayer
+ */
+@Configuration
+public class TrafficConfig implements WebMvcConfigurer {
+
+    private final TrafficInterceptor trafficInterceptor;
+
+    public TrafficConfig(TrafficInterceptor trafficInterceptor) {
+        this.trafficInterceptor = trafficInterceptor;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        if (trafficInterceptor.isActive()) {
+            registry.addInterceptor(trafficInterceptor).addPathPatterns("/api/pixelart/**");
+        }
+    }
+}
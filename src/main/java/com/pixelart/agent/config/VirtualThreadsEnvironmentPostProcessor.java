@@ -0,0 +1,52 @@
+package com.pixelart.agent.config;
+
+import com.pixelart.agent.service.concurrency.VirtualThreads;
+import org.apache.commons.logging.Log;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.env.EnvironmentPostProcessor;
+import org.springframework.boot.logging.DeferredLogFactory;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.MapPropertySource;
+
+import java.util.Map;
+
+/**
+ * Turns on Spring Boot's virtual thread support (Tomcat request threads, the task executor
+ * and our own executors) according to pixelart.threads.mode and the running JDK.
+ * An explicit spring.threads.virtual.enabled always wins.
+ */
+public class VirtualThreadsEnvironmentPostProcessor implements EnvironmentPostProcessor {
+
+    static final String VIRTUAL_ENABLED = "spring.threads.virtual.enabled";
+    static final String MODE = "pixelart.threads.mode";
+
+    private final Log log;
+
+    public VirtualThreadsEnvironmentPostProcessor(DeferredLogFactory logFactory) {
+        this.log = logFactory.getLog(VirtualThreadsEnvironmentPostProcessor.class);
+    }
+
+    @Override
+    public void postProcessEnvironment(ConfigurableEnvironment environment, SpringApplication application) {
+        if (environment.containsProperty(VIRTUAL_ENABLED)) {
+            return;
+        }
+        String mode = environment.getProperty(MODE, "auto").trim().toLowerCase();
+        boolean enable = switch (mode) {
+            case "platform" -> false;
+            case "virtual" -> {
+                if (!VirtualThreads.isSupported()) {
+                    log.warn("pixelart.threads.mode=virtual but JDK " + Runtime.version().feature()
+                            + " has no virtual threads; using platform threads");
+                }
+                yield VirtualThreads.isSupported();
+            }
+            default -> VirtualThreads.isSupported();
+        };
+        if (enable) {
+            log.info("Running request handling and provider calls on virtual threads");
+        }
+        environment.getPropertySources().addLast(
+                new MapPropertySource("pixelartThreads", Map.of(VIRTUAL_ENABLED, String.valueOf(enable))));
+    }
+}
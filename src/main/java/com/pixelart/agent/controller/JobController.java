@@ -0,0 +1,68 @@
+package com.pixelart.agent.controller;
+
+import com.pixelart.agent.model.GenerationJob;
+import com.pixelart.agent.model.GenerationMode;
+import com.pixelart.agent.model.PixelArtRequest;
+import com.pixelart.agent.service.jobs.JobQueue;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.net.URI;
+
+/**
+ * Background generation through the shared job queue
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/pixelart/jobs")
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "pixelart.jobs.enabled", havingValue = "true")
+public class JobController {
+
+    private final JobQueue jobQueue;
+
+    /**
+     * Queue a generation; poll the returned location for its result
+     */
+    @PostMapping
+    public ResponseEntity<GenerationJob> submit(
+            @RequestBody PixelArtRequest request,
+            @RequestParam(defaultValue = "full") String mode) {
+
+        GenerationMode generationMode;
+        try {
+            generationMode = GenerationMode.fromValue(mode);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        try {
+            GenerationJob job = jobQueue.submit(request, generationMode);
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/pixelart/jobs/" + job.getId()))
+                    .body(job);
+        } catch (Exception e) {
+            log.error("Error queueing job", e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * State of a job, with its result once it has succeeded
+     */
+    @GetMapping("/{id}")
+    public ResponseEntity<GenerationJob> get(@PathVariable String id) {
+        return jobQueue.get(id)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+}
@@ -0,0 +1,33 @@
+package com.pixelart.agent.controller;
+
+import com.pixelart.agent.service.concurrency.LimitExceededException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+/**
+ * Answers requests shed by a backend limiter with 503 and a Retry-After, so clients back off
+ * instead of seeing a generic 500
+ */
+@Slf4j
+@RestControllerAdvice
+public class LimitExceededAdvice {
+
+    private final long retryAfterSeconds;
+
+    public LimitExceededAdvice(@Value("${pixelart.threads.adaptive.retry-after-seconds:5}") long retryAfterSeconds) {
+        this.retryAfterSeconds = Math.max(1, retryAfterSeconds);
+    }
+
+    @ExceptionHandler(LimitExceededException.class)
+    public ResponseEntity<Void> overloaded(LimitExceededException e) {
+        log.debug("Request shed: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds))
+                .build();
+    }
+}
@@ -1,15 +1,29 @@
 package com.pixelart.agent.controller;
 
+import com.pixelart.agent.model.AtlasResponse;
+import com.pixelart.agent.model.GenerationMode;
 import com.pixelart.agent.model.PixelArtRequest;
 import com.pixelart.agent.model.PixelArtResponse;
+import com.pixelart.agent.model.SemanticMatch;
+import com.pixelart.agent.model.SimilarSprite;
 import com.pixelart.agent.service.PixelArtAgentService;
+import com.pixelart.agent.service.concurrency.LimitExceededException;
+import com.pixelart.agent.service.image.ImageStore;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 
 /**
  * REST controller for pixel art generation endpoints
@@ -20,22 +34,34 @@ import java.util.Map;
 @RequiredArgsConstructor
 public class PixelArtController {
 
+    /** Image ids are content hashes, so what is served under one never changes */
+    private static final CacheControl IMMUTABLE = CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable();
+
     private final PixelArtAgentService pixelArtAgentService;
+    private final ImageStore imageStore;
+    private final QuotaInterceptor quotaInterceptor;
+
+    @Value("${pixelart.image.frames.max-sprites:16}")
+    private int maxAtlasSprites;
 
     /**
      * Generate a single pixel art description
      */
     @PostMapping("/generate")
-    public ResponseEntity<PixelArtResponse> generatePixelArt(@RequestBody PixelArtRequest request) {
-        log.info("Received request to generate pixel art: {}", request.getAssetType());
+    public ResponseEntity<PixelArtResponse> generatePixelArt(
+            @RequestBody PixelArtRequest request,
+            @RequestParam(defaultValue = "full") String mode) {
+        log.info("Received request to generate pixel art: {} (mode: {})", request.getAssetType(), mode);
         
+        GenerationMode generationMode;
         try {
-            PixelArtResponse response = pixelArtAgentService.generatePixelArt(request);
-            return ResponseEntity.ok(response);
-        } catch (Exception e) {
-            log.error("Error generating pixel art", e);
-            return ResponseEntity.internalServerError().build();
+            generationMode = GenerationMode.fromValue(mode);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
         }
+        
+        return respond("Error generating pixel art",
+                () -> ResponseEntity.ok(pixelArtAgentService.generatePixelArt(request, generationMode)));
     }
 
     /**
@@ -44,17 +70,42 @@ public class PixelArtController {
     @PostMapping("/generate/variations")
     public ResponseEntity<List<PixelArtResponse>> generateVariations(
             @RequestBody PixelArtRequest request,
-            @RequestParam(defaultValue = "3") int count) {
+            @RequestParam(defaultValue = "3") int count,
+            HttpServletRequest httpRequest) {
         
         log.info("Received request to generate {} variations", count);
+        if (count < 1) {
+            return ResponseEntity.badRequest().build();
+        }
+        // Only the variations the service will actually render
+        quotaInterceptor.chargeItems(httpRequest, pixelArtAgentService.variationCount(count));
         
-        try {
-            List<PixelArtResponse> variations = pixelArtAgentService.generateVariations(request, count);
-            return ResponseEntity.ok(variations);
-        } catch (Exception e) {
-            log.error("Error generating variations", e);
-            return ResponseEntity.internalServerError().build();
+        return respond("Error generating variations",
+                () -> ResponseEntity.ok(pixelArtAgentService.generateVariations(request, count)));
+    }
+
+    /**
+     * Generate several sprites frame by frame and pack all their frames into one texture atlas
+     */
+    @PostMapping("/generate/atlas")
+    public ResponseEntity<AtlasResponse> generateAtlas(@RequestBody List<PixelArtRequest> requests,
+                                                      HttpServletRequest httpRequest) {
+        log.info("Received request to generate a shared atlas for {} sprites", requests.size());
+        
+        if (requests.isEmpty() || requests.size() > maxAtlasSprites) {
+            log.warn("Rejecting atlas of {} sprites (max {})", requests.size(), maxAtlasSprites);
+            return ResponseEntity.badRequest().build();
         }
+        // Every sprite is a description plus a render per frame
+        quotaInterceptor.chargeItems(httpRequest, requests.size());
+        return respond("Error generating atlas", () -> {
+            try {
+                return ResponseEntity.ok(pixelArtAgentService.generateAtlas(requests));
+            } catch (IllegalArgumentException e) {
+                log.warn("Atlas generation rejected: {}", e.getMessage());
+                return ResponseEntity.badRequest().build();
+            }
+        });
     }
 
     /**
@@ -67,11 +118,42 @@ public class PixelArtController {
         
         log.info("Received request to refine pixel art with feedback");
         
+        return respond("Error refining pixel art",
+                () -> ResponseEntity.ok(pixelArtAgentService.refinePixelArt(request, feedback)));
+    }
+
+    /**
+     * Find earlier results for semantically similar requests, without generating anything
+     */
+    @PostMapping("/similar")
+    public ResponseEntity<List<SemanticMatch>> findSimilar(
+            @RequestBody PixelArtRequest request,
+            @RequestParam(defaultValue = "5") int limit) {
+        
+        log.info("Received request to find similar results");
+        
+        return respond("Error finding similar results",
+                () -> ResponseEntity.ok(pixelArtAgentService.findSimilar(request, limit)));
+    }
+
+    /**
+     * Find previously generated sprites that look like the uploaded PNG
+     */
+    @PostMapping(value = "/sprites/similar", consumes = "image/png")
+    public ResponseEntity<List<SimilarSprite>> findSimilarSprites(
+            @RequestBody byte[] image,
+            @RequestParam(required = false) Integer maxDistance,
+            @RequestParam(defaultValue = "20") int limit) {
+        
+        log.info("Received request to find similar sprites");
+        
         try {
-            PixelArtResponse response = pixelArtAgentService.refinePixelArt(request, feedback);
-            return ResponseEntity.ok(response);
+            String imageData = java.util.Base64.getEncoder().encodeToString(image);
+            return ResponseEntity.ok(pixelArtAgentService.findSimilarSprites(imageData, maxDistance, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
         } catch (Exception e) {
-            log.error("Error refining pixel art", e);
+            log.error("Error finding similar sprites", e);
             return ResponseEntity.internalServerError().build();
         }
     }
@@ -105,29 +187,34 @@ public class PixelArtController {
     }
 
     /**
-     * Generate pixel art and return the actual PNG image file directly
+     * Generate pixel art and return the actual PNG image file directly.
+     * The image is also stored under its content hash, named by Content-Location, where
+     * later views can fetch it with caching.
      */
     @PostMapping("/generate/image")
     public ResponseEntity<byte[]> generatePixelArtImage(@RequestBody PixelArtRequest request) {
         log.info("Received request to generate pixel art image: {}", request.getAssetType());
         
-        try {
-            PixelArtResponse response = pixelArtAgentService.generatePixelArt(request);
+        return respond("Error generating pixel art image", () -> {
+            // The description would only be thrown away, so skip the LLM
+            PixelArtResponse response = pixelArtAgentService.generatePixelArt(request, GenerationMode.IMAGE_ONLY);
             
             // Check if image was generated
             if (response.getImageData() != null && !response.getImageData().isEmpty()) {
                 // Decode base64 image data
                 byte[] imageBytes = java.util.Base64.getDecoder().decode(response.getImageData());
+                String imageId = response.getImageId() != null ? response.getImageId() : ImageStore.idOf(imageBytes);
                 
                 String filename = String.format("pixel-art-%s-%s.png", 
                     request.getAssetType().toLowerCase(),
-                    System.currentTimeMillis());
+                    imageId.substring(0, 12));
                 
                 return ResponseEntity.ok()
                         .header("Content-Type", "image/png")
                         .header("Content-Disposition", "inline; filename=\"" + filename + "\"")
+                        .header("Content-Location", "/api/pixelart/image/" + imageId)
                         .header("X-Image-Status", response.getImageStatus())
-                        .header("X-Description", response.getDetailedDescription())
+                        .eTag(imageId)
                         .body(imageBytes);
             } else {
                 // No image generated, return error
@@ -137,28 +224,69 @@ public class PixelArtController {
                         .header("X-Error", "Stable Diffusion not available")
                         .body(null);
             }
-        } catch (Exception e) {
-            log.error("Error generating pixel art image", e);
-            return ResponseEntity.internalServerError().build();
-        }
+        });
     }
 
     /**
-     * Download generated image as PNG file
+     * Download a generated image as a PNG file, by the imageId of a response.
+     * Ids are content hashes, so the image is cacheable forever and a request carrying its
+     * ETag in If-None-Match gets a 304 without the image being looked up. Passing the
+     * base64 imageData instead is still supported.
      */
     @GetMapping("/image/{responseId}")
-    public ResponseEntity<byte[]> downloadImage(@PathVariable String responseId, @RequestParam String imageData) {
+    public ResponseEntity<byte[]> downloadImage(@PathVariable String responseId,
+                                                @RequestParam(required = false) String imageData,
+                                                WebRequest webRequest, HttpServletResponse servletResponse) {
         try {
-            // Decode base64 image data
-            byte[] imageBytes = java.util.Base64.getDecoder().decode(imageData);
+            byte[] imageBytes;
+            String imageId;
+            if (imageData != null) {
+                // Decode base64 image data
+                imageBytes = java.util.Base64.getDecoder().decode(imageData);
+                imageId = ImageStore.idOf(imageBytes);
+            } else {
+                if (!ImageStore.isValidId(responseId)) {
+                    return ResponseEntity.badRequest().build();
+                }
+                imageId = responseId;
+                imageBytes = null;
+            }
+            if (webRequest.checkNotModified(imageId)) {
+                // 304 with the ETag already set by checkNotModified
+                servletResponse.setHeader(HttpHeaders.CACHE_CONTROL, IMMUTABLE.getHeaderValue());
+                return null;
+            }
+            if (imageBytes == null) {
+                imageBytes = imageStore.get(imageId);
+                if (imageBytes == null) {
+                    return ResponseEntity.notFound().build();
+                }
+            }
             
             return ResponseEntity.ok()
                     .header("Content-Type", "image/png")
                     .header("Content-Disposition", "attachment; filename=\"pixel-art-" + responseId + ".png\"")
+                    .cacheControl(IMMUTABLE)
+                    .eTag(imageId)
                     .body(imageBytes);
         } catch (Exception e) {
             log.error("Error downloading image", e);
             return ResponseEntity.badRequest().build();
         }
     }
+
+    /**
+     * Run an endpoint, answering unexpected failures with a 500. Overload is left to
+     * LimitExceededAdvice, which answers it with a 503 and a Retry-After.
+     */
+    private <T> ResponseEntity<T> respond(String failure, Supplier<ResponseEntity<T>> endpoint) {
+        try {
+            return endpoint.get();
+        } catch (LimitExceededException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error(failure, e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
 }
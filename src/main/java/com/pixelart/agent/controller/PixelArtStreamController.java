@@ -0,0 +1,242 @@
+package com.pixelart.agent.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.pixelart.agent.model.BatchItemResult;
+import com.pixelart.agent.model.PixelArtRequest;
+import com.pixelart.agent.model.PixelArtResponse;
+import com.pixelart.agent.model.json.ImageDataSerializer;
+import com.pixelart.agent.service.BatchGenerationService;
+import com.pixelart.agent.service.PixelArtAgentService;
+import com.pixelart.agent.service.concurrency.LimitExceededException;
+import com.pixelart.agent.service.image.PerceptualHash;
+import com.pixelart.agent.service.image.SpriteAnimationExporter;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * REST controller for long-running generation endpoints that stream their output
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/pixelart")
+public class PixelArtStreamController {
+
+    private static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    private final PixelArtAgentService pixelArtAgentService;
+    private final BatchGenerationService batchGenerationService;
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter ndjsonWriter;
+    private final AsyncTaskExecutor taskExecutor;
+    private final SpriteAnimationExporter animationExporter;
+    private final QuotaInterceptor quotaInterceptor;
+
+    @Value("${pixelart.image.progress.sse-timeout-ms:300000}")
+    private long sseTimeoutMs;
+
+    @Value("${pixelart.batch.max-requests:500}")
+    private int maxBatchRequests;
+
+    public PixelArtStreamController(PixelArtAgentService pixelArtAgentService,
+                                    BatchGenerationService batchGenerationService,
+                                    ObjectMapper objectMapper,
+                                    @Qualifier("applicationTaskExecutor") AsyncTaskExecutor taskExecutor,
+                                    SpriteAnimationExporter animationExporter,
+                                    QuotaInterceptor quotaInterceptor) {
+        this.pixelArtAgentService = pixelArtAgentService;
+        this.batchGenerationService = batchGenerationService;
+        this.objectMapper = objectMapper;
+        this.ndjsonWriter = objectMapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        this.taskExecutor = taskExecutor;
+        this.animationExporter = animationExporter;
+        this.quotaInterceptor = quotaInterceptor;
+    }
+
+    /**
+     * Generate pixel art while streaming progress events.
+     * Emits "progress" events (stage, percent complete, ETA, low-res previews) followed by
+     * a single "result" event with the full response, or an "error" event.
+     */
+    @PostMapping(value = "/generate/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter generatePixelArtStream(@RequestBody PixelArtRequest request) {
+        log.info("Received request to generate pixel art with progress stream: {}", request.getAssetType());
+
+        SseEmitter emitter = new SseEmitter(sseTimeoutMs);
+        taskExecutor.execute(() -> {
+            try {
+                PixelArtResponse response = pixelArtAgentService.generatePixelArt(request, progress -> {
+                    try {
+                        emitter.send(SseEmitter.event().name("progress").data(progress, MediaType.APPLICATION_JSON));
+                    } catch (IOException | IllegalStateException e) {
+                        log.debug("Progress event dropped, client disconnected: {}", e.getMessage());
+                    }
+                });
+                emitter.send(SseEmitter.event().name("result").data(response, MediaType.APPLICATION_JSON));
+                emitter.complete();
+            } catch (Exception e) {
+                log.error("Error generating pixel art stream", e);
+                try {
+                    // The stream has already started, so an overload can't become a 503 here
+                    emitter.send(SseEmitter.event().name("error").data(e instanceof LimitExceededException
+                            ? "Backend overloaded, retry later" : "Generation failed"));
+                    emitter.complete();
+                } catch (IOException | IllegalStateException sendError) {
+                    emitter.completeWithError(e);
+                }
+            }
+        });
+        return emitter;
+    }
+
+    /**
+     * Generate a batch of pixel art assets, streaming each result as soon as it completes.
+     * format=ndjson (default) writes one BatchItemResult per line; format=zip streams a ZIP
+     * with a PNG and a JSON metadata entry per item.
+     */
+    @PostMapping("/generate/batch")
+    public ResponseEntity<StreamingResponseBody> generateBatch(
+            @RequestBody List<PixelArtRequest> requests,
+            @RequestParam(defaultValue = "ndjson") String format,
+            HttpServletRequest httpRequest) {
+
+        log.info("Received batch request with {} items (format: {})", requests.size(), format);
+
+        if (requests.isEmpty() || requests.size() > maxBatchRequests) {
+            log.warn("Rejecting batch of {} items (max {})", requests.size(), maxBatchRequests);
+            return ResponseEntity.badRequest().build();
+        }
+        quotaInterceptor.chargeItems(httpRequest, requests.size());
+
+        if ("zip".equalsIgnoreCase(format)) {
+            String filename = String.format("pixel-art-batch-%s.zip", System.currentTimeMillis());
+            return ResponseEntity.ok()
+                    .contentType(MediaType.parseMediaType("application/zip"))
+                    .header("Content-Disposition", "attachment; filename=\"" + filename + "\"")
+                    .body(out -> writeZip(requests, out));
+        }
+
+        return ResponseEntity.ok()
+                .contentType(APPLICATION_NDJSON)
+                .body(out -> writeNdjson(requests, out));
+    }
+
+    /**
+     * Generate pixel art and stream its spritesheet as a looping animation, one frame at a time.
+     * format=gif (default) or apng; a single sprite becomes a one-frame animation.
+     */
+    @PostMapping("/generate/animation")
+    public ResponseEntity<StreamingResponseBody> generateAnimation(
+            @RequestBody PixelArtRequest request,
+            @RequestParam(defaultValue = "gif") String format,
+            @RequestParam(defaultValue = "150") int frameDelayMs) {
+
+        log.info("Received request to generate {} animation: {}", format, request.getAssetType());
+
+        SpriteAnimationExporter.Format animationFormat;
+        try {
+            animationFormat = SpriteAnimationExporter.Format.valueOf(format.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        PixelArtResponse response = pixelArtAgentService.generatePixelArt(request);
+        BufferedImage sheet = response.getImageData() != null ? PerceptualHash.decode(response.getImageData()) : null;
+        if (sheet == null) {
+            log.warn("Animation export failed - no image was generated");
+            return ResponseEntity.status(503)
+                    .header("X-Image-Status", "text-only")
+                    .build();
+        }
+
+        int frameCount = "spritesheet-generated".equals(response.getImageStatus())
+                && response.getSpecifications() != null && response.getSpecifications().getFrameCount() != null
+                ? response.getSpecifications().getFrameCount() : 1;
+        String filename = String.format("pixel-art-%s.%s", System.currentTimeMillis(), animationFormat.getExtension());
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(animationFormat.getContentType()))
+                .header("Content-Disposition", "inline; filename=\"" + filename + "\"")
+                .header("X-Frame-Count", String.valueOf(frameCount))
+                .body(out -> animationExporter.export(sheet, frameCount, animationFormat, frameDelayMs, out));
+    }
+
+    private void writeNdjson(List<PixelArtRequest> requests, OutputStream out) throws IOException {
+        try {
+            batchGenerationService.generateBatch(requests, result -> {
+                try {
+                    // Straight into the response stream, no intermediate byte[] per item
+                    ndjsonWriter.writeValue(out, result);
+                    out.write('\n');
+                    out.flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void writeZip(List<PixelArtRequest> requests, OutputStream out) throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(out);
+        try {
+            batchGenerationService.generateBatch(requests, result -> {
+                try {
+                    writeZipEntries(zip, result);
+                    zip.flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        zip.finish();
+    }
+
+    private void writeZipEntries(ZipOutputStream zip, BatchItemResult result) throws IOException {
+        PixelArtResponse response = result.getResponse();
+        String assetType = response != null && response.getSpecifications() != null
+                && response.getSpecifications().getAssetType() != null
+                ? response.getSpecifications().getAssetType() : "sprite";
+        String baseName = String.format("%03d-%s", result.getIndex(),
+                assetType.toLowerCase().replaceAll("[^a-z0-9-]", "_"));
+
+        if (response != null && response.getImageData() != null && !response.getImageData().isEmpty()) {
+            zip.putNextEntry(new ZipEntry(baseName + ".png"));
+            ImageDataSerializer.decode(response.getImageData()).transferTo(zip);
+            zip.closeEntry();
+        }
+
+        // Metadata without the base64 payload already stored as the PNG entry
+        ObjectNode metadata = objectMapper.valueToTree(result);
+        if (metadata.get("response") instanceof ObjectNode responseNode) {
+            responseNode.remove("imageData");
+        }
+        zip.putNextEntry(new ZipEntry(baseName + ".json"));
+        zip.write(objectMapper.writeValueAsBytes(metadata));
+        zip.closeEntry();
+    }
+}
@@ -0,0 +1,71 @@
+package com.pixelart.agent.controller;
+
+import com.pixelart.agent.config.QuotaProperties;
+import com.pixelart.agent.service.quota.TenantContext;
+import com.pixelart.agent.service.quota.TenantQuotas;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Charges each API request against its client's quota and tags the request thread with the tenant,
+ * which the backend limiters use to share capacity between tenants. Clients without a configured API
+ * key are told apart by remote address, which honours X-Forwarded-For only when
+ * server.forward-headers-strategy is set to framework behind a proxy.
+ */
+@Slf4j
+@Component
+public class QuotaInterceptor implements AsyncHandlerInterceptor {
+
+    private final TenantQuotas tenantQuotas;
+    private final QuotaProperties properties;
+
+    public QuotaInterceptor(TenantQuotas tenantQuotas, QuotaProperties properties) {
+        this.tenantQuotas = tenantQuotas;
+        this.properties = properties;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        TenantQuotas.Admission admission = tenantQuotas.admit(
+                request.getHeader(properties.getHeader()), request.getRemoteAddr());
+        TenantContext.set(admission.tenant());
+        // An async request dispatches here again to write its result; it was charged on the way in
+        if (request.getDispatcherType() == DispatcherType.ASYNC || admission.isAdmitted()) {
+            return true;
+        }
+
+        long retryAfterSeconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(admission.retryAfterNanos() + 999_999_999L));
+        log.debug("Throttled {} request to {}, retry after {}s",
+                  admission.tenant().name(), request.getRequestURI(), retryAfterSeconds);
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+        TenantContext.clear();
+        return false;
+    }
+
+    /**
+     * Charge a request that carries several items for all but the one preHandle already took,
+     * so a batch of n costs the same quota as n single requests
+     */
+    public void chargeItems(HttpServletRequest request, int items) {
+        tenantQuotas.charge(request.getHeader(properties.getHeader()), request.getRemoteAddr(), items - 1);
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        TenantContext.clear();
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        TenantContext.clear();
+    }
+}
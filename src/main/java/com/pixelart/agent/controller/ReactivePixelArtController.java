@@ -0,0 +1,98 @@
+package com.pixelart.agent.controller;
+
+import com.pixelart.agent.model.PixelArtRequest;
+import com.pixelart.agent.model.PixelArtResponse;
+import com.pixelart.agent.service.ReactivePixelArtAgentService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Base64;
+
+/**
+ * Non-blocking versions of the generate endpoints
+ * Handlers return Mono/Flux, so the request thread is released while the LLM and image
+ * stages run and the response is written when they signal completion.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/pixelart/reactive")
+@RequiredArgsConstructor
+public class ReactivePixelArtController {
+
+    private final ReactivePixelArtAgentService reactivePixelArtAgentService;
+
+    /**
+     * Generate a pixel art description and image
+     */
+    @PostMapping("/generate")
+    public Mono<ResponseEntity<PixelArtResponse>> generatePixelArt(@RequestBody PixelArtRequest request) {
+        log.info("Received reactive request to generate pixel art: {}", request.getAssetType());
+
+        return reactivePixelArtAgentService.generatePixelArt(request)
+                .map(ResponseEntity::ok)
+                .onErrorResume(e -> {
+                    log.error("Error generating pixel art", e);
+                    return Mono.just(ResponseEntity.internalServerError().build());
+                });
+    }
+
+    /**
+     * Generate pixel art and return the image directly as PNG
+     */
+    @PostMapping("/generate/image")
+    public Mono<ResponseEntity<byte[]>> generatePixelArtImage(@RequestBody PixelArtRequest request) {
+        log.info("Received reactive request to generate pixel art image: {}", request.getAssetType());
+
+        return reactivePixelArtAgentService.generatePixelArt(request)
+                .map(response -> {
+                    if (response.getImageData() == null || response.getImageData().isEmpty()) {
+                        log.warn("Image generation failed - Stable Diffusion may not be available");
+                        return ResponseEntity.status(503)
+                                .header("X-Image-Status", "text-only")
+                                .header("X-Error", "Stable Diffusion not available")
+                                .<byte[]>body(null);
+                    }
+                    return ResponseEntity.ok()
+                            .contentType(MediaType.IMAGE_PNG)
+                            .header("X-Image-Status", response.getImageStatus())
+                            .body(Base64.getDecoder().decode(response.getImageData()));
+                })
+                .onErrorResume(e -> {
+                    log.error("Error generating pixel art image", e);
+                    return Mono.just(ResponseEntity.internalServerError().build());
+                });
+    }
+
+    /**
+     * Stream the description as the model writes it.
+     * Emits "description" events with text chunks, then a single "result" event with the full
+     * response once the image is rendered, or an "error" event.
+     */
+    @PostMapping(value = "/generate/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Object>> streamPixelArt(@RequestBody PixelArtRequest request) {
+        log.info("Received reactive streaming request for pixel art: {}", request.getAssetType());
+
+        return Flux.defer(() -> {
+            StringBuilder description = new StringBuilder();
+            Flux<ServerSentEvent<Object>> chunks = reactivePixelArtAgentService.streamDescription(request)
+                    .doOnNext(description::append)
+                    .map(chunk -> ServerSentEvent.<Object>builder(chunk).event("description").build());
+            Mono<ServerSentEvent<Object>> result = Mono.defer(() -> reactivePixelArtAgentService
+                    .complete(request, description.toString()))
+                    .map(response -> ServerSentEvent.<Object>builder(response).event("result").build());
+            return chunks.concatWith(result);
+        }).onErrorResume(e -> {
+            log.error("Error streaming pixel art", e);
+            return Mono.just(ServerSentEvent.<Object>builder(String.valueOf(e.getMessage())).event("error").build());
+        });
+    }
+}
@@ -0,0 +1,69 @@
+package com.pixelart.agent.controller;
+
+import com.pixelart.agent.service.traffic.TrafficContext;
+import com.pixelart.agent.service.traffic.TrafficRecorder;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+/**
+ * Starts traffic capture for sampled requests and writes them to the recorder once complete,
+ * and hands replayed backend calls from the playback header to the mock providers.
+ * Asynchronous requests (streams, SSE) do their backend calls on other threads and are not recorded.
+ */
+@Component
+public class TrafficInterceptor implements AsyncHandlerInterceptor {
+
+    private static final String ARRIVED_AT = TrafficInterceptor.class.getName() + ".arrivedAt";
+    private static final String STARTED = TrafficInterceptor.class.getName() + ".started";
+
+    private final TrafficRecorder trafficRecorder;
+    private final boolean playback;
+
+    public TrafficInterceptor(TrafficRecorder trafficRecorder,
+                              @Value("${pixelart.traffic.playback.enabled:false}") boolean playback) {
+        this.trafficRecorder = trafficRecorder;
+        this.playback = playback;
+    }
+
+    public boolean isActive() {
+        return trafficRecorder.isEnabled() || playback;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (playback) {
+            String calls = request.getHeader(TrafficContext.PLAYBACK_HEADER);
+            if (calls != null) {
+                TrafficContext.startPlayback(TrafficContext.parseCalls(calls));
+            }
+        }
+        if (trafficRecorder.sample()) {
+            request.setAttribute(ARRIVED_AT, System.currentTimeMillis());
+            request.setAttribute(STARTED, System.nanoTime());
+            TrafficContext.startCapture();
+        }
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        TrafficContext.clear();
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        TrafficContext.Capture capture = TrafficContext.endCapture();
+        TrafficContext.clear();
+        if (capture == null || capture.getRequest() == null || !(request.getAttribute(STARTED) instanceof Long started)) {
+            return;
+        }
+        String path = request.getQueryString() != null
+                ? request.getRequestURI() + "?" + request.getQueryString()
+                : request.getRequestURI();
+        trafficRecorder.record((Long) request.getAttribute(ARRIVED_AT), request.getMethod(), path,
+                response.getStatus(), (System.nanoTime() - started) / 1_000_000, capture);
+    }
+}
@@ -0,0 +1,31 @@
+package com.pixelart.agent.controller;
+
+import com.pixelart.agent.model.PixelArtRequest;
+import com.pixelart.agent.service.traffic.TrafficContext;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.RequestBodyAdviceAdapter;
+
+import java.lang.reflect.Type;
+
+/**
+ * Hands each PixelArtRequest body to the traffic capture in progress, if any
+ */
+@ControllerAdvice
+public class TrafficRequestBodyAdvice extends RequestBodyAdviceAdapter {
+
+    @Override
+    public boolean supports(MethodParameter methodParameter, Type targetType,
+                            Class<? extends HttpMessageConverter<?>> converterType) {
+        return targetType == PixelArtRequest.class;
+    }
+
+    @Override
+    public Object afterBodyRead(Object body, HttpInputMessage inputMessage, MethodParameter parameter,
+                                Type targetType, Class<? extends HttpMessageConverter<?>> converterType) {
+        TrafficContext.captureRequest((PixelArtRequest) body);
+        return body;
+    }
+}
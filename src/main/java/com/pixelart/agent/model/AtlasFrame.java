@@ -0,0 +1,40 @@
+package com.pixelart.agent.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Location of one animation frame inside a packed texture atlas
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AtlasFrame {
+
+    /**
+     * Unique frame name, e.g. "0-character/walk_2"
+     */
+    private String name;
+
+    /**
+     * Index of the sprite (request) the frame belongs to
+     */
+    private int sprite;
+
+    private String animation;
+
+    /**
+     * Position of the frame within its animation
+     */
+    private int frame;
+
+    private int x;
+    private int y;
+    private int width;
+    private int height;
+
+    private Long seed;
+}
@@ -0,0 +1,25 @@
+package com.pixelart.agent.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Several sprites whose frames share one packed texture atlas
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AtlasResponse {
+
+    private SpriteAtlas atlas;
+
+    /**
+     * One response per request, in request order, without their own image data
+     */
+    private List<PixelArtResponse> sprites;
+}
@@ -0,0 +1,38 @@
+package com.pixelart.agent.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One streamed result of a batch generation, emitted as soon as its item completes
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchItemResult {
+
+    /**
+     * Position of the request in the submitted batch
+     */
+    private int index;
+
+    /**
+     * Index of the identical earlier request whose result this one shares
+     */
+    private Integer duplicateOf;
+
+    /**
+     * The generated response, absent if the item failed
+     */
+    private PixelArtResponse response;
+
+    /**
+     * Failure reason, absent if the item succeeded
+     */
+    private String error;
+}
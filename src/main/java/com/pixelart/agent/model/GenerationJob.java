@@ -0,0 +1,69 @@
+package com.pixelart.agent.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A generation submitted to the shared job queue, and its outcome once a worker has run it
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class GenerationJob {
+
+    public enum State {
+        QUEUED, RUNNING, SUCCEEDED, FAILED
+    }
+
+    /**
+     * Sortable id, oldest first
+     */
+    private String id;
+
+    private State state;
+
+    private GenerationMode mode;
+
+    private PixelArtRequest request;
+
+    /**
+     * Set once the job has succeeded
+     */
+    private PixelArtResponse result;
+
+    /**
+     * Why the last attempt failed
+     */
+    private String error;
+
+    /**
+     * Number of times a worker has claimed the job
+     */
+    private int attempts;
+
+    /**
+     * Worker holding the lease, while running
+     */
+    private String worker;
+
+    /**
+     * Epoch millis after which another worker may take the job over
+     */
+    private long leaseExpiresAt;
+
+    private long createdAt;
+
+    private long updatedAt;
+
+    /**
+     * Tenant that submitted the job, so the worker queues its backend calls under the same share
+     */
+    private String tenant;
+
+    private double tenantWeight;
+}
@@ -0,0 +1,47 @@
+package com.pixelart.agent.model;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+/**
+ * Which generation stages a request runs
+ */
+public enum GenerationMode {
+
+    /** Description from the LLM, then an image from it */
+    FULL("full"),
+
+    /** Description only, no image backend call */
+    TEXT_ONLY("text-only"),
+
+    /** Image only, prompted straight from the request without an LLM call */
+    IMAGE_ONLY("image-only");
+
+    private final String value;
+
+    GenerationMode(String value) {
+        this.value = value;
+    }
+
+    @JsonValue
+    public String getValue() {
+        return value;
+    }
+
+    /**
+     * Parse "full", "text-only" or "image-only" (case and separator insensitive)
+     */
+    @JsonCreator
+    public static GenerationMode fromValue(String value) {
+        if (value == null || value.isBlank()) {
+            return FULL;
+        }
+        String normalized = value.trim().toLowerCase().replace('_', '-');
+        for (GenerationMode mode : values()) {
+            if (mode.value.equals(normalized)) {
+                return mode;
+            }
+        }
+        throw new IllegalArgumentException("Unknown generation mode: " + value);
+    }
+}
@@ -0,0 +1,57 @@
+package com.pixelart.agent.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Progress snapshot for an in-flight generation, streamed to clients over SSE
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class GenerationProgress {
+
+    public static final String STATE_DESCRIBING = "describing";
+    public static final String STATE_QUEUED = "queued";
+    public static final String STATE_RENDERING = "rendering";
+
+    /**
+     * Pipeline stage ("describing", "queued", "rendering")
+     */
+    private String state;
+
+    /**
+     * Number of jobs ahead of this one on the same backend, only set while queued
+     */
+    private Integer queuePosition;
+
+    /**
+     * Completion of the current stage between 0.0 and 1.0
+     */
+    private double progress;
+
+    /**
+     * Estimated seconds remaining as reported by the backend
+     */
+    private Double etaSeconds;
+
+    /**
+     * Current sampling step
+     */
+    private Integer step;
+
+    /**
+     * Total sampling steps
+     */
+    private Integer totalSteps;
+
+    /**
+     * Low resolution base64 PNG preview of the partially denoised image
+     */
+    private String previewImage;
+}
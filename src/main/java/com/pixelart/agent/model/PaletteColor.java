@@ -0,0 +1,26 @@
+package com.pixelart.agent.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A dominant color of the generated image
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaletteColor {
+
+    /**
+     * Color as #RRGGBB
+     */
+    private String hex;
+
+    /**
+     * Percentage of the sprite's opaque pixels closest to this color
+     */
+    private double coverage;
+}
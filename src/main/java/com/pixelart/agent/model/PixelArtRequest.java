@@ -41,4 +41,39 @@ public class PixelArtRequest {
      * Additional context or constraints
      */
     private String additionalContext;
+    
+    /**
+     * Optional LoRA name for image generation, overrides pixelart.image.generation.lora
+     */
+    private String lora;
+    
+    /**
+     * Optional LoRA strength, overrides pixelart.image.generation.lora-strength
+     */
+    private Double loraStrength;
+    
+    /**
+     * Optional Stable Diffusion checkpoint name, defaults to whatever the backend has loaded
+     */
+    private String checkpoint;
+    
+    /**
+     * Optional image seed for reproducible output, a random seed is chosen and returned if omitted
+     */
+    private Long seed;
+    
+    /**
+     * Render each animation frame as its own job and pack them into an atlas (overrides pixelart.image.frames.per-frame-jobs)
+     */
+    private Boolean perFrameJobs;
+
+    /**
+     * Optional number of colors to reduce the image to, picked from its own dominant colors
+     */
+    private Integer paletteSize;
+
+    /**
+     * Optional "high" to describe with the larger model when the model cascade is enabled
+     */
+    private ResponseQuality quality;
 }
@@ -1,5 +1,7 @@
 package com.pixelart.agent.model;
 
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.pixelart.agent.model.json.ImageDataSerializer;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -23,10 +25,15 @@ public class PixelArtResponse {
     private String detailedDescription;
     
     /**
-     * Suggested color palette with hex codes
+     * Suggested color palette with hex codes, taken from the image itself once one is generated
      */
     private List<String> suggestedColors;
     
+    /**
+     * Dominant colors of the generated image with their coverage, most common first
+     */
+    private List<PaletteColor> palette;
+    
     /**
      * Technical specifications for the sprite
      */
@@ -55,13 +62,39 @@ public class PixelArtResponse {
     /**
      * Base64 encoded image data (PNG format)
      */
+    @JsonSerialize(using = ImageDataSerializer.class)
     private String imageData;
     
+    /**
+     * SHA-256 of the PNG bytes; the image can be fetched again from imageUrl and cached forever
+     */
+    private String imageId;
+    
+    /**
+     * Where the image is served with a strong ETag and an immutable Cache-Control
+     */
+    private String imageUrl;
+    
     /**
      * Image generation status
      */
     private String imageStatus;
     
+    /**
+     * Seed used for the image, pass it back in the request to reproduce the image
+     */
+    private Long seed;
+    
+    /**
+     * Similarity to the earlier request whose result was reused, only set on semantic cache hits
+     */
+    private Double matchedSimilarity;
+    
+    /**
+     * Frame layout when the frames were generated separately and packed into imageData
+     */
+    private SpriteAtlas atlas;
+    
     @Data
     @Builder
     @NoArgsConstructor
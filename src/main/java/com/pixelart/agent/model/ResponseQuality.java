@@ -0,0 +1,44 @@
+package com.pixelart.agent.model;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+/**
+ * How much model a prompt is worth, for providers that can choose
+ */
+public enum ResponseQuality {
+
+    /** A first pass; a small, fast model will do if its answer holds up */
+    DRAFT("draft"),
+
+    /** Refinements and explicit high-quality requests, which go straight to the larger model */
+    HIGH("high");
+
+    private final String value;
+
+    ResponseQuality(String value) {
+        this.value = value;
+    }
+
+    @JsonValue
+    public String getValue() {
+        return value;
+    }
+
+    /**
+     * Parse "draft" or "high" (case insensitive), null for none
+     */
+    @JsonCreator
+    public static ResponseQuality fromValue(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        String normalized = value.trim().toLowerCase();
+        for (ResponseQuality quality : values()) {
+            if (quality.value.equals(normalized)) {
+                return quality;
+            }
+        }
+        throw new IllegalArgumentException("Unknown response quality: " + value);
+    }
+}
@@ -0,0 +1,31 @@
+package com.pixelart.agent.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * An earlier result whose request is semantically close to the current one
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SemanticMatch {
+
+    /**
+     * Cosine similarity between the normalized request texts
+     */
+    private double similarity;
+
+    /**
+     * Normalized text of the earlier request
+     */
+    private String matchedRequest;
+
+    /**
+     * The earlier response
+     */
+    private PixelArtResponse response;
+}
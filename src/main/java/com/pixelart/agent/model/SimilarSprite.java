@@ -0,0 +1,40 @@
+package com.pixelart.agent.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A previously generated sprite that looks like the queried one
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SimilarSprite {
+
+    /**
+     * SHA-256 of the PNG bytes
+     */
+    private String imageId;
+
+    /**
+     * Hamming distance between the perceptual hashes (0 = visually identical)
+     */
+    private int distance;
+
+    /**
+     * Perceptual hash as 16 hex digits
+     */
+    private String perceptualHash;
+
+    /**
+     * Image prompt the sprite was rendered from
+     */
+    private String prompt;
+
+    private Long seed;
+
+    private long generatedAt;
+}
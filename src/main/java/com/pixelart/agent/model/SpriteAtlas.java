@@ -0,0 +1,33 @@
+package com.pixelart.agent.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.pixelart.agent.model.json.ImageDataSerializer;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Texture atlas of separately generated frames, with the metadata needed to slice it
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class SpriteAtlas {
+
+    private int width;
+    private int height;
+
+    private List<AtlasFrame> frames;
+
+    /**
+     * Base64 encoded atlas PNG, left out where the enclosing response already carries it
+     */
+    @JsonSerialize(using = ImageDataSerializer.class)
+    private String imageData;
+}
@@ -0,0 +1,48 @@
+package com.pixelart.agent.model.json;
+
+import java.io.InputStream;
+
+/**
+ * Reads an ASCII string as bytes without copying it into a byte array first.
+ * Characters outside ASCII read as '?' on both the single-byte and bulk paths, so a stray one
+ * fails base64 decoding instead of being folded into a valid base64 digit.
+ */
+public final class AsciiInputStream extends InputStream {
+
+    private final String text;
+    private int position;
+
+    public AsciiInputStream(String text) {
+        this.text = text;
+    }
+
+    @Override
+    public int read() {
+        return position < text.length() ? ascii(text.charAt(position++)) : -1;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) {
+        if (length == 0) {
+            return 0;
+        }
+        int remaining = text.length() - position;
+        if (remaining <= 0) {
+            return -1;
+        }
+        int count = Math.min(length, remaining);
+        for (int i = 0; i < count; i++) {
+            buffer[offset + i] = (byte) ascii(text.charAt(position++));
+        }
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return text.length() - position;
+    }
+
+    private static int ascii(char c) {
+        return c < 0x80 ? c : '?';
+    }
+}
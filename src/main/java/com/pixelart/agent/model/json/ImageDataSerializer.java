@@ -0,0 +1,48 @@
+package com.pixelart.agent.model.json;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Base64;
+
+/**
+ * Serializer for base64 image fields.
+ *
+ * JSON output gets the base64 text as is, which Jackson already writes through its output
+ * buffer in segments. Binary formats (CBOR, Smile) get the raw image bytes instead, decoded
+ * from the string in small chunks as they are written, so no decoded copy of the image is
+ * ever held and the payload shrinks by a quarter.
+ */
+public class ImageDataSerializer extends StdSerializer<String> {
+
+    public ImageDataSerializer() {
+        super(String.class);
+    }
+
+    @Override
+    public void serialize(String value, JsonGenerator generator, SerializerProvider provider) throws IOException {
+        // Unpadded or line-wrapped input has no cheap exact length, so leave it as text
+        if (!generator.canWriteBinaryNatively() || value.length() % 4 != 0) {
+            generator.writeString(value);
+            return;
+        }
+        try (InputStream decoded = decode(value)) {
+            generator.writeBinary(decoded, decodedLength(value));
+        }
+    }
+
+    /**
+     * Stream the bytes of a base64 string, decoding as they are read
+     */
+    public static InputStream decode(String base64) {
+        return Base64.getDecoder().wrap(new AsciiInputStream(base64));
+    }
+
+    static int decodedLength(String base64) {
+        int padding = base64.endsWith("==") ? 2 : base64.endsWith("=") ? 1 : 0;
+        return base64.length() / 4 * 3 - padding;
+    }
+}
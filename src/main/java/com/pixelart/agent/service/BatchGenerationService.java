@@ -0,0 +1,232 @@
+package com.pixelart.agent.service;
+
+import com.pixelart.agent.model.BatchItemResult;
+import com.pixelart.agent.model.PixelArtRequest;
+import com.pixelart.agent.model.PixelArtResponse;
+import com.pixelart.agent.service.concurrency.LimitExceededException;
+import com.pixelart.agent.service.concurrency.VirtualThreads;
+import com.pixelart.agent.service.model.ImageGenerationParams;
+import com.pixelart.agent.service.quota.TenantContext;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+
+/**
+ * Service for generating many pixel art assets in one call.
+ *
+ * Identical requests are generated once. Description calls run on a bounded pool; whenever
+ * descriptions complete, the ready items are grouped by their image parameters so that items
+ * with the same prompt share one batched backend call and items with the same weights,
+ * resolution and frame layout are rendered back to back. Each item is then finished like a
+ * single request: validated, published to the image store and cached. Items whose frames are
+ * rendered as separate jobs are finished one at a time, since a batched call cannot stand in for them.
+ * If the caller stops consuming results, e.g. because the client disconnected, outstanding
+ * descriptions are cancelled.
+ */
+@Slf4j
+@Service
+public class BatchGenerationService {
+
+    private static final Comparator<ImageGroupKey> GROUP_ORDER = Comparator
+            .comparing(ImageGroupKey::modelKey)
+            .thenComparingInt(ImageGroupKey::width)
+            .thenComparingInt(ImageGroupKey::height)
+            .thenComparingInt(ImageGroupKey::frameCount)
+            .thenComparing(ImageGroupKey::prompt);
+
+    private final PixelArtAgentService pixelArtAgentService;
+    private final ImageGenerationService imageGenerationService;
+    private final ExecutorService describeExecutor;
+
+    @Value("${pixelart.batch.max-images-per-call:4}")
+    private int maxImagesPerCall;
+
+    public BatchGenerationService(PixelArtAgentService pixelArtAgentService,
+                                  ImageGenerationService imageGenerationService,
+                                  @Value("${pixelart.batch.llm-concurrency:4}") int llmConcurrency,
+                                  @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.pixelArtAgentService = pixelArtAgentService;
+        this.imageGenerationService = imageGenerationService;
+        this.describeExecutor = VirtualThreads.executor(virtualThreads, llmConcurrency, "batch-describe");
+    }
+
+    /**
+     * Generate all requests, passing each result to the sink as soon as it is ready.
+     * The sink is only ever called from the calling thread, so it may write to a response stream directly.
+     */
+    public void generateBatch(List<PixelArtRequest> requests, Consumer<BatchItemResult> sink) {
+        Map<PixelArtRequest, List<Integer>> unique = new LinkedHashMap<>();
+        for (int i = 0; i < requests.size(); i++) {
+            unique.computeIfAbsent(requests.get(i), key -> new ArrayList<>()).add(i);
+        }
+        log.info("Batch of {} requests contains {} unique items", requests.size(), unique.size());
+
+        BlockingQueue<DescribedItem> ready = new LinkedBlockingQueue<>();
+        List<Future<?>> describes = new ArrayList<>();
+        unique.forEach((request, indices) -> describes.add(describeExecutor.submit(
+                TenantContext.wrap(() -> {
+                    DescribedItem item = null;
+                    try {
+                        item = describe(request, indices);
+                    } finally {
+                        // Even an Error must leave an item, or the loop below waits for it forever
+                        ready.add(item != null ? item : new DescribedItem(indices, request, null, null,
+                                "Description failed"));
+                    }
+                }))));
+
+        int remaining = unique.size();
+        try {
+            while (remaining > 0) {
+                List<DescribedItem> wave = new ArrayList<>();
+                wave.add(ready.take());
+                ready.drainTo(wave);
+                remaining -= wave.size();
+                renderWave(wave, sink);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Batch generation interrupted with {} items outstanding", remaining);
+        } finally {
+            // A no-op once everything is described; otherwise nothing is left to consume the results
+            describes.forEach(describe -> describe.cancel(true));
+        }
+    }
+
+    private DescribedItem describe(PixelArtRequest request, List<Integer> indices) {
+        try {
+            Optional<PixelArtResponse> cached = pixelArtAgentService.cachedResult(request);
+            if (cached.isPresent()) {
+                return new DescribedItem(indices, request, cached.get(), null, null);
+            }
+            PixelArtResponse response = pixelArtAgentService.describePixelArt(request, null);
+            ImageGenerationParams params = null;
+            try {
+                params = pixelArtAgentService.planImage(request, response);
+            } catch (Exception e) {
+                log.debug("Image generation skipped for batch item {}: {}", indices.get(0), e.getMessage());
+                response.setImageStatus("text-only");
+            }
+            return new DescribedItem(indices, request, response, params, null);
+        } catch (Exception e) {
+            log.error("Error describing batch item {}", indices.get(0), e);
+            return new DescribedItem(indices, request, null, null, e.getMessage() != null ? e.getMessage() : e.toString());
+        }
+    }
+
+    private void renderWave(List<DescribedItem> wave, Consumer<BatchItemResult> sink) {
+        Map<ImageGroupKey, List<DescribedItem>> groups = new LinkedHashMap<>();
+        for (DescribedItem item : wave) {
+            if (item.params() == null) {
+                emit(item, sink);
+            } else if (pixelArtAgentService.rendersPerFrame(item.request(), item.params())) {
+                finish(item, () -> pixelArtAgentService.finishImage(item.request(), item.response(), item.params()));
+                emit(item, sink);
+            } else {
+                groups.computeIfAbsent(ImageGroupKey.of(item), key -> new ArrayList<>()).add(item);
+            }
+        }
+
+        groups.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey(GROUP_ORDER))
+                .forEach(group -> {
+                    List<DescribedItem> items = group.getValue();
+                    int chunkSize = group.getKey().fixedSeed() != null ? 1 : Math.max(1, maxImagesPerCall);
+                    for (int start = 0; start < items.size(); start += chunkSize) {
+                        renderChunk(items.subList(start, Math.min(items.size(), start + chunkSize)), sink);
+                    }
+                });
+    }
+
+    private void renderChunk(List<DescribedItem> chunk, Consumer<BatchItemResult> sink) {
+        ImageGenerationParams template = chunk.get(0).params();
+        ImageGenerationParams params = ImageGenerationParams.builder()
+                .prompt(template.getPrompt())
+                .width(template.getWidth())
+                .height(template.getHeight())
+                .spritesheet(template.isSpritesheet())
+                .frameCount(template.getFrameCount())
+                .lora(template.getLora())
+                .loraStrength(template.getLoraStrength())
+                .checkpoint(template.getCheckpoint())
+                .seed(template.getSeed())
+                .batchSize(chunk.size())
+                .build();
+
+        List<String> images;
+        try {
+            images = imageGenerationService.generateImages(params);
+        } catch (Exception e) {
+            log.debug("Batched image generation failed: {}", e.getMessage());
+            images = List.of();
+        }
+
+        for (int i = 0; i < chunk.size(); i++) {
+            DescribedItem item = chunk.get(i);
+            // The backend renders batch image i with seed + i
+            item.params().setSeed(params.getSeed() + i);
+            String image = i < images.size() ? images.get(i) : null;
+            finish(item, () -> pixelArtAgentService.finishImage(item.request(), item.response(), item.params(), image));
+            emit(item, sink);
+        }
+    }
+
+    /**
+     * An overloaded backend costs this item its image rather than failing the rest of the batch
+     */
+    private void finish(DescribedItem item, Runnable finisher) {
+        try {
+            finisher.run();
+        } catch (LimitExceededException e) {
+            log.debug("Image skipped for batch item {}: {}", item.indices().get(0), e.getMessage());
+            item.response().setImageStatus("text-only");
+        }
+    }
+
+    private void emit(DescribedItem item, Consumer<BatchItemResult> sink) {
+        Integer first = item.indices().get(0);
+        for (Integer index : item.indices()) {
+            sink.accept(BatchItemResult.builder()
+                    .index(index)
+                    .duplicateOf(index.equals(first) ? null : first)
+                    .response(item.response())
+                    .error(item.error())
+                    .build());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        describeExecutor.shutdownNow();
+    }
+
+    private record DescribedItem(List<Integer> indices, PixelArtRequest request, PixelArtResponse response,
+                                 ImageGenerationParams params, String error) {
+    }
+
+    /**
+     * Items with an explicit seed are keyed by it, so they are only batched with themselves
+     * and keep the seed they asked for
+     */
+    private record ImageGroupKey(String modelKey, String prompt, int width, int height,
+                                 boolean spritesheet, int frameCount, Double loraStrength, Long fixedSeed) {
+        static ImageGroupKey of(DescribedItem item) {
+            ImageGenerationParams params = item.params();
+            return new ImageGroupKey(params.modelKey(), params.getPrompt(), params.getWidth(), params.getHeight(),
+                    params.isSpritesheet(), params.getFrameCount(), params.getLoraStrength(), item.request().getSeed());
+        }
+    }
+}
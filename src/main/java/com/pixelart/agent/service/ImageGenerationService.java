@@ -1,20 +1,38 @@
 package com.pixelart.agent.service;
 
+import com.pixelart.agent.service.concurrency.LimitExceededException;
+import com.pixelart.agent.service.image.DecodedImage;
+import com.pixelart.agent.service.image.OutputValidator;
+import com.pixelart.agent.service.model.ImageGenerationParams;
 import com.pixelart.agent.service.model.ImageProvider;
+import com.pixelart.agent.service.tracing.PipelineTracing;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+import java.util.Optional;
+
 /**
  * Service for generating pixel art images using abstracted image provider
+ * Backend calls take an image permit and are then ordered by the ModelAffinityScheduler to
+ * minimise checkpoint/LoRA swaps (see ModelConfig). A failed call yields no image, but a call
+ * shed by the limiter throws LimitExceededException so the request can be answered with a 503.
+ * Rendered images can be put through the OutputValidator, which re-renders rejected ones; validated
+ * images are returned with the pixels it decoded, for the stages that attach them to reuse.
  */
 @Slf4j
 @Service
 public class ImageGenerationService {
 
     private final ImageProvider imageProvider;
+    private final OutputValidator outputValidator;
+    private final PipelineTracing tracing;
     
-    public ImageGenerationService(ImageProvider imageProvider) {
+    public ImageGenerationService(ImageProvider imageProvider, OutputValidator outputValidator,
+                                  PipelineTracing tracing) {
         this.imageProvider = imageProvider;
+        this.outputValidator = outputValidator;
+        this.tracing = tracing;
     }
 
     /**
@@ -26,7 +44,7 @@ public class ImageGenerationService {
      * @return Base64 encoded PNG image, or null if generation fails
      */
     public String generateImage(String prompt, int width, int height) {
-        return imageProvider.generateImage(prompt, width, height);
+        return generateImage(prompt, width, height, false, 1);
     }
 
     /**
@@ -40,7 +58,105 @@ public class ImageGenerationService {
      * @return Base64 encoded PNG image, or null if generation fails
      */
     public String generateImage(String prompt, int width, int height, boolean isSpritesheet, int frameCount) {
-        return imageProvider.generateImage(prompt, width, height, isSpritesheet, frameCount);
+        return generateImage(ImageGenerationParams.builder()
+                .prompt(prompt)
+                .width(width)
+                .height(height)
+                .spritesheet(isSpritesheet)
+                .frameCount(frameCount)
+                .build());
+    }
+
+    /**
+     * Generate a pixel art image from a full parameter set, including an optional progress listener
+     * 
+     * @param params The generation parameters
+     * @return Base64 encoded PNG image, or null if generation fails
+     * @throws LimitExceededException if the image backend is overloaded
+     */
+    public String generateImage(ImageGenerationParams params) {
+        List<String> cached = imageProvider.cachedImages(params);
+        if (!cached.isEmpty()) {
+            return cached.get(0);
+        }
+        try {
+            return imageProvider.generateImage(params);
+        } catch (LimitExceededException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            log.error("Error generating image", e);
+            return null;
+        }
+    }
+
+    /**
+     * Generate params.batchSize images from the same prompt in as few backend calls as the provider allows
+     * 
+     * @param params The generation parameters
+     * @return Base64 encoded PNG images, possibly fewer than requested if some failed
+     * @throws LimitExceededException if the image backend is overloaded
+     */
+    public List<String> generateImages(ImageGenerationParams params) {
+        // Cache hits skip the limiter and the scheduler queue entirely
+        List<String> cached = imageProvider.cachedImages(params);
+        if (!cached.isEmpty()) {
+            return cached;
+        }
+        try {
+            return imageProvider.generateImages(params);
+        } catch (LimitExceededException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            log.error("Error generating images", e);
+            return List.of();
+        }
+    }
+
+    /**
+     * Generate an image and validate it, see validate
+     * 
+     * @param params The generation parameters, left with the seed of the returned image
+     * @param pinnedSeed Whether the caller asked for this seed, which rules out re-rendering
+     * @return The image, empty if generation fails
+     */
+    public DecodedImage generateValidatedImage(ImageGenerationParams params, boolean pinnedSeed) {
+        return validate(generateImage(params), params, pinnedSeed);
+    }
+
+    /**
+     * Validate a rendered image. Blank and broken renders are re-rendered with a fresh seed while
+     * the validator's retry budget lasts; a pinned seed is kept, since its image is what was asked for.
+     * 
+     * @param imageData The image rendered for params, or null if there is none
+     * @param params The generation parameters, left with the seed of the returned image
+     * @param pinnedSeed Whether the caller asked for this seed
+     * @return The first image that passed, or the last one rendered
+     */
+    public DecodedImage validate(String imageData, ImageGenerationParams params, boolean pinnedSeed) {
+        int retries = 0;
+        DecodedImage image = DecodedImage.of(imageData);
+        Optional<OutputValidator.Reason> rejection = check(image, params);
+        while (rejection.isPresent() && !pinnedSeed && retries < outputValidator.getMaxRetries()
+                && outputValidator.tryRetry()) {
+            retries++;
+            log.info("Generated image rejected ({}), regenerating with a new seed (retry {})",
+                    rejection.get().getTag(), retries);
+            params.setSeed(ImageGenerationParams.randomSeed());
+            image = DecodedImage.of(generateImage(params));
+            rejection = check(image, params);
+        }
+        rejection.ifPresent(reason -> log.warn("Returning an image that failed validation ({})", reason.getTag()));
+        return image;
+    }
+
+    /**
+     * A missing image is left to the caller's text-only fallback
+     */
+    private Optional<OutputValidator.Reason> check(DecodedImage image, ImageGenerationParams params) {
+        if (!outputValidator.isEnabled() || image.isEmpty()) {
+            return Optional.empty();
+        }
+        return tracing.span(PipelineTracing.IMAGE_VALIDATE, () -> outputValidator.validate(image.image(), params));
     }
 
     /**
@@ -1,21 +1,43 @@
 package com.pixelart.agent.service;
 
+import com.pixelart.agent.model.AtlasResponse;
+import com.pixelart.agent.model.GenerationMode;
+import com.pixelart.agent.model.GenerationProgress;
 import com.pixelart.agent.model.PixelArtRequest;
 import com.pixelart.agent.model.PixelArtResponse;
 import com.pixelart.agent.model.PixelArtResponse.SpriteSpecification;
-import com.pixelart.agent.service.model.ImageProvider;
+import com.pixelart.agent.model.ResponseQuality;
+import com.pixelart.agent.model.SemanticMatch;
+import com.pixelart.agent.model.SimilarSprite;
+import com.pixelart.agent.model.SpriteAtlas;
+import com.pixelart.agent.service.cache.SemanticResultCache;
+import com.pixelart.agent.service.cache.TwoLevelResultCache;
+import com.pixelart.agent.service.concurrency.LimitExceededException;
+import com.pixelart.agent.service.image.DecodedImage;
+import com.pixelart.agent.service.image.ImageStore;
+import com.pixelart.agent.service.image.PaletteAnalyzer;
+import com.pixelart.agent.service.image.PerceptualHash;
+import com.pixelart.agent.service.image.SpriteHashIndex;
+import com.pixelart.agent.service.model.GenerationProgressListener;
+import com.pixelart.agent.service.model.ImageGenerationParams;
 import com.pixelart.agent.service.model.ModelProvider;
+import com.pixelart.agent.service.tracing.PipelineTracing;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.prompt.Prompt;
 import org.springframework.ai.chat.prompt.PromptTemplate;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 /**
  * Service for generating pixel art and sprite descriptions using abstracted model providers
@@ -24,57 +46,282 @@ import java.util.Map;
 @Service
 public class PixelArtAgentService {
 
+    private static final int MAX_FRAMES = 8;
+
     private final ModelProvider modelProvider;
     private final ImageGenerationService imageGenerationService;
+    private final SemanticResultCache semanticResultCache;
+    private final TwoLevelResultCache resultCache;
+    private final SpriteHashIndex spriteHashIndex;
+    private final SpriteAtlasService spriteAtlasService;
+    private final ImageStore imageStore;
+    private final PaletteAnalyzer paletteAnalyzer;
+    private final PipelineTracing tracing;
+    private final Map<GenerationMode, Timer> modeLatency = new EnumMap<>(GenerationMode.class);
     
     @Value("${pixelart.agent.max-iterations:3}")
     private int maxIterations;
 
-    public PixelArtAgentService(ModelProvider modelProvider, ImageGenerationService imageGenerationService) {
+    @Value("${pixelart.image.dedupe.max-retries:2}")
+    private int maxDuplicateRetries;
+
+    @Value("${pixelart.chat-model.cascade.min-colors:3}")
+    private int minDescriptionColors;
+    
+    @Value("${pixelart.image.frames.per-frame-jobs:false}")
+    private boolean perFrameJobs;
+
+    public PixelArtAgentService(ModelProvider modelProvider, ImageGenerationService imageGenerationService,
+                                SemanticResultCache semanticResultCache, TwoLevelResultCache resultCache,
+                                SpriteHashIndex spriteHashIndex,
+                                SpriteAtlasService spriteAtlasService, ImageStore imageStore,
+                                PaletteAnalyzer paletteAnalyzer,
+                                PipelineTracing tracing,
+                                MeterRegistry meterRegistry,
+                                @Value("${pixelart.slo.full-ms:30000}") long fullSloMs,
+                                @Value("${pixelart.slo.text-only-ms:5000}") long textOnlySloMs,
+                                @Value("${pixelart.slo.image-only-ms:25000}") long imageOnlySloMs) {
         this.modelProvider = modelProvider;
         this.imageGenerationService = imageGenerationService;
+        this.semanticResultCache = semanticResultCache;
+        this.resultCache = resultCache;
+        this.spriteHashIndex = spriteHashIndex;
+        this.spriteAtlasService = spriteAtlasService;
+        this.imageStore = imageStore;
+        this.paletteAnalyzer = paletteAnalyzer;
+        this.tracing = tracing;
+        modeLatency.put(GenerationMode.FULL, latencyTimer(meterRegistry, GenerationMode.FULL, fullSloMs));
+        modeLatency.put(GenerationMode.TEXT_ONLY, latencyTimer(meterRegistry, GenerationMode.TEXT_ONLY, textOnlySloMs));
+        modeLatency.put(GenerationMode.IMAGE_ONLY, latencyTimer(meterRegistry, GenerationMode.IMAGE_ONLY, imageOnlySloMs));
+    }
+
+    /**
+     * Per-mode latency with the mode's SLO as a histogram boundary, so the share of requests
+     * within it can be read straight off pixelart.generate.latency_bucket
+     */
+    private static Timer latencyTimer(MeterRegistry meterRegistry, GenerationMode mode, long sloMs) {
+        return Timer.builder("pixelart.generate.latency")
+                .description("End-to-end generation latency per mode")
+                .tag("mode", mode.getValue())
+                .serviceLevelObjectives(Duration.ofMillis(sloMs))
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
     }
 
     /**
      * Generate pixel art description and specifications based on the request
      */
     public PixelArtResponse generatePixelArt(PixelArtRequest request) {
+        return generateFull(request, null);
+    }
+
+    /**
+     * Generate pixel art, running only the stages the mode asks for
+     */
+    public PixelArtResponse generatePixelArt(PixelArtRequest request, GenerationMode mode) {
+        // A cached result's image may have been evicted from the image store since
+        return imageStore.publish(switch (mode) {
+            case FULL -> generatePixelArt(request);
+            case TEXT_ONLY -> modeLatency.get(mode).record(() -> resultCache.getOrGenerate(request, mode, () -> {
+                PixelArtResponse response = describePixelArt(request, null);
+                response.setImageStatus("text-only");
+                return response;
+            }, response -> true));
+            case IMAGE_ONLY -> modeLatency.get(mode).record(() -> resultCache.getOrGenerate(request, mode,
+                    () -> renderPixelArt(request, null), PixelArtAgentService::hasImage));
+        });
+    }
+
+    /**
+     * Generate pixel art, reporting stage and rendering progress to the listener
+     */
+    public PixelArtResponse generatePixelArt(PixelArtRequest request, GenerationProgressListener progressListener) {
+        return generateFull(request, progressListener);
+    }
+
+    /**
+     * The full pipeline behind the cache tiers
+     * @param progressListener Listener for stage and rendering progress, or null for none
+     */
+    private PixelArtResponse generateFull(PixelArtRequest request, GenerationProgressListener progressListener) {
+        return modeLatency.get(GenerationMode.FULL).record(() -> resultCache.getOrGenerate(request, GenerationMode.FULL, () -> {
+            // A request pinned to a seed wants that exact image, not a near-duplicate
+            if (request.getSeed() == null) {
+                Optional<PixelArtResponse> reused = semanticResultCache.reuse(request);
+                if (reused.isPresent()) {
+                    return reused.get();
+                }
+            }
+            
+            PixelArtResponse response = generatePixelArt(request, progressListener, 0);
+            // A text-only fallback would otherwise be served to every paraphrase of this request
+            if (hasImage(response)) {
+                semanticResultCache.store(request, response);
+            }
+            return response;
+        }, PixelArtAgentService::hasImage));
+    }
+
+    /**
+     * Whether a result got its image, rather than falling back to text only after a backend failure
+     */
+    private static boolean hasImage(PixelArtResponse response) {
+        return response.getImageData() != null && !response.getImageData().isEmpty();
+    }
+
+    /**
+     * Run only the image stage, prompted from the request itself without asking the LLM.
+     * Animations and the spritesheet decision come from the request text.
+     */
+    public PixelArtResponse renderPixelArt(PixelArtRequest request, GenerationProgressListener progressListener) {
+        log.info("Rendering pixel art without a description for asset type: {}, style: {}",
+                 request.getAssetType(), request.getStyle());
+
+        String requestText = String.join(" ",
+                request.getDescription() != null ? request.getDescription() : "",
+                request.getAdditionalContext() != null ? request.getAdditionalContext() : "");
+        // No model answer to parse: no description or colors, only what the request itself asks for
+        List<String> animations = extractAnimations(requestText);
+        PixelArtResponse response = PixelArtResponse.builder()
+                .specifications(specification(request, animations))
+                .animationSuggestions(animations)
+                .style(request.getStyle() != null ? request.getStyle() : "pixel-art")
+                .generatedAt(LocalDateTime.now())
+                .build();
+
+        generateAndAttachImage(response, request, progressListener, 0);
+        return response;
+    }
+
+    /**
+     * Find earlier results for semantically similar requests without generating anything
+     */
+    public List<SemanticMatch> findSimilar(PixelArtRequest request, int limit) {
+        return semanticResultCache.findSimilar(request, limit);
+    }
+
+    private PixelArtResponse generatePixelArt(PixelArtRequest request, GenerationProgressListener progressListener,
+                                              int seedOffset) {
+        PixelArtResponse response = describePixelArt(request, progressListener);
+
+        // Generate the actual image
+        generateAndAttachImage(response, request, progressListener, seedOffset);
+
+        return response;
+    }
+
+    /**
+     * Run only the description stage: prompt the model and parse its answer, without generating an image
+     */
+    public PixelArtResponse describePixelArt(PixelArtRequest request, GenerationProgressListener progressListener) {
         log.info("Generating pixel art for asset type: {}, style: {}", 
                  request.getAssetType(), request.getStyle());
 
         // Build the prompt for the AI agent
-        String prompt = buildPrompt(request);
+        String prompt = tracing.span(PipelineTracing.PROMPT_BUILD, () -> buildPrompt(request));
         
-        // Call model provider (real or mock)
-        String aiResponse = modelProvider.generateResponse(prompt);
+        notifyStage(progressListener, GenerationProgress.STATE_DESCRIBING);
+        
+        // Call model provider (real or mock); a cascade re-runs drafts that do not parse usefully
+        String aiResponse = modelProvider.generateResponse(prompt, responseQuality(request), this::isUsableDescription);
+
+        return parseDescription(request, prompt, aiResponse);
+    }
+
+    /**
+     * The description prompt for a request, for callers that talk to a model themselves
+     */
+    public String describePrompt(PixelArtRequest request) {
+        return buildPrompt(request);
+    }
 
+    /**
+     * Structure a model's answer to describePrompt(request) into a response without an image
+     */
+    public PixelArtResponse parseDescription(PixelArtRequest request, String prompt, String aiResponse) {
         log.debug("Model Response: {}", aiResponse);
 
         // Parse and structure the response
-        PixelArtResponse response = parseAiResponse(aiResponse, request);
+        PixelArtResponse response = tracing.span(PipelineTracing.RESPONSE_PARSE, () -> parseAiResponse(aiResponse, request));
         response.setGeneratedAt(LocalDateTime.now());
         response.setPrompt(prompt);
 
-        // Generate the actual image
-        generateAndAttachImage(response, aiResponse, request);
-
         return response;
     }
 
+    private void notifyStage(GenerationProgressListener progressListener, String state) {
+        if (progressListener != null) {
+            progressListener.onProgress(GenerationProgress.builder().state(state).build());
+        }
+    }
+
+    /**
+     * How many variations generateVariations renders when asked for count, capped at max-iterations
+     */
+    public int variationCount(int count) {
+        return Math.max(0, Math.min(count, maxIterations));
+    }
+
     /**
      * Generate multiple variations of pixel art
      */
     public List<PixelArtResponse> generateVariations(PixelArtRequest request, int count) {
         log.info("Generating {} variations for asset type: {}", count, request.getAssetType());
         
+        int total = variationCount(count);
         List<PixelArtResponse> variations = new ArrayList<>();
-        for (int i = 0; i < Math.min(count, maxIterations); i++) {
-            variations.add(generatePixelArt(request));
+        List<Long> acceptedHashes = new ArrayList<>();
+        // A fixed seed would render the same image every time, so step it per attempt
+        int nextSeedOffset = total;
+        for (int i = 0; i < total; i++) {
+            PixelArtResponse variation = generatePixelArt(request, null, i);
+            Long hash = imageHash(variation);
+            
+            for (int retry = 0; retry < maxDuplicateRetries && isDuplicate(hash, acceptedHashes); retry++) {
+                log.info("Variation {} is a near-duplicate of an earlier one, regenerating with a new seed", i + 1);
+                generateAndAttachImage(variation, request, null, nextSeedOffset++);
+                hash = imageHash(variation);
+            }
+            
+            if (hash != null) {
+                acceptedHashes.add(hash);
+            }
+            variations.add(variation);
         }
         
         return variations;
     }
 
+    private Long imageHash(PixelArtResponse response) {
+        if (!spriteHashIndex.isEnabled() || response.getImageData() == null) {
+            return null;
+        }
+        return spriteHashIndex.hash(response.getImageData());
+    }
+
+    /**
+     * Check whether an image hash is within the near-duplicate threshold of one already kept
+     */
+    private boolean isDuplicate(Long hash, List<Long> acceptedHashes) {
+        if (hash == null) {
+            return false;
+        }
+        for (long accepted : acceptedHashes) {
+            if (PerceptualHash.distance(hash, accepted) <= spriteHashIndex.getDefaultMaxDistance()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Find previously generated sprites that look like the given image
+     */
+    public List<SimilarSprite> findSimilarSprites(String base64Image, Integer maxDistance, int limit) {
+        return spriteHashIndex.findSimilar(base64Image,
+                maxDistance != null ? maxDistance : spriteHashIndex.getDefaultMaxDistance(), limit);
+    }
+
     /**
      * Refine an existing pixel art description
      */
@@ -83,7 +330,7 @@ public class PixelArtAgentService {
         
         String refinementPrompt = buildRefinementPrompt(request, feedback);
         
-        String aiResponse = modelProvider.generateResponse(refinementPrompt);
+        String aiResponse = modelProvider.generateResponse(refinementPrompt, ResponseQuality.HIGH, response -> true);
 
         PixelArtResponse response = parseAiResponse(aiResponse, request);
         response.setGeneratedAt(LocalDateTime.now());
@@ -171,28 +418,53 @@ public class PixelArtAgentService {
         // Extract animation suggestions
         List<String> animations = extractAnimations(aiResponse);
         
-        // Build sprite specifications
-        SpriteSpecification specs = SpriteSpecification.builder()
+        return PixelArtResponse.builder()
+                .detailedDescription(aiResponse)
+                .suggestedColors(colors)
+                .specifications(specification(request, animations))
+                .animationSuggestions(animations)
+                .style(request.getStyle() != null ? request.getStyle() : "pixel-art")
+                .build();
+    }
+
+    private static SpriteSpecification specification(PixelArtRequest request, List<String> animations) {
+        return SpriteSpecification.builder()
                 .size(request.getSize() != null ? request.getSize() : "32x32")
                 .assetType(request.getAssetType())
                 .frameCount(animations.isEmpty() ? 1 : animations.size())
                 .orientation("front-facing")
                 .layers(Arrays.asList("background", "base", "details", "highlights"))
                 .build();
+    }
 
-        return PixelArtResponse.builder()
-                .detailedDescription(aiResponse)
-                .suggestedColors(colors)
-                .specifications(specs)
-                .animationSuggestions(animations)
-                .style(request.getStyle() != null ? request.getStyle() : "pixel-art")
-                .build();
+    private static ResponseQuality responseQuality(PixelArtRequest request) {
+        return request.getQuality() == ResponseQuality.HIGH ? ResponseQuality.HIGH : ResponseQuality.DRAFT;
+    }
+
+    /**
+     * Whether a description has enough structure to build a response from without falling back to defaults
+     */
+    private boolean isUsableDescription(String aiResponse) {
+        return aiResponse != null
+                && findColors(aiResponse).size() >= minDescriptionColors
+                && aiResponse.toLowerCase().contains("palette");
     }
 
     /**
      * Extract hex color codes from the AI response
      */
     private List<String> extractColors(String text) {
+        List<String> colors = findColors(text);
+        
+        // If no colors found, provide defaults
+        if (colors.isEmpty()) {
+            colors = Arrays.asList("#2C3E50", "#E74C3C", "#ECF0F1", "#3498DB", "#F39C12", "#27AE60");
+        }
+        
+        return colors;
+    }
+
+    private static List<String> findColors(String text) {
         List<String> colors = new ArrayList<>();
         // Simple regex to find hex color codes
         String[] words = text.split("\\s+");
@@ -201,12 +473,6 @@ public class PixelArtAgentService {
                 colors.add(word);
             }
         }
-        
-        // If no colors found, provide defaults
-        if (colors.isEmpty()) {
-            colors = Arrays.asList("#2C3E50", "#E74C3C", "#ECF0F1", "#3498DB", "#F39C12", "#27AE60");
-        }
-        
         return colors;
     }
 
@@ -231,38 +497,77 @@ public class PixelArtAgentService {
     /**
      * Generate actual image and attach to response
      */
-    private void generateAndAttachImage(PixelArtResponse response, String description, PixelArtRequest request) {
-        try {
-            // Parse dimensions from the size
-            String size = request.getSize() != null ? request.getSize() : "32x32";
-            String[] dimensions = size.split("x");
-            int width = Integer.parseInt(dimensions[0].trim());
-            int height = dimensions.length > 1 ? Integer.parseInt(dimensions[1].trim()) : width;
-            
-            // Detect if animations/spritesheet is needed
-            boolean needsSpritesheet = needsSpritesheet(request, response);
-            int frameCount = needsSpritesheet ? determineFrameCount(response) : 1;
-            
-            // Create a concise prompt for image generation
-            String imagePrompt = buildImagePrompt(description, request, needsSpritesheet, frameCount);
-            
-            if (needsSpritesheet) {
-                log.debug("Generating spritesheet with {} frames, base dimensions: {}x{}", frameCount, width, height);
-            } else {
-                log.debug("Generating single sprite with dimensions: {}x{}", width, height);
-            }
-            
-            String imageData = imageGenerationService.generateImage(imagePrompt, width, height, needsSpritesheet, frameCount);
-            
-            if (imageData != null && !imageData.isEmpty()) {
-                response.setImageData(imageData);
-                response.setImageStatus(needsSpritesheet ? "spritesheet-generated" : "generated");
-                log.info("Image generated successfully");
-            } else {
-                response.setImageStatus("text-only");
-                log.debug("Image generation not available - text description only");
-            }
+    private void generateAndAttachImage(PixelArtResponse response, PixelArtRequest request,
+                                        GenerationProgressListener progressListener, int seedOffset) {
+        imageStage(response, () -> {
+            ImageGenerationParams params = planImage(request, response, seedOffset);
+            params.setProgressListener(progressListener);
             
+            notifyStage(progressListener, GenerationProgress.STATE_RENDERING);
+            renderAndAttach(response, request, params);
+        });
+    }
+
+    /**
+     * A cached full result for the request, for callers that run the stages themselves
+     */
+    public Optional<PixelArtResponse> cachedResult(PixelArtRequest request) {
+        return resultCache.get(request, GenerationMode.FULL).map(imageStore::publish);
+    }
+
+    /**
+     * Whether planned params are rendered as per-frame jobs, which a batched call cannot stand in for
+     */
+    public boolean rendersPerFrame(PixelArtRequest request, ImageGenerationParams params) {
+        return params.isSpritesheet() && usePerFrameJobs(request);
+    }
+
+    /**
+     * Finish a request described with describePixelArt and planned with planImage the way
+     * generatePixelArt would: render, validate, attach and publish its image, then cache the result
+     */
+    public PixelArtResponse finishImage(PixelArtRequest request, PixelArtResponse response,
+                                        ImageGenerationParams params) {
+        imageStage(response, () -> renderAndAttach(response, request, params));
+        return cacheResult(request, response);
+    }
+
+    /**
+     * Like finishImage, for an image already rendered for params, e.g. by a batched call
+     * @param rendered The rendered image, or null if rendering it failed
+     */
+    public PixelArtResponse finishImage(PixelArtRequest request, PixelArtResponse response,
+                                        ImageGenerationParams params, String rendered) {
+        imageStage(response, () -> attachImage(response, params,
+                imageGenerationService.validate(rendered, params, request.getSeed() != null)));
+        return cacheResult(request, response);
+    }
+
+    private PixelArtResponse cacheResult(PixelArtRequest request, PixelArtResponse response) {
+        if (hasImage(response)) {
+            resultCache.put(request, GenerationMode.FULL, response);
+            semanticResultCache.store(request, response);
+        }
+        return response;
+    }
+
+    private void renderAndAttach(PixelArtResponse response, PixelArtRequest request, ImageGenerationParams params) {
+        if (rendersPerFrame(request, params)) {
+            attachAtlas(response, params, spriteAtlasService.render(planFrames(request, response, params, 0)));
+            return;
+        }
+        attachImage(response, params, imageGenerationService.generateValidatedImage(params, request.getSeed() != null));
+    }
+
+    /**
+     * Run an image stage, falling back to a text-only response if it fails
+     */
+    private void imageStage(PixelArtResponse response, Runnable stage) {
+        try {
+            stage.run();
+        } catch (LimitExceededException e) {
+            // Overload is the client's to retry, not a reason to quietly drop the image
+            throw e;
         } catch (Exception e) {
             log.debug("Image generation skipped: {}", e.getMessage());
             response.setImageStatus("text-only");
@@ -270,6 +575,210 @@ public class PixelArtAgentService {
         }
     }
 
+    /**
+     * Work out the image generation parameters for a described request
+     */
+    public ImageGenerationParams planImage(PixelArtRequest request, PixelArtResponse response) {
+        return planImage(request, response, 0);
+    }
+
+    private ImageGenerationParams planImage(PixelArtRequest request, PixelArtResponse response, int seedOffset) {
+        // Parse dimensions from the size
+        String size = request.getSize() != null ? request.getSize() : "32x32";
+        String[] dimensions = size.split("x");
+        int width = Integer.parseInt(dimensions[0].trim());
+        int height = dimensions.length > 1 ? Integer.parseInt(dimensions[1].trim()) : width;
+        
+        // Detect if animations/spritesheet is needed
+        boolean needsSpritesheet = needsSpritesheet(request, response);
+        int frameCount = needsSpritesheet ? determineFrameCount(response) : 1;
+        
+        // Create a concise prompt for image generation
+        String imagePrompt = buildImagePrompt(response.getDetailedDescription(), request, needsSpritesheet, frameCount);
+        
+        if (needsSpritesheet) {
+            log.debug("Generating spritesheet with {} frames, base dimensions: {}x{}", frameCount, width, height);
+        } else {
+            log.debug("Generating single sprite with dimensions: {}x{}", width, height);
+        }
+        
+        return ImageGenerationParams.builder()
+                .prompt(imagePrompt)
+                .width(width)
+                .height(height)
+                .spritesheet(needsSpritesheet)
+                .frameCount(frameCount)
+                .lora(request.getLora())
+                .loraStrength(request.getLoraStrength())
+                .checkpoint(request.getCheckpoint())
+                .seed(request.getSeed() != null ? request.getSeed() + seedOffset : ImageGenerationParams.randomSeed())
+                .paletteSize(request.getPaletteSize())
+                .build();
+    }
+
+    /**
+     * Attach generated image data to the response, falling back to text-only when there is none
+     */
+    public void attachImage(PixelArtResponse response, ImageGenerationParams params, String imageData) {
+        attachImage(response, params, DecodedImage.of(imageData));
+    }
+
+    private void attachImage(PixelArtResponse response, ImageGenerationParams params, DecodedImage image) {
+        tracing.span(PipelineTracing.IMAGE_ATTACH, () -> {
+            doAttachImage(response, params, image);
+            return null;
+        });
+    }
+
+    /**
+     * Palette extraction and hashing share the pixels decoded for validation, or decode them once between them
+     */
+    private void doAttachImage(PixelArtResponse response, ImageGenerationParams params, DecodedImage renderedImage) {
+        if (!renderedImage.isEmpty()) {
+            DecodedImage image = applyPalette(response, params, renderedImage);
+            response.setImageData(image.data());
+            response.setImageStatus(params.isSpritesheet() ? "spritesheet-generated" : "generated");
+            response.setSeed(params.getSeed());
+            if (params.isSpritesheet() && response.getSpecifications() != null) {
+                // Report the frames actually laid out in the sheet, which exporters slice by
+                response.getSpecifications().setFrameCount(params.getFrameCount());
+            }
+            spriteHashIndex.record(image, params.getPrompt(), params.getSeed());
+            response.setImageId(null);
+            imageStore.publish(response);
+            log.info("Image generated successfully");
+        } else {
+            response.setImageStatus("text-only");
+            log.debug("Image generation not available - text description only");
+        }
+    }
+
+    /**
+     * Report the image's real colors instead of the described ones, reducing it to the requested palette size
+     */
+    private DecodedImage applyPalette(PixelArtResponse response, ImageGenerationParams params, DecodedImage image) {
+        return tracing.span(PipelineTracing.IMAGE_PALETTE,
+                () -> paletteAnalyzer.apply(response, image, params.getPaletteSize()));
+    }
+
+    private boolean usePerFrameJobs(PixelArtRequest request) {
+        return request.getPerFrameJobs() != null ? request.getPerFrameJobs() : perFrameJobs;
+    }
+
+    /**
+     * Split a planned spritesheet into one single-sprite job per animation frame.
+     * Every frame keeps the sheet's seed so the character stays consistent across poses.
+     */
+    private List<SpriteAtlasService.FrameJob> planFrames(PixelArtRequest request, PixelArtResponse response,
+                                                         ImageGenerationParams sheet, int spriteIndex) {
+        String basePrompt = buildImagePrompt(response.getDetailedDescription(), request, false, 1);
+        String spriteName = spriteName(request, spriteIndex);
+
+        List<String> animations = response.getAnimationSuggestions();
+        List<String> names = new ArrayList<>();
+        List<Integer> counts = new ArrayList<>();
+        if (animations == null || animations.isEmpty()) {
+            names.add("animation");
+            counts.add(sheet.getFrameCount());
+        } else {
+            int remaining = MAX_FRAMES;
+            for (String animation : animations) {
+                int frames = Math.min(framesPerAnimation(animation), remaining);
+                if (frames > 0) {
+                    names.add(animation);
+                    counts.add(frames);
+                    remaining -= frames;
+                }
+            }
+        }
+
+        List<SpriteAtlasService.FrameJob> jobs = new ArrayList<>();
+        for (int a = 0; a < names.size(); a++) {
+            String animation = names.get(a);
+            int frames = counts.get(a);
+            for (int frame = 0; frame < frames; frame++) {
+                ImageGenerationParams params = sheet.toBuilder()
+                        .prompt(String.format("%s, %s pose, frame %d of %d", basePrompt, animation, frame + 1, frames))
+                        .spritesheet(false)
+                        .frameCount(1)
+                        .batchSize(1)
+                        // Concurrent frames would interleave their progress, so only the first reports
+                        .progressListener(jobs.isEmpty() ? sheet.getProgressListener() : null)
+                        .build();
+                jobs.add(new SpriteAtlasService.FrameJob(
+                        spriteName + "/" + animation + "_" + frame, spriteIndex, animation, frame, params,
+                        request.getSeed() != null));
+            }
+        }
+        return jobs;
+    }
+
+    private static String spriteName(PixelArtRequest request, int index) {
+        String assetType = request.getAssetType() != null ? request.getAssetType().toLowerCase() : "sprite";
+        return index + "-" + assetType.replaceAll("[^a-z0-9-]", "_");
+    }
+
+    /**
+     * Attach a packed atlas as the response image, with its frame layout alongside
+     */
+    private void attachAtlas(PixelArtResponse response, ImageGenerationParams params, SpriteAtlas atlas) {
+        if (atlas == null) {
+            response.setImageStatus("text-only");
+            log.debug("Frame generation not available - text description only");
+            return;
+        }
+        response.setImageData(applyPalette(response, params, DecodedImage.of(atlas.getImageData())).data());
+        atlas.setImageData(null);
+        response.setAtlas(atlas);
+        response.setImageId(null);
+        imageStore.publish(response);
+        response.setImageStatus("atlas-generated");
+        response.setSeed(params.getSeed());
+        if (response.getSpecifications() != null) {
+            response.getSpecifications().setFrameCount(atlas.getFrames().size());
+        }
+        log.info("Atlas generated successfully");
+    }
+
+    /**
+     * Describe several assets and render all of their frames into one shared texture atlas
+     */
+    public AtlasResponse generateAtlas(List<PixelArtRequest> requests) {
+        log.info("Generating shared atlas for {} sprites", requests.size());
+        
+        List<PixelArtResponse> sprites = new ArrayList<>();
+        List<SpriteAtlasService.FrameJob> jobs = new ArrayList<>();
+        for (int i = 0; i < requests.size(); i++) {
+            PixelArtRequest request = requests.get(i);
+            PixelArtResponse response = describePixelArt(request, null);
+            sprites.add(response);
+            try {
+                ImageGenerationParams params = planImage(request, response, 0);
+                response.setSeed(params.getSeed());
+                if (params.isSpritesheet()) {
+                    jobs.addAll(planFrames(request, response, params, i));
+                } else {
+                    jobs.add(new SpriteAtlasService.FrameJob(spriteName(request, i), i, null, 0, params,
+                            request.getSeed() != null));
+                }
+            } catch (Exception e) {
+                log.debug("Image generation skipped for atlas sprite {}: {}", i, e.getMessage());
+                response.setImageStatus("text-only");
+            }
+        }
+        
+        SpriteAtlas atlas = jobs.isEmpty() ? null : spriteAtlasService.render(jobs);
+        for (PixelArtResponse sprite : sprites) {
+            if (sprite.getImageStatus() == null) {
+                sprite.setImageStatus(atlas != null ? "atlas-generated" : "text-only");
+            }
+        }
+        return AtlasResponse.builder()
+                .atlas(atlas)
+                .sprites(sprites)
+                .build();
+    }
+
     /**
      * Check if the request needs a spritesheet (multiple frames)
      */
@@ -298,19 +807,26 @@ public class PixelArtAgentService {
         // Assign typical frame counts per animation type
         int totalFrames = 0;
         for (String animation : animations) {
-            switch (animation.toLowerCase()) {
-                case "idle": totalFrames += 2; break;
-                case "walk": totalFrames += 4; break;
-                case "run": totalFrames += 4; break;
-                case "jump": totalFrames += 3; break;
-                case "attack": totalFrames += 3; break;
-                case "death": totalFrames += 4; break;
-                default: totalFrames += 2; break;
-            }
+            totalFrames += framesPerAnimation(animation);
         }
         
         // Cap at 8 frames to keep spritesheet reasonable
-        return Math.min(totalFrames, 8);
+        return Math.min(totalFrames, MAX_FRAMES);
+    }
+
+    /**
+     * Typical frame count for an animation type
+     */
+    private static int framesPerAnimation(String animation) {
+        switch (animation.toLowerCase()) {
+            case "idle": return 2;
+            case "walk": return 4;
+            case "run": return 4;
+            case "jump": return 3;
+            case "attack": return 3;
+            case "death": return 4;
+            default: return 2;
+        }
     }
 
     /**
@@ -0,0 +1,87 @@
+package com.pixelart.agent.service;
+
+import com.pixelart.agent.model.PixelArtRequest;
+import com.pixelart.agent.model.PixelArtResponse;
+import com.pixelart.agent.service.concurrency.LimitExceededException;
+import com.pixelart.agent.service.model.ImageGenerationParams;
+import com.pixelart.agent.service.model.ReactiveImageProvider;
+import com.pixelart.agent.service.model.ReactiveModelProvider;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Non-blocking counterpart of PixelArtAgentService's generate flow
+ *
+ * The LLM and image stages are composed as signals, so a request waiting on Ollama or Stable
+ * Diffusion holds no thread. Prompt building, parsing and image planning are shared with
+ * PixelArtAgentService so both flows produce the same responses.
+ */
+@Slf4j
+@Service
+public class ReactivePixelArtAgentService {
+
+    private final PixelArtAgentService pixelArtAgentService;
+    private final ReactiveModelProvider reactiveModelProvider;
+    private final ReactiveImageProvider reactiveImageProvider;
+
+    public ReactivePixelArtAgentService(PixelArtAgentService pixelArtAgentService,
+                                        ReactiveModelProvider reactiveModelProvider,
+                                        ReactiveImageProvider reactiveImageProvider) {
+        this.pixelArtAgentService = pixelArtAgentService;
+        this.reactiveModelProvider = reactiveModelProvider;
+        this.reactiveImageProvider = reactiveImageProvider;
+    }
+
+    /**
+     * Describe the request and render its image
+     */
+    public Mono<PixelArtResponse> generatePixelArt(PixelArtRequest request) {
+        return Mono.defer(() -> {
+            log.info("Generating pixel art reactively for asset type: {}, style: {}",
+                     request.getAssetType(), request.getStyle());
+            String prompt = pixelArtAgentService.describePrompt(request);
+            return reactiveModelProvider.generateResponse(prompt)
+                    .flatMap(aiResponse -> complete(request, prompt, aiResponse));
+        });
+    }
+
+    /**
+     * Stream the model's description as it is generated
+     */
+    public Flux<String> streamDescription(PixelArtRequest request) {
+        return Flux.defer(() -> reactiveModelProvider.streamResponse(pixelArtAgentService.describePrompt(request)));
+    }
+
+    /**
+     * Parse a description produced by streamDescription(request) and render its image
+     */
+    public Mono<PixelArtResponse> complete(PixelArtRequest request, String aiResponse) {
+        return Mono.defer(() -> complete(request, pixelArtAgentService.describePrompt(request), aiResponse));
+    }
+
+    private Mono<PixelArtResponse> complete(PixelArtRequest request, String prompt, String aiResponse) {
+        return Mono.fromSupplier(() -> pixelArtAgentService.parseDescription(request, prompt, aiResponse))
+                .flatMap(response -> attachImage(request, response));
+    }
+
+    private Mono<PixelArtResponse> attachImage(PixelArtRequest request, PixelArtResponse response) {
+        ImageGenerationParams params = pixelArtAgentService.planImage(request, response);
+        return reactiveImageProvider.generateImage(params)
+                .defaultIfEmpty("")
+                // Recording the image in the sprite index touches the disk
+                .publishOn(Schedulers.boundedElastic())
+                .map(imageData -> {
+                    pixelArtAgentService.attachImage(response, params, imageData);
+                    return response;
+                })
+                // A shed call surfaces as 503 like on the blocking path, rather than a text-only result
+                .onErrorResume(e -> !(e instanceof LimitExceededException), e -> {
+                    log.debug("Image generation skipped: {}", e.getMessage());
+                    response.setImageStatus("text-only");
+                    return Mono.just(response);
+                });
+    }
+}
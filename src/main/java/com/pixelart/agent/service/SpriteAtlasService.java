@@ -0,0 +1,160 @@
+package com.pixelart.agent.service;
+
+import com.pixelart.agent.model.AtlasFrame;
+import com.pixelart.agent.model.SpriteAtlas;
+import com.pixelart.agent.service.concurrency.LimitExceededException;
+import com.pixelart.agent.service.concurrency.VirtualThreads;
+import com.pixelart.agent.service.image.MaxRectsPacker;
+import com.pixelart.agent.service.image.PngOptimizer;
+import com.pixelart.agent.service.model.ImageGenerationParams;
+import com.pixelart.agent.service.quota.TenantContext;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Renders animation frames as separate image jobs and packs them into one texture atlas.
+ *
+ * Each frame is a single-sprite job, so the GPU renders width x height per frame instead of
+ * one sheet frameCount times as wide, and the model cannot smear a pose across a frame
+ * boundary. Jobs are submitted together; the scheduler and the backend pool decide how many
+ * run at once. Each frame is validated on its own and re-rendered if rejected, so one blank
+ * pose does not slip into the atlas.
+ */
+@Slf4j
+@Service
+public class SpriteAtlasService {
+
+    /**
+     * One frame to render
+     * @param pinnedSeed Whether the request asked for the seed, so a rejected frame is kept rather than re-rendered
+     */
+    public record FrameJob(String name, int sprite, String animation, int frame, ImageGenerationParams params,
+                           boolean pinnedSeed) {
+    }
+
+    private final ImageGenerationService imageGenerationService;
+    private final PngOptimizer pngOptimizer;
+    private final ExecutorService frameExecutor;
+    private final int padding;
+    private final int maxSize;
+
+    public SpriteAtlasService(ImageGenerationService imageGenerationService,
+                              PngOptimizer pngOptimizer,
+                              @Value("${pixelart.image.frames.concurrency:4}") int concurrency,
+                              @Value("${pixelart.image.frames.atlas-padding:2}") int padding,
+                              @Value("${pixelart.image.frames.atlas-max-size:4096}") int maxSize,
+                              @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.imageGenerationService = imageGenerationService;
+        this.pngOptimizer = pngOptimizer;
+        this.padding = padding;
+        this.maxSize = maxSize;
+        this.frameExecutor = VirtualThreads.executor(virtualThreads, concurrency, "atlas-frame");
+    }
+
+    /**
+     * Render every frame concurrently and pack the ones that succeeded
+     * @return The atlas with its image data, or null if no frame could be rendered
+     */
+    public SpriteAtlas render(List<FrameJob> jobs) {
+        log.info("Rendering {} frames as separate jobs", jobs.size());
+
+        List<CompletableFuture<BufferedImage>> futures = new ArrayList<>();
+        for (FrameJob job : jobs) {
+            futures.add(CompletableFuture.supplyAsync(TenantContext.wrap(() -> renderFrame(job)), frameExecutor));
+        }
+
+        List<FrameJob> rendered = new ArrayList<>();
+        List<BufferedImage> images = new ArrayList<>();
+        for (int i = 0; i < jobs.size(); i++) {
+            BufferedImage image;
+            try {
+                image = futures.get(i).join();
+            } catch (CompletionException e) {
+                // A shed frame means the backend is overloaded, so the whole atlas is retried later
+                if (e.getCause() instanceof LimitExceededException shed) {
+                    throw shed;
+                }
+                throw e;
+            }
+            if (image != null) {
+                rendered.add(jobs.get(i));
+                images.add(image);
+            }
+        }
+        if (images.isEmpty()) {
+            return null;
+        }
+        if (images.size() < jobs.size()) {
+            log.warn("{} of {} frames failed to render and were left out of the atlas",
+                    jobs.size() - images.size(), jobs.size());
+        }
+        return pack(rendered, images);
+    }
+
+    private BufferedImage renderFrame(FrameJob job) {
+        try {
+            return imageGenerationService.generateValidatedImage(job.params(), job.pinnedSeed()).image();
+        } catch (LimitExceededException e) {
+            throw e;
+        } catch (Exception e) {
+            log.warn("Frame {} failed: {}", job.name(), e.getMessage());
+            return null;
+        }
+    }
+
+    private SpriteAtlas pack(List<FrameJob> jobs, List<BufferedImage> images) {
+        int[] widths = new int[images.size()];
+        int[] heights = new int[images.size()];
+        for (int i = 0; i < images.size(); i++) {
+            widths[i] = images.get(i).getWidth();
+            heights[i] = images.get(i).getHeight();
+        }
+        MaxRectsPacker.Packing packing = MaxRectsPacker.pack(widths, heights, padding, maxSize);
+
+        BufferedImage atlas = new BufferedImage(packing.width(), packing.height(), BufferedImage.TYPE_INT_ARGB);
+        List<AtlasFrame> frames = new ArrayList<>();
+        for (int i = 0; i < images.size(); i++) {
+            BufferedImage image = images.get(i);
+            MaxRectsPacker.Placement placement = packing.placements().get(i);
+            int[] pixels = image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+            atlas.setRGB(placement.x(), placement.y(), image.getWidth(), image.getHeight(), pixels, 0, image.getWidth());
+
+            FrameJob job = jobs.get(i);
+            frames.add(AtlasFrame.builder()
+                    .name(job.name())
+                    .sprite(job.sprite())
+                    .animation(job.animation())
+                    .frame(job.frame())
+                    .x(placement.x())
+                    .y(placement.y())
+                    .width(placement.width())
+                    .height(placement.height())
+                    .seed(job.params().getSeed())
+                    .build());
+        }
+
+        byte[] png = pngOptimizer.getEncoder().encode(atlas);
+        log.info("Packed {} frames into a {}x{} atlas ({} bytes)", frames.size(), packing.width(), packing.height(), png.length);
+        return SpriteAtlas.builder()
+                .width(packing.width())
+                .height(packing.height())
+                .frames(frames)
+                .imageData(Base64.getEncoder().encodeToString(png))
+                .build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        frameExecutor.shutdownNow();
+    }
+}
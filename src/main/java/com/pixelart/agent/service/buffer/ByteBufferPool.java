@@ -0,0 +1,110 @@
+package com.pixelart.agent.service.buffer;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded pool of equally sized direct buffers for the image path.
+ *
+ * Multi-megabyte response bodies and decoded PNGs would otherwise be fresh heap arrays on every
+ * request, large enough to be allocated straight into the old generation. Buffers are created
+ * lazily up to the cap and handed out as reference-counted {@link PooledBuffer}s. When the pool
+ * is empty, or a request needs more than one buffer holds, a plain heap buffer is used instead
+ * and counted as a miss.
+ */
+@Slf4j
+@Component
+public class ByteBufferPool {
+
+    private final boolean enabled;
+    private final int bufferSize;
+    private final int maxBuffers;
+    private final ArrayBlockingQueue<ByteBuffer> free;
+    private final AtomicInteger created = new AtomicInteger();
+
+    private final Counter acquires;
+    private final Counter exhaustedMisses;
+    private final Counter oversizeMisses;
+
+    public ByteBufferPool(
+            MeterRegistry meterRegistry,
+            @Value("${pixelart.buffers.enabled:true}") boolean enabled,
+            @Value("${pixelart.buffers.buffer-size-kb:4096}") int bufferSizeKb,
+            @Value("${pixelart.buffers.max-buffers:16}") int maxBuffers) {
+        this.enabled = enabled;
+        this.bufferSize = bufferSizeKb * 1024;
+        this.maxBuffers = Math.max(1, maxBuffers);
+        this.free = new ArrayBlockingQueue<>(this.maxBuffers);
+
+        this.acquires = Counter.builder("pixelart.buffer.pool.acquires")
+                .register(meterRegistry);
+        this.exhaustedMisses = Counter.builder("pixelart.buffer.pool.misses")
+                .tag("reason", "exhausted")
+                .register(meterRegistry);
+        this.oversizeMisses = Counter.builder("pixelart.buffer.pool.misses")
+                .tag("reason", "oversize")
+                .register(meterRegistry);
+        Gauge.builder("pixelart.buffer.pool.in.use", this, ByteBufferPool::inUse)
+                .description("Pooled buffers currently lent out")
+                .register(meterRegistry);
+        Gauge.builder("pixelart.buffer.pool.occupancy", this, pool -> (double) pool.inUse() / pool.maxBuffers)
+                .description("Fraction of the pool lent out")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Borrow a buffer in write mode, with one reference owned by the caller
+     * @param sizeHint Expected number of bytes, 0 if unknown
+     */
+    public PooledBuffer acquire(int sizeHint) {
+        acquires.increment();
+        if (!enabled) {
+            return new PooledBuffer(this, ByteBuffer.allocate(Math.max(sizeHint, 8192)), false);
+        }
+        if (sizeHint > bufferSize) {
+            oversizeMisses.increment();
+            return new PooledBuffer(this, ByteBuffer.allocate(sizeHint), false);
+        }
+        ByteBuffer buffer = free.poll();
+        if (buffer == null && created.getAndIncrement() < maxBuffers) {
+            buffer = ByteBuffer.allocateDirect(bufferSize);
+        } else if (buffer == null) {
+            created.decrementAndGet();
+            exhaustedMisses.increment();
+            return new PooledBuffer(this, ByteBuffer.allocate(Math.max(sizeHint, 8192)), false);
+        }
+        return new PooledBuffer(this, buffer, true);
+    }
+
+    /**
+     * A buffer outgrew its pooled storage and moved to the heap
+     */
+    void recordOverflow() {
+        oversizeMisses.increment();
+    }
+
+    void recycle(ByteBuffer buffer) {
+        buffer.clear();
+        if (!free.offer(buffer)) {
+            // Cannot happen while every pooled buffer is recycled exactly once
+            log.warn("Byte buffer pool is full, dropping a recycled buffer");
+            created.decrementAndGet();
+        }
+    }
+
+    public int inUse() {
+        return Math.min(created.get(), maxBuffers) - free.size();
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+}
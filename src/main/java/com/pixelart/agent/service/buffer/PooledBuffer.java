@@ -0,0 +1,164 @@
+package com.pixelart.agent.service.buffer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reference-counted buffer lent by {@link ByteBufferPool}.
+ *
+ * Starts in write mode with one reference; {@link #flip()} switches to read mode. Every holder
+ * that keeps the buffer beyond the current call takes a reference with {@link #retain()} and
+ * gives it back with {@link #release()} (or {@link #close()}); the storage returns to the pool
+ * when the last reference is released. If writes outgrow the pooled storage, the contents move
+ * to a larger heap buffer and the pooled one is recycled immediately.
+ */
+public final class PooledBuffer implements AutoCloseable {
+
+    private final ByteBufferPool pool;
+    private final AtomicInteger references = new AtomicInteger(1);
+    private ByteBuffer buffer;
+    private boolean pooled;
+
+    PooledBuffer(ByteBufferPool pool, ByteBuffer buffer, boolean pooled) {
+        this.pool = pool;
+        this.buffer = buffer;
+        this.pooled = pooled;
+    }
+
+    /**
+     * The underlying buffer; only valid while a reference is held
+     */
+    public ByteBuffer buffer() {
+        if (references.get() <= 0) {
+            throw new IllegalStateException("Buffer already released");
+        }
+        return buffer;
+    }
+
+    public PooledBuffer retain() {
+        if (references.getAndIncrement() <= 0) {
+            references.decrementAndGet();
+            throw new IllegalStateException("Buffer already released");
+        }
+        return this;
+    }
+
+    public void release() {
+        int remaining = references.decrementAndGet();
+        if (remaining == 0) {
+            if (pooled) {
+                pooled = false;
+                pool.recycle(buffer);
+            }
+            buffer = null;
+        } else if (remaining < 0) {
+            throw new IllegalStateException("Buffer released more often than retained");
+        }
+    }
+
+    @Override
+    public void close() {
+        release();
+    }
+
+    public PooledBuffer flip() {
+        buffer().flip();
+        return this;
+    }
+
+    public int remaining() {
+        return buffer().remaining();
+    }
+
+    /**
+     * Append everything the stream yields
+     */
+    public PooledBuffer readFrom(InputStream in) throws IOException {
+        byte[] chunk = new byte[8192];
+        int read;
+        while ((read = in.read(chunk)) != -1) {
+            ensureRemaining(read);
+            buffer.put(chunk, 0, read);
+        }
+        return this;
+    }
+
+    /**
+     * Stream that appends to this buffer (write mode)
+     */
+    public OutputStream outputStream() {
+        return new OutputStream() {
+            @Override
+            public void write(int b) {
+                ensureRemaining(1);
+                buffer.put((byte) b);
+            }
+
+            @Override
+            public void write(byte[] bytes, int offset, int length) {
+                ensureRemaining(length);
+                buffer.put(bytes, offset, length);
+            }
+        };
+    }
+
+    /**
+     * Stream over the readable bytes (read mode), without consuming them
+     */
+    public InputStream inputStream() {
+        return new ByteBufferInputStream(buffer().duplicate());
+    }
+
+    /**
+     * Base64 encode the readable bytes (read mode), without consuming them
+     */
+    public String toBase64() {
+        ByteBuffer source = buffer().duplicate();
+        byte[] encoded = new byte[4 * ((source.remaining() + 2) / 3)];
+        OutputStream target = new OutputStream() {
+            private int position;
+
+            @Override
+            public void write(int b) {
+                encoded[position++] = (byte) b;
+            }
+
+            @Override
+            public void write(byte[] bytes, int offset, int length) {
+                System.arraycopy(bytes, offset, encoded, position, length);
+                position += length;
+            }
+        };
+        byte[] chunk = new byte[3 * 4096];
+        try (OutputStream encoder = Base64.getEncoder().wrap(target)) {
+            while (source.hasRemaining()) {
+                int length = Math.min(chunk.length, source.remaining());
+                source.get(chunk, 0, length);
+                encoder.write(chunk, 0, length);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("In-memory base64 encoding failed", e);
+        }
+        return new String(encoded, StandardCharsets.ISO_8859_1);
+    }
+
+    private void ensureRemaining(int length) {
+        if (buffer().remaining() >= length) {
+            return;
+        }
+        ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + length));
+        buffer.flip();
+        grown.put(buffer);
+        if (pooled) {
+            pooled = false;
+            pool.recordOverflow();
+            pool.recycle(buffer);
+        }
+        buffer = grown;
+    }
+}
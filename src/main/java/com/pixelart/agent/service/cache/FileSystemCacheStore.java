@@ -0,0 +1,227 @@
+package com.pixelart.agent.service.cache;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Shared cache in a directory that every instance mounts.
+ *
+ * Each entry is one file named by the SHA-256 of its key, holding its expiry time followed by
+ * the value. Entries are written to a temporary file and renamed into place, so readers on any
+ * instance see either the old entry or the new one, never a partial write. Leases are OS file
+ * locks on a sibling .lock file; the OS drops them when the holding process dies, so a crashed
+ * instance never blocks a key. Expired entries read as missing and are deleted by a sweep every
+ * few hundred writes; the sweep only deletes a file that is still the one it found expired, so a
+ * fresh entry another instance renamed into place meanwhile survives.
+ */
+@Slf4j
+public class FileSystemCacheStore implements SharedCacheStore {
+
+    private static final int ENTRY_MAGIC = 0x50585231; // "PXR1"
+    private static final String ENTRY_SUFFIX = ".entry";
+    private static final String LOCK_SUFFIX = ".lock";
+    private static final int SWEEP_INTERVAL = 256;
+
+    private final Path directory;
+    private final Clock clock;
+    private final AtomicInteger writesSinceSweep = new AtomicInteger();
+
+    public FileSystemCacheStore(Path directory, Clock clock) {
+        this.directory = directory;
+        this.clock = clock;
+    }
+
+    @Override
+    public Entry get(String key) {
+        Path file = fileFor(hash(key), ENTRY_SUFFIX);
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+            if (in.readInt() != ENTRY_MAGIC) {
+                log.debug("Ignoring foreign file in shared cache: {}", file);
+                return null;
+            }
+            long remainingMillis = in.readLong() - clock.millis();
+            if (remainingMillis <= 0) {
+                // Left to the sweep: another instance may be renaming a fresh entry into place
+                return null;
+            }
+            return new Entry(in.readAllBytes(), Duration.ofMillis(remainingMillis));
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            log.debug("Shared cache entry {} unreadable: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public boolean contains(String key) {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(fileFor(hash(key), ENTRY_SUFFIX)))) {
+            // Only the header: the value itself may be large
+            return in.readInt() == ENTRY_MAGIC && in.readLong() > clock.millis();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public void put(String key, byte[] value, Duration ttl) {
+        Path target = fileFor(hash(key), ENTRY_SUFFIX);
+        try {
+            Files.createDirectories(target.getParent());
+            Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+            try {
+                try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(temp))) {
+                    out.writeInt(ENTRY_MAGIC);
+                    out.writeLong(clock.millis() + ttl.toMillis());
+                    out.write(value);
+                }
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            log.warn("Could not write shared cache entry: {}", e.getMessage());
+        }
+        if (writesSinceSweep.incrementAndGet() >= SWEEP_INTERVAL) {
+            writesSinceSweep.set(0);
+            sweepExpired();
+        }
+    }
+
+    @Override
+    public void invalidate(String key) {
+        try {
+            Files.deleteIfExists(fileFor(hash(key), ENTRY_SUFFIX));
+        } catch (IOException e) {
+            log.warn("Could not invalidate shared cache entry: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * The duration is not needed here: the lock lives exactly as long as the holder's process
+     */
+    @Override
+    public Lease tryLease(String key, Duration duration) {
+        Path lockFile = fileFor(hash(key), LOCK_SUFFIX);
+        FileChannel channel = null;
+        try {
+            Files.createDirectories(lockFile.getParent());
+            channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            FileLock lock = channel.tryLock();
+            if (lock == null) {
+                channel.close();
+                return null;
+            }
+            FileChannel held = channel;
+            return () -> {
+                try {
+                    lock.release();
+                    held.close();
+                } catch (IOException e) {
+                    log.debug("Could not release shared cache lease {}: {}", lockFile, e.getMessage());
+                }
+            };
+        } catch (OverlappingFileLockException e) {
+            // Held by another thread of this process
+            closeQuietly(channel);
+            return null;
+        } catch (IOException e) {
+            closeQuietly(channel);
+            log.warn("Could not take shared cache lease, generating without one: {}", e.getMessage());
+            return () -> { };
+        }
+    }
+
+    /**
+     * Delete every expired entry. Lock files are left alone, since deleting one another
+     * instance holds would let a third lock a fresh file under the same name.
+     */
+    public void sweepExpired() {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        long now = clock.millis();
+        int[] deleted = {0};
+        try (Stream<Path> files = Files.walk(directory, 2)) {
+            files.filter(path -> path.getFileName().toString().endsWith(ENTRY_SUFFIX)).forEach(path -> {
+                try {
+                    FileIdentity expired = FileIdentity.of(path);
+                    if (expiresAt(path) <= now && expired.equals(FileIdentity.of(path))) {
+                        Files.deleteIfExists(path);
+                        deleted[0]++;
+                    }
+                } catch (IOException e) {
+                    log.debug("Could not delete expired shared cache entry {}", path);
+                }
+            });
+        } catch (IOException e) {
+            log.debug("Could not sweep shared cache: {}", e.getMessage());
+        }
+        if (deleted[0] > 0) {
+            log.debug("Swept {} expired shared cache entries", deleted[0]);
+        }
+    }
+
+    /**
+     * Tells a file from one renamed over it: the inode where the file system has one, and the
+     * modification time
+     */
+    private record FileIdentity(Object fileKey, FileTime modified) {
+        static FileIdentity of(Path path) throws IOException {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            return new FileIdentity(attributes.fileKey(), attributes.lastModifiedTime());
+        }
+    }
+
+    private static long expiresAt(Path path) {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(path))) {
+            return in.readInt() == ENTRY_MAGIC ? in.readLong() : Long.MAX_VALUE;
+        } catch (IOException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    private Path fileFor(String hash, String suffix) {
+        return directory.resolve(hash.substring(0, 2)).resolve(hash + suffix);
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // Nothing was locked
+            }
+        }
+    }
+
+    private static String hash(String key) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(key.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
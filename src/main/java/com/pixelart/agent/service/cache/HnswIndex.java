@@ -0,0 +1,533 @@
+package com.pixelart.agent.service.cache;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory Hierarchical Navigable Small World graph for approximate nearest-neighbour search
+ * over cosine similarity.
+ *
+ * Vectors are normalised on insert and kept in one flat float array, so similarity is a dot
+ * product. Inserts take a write lock, searches share a read lock. The whole graph can be
+ * written to and read back from a binary stream.
+ */
+public class HnswIndex {
+
+    private static final int FORMAT_MAGIC = 0x484E5357; // "HNSW"
+
+    private final int dimension;
+    private final int m;
+    private final int maxM0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final Random random;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    /** Bounded rather than per thread, so virtual threads do not each pin an array sized to the index */
+    private final ArrayBlockingQueue<VisitedSet> visitedSets =
+            new ArrayBlockingQueue<>(Runtime.getRuntime().availableProcessors());
+
+    private volatile int efSearch;
+    private float[] vectors;
+    private int[][][] links;
+    private int size;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    public HnswIndex(int dimension, int m, int efConstruction, int efSearch) {
+        this(dimension, m, efConstruction, efSearch, 42L);
+    }
+
+    public HnswIndex(int dimension, int m, int efConstruction, int efSearch, long seed) {
+        this.dimension = dimension;
+        this.m = Math.max(2, m);
+        this.maxM0 = this.m * 2;
+        this.efConstruction = Math.max(this.m, efConstruction);
+        this.efSearch = efSearch;
+        this.levelMultiplier = 1.0 / Math.log(this.m);
+        this.random = new Random(seed);
+        this.vectors = new float[dimension * 16];
+        this.links = new int[16][][];
+    }
+
+    /**
+     * A search hit
+     * @param id Id assigned by add()
+     * @param similarity Cosine similarity to the query
+     */
+    public record Match(int id, float similarity) {
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void setEfSearch(int efSearch) {
+        this.efSearch = efSearch;
+    }
+
+    /**
+     * Insert a vector
+     * @return The id of the new entry, ids are assigned sequentially from 0
+     */
+    public int add(float[] vector) {
+        float[] normalized = normalize(vector);
+        lock.writeLock().lock();
+        try {
+            int id = size;
+            ensureCapacity(id + 1);
+            System.arraycopy(normalized, 0, vectors, id * dimension, dimension);
+            size++;
+
+            int level = randomLevel();
+            links[id] = new int[level + 1][];
+            for (int l = 0; l <= level; l++) {
+                links[id][l] = new int[0];
+            }
+
+            if (entryPoint < 0) {
+                entryPoint = id;
+                maxLevel = level;
+                return id;
+            }
+
+            int current = entryPoint;
+            for (int l = maxLevel; l > level; l--) {
+                current = greedyClosest(normalized, current, l);
+            }
+            for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+                List<Candidate> candidates = searchLayer(normalized, current, efConstruction, l);
+                int[] neighbours = selectNeighbours(candidates, m);
+                links[id][l] = neighbours;
+                for (int neighbour : neighbours) {
+                    connect(neighbour, id, l);
+                }
+                current = candidates.get(0).id;
+            }
+
+            if (level > maxLevel) {
+                maxLevel = level;
+                entryPoint = id;
+            }
+            return id;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Find the approximate k nearest entries, most similar first
+     */
+    public List<Match> search(float[] query, int k) {
+        float[] normalized = normalize(query);
+        lock.readLock().lock();
+        try {
+            if (entryPoint < 0) {
+                return List.of();
+            }
+            int current = entryPoint;
+            for (int l = maxLevel; l > 0; l--) {
+                current = greedyClosest(normalized, current, l);
+            }
+            List<Candidate> candidates = searchLayer(normalized, current, Math.max(efSearch, k), 0);
+            List<Match> matches = new ArrayList<>(Math.min(k, candidates.size()));
+            for (int i = 0; i < Math.min(k, candidates.size()); i++) {
+                Candidate candidate = candidates.get(i);
+                matches.add(new Match(candidate.id, 1.0f - candidate.distance));
+            }
+            return matches;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Exact k nearest entries by linear scan, used to measure the recall of search()
+     */
+    public List<Match> exactSearch(float[] query, int k) {
+        float[] normalized = normalize(query);
+        lock.readLock().lock();
+        try {
+            PriorityQueue<Candidate> best = new PriorityQueue<>(Comparator.comparingDouble((Candidate c) -> c.distance).reversed());
+            for (int id = 0; id < size; id++) {
+                best.add(new Candidate(id, distance(normalized, id)));
+                if (best.size() > k) {
+                    best.poll();
+                }
+            }
+            List<Candidate> sorted = new ArrayList<>(best);
+            sorted.sort(Comparator.comparingDouble(c -> c.distance));
+            List<Match> matches = new ArrayList<>(sorted.size());
+            for (Candidate candidate : sorted) {
+                matches.add(new Match(candidate.id, 1.0f - candidate.distance));
+            }
+            return matches;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void writeTo(DataOutputStream out) throws IOException {
+        lock.readLock().lock();
+        try {
+            out.writeInt(FORMAT_MAGIC);
+            out.writeInt(dimension);
+            out.writeInt(m);
+            out.writeInt(efConstruction);
+            out.writeInt(efSearch);
+            out.writeInt(size);
+            out.writeInt(entryPoint);
+            out.writeInt(maxLevel);
+            for (int i = 0; i < size * dimension; i++) {
+                out.writeFloat(vectors[i]);
+            }
+            for (int id = 0; id < size; id++) {
+                out.writeByte(links[id].length);
+                for (int[] level : links[id]) {
+                    out.writeShort(level.length);
+                    for (int neighbour : level) {
+                        out.writeInt(neighbour);
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public static HnswIndex readFrom(DataInputStream in) throws IOException {
+        if (in.readInt() != FORMAT_MAGIC) {
+            throw new IOException("Not an HNSW index file");
+        }
+        int dimension = in.readInt();
+        int m = in.readInt();
+        int efConstruction = in.readInt();
+        int efSearch = in.readInt();
+        HnswIndex index = new HnswIndex(dimension, m, efConstruction, efSearch);
+        int size = in.readInt();
+        index.ensureCapacity(size);
+        index.size = size;
+        index.entryPoint = in.readInt();
+        index.maxLevel = in.readInt();
+        for (int i = 0; i < size * dimension; i++) {
+            index.vectors[i] = in.readFloat();
+        }
+        for (int id = 0; id < size; id++) {
+            int levels = in.readUnsignedByte();
+            index.links[id] = new int[levels][];
+            for (int l = 0; l < levels; l++) {
+                int[] neighbours = new int[in.readUnsignedShort()];
+                for (int n = 0; n < neighbours.length; n++) {
+                    neighbours[n] = in.readInt();
+                }
+                index.links[id][l] = neighbours;
+            }
+        }
+        return index;
+    }
+
+    private int randomLevel() {
+        double uniform = 1.0 - random.nextDouble();
+        return Math.min(31, (int) Math.floor(-Math.log(uniform) * levelMultiplier));
+    }
+
+    private void ensureCapacity(int required) {
+        if (links.length < required) {
+            int capacity = Math.max(required, links.length * 2);
+            links = Arrays.copyOf(links, capacity);
+            vectors = Arrays.copyOf(vectors, capacity * dimension);
+        }
+    }
+
+    private int greedyClosest(float[] query, int start, int level) {
+        int current = start;
+        float currentDistance = distance(query, current);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            for (int neighbour : links[current][level]) {
+                float d = distance(query, neighbour);
+                if (d < currentDistance) {
+                    currentDistance = d;
+                    current = neighbour;
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Beam search within one layer
+     * @return Up to ef candidates sorted by ascending distance
+     */
+    private List<Candidate> searchLayer(float[] query, int start, int ef, int level) {
+        VisitedSet visited = visitedSets.poll();
+        if (visited == null) {
+            visited = new VisitedSet();
+        }
+        try {
+            return searchLayer(query, start, ef, level, visited);
+        } finally {
+            visitedSets.offer(visited);
+        }
+    }
+
+    private List<Candidate> searchLayer(float[] query, int start, int ef, int level, VisitedSet visited) {
+        visited.reset(size);
+
+        // Heaps of (distance bits << 32 | id), which order by distance because distances are clamped to >= 0
+        LongHeap frontier = new LongHeap(ef * 2, false);
+        LongHeap results = new LongHeap(ef + 1, true);
+
+        long first = pack(distance(query, start), start);
+        visited.add(start);
+        frontier.push(first);
+        results.push(first);
+
+        while (!frontier.isEmpty()) {
+            long closest = frontier.pop();
+            if (results.size() >= ef && closest > results.peek()) {
+                break;
+            }
+            int[][] nodeLinks = links[(int) closest];
+            if (level >= nodeLinks.length) {
+                continue;
+            }
+            for (int neighbour : nodeLinks[level]) {
+                if (!visited.add(neighbour)) {
+                    continue;
+                }
+                long candidate = pack(distance(query, neighbour), neighbour);
+                if (results.size() < ef || candidate < results.peek()) {
+                    frontier.push(candidate);
+                    results.push(candidate);
+                    if (results.size() > ef) {
+                        results.pop();
+                    }
+                }
+            }
+        }
+
+        long[] packed = results.toSortedArray();
+        List<Candidate> sorted = new ArrayList<>(packed.length);
+        for (long value : packed) {
+            sorted.add(new Candidate((int) value, Float.intBitsToFloat((int) (value >>> 32))));
+        }
+        return sorted;
+    }
+
+    private static long pack(float distance, int id) {
+        return ((long) Float.floatToIntBits(Math.max(0f, distance)) << 32) | (id & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Neighbour selection heuristic from the HNSW paper: prefer candidates that are closer to the
+     * base than to any already selected neighbour, then top up with the nearest pruned ones.
+     */
+    private int[] selectNeighbours(List<Candidate> sortedCandidates, int max) {
+        List<Candidate> selected = new ArrayList<>(max);
+        List<Candidate> pruned = new ArrayList<>();
+        for (Candidate candidate : sortedCandidates) {
+            if (selected.size() >= max) {
+                break;
+            }
+            boolean diverse = true;
+            for (Candidate chosen : selected) {
+                if (distanceBetween(candidate.id, chosen.id) < candidate.distance) {
+                    diverse = false;
+                    break;
+                }
+            }
+            if (diverse) {
+                selected.add(candidate);
+            } else {
+                pruned.add(candidate);
+            }
+        }
+        for (int i = 0; i < pruned.size() && selected.size() < max; i++) {
+            selected.add(pruned.get(i));
+        }
+        int[] ids = new int[selected.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = selected.get(i).id;
+        }
+        return ids;
+    }
+
+    private void connect(int node, int newNeighbour, int level) {
+        int[] existing = links[node][level];
+        int max = level == 0 ? maxM0 : m;
+        int[] extended = Arrays.copyOf(existing, existing.length + 1);
+        extended[existing.length] = newNeighbour;
+        if (extended.length <= max) {
+            links[node][level] = extended;
+            return;
+        }
+        List<Candidate> candidates = new ArrayList<>(extended.length);
+        for (int id : extended) {
+            candidates.add(new Candidate(id, distanceBetween(node, id)));
+        }
+        candidates.sort(Comparator.comparingDouble(c -> c.distance));
+        links[node][level] = selectNeighbours(candidates, max);
+    }
+
+    private float distance(float[] query, int id) {
+        int offset = id * dimension;
+        float dot = 0f;
+        for (int i = 0; i < dimension; i++) {
+            dot += query[i] * vectors[offset + i];
+        }
+        return 1.0f - dot;
+    }
+
+    private float distanceBetween(int a, int b) {
+        int offsetA = a * dimension;
+        int offsetB = b * dimension;
+        float dot = 0f;
+        for (int i = 0; i < dimension; i++) {
+            dot += vectors[offsetA + i] * vectors[offsetB + i];
+        }
+        return 1.0f - dot;
+    }
+
+    private float[] normalize(float[] vector) {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("Expected dimension " + dimension + " but got " + vector.length);
+        }
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        norm = Math.sqrt(norm);
+        float[] normalized = new float[dimension];
+        if (norm == 0) {
+            return normalized;
+        }
+        for (int i = 0; i < dimension; i++) {
+            normalized[i] = (float) (vector[i] / norm);
+        }
+        return normalized;
+    }
+
+    private record Candidate(int id, float distance) {
+    }
+
+    /**
+     * Binary heap of primitive longs, min-heap or max-heap
+     */
+    private static final class LongHeap {
+        private long[] heap;
+        private int count;
+        private final boolean max;
+
+        LongHeap(int capacity, boolean max) {
+            this.heap = new long[Math.max(4, capacity)];
+            this.max = max;
+        }
+
+        int size() {
+            return count;
+        }
+
+        boolean isEmpty() {
+            return count == 0;
+        }
+
+        long peek() {
+            return heap[0];
+        }
+
+        void push(long value) {
+            if (count == heap.length) {
+                heap = Arrays.copyOf(heap, count * 2);
+            }
+            int i = count++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (!before(value, heap[parent])) {
+                    break;
+                }
+                heap[i] = heap[parent];
+                i = parent;
+            }
+            heap[i] = value;
+        }
+
+        long pop() {
+            long top = heap[0];
+            long last = heap[--count];
+            int i = 0;
+            int half = count >>> 1;
+            while (i < half) {
+                int child = 2 * i + 1;
+                if (child + 1 < count && before(heap[child + 1], heap[child])) {
+                    child++;
+                }
+                if (!before(heap[child], last)) {
+                    break;
+                }
+                heap[i] = heap[child];
+                i = child;
+            }
+            heap[i] = last;
+            return top;
+        }
+
+        long[] toSortedArray() {
+            long[] sorted = Arrays.copyOf(heap, count);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+
+        private boolean before(long a, long b) {
+            return max ? a > b : a < b;
+        }
+    }
+
+    /**
+     * Generation-stamped visited marks, reused across searches through the pool
+     */
+    private static final class VisitedSet {
+        private int[] marks = new int[0];
+        private int generation;
+
+        void reset(int capacity) {
+            if (marks.length < capacity) {
+                marks = new int[Math.max(capacity, marks.length * 2)];
+                generation = 0;
+            }
+            generation++;
+            if (generation == Integer.MAX_VALUE) {
+                Arrays.fill(marks, 0);
+                generation = 1;
+            }
+        }
+
+        boolean add(int id) {
+            if (marks[id] == generation) {
+                return false;
+            }
+            marks[id] = generation;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,340 @@
+package com.pixelart.agent.service.cache;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Persistent on-disk cache for generated images, keyed by the full set of generation parameters.
+ *
+ * Images are stored as raw PNG files named by the SHA-256 of the key. A compact binary index
+ * (32-byte hash + size per entry, in LRU order) is read on first use rather than at startup,
+ * and rebuilt from the directory listing if it is missing or corrupt. Because the index is only
+ * written periodically, it is reconciled with the listing on load: files written after the last
+ * save are added as most recently used and entries whose file is gone are dropped. When the
+ * total size exceeds the cap, least recently used entries are deleted.
+ */
+@Slf4j
+@Component
+public class ImageDiskCache {
+
+    private static final int INDEX_MAGIC = 0x50584331; // "PXC1"
+    private static final String INDEX_FILE = "index.bin";
+    private static final String IMAGE_SUFFIX = ".png";
+    private static final int INDEX_FLUSH_INTERVAL = 64;
+
+    private final boolean enabled;
+    private final Path directory;
+    private final long maxBytes;
+
+    /** Guards the entries; index writes and evictions do file I/O under it, which must not pin a virtual thread */
+    private final ReentrantLock lock = new ReentrantLock();
+    /** Hex hash to file size, in access order */
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long totalBytes;
+    private boolean loaded;
+    private int changesSinceFlush;
+
+    public ImageDiskCache(
+            @Value("${pixelart.image.cache.enabled:true}") boolean enabled,
+            @Value("${pixelart.image.cache.directory:./data/image-cache}") String directory,
+            @Value("${pixelart.image.cache.max-size-mb:512}") long maxSizeMb) {
+        this.enabled = enabled;
+        this.directory = Paths.get(directory);
+        this.maxBytes = maxSizeMb * 1024 * 1024;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Look up a cached image
+     * @param key Canonical description of every parameter that affects the image
+     * @return Base64 encoded PNG, or null on a miss
+     */
+    public String get(String key) {
+        if (!enabled) {
+            return null;
+        }
+        String hash = hash(key);
+        lock.lock();
+        try {
+            ensureLoaded();
+            if (entries.get(hash) == null) {
+                return null;
+            }
+        } finally {
+            lock.unlock();
+        }
+        try {
+            return Base64.getEncoder().encodeToString(Files.readAllBytes(fileFor(hash)));
+        } catch (IOException e) {
+            log.debug("Cached image {} unreadable, dropping entry: {}", hash, e.getMessage());
+            lock.lock();
+            try {
+                Long size = entries.remove(hash);
+                if (size != null) {
+                    totalBytes -= size;
+                }
+            } finally {
+                lock.unlock();
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Store an image
+     * @param key Canonical description of every parameter that affects the image
+     * @param base64Image Base64 encoded PNG
+     */
+    public void put(String key, String base64Image) {
+        if (!enabled || base64Image == null || base64Image.isEmpty()) {
+            return;
+        }
+        String hash = hash(key);
+        try {
+            byte[] bytes = Base64.getDecoder().decode(base64Image);
+            Path target = fileFor(hash);
+            Files.createDirectories(target.getParent());
+            Path temp = Files.createTempFile(target.getParent(), hash, ".tmp");
+            Files.write(temp, bytes);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            lock.lock();
+            try {
+                ensureLoaded();
+                Long previous = entries.put(hash, (long) bytes.length);
+                totalBytes += bytes.length - (previous != null ? previous : 0);
+                evictIfNeeded();
+                if (++changesSinceFlush >= INDEX_FLUSH_INTERVAL) {
+                    writeIndex();
+                }
+            } finally {
+                lock.unlock();
+            }
+        } catch (Exception e) {
+            log.warn("Could not store image in disk cache: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void flush() {
+        lock.lock();
+        try {
+            if (enabled && loaded && changesSinceFlush > 0) {
+                writeIndex();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        long start = System.nanoTime();
+        if (readIndex()) {
+            reconcileIndex();
+        } else {
+            rebuildIndex();
+        }
+        log.info("Loaded image cache index: {} entries, {} KB in {} ms", entries.size(), totalBytes / 1024,
+                (System.nanoTime() - start) / 1_000_000);
+        evictIfNeeded();
+    }
+
+    private boolean readIndex() {
+        Path index = directory.resolve(INDEX_FILE);
+        if (!Files.exists(index)) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(index)))) {
+            if (in.readInt() != INDEX_MAGIC) {
+                return false;
+            }
+            int count = in.readInt();
+            byte[] raw = new byte[32];
+            for (int i = 0; i < count; i++) {
+                in.readFully(raw);
+                long size = in.readLong();
+                entries.put(HexFormat.of().formatHex(raw), size);
+                totalBytes += size;
+            }
+            return true;
+        } catch (IOException e) {
+            log.warn("Image cache index corrupt, rebuilding: {}", e.getMessage());
+            entries.clear();
+            totalBytes = 0;
+            return false;
+        }
+    }
+
+    private void rebuildIndex() {
+        List<Path> files = listImageFiles();
+        if (files == null) {
+            return;
+        }
+        for (Path file : files) {
+            try {
+                long size = Files.size(file);
+                entries.put(hashOf(file), size);
+                totalBytes += size;
+            } catch (IOException e) {
+                log.debug("Skipping unreadable cache file {}", file);
+            }
+        }
+        changesSinceFlush = entries.size();
+    }
+
+    /**
+     * Bring a loaded index in line with the files actually on disk
+     */
+    private void reconcileIndex() {
+        List<Path> files = listImageFiles();
+        if (files == null) {
+            return;
+        }
+        Set<String> present = new HashSet<>();
+        int added = 0;
+        for (Path file : files) {
+            String hash = hashOf(file);
+            present.add(hash);
+            // containsKey does not count as an access, so indexed entries keep their LRU position
+            if (!entries.containsKey(hash)) {
+                try {
+                    long size = Files.size(file);
+                    entries.put(hash, size);
+                    totalBytes += size;
+                    added++;
+                } catch (IOException e) {
+                    log.debug("Skipping unreadable cache file {}", file);
+                }
+            }
+        }
+        int dropped = 0;
+        Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Long> entry = iterator.next();
+            if (!present.contains(entry.getKey())) {
+                totalBytes -= entry.getValue();
+                iterator.remove();
+                dropped++;
+            }
+        }
+        if (added > 0 || dropped > 0) {
+            log.info("Reconciled image cache index with directory: {} files added, {} missing entries dropped",
+                    added, dropped);
+            changesSinceFlush += added + dropped;
+        }
+    }
+
+    /**
+     * Cached image files, oldest first so the most recently written end up most recently used
+     * @return The files, or null if the directory could not be scanned
+     */
+    private List<Path> listImageFiles() {
+        List<Path> files = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return files;
+        }
+        try (Stream<Path> walk = Files.walk(directory, 2)) {
+            walk.filter(path -> path.getFileName().toString().endsWith(IMAGE_SUFFIX)).forEach(files::add);
+        } catch (IOException e) {
+            log.warn("Could not scan image cache directory: {}", e.getMessage());
+            return null;
+        }
+        files.sort(Comparator.comparingLong(ImageDiskCache::lastModified));
+        return files;
+    }
+
+    private void writeIndex() {
+        try {
+            Files.createDirectories(directory);
+            Path temp = Files.createTempFile(directory, "index", ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(INDEX_MAGIC);
+                out.writeInt(entries.size());
+                for (Map.Entry<String, Long> entry : entries.entrySet()) {
+                    out.write(HexFormat.of().parseHex(entry.getKey()));
+                    out.writeLong(entry.getValue());
+                }
+            }
+            Files.move(temp, directory.resolve(INDEX_FILE), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            changesSinceFlush = 0;
+        } catch (IOException e) {
+            log.warn("Could not write image cache index: {}", e.getMessage());
+        }
+    }
+
+    private void evictIfNeeded() {
+        Iterator<Map.Entry<String, Long>> eldest = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<String, Long> entry = eldest.next();
+            try {
+                Files.deleteIfExists(fileFor(entry.getKey()));
+            } catch (IOException e) {
+                log.debug("Could not delete evicted cache file {}: {}", entry.getKey(), e.getMessage());
+            }
+            totalBytes -= entry.getValue();
+            eldest.remove();
+            changesSinceFlush++;
+        }
+    }
+
+    private Path fileFor(String hash) {
+        return directory.resolve(hash.substring(0, 2)).resolve(hash + IMAGE_SUFFIX);
+    }
+
+    private static String hashOf(Path file) {
+        String name = file.getFileName().toString();
+        return name.substring(0, name.length() - IMAGE_SUFFIX.length());
+    }
+
+    private static long lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            return 0L;
+        }
+    }
+
+    private static String hash(String key) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(key.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,345 @@
+package com.pixelart.agent.service.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pixelart.agent.model.PixelArtRequest;
+import com.pixelart.agent.model.PixelArtResponse;
+import com.pixelart.agent.model.SemanticMatch;
+import com.pixelart.agent.service.model.EmbeddingProvider;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Optional cache tier that finds earlier results for paraphrased requests.
+ *
+ * The free-text fields of a request are normalized and embedded, and the vectors are kept in an
+ * HNSW index. Fields that must match exactly (size, LoRA, checkpoint) form a hard key that every
+ * candidate has to share. In "return" mode a match above the similarity threshold is served in
+ * place of a new generation; in "offer" mode matches are only exposed through findSimilar().
+ *
+ * Searches share a read lock and additions take the write lock only to update the in-memory
+ * index; result files, key lines and index snapshots are written outside it, under a separate
+ * file lock that keeps key lines in id order.
+ */
+@Slf4j
+@Component
+public class SemanticResultCache {
+
+    private static final String INDEX_FILE = "index.hnsw";
+    private static final String KEYS_FILE = "keys.txt";
+    private static final String RESULTS_DIR = "results";
+
+    private final EmbeddingProvider embeddingProvider;
+    private final ObjectMapper objectMapper;
+
+    @Value("${pixelart.semantic-cache.enabled:false}")
+    private boolean enabled;
+
+    @Value("${pixelart.semantic-cache.mode:return}")
+    private String mode;
+
+    @Value("${pixelart.semantic-cache.similarity-threshold:0.92}")
+    private double similarityThreshold;
+
+    @Value("${pixelart.semantic-cache.directory:./data/semantic-cache}")
+    private String directory;
+
+    @Value("${pixelart.semantic-cache.save-interval:32}")
+    private int saveInterval;
+
+    @Value("${pixelart.semantic-cache.hnsw.m:16}")
+    private int hnswM;
+
+    @Value("${pixelart.semantic-cache.hnsw.ef-construction:100}")
+    private int hnswEfConstruction;
+
+    @Value("${pixelart.semantic-cache.hnsw.ef-search:64}")
+    private int hnswEfSearch;
+
+    private final ReentrantReadWriteLock indexLock = new ReentrantReadWriteLock();
+    private final ReentrantLock fileLock = new ReentrantLock();
+    private volatile HnswIndex index;
+    private final List<String> hardKeys = new ArrayList<>();
+    private int unsavedEntries;
+    /** Hard keys already appended to the keys file, guarded by fileLock */
+    private int keysWritten;
+
+    public SemanticResultCache(EmbeddingProvider embeddingProvider, ObjectMapper objectMapper) {
+        this.embeddingProvider = embeddingProvider;
+        this.objectMapper = objectMapper;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Find an earlier result to serve instead of generating, only in "return" mode
+     */
+    public Optional<PixelArtResponse> reuse(PixelArtRequest request) {
+        if (!enabled || !"return".equalsIgnoreCase(mode)) {
+            return Optional.empty();
+        }
+        List<SemanticMatch> matches = findSimilar(request, 1);
+        if (matches.isEmpty()) {
+            return Optional.empty();
+        }
+        SemanticMatch match = matches.get(0);
+        log.info("Reusing result of semantically similar request (similarity {})", String.format("%.3f", match.getSimilarity()));
+        PixelArtResponse response = match.getResponse();
+        response.setMatchedSimilarity(match.getSimilarity());
+        return Optional.of(response);
+    }
+
+    /**
+     * Earlier results above the similarity threshold that share the request's hard key, best first
+     */
+    public List<SemanticMatch> findSimilar(PixelArtRequest request, int limit) {
+        if (!enabled) {
+            return List.of();
+        }
+        try {
+            float[] vector = embeddingProvider.embed(normalize(request));
+            String hardKey = hardKey(request);
+
+            ensureLoaded();
+            List<HnswIndex.Match> candidates = new ArrayList<>();
+            indexLock.readLock().lock();
+            try {
+                // Over-fetch because candidates with a different hard key are skipped
+                for (HnswIndex.Match candidate : index.search(vector, Math.max(limit * 4, 10))) {
+                    if (candidate.id() < hardKeys.size() && hardKey.equals(hardKeys.get(candidate.id()))) {
+                        candidates.add(candidate);
+                    }
+                }
+            } finally {
+                indexLock.readLock().unlock();
+            }
+
+            List<SemanticMatch> matches = new ArrayList<>();
+            for (HnswIndex.Match candidate : candidates) {
+                if (matches.size() >= limit || candidate.similarity() < similarityThreshold) {
+                    break;
+                }
+                StoredResult stored = readResult(candidate.id());
+                if (stored != null) {
+                    matches.add(SemanticMatch.builder()
+                            .similarity(candidate.similarity())
+                            .matchedRequest(stored.text())
+                            .response(stored.response())
+                            .build());
+                }
+            }
+            return matches;
+        } catch (Exception e) {
+            log.warn("Semantic cache lookup failed: {}", e.getMessage());
+            return List.of();
+        }
+    }
+
+    /**
+     * Remember a generated result for later paraphrased requests
+     */
+    public void store(PixelArtRequest request, PixelArtResponse response) {
+        if (!enabled || response == null) {
+            return;
+        }
+        try {
+            String text = normalize(request);
+            float[] vector = embeddingProvider.embed(text);
+            String hardKey = hardKey(request);
+            byte[] result = objectMapper.writeValueAsBytes(new StoredResult(text, response));
+            ensureLoaded();
+
+            int id;
+            boolean saveIndex;
+            indexLock.writeLock().lock();
+            try {
+                id = index.add(vector);
+                hardKeys.add(hardKey);
+                saveIndex = ++unsavedEntries >= saveInterval;
+                if (saveIndex) {
+                    unsavedEntries = 0;
+                }
+            } finally {
+                indexLock.writeLock().unlock();
+            }
+
+            // Until its file exists the entry is skipped by lookups, like an unreadable one
+            Path results = Paths.get(directory, RESULTS_DIR);
+            Files.createDirectories(results);
+            Files.write(results.resolve(id + ".json"), result);
+            persist(saveIndex);
+        } catch (Exception e) {
+            log.warn("Could not store result in semantic cache: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void flush() {
+        if (index == null) {
+            return;
+        }
+        boolean unsaved;
+        indexLock.writeLock().lock();
+        try {
+            unsaved = unsavedEntries > 0;
+            unsavedEntries = 0;
+        } finally {
+            indexLock.writeLock().unlock();
+        }
+        persist(unsaved);
+    }
+
+    /**
+     * Lowercase, strip punctuation and collapse whitespace across the free-text fields
+     */
+    static String normalize(PixelArtRequest request) {
+        return Stream.of(request.getAssetType(), request.getDescription(), request.getStyle(),
+                        request.getColorPalette(), request.getAdditionalContext())
+                .filter(field -> field != null && !field.isBlank())
+                .map(field -> field.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9#]+", " ").trim())
+                .collect(Collectors.joining(" | "));
+    }
+
+    private static String hardKey(PixelArtRequest request) {
+        return String.join("|",
+                request.getSize() != null ? request.getSize().trim().toLowerCase(Locale.ROOT) : "32x32",
+                request.getLora() != null ? request.getLora() : "",
+                request.getLoraStrength() != null ? request.getLoraStrength().toString() : "",
+                request.getCheckpoint() != null ? request.getCheckpoint() : "",
+                request.getPaletteSize() != null ? request.getPaletteSize().toString() : "");
+    }
+
+    private void ensureLoaded() {
+        if (index != null) {
+            return;
+        }
+        indexLock.writeLock().lock();
+        try {
+            if (index == null) {
+                load();
+            }
+        } finally {
+            indexLock.writeLock().unlock();
+        }
+    }
+
+    private void load() {
+        Path indexFile = Paths.get(directory, INDEX_FILE);
+        Path keysFile = Paths.get(directory, KEYS_FILE);
+        if (Files.exists(indexFile) && Files.exists(keysFile)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+                HnswIndex loaded = HnswIndex.readFrom(in);
+                List<String> keys = Files.readAllLines(keysFile, StandardCharsets.UTF_8);
+                if (loaded.dimension() == embeddingProvider.dimensions() && keys.size() >= loaded.size()) {
+                    loaded.setEfSearch(hnswEfSearch);
+                    // Entries appended after the last index save are dropped
+                    hardKeys.addAll(keys.subList(0, loaded.size()));
+                    if (keys.size() > loaded.size()) {
+                        rewriteKeys();
+                    }
+                    keysWritten = hardKeys.size();
+                    index = loaded;
+                    log.info("Loaded semantic cache index with {} entries", loaded.size());
+                    return;
+                }
+                log.warn("Semantic cache index does not match the embedding model, starting empty");
+            } catch (IOException e) {
+                log.warn("Could not load semantic cache index, starting empty: {}", e.getMessage());
+            }
+        }
+        hardKeys.clear();
+        rewriteKeys();
+        keysWritten = 0;
+        index = new HnswIndex(embeddingProvider.dimensions(), hnswM, hnswEfConstruction, hnswEfSearch);
+    }
+
+    private void rewriteKeys() {
+        try {
+            Files.createDirectories(Paths.get(directory));
+            Files.write(Paths.get(directory, KEYS_FILE), hardKeys, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            log.warn("Could not write semantic cache keys: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Append the key lines not yet on disk and, if asked, save an index snapshot. Both are copied
+     * under the read lock and written outside it; the file lock keeps key lines in id order and
+     * the keys file at least as long as any saved index.
+     */
+    private void persist(boolean saveIndex) {
+        fileLock.lock();
+        try {
+            List<String> newKeys;
+            byte[] snapshot = null;
+            indexLock.readLock().lock();
+            try {
+                newKeys = new ArrayList<>(hardKeys.subList(keysWritten, hardKeys.size()));
+                if (saveIndex) {
+                    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                    try (DataOutputStream out = new DataOutputStream(bytes)) {
+                        index.writeTo(out);
+                    }
+                    snapshot = bytes.toByteArray();
+                }
+            } finally {
+                indexLock.readLock().unlock();
+            }
+
+            Path dir = Paths.get(directory);
+            Files.createDirectories(dir);
+            if (!newKeys.isEmpty()) {
+                Files.write(dir.resolve(KEYS_FILE), newKeys, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                keysWritten += newKeys.size();
+            }
+            if (snapshot != null) {
+                Path temp = Files.createTempFile(dir, "index", ".tmp");
+                try (BufferedOutputStream out = new BufferedOutputStream(Files.newOutputStream(temp))) {
+                    out.write(snapshot);
+                }
+                Files.move(temp, dir.resolve(INDEX_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+        } catch (IOException e) {
+            log.warn("Could not save semantic cache index: {}", e.getMessage());
+        } finally {
+            fileLock.unlock();
+        }
+    }
+
+    private StoredResult readResult(int id) {
+        try {
+            return objectMapper.readValue(Paths.get(directory, RESULTS_DIR, id + ".json").toFile(), StoredResult.class);
+        } catch (IOException e) {
+            log.debug("Semantic cache result {} unreadable: {}", id, e.getMessage());
+            return null;
+        }
+    }
+
+    record StoredResult(String text, PixelArtResponse response) {
+    }
+}
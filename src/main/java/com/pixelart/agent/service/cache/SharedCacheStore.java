@@ -0,0 +1,52 @@
+package com.pixelart.agent.service.cache;
+
+import java.time.Duration;
+
+/**
+ * Second-level cache shared by every instance of the service.
+ *
+ * Values are opaque bytes under string keys. Besides get and put, a store hands out leases so
+ * that when several instances miss on the same key at once, only one of them generates the
+ * value while the others wait for it to appear.
+ */
+public interface SharedCacheStore {
+
+    /**
+     * @return The stored value with the time it has left, or null if it is missing or has expired
+     */
+    Entry get(String key);
+
+    /**
+     * Whether an unexpired value is stored, for stores that can tell without reading it
+     */
+    default boolean contains(String key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Store a value, replacing any previous one, until the ttl runs out
+     */
+    void put(String key, byte[] value, Duration ttl);
+
+    void invalidate(String key);
+
+    /**
+     * Try to become the instance that generates the value for a key
+     * @param duration How long the lease may be held before others may take over, for stores
+     *                 that cannot tell when a holder has died
+     * @return The lease, to be closed once the value is stored, or null if another holder has it
+     */
+    Lease tryLease(String key, Duration duration);
+
+    /**
+     * @param remaining Time until the entry expires, which copies of it should not outlive
+     */
+    record Entry(byte[] value, Duration remaining) {
+    }
+
+    interface Lease extends AutoCloseable {
+
+        @Override
+        void close();
+    }
+}
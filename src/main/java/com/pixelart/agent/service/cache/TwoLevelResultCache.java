@@ -0,0 +1,329 @@
+package com.pixelart.agent.service.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pixelart.agent.model.GenerationMode;
+import com.pixelart.agent.model.PixelArtRequest;
+import com.pixelart.agent.model.PixelArtResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Exact-match cache of generation results in two levels: a per-instance LRU in memory, and an
+ * optional SharedCacheStore that every instance behind the load balancer reads and writes.
+ *
+ * Concurrent misses on one key are collapsed at both levels. Within an instance, later callers
+ * wait for the first one's generation. Across instances, the first to take the store's lease
+ * generates while the others poll the store until the value appears or the lease wait runs out,
+ * after which they generate themselves. Entries expire after the ttl at both levels; a copy taken
+ * from the shared store into memory keeps the shared entry's expiry rather than starting afresh.
+ */
+@Slf4j
+@Component
+public class TwoLevelResultCache {
+
+    private final SharedCacheStore sharedStore;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final Duration ttl;
+    private final long l1MaxBytes;
+    private final Duration leaseWait;
+    private final long pollMs;
+
+    /** Serialized responses, so hits can't be changed by whoever received an earlier copy */
+    private final LinkedHashMap<String, L1Entry> l1 = new LinkedHashMap<>(256, 0.75f, true);
+    private long l1Bytes;
+    private final Map<String, CompletableFuture<byte[]>> inFlight = new ConcurrentHashMap<>();
+
+    private final Counter l1Hits;
+    private final Counter l2Hits;
+    private final Counter misses;
+    private final Counter coalesced;
+
+    public TwoLevelResultCache(
+            Optional<SharedCacheStore> sharedStore,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${pixelart.result-cache.enabled:false}") boolean enabled,
+            @Value("${pixelart.result-cache.ttl-seconds:3600}") long ttlSeconds,
+            @Value("${pixelart.result-cache.l1-max-size-mb:64}") long l1MaxSizeMb,
+            @Value("${pixelart.result-cache.shared.lease-wait-ms:120000}") long leaseWaitMs,
+            @Value("${pixelart.result-cache.shared.poll-ms:250}") long pollMs) {
+        this.sharedStore = sharedStore.orElse(null);
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.ttl = Duration.ofSeconds(ttlSeconds);
+        this.l1MaxBytes = l1MaxSizeMb * 1024 * 1024;
+        this.leaseWait = Duration.ofMillis(leaseWaitMs);
+        this.pollMs = Math.max(10, pollMs);
+        this.l1Hits = lookups(meterRegistry, "l1", "hit");
+        this.l2Hits = lookups(meterRegistry, "l2", "hit");
+        this.misses = lookups(meterRegistry, "none", "miss");
+        this.coalesced = Counter.builder("pixelart.result.cache.coalesced")
+                .description("Misses that waited for another caller's generation instead of generating")
+                .register(meterRegistry);
+        if (enabled) {
+            log.info("Result cache enabled (ttl {}s, shared store: {})", ttlSeconds,
+                     this.sharedStore != null ? this.sharedStore.getClass().getSimpleName() : "none");
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Return the cached result for the request, or generate it once across callers and instances
+     * @param cacheable Whether a generated result is good enough to keep, e.g. not a failed image
+     */
+    public PixelArtResponse getOrGenerate(PixelArtRequest request, GenerationMode mode,
+                                          Supplier<PixelArtResponse> generator,
+                                          Predicate<PixelArtResponse> cacheable) {
+        String key = enabled ? key(request, mode) : null;
+        if (key == null) {
+            return generator.get();
+        }
+
+        byte[] cached = l1Get(key);
+        if (cached != null) {
+            l1Hits.increment();
+            return read(cached);
+        }
+
+        CompletableFuture<byte[]> mine = new CompletableFuture<>();
+        CompletableFuture<byte[]> leader = inFlight.putIfAbsent(key, mine);
+        if (leader != null) {
+            coalesced.increment();
+            byte[] shared = joinQuietly(leader);
+            if (shared != null) {
+                return read(shared);
+            }
+            // The leader's result was not cacheable; this caller gets its own
+            return generator.get();
+        }
+
+        try {
+            PixelArtResponse[] generated = new PixelArtResponse[1];
+            SharedCacheStore.Entry result = loadThroughShared(key, () -> {
+                generated[0] = generator.get();
+                return cacheable.test(generated[0]) ? write(generated[0]) : null;
+            });
+            mine.complete(result != null ? result.value() : null);
+            if (result != null) {
+                l1Put(key, result);
+            }
+            return generated[0] != null ? generated[0] : read(result.value());
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    /**
+     * Look a result up at both levels without generating it, for callers that generate in stages
+     * and store the result with put once done
+     */
+    public Optional<PixelArtResponse> get(PixelArtRequest request, GenerationMode mode) {
+        String key = enabled ? key(request, mode) : null;
+        if (key == null) {
+            return Optional.empty();
+        }
+        byte[] cached = l1Get(key);
+        if (cached != null) {
+            l1Hits.increment();
+            return Optional.of(read(cached));
+        }
+        SharedCacheStore.Entry shared = sharedStore != null ? sharedStore.get(key) : null;
+        if (shared != null) {
+            l2Hits.increment();
+            l1Put(key, shared);
+            return Optional.of(read(shared.value()));
+        }
+        misses.increment();
+        return Optional.empty();
+    }
+
+    /**
+     * Store a result generated outside getOrGenerate at both levels
+     */
+    public void put(PixelArtRequest request, GenerationMode mode, PixelArtResponse response) {
+        String key = enabled ? key(request, mode) : null;
+        byte[] value = key != null ? write(response) : null;
+        if (value == null) {
+            return;
+        }
+        l1Put(key, new SharedCacheStore.Entry(value, ttl));
+        if (sharedStore != null) {
+            sharedStore.put(key, value, ttl);
+        }
+    }
+
+    /**
+     * Drop a key at both levels
+     */
+    public void invalidate(PixelArtRequest request, GenerationMode mode) {
+        String key = key(request, mode);
+        if (key == null) {
+            return;
+        }
+        synchronized (l1) {
+            L1Entry removed = l1.remove(key);
+            if (removed != null) {
+                l1Bytes -= removed.value.length;
+            }
+        }
+        if (sharedStore != null) {
+            sharedStore.invalidate(key);
+        }
+    }
+
+    /**
+     * The cache key for a request, or null if it cannot be serialized
+     */
+    private String key(PixelArtRequest request, GenerationMode mode) {
+        try {
+            return mode.getValue() + ":" + objectMapper.writeValueAsString(request);
+        } catch (IOException e) {
+            log.debug("Request not cacheable: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Serve from the shared store, or generate under its lease and publish the result there.
+     * Returns the serialized result with its time left, or null if the generated one was not cacheable.
+     */
+    private SharedCacheStore.Entry loadThroughShared(String key, Supplier<byte[]> generate) {
+        if (sharedStore == null) {
+            misses.increment();
+            return generated(generate.get());
+        }
+
+        long deadline = System.nanoTime() + leaseWait.toNanos();
+        while (true) {
+            SharedCacheStore.Entry shared = sharedStore.get(key);
+            if (shared != null) {
+                l2Hits.increment();
+                return shared;
+            }
+            SharedCacheStore.Lease lease = sharedStore.tryLease(key, leaseWait);
+            if (lease != null) {
+                try (lease) {
+                    // Another instance may have published between our miss and taking the lease
+                    shared = sharedStore.get(key);
+                    if (shared != null) {
+                        l2Hits.increment();
+                        return shared;
+                    }
+                    misses.increment();
+                    byte[] result = generate.get();
+                    if (result != null) {
+                        sharedStore.put(key, result, ttl);
+                    }
+                    return generated(result);
+                }
+            }
+            if (System.nanoTime() >= deadline) {
+                log.warn("Gave up waiting for another instance to generate a cached result");
+                misses.increment();
+                return generated(generate.get());
+            }
+            sleep(pollMs);
+        }
+    }
+
+    private byte[] l1Get(String key) {
+        synchronized (l1) {
+            L1Entry entry = l1.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expiresAtNanos - System.nanoTime() <= 0) {
+                l1.remove(key);
+                l1Bytes -= entry.value.length;
+                return null;
+            }
+            return entry.value;
+        }
+    }
+
+    private SharedCacheStore.Entry generated(byte[] value) {
+        return value != null ? new SharedCacheStore.Entry(value, ttl) : null;
+    }
+
+    private void l1Put(String key, SharedCacheStore.Entry entry) {
+        byte[] value = entry.value();
+        if (value.length > l1MaxBytes) {
+            return;
+        }
+        synchronized (l1) {
+            L1Entry previous = l1.put(key, new L1Entry(value, System.nanoTime() + entry.remaining().toNanos()));
+            l1Bytes += value.length - (previous != null ? previous.value.length : 0);
+            Iterator<L1Entry> eldest = l1.values().iterator();
+            while (l1Bytes > l1MaxBytes && eldest.hasNext()) {
+                l1Bytes -= eldest.next().value.length;
+                eldest.remove();
+            }
+        }
+    }
+
+    private byte[] write(PixelArtResponse response) {
+        try {
+            return objectMapper.writeValueAsBytes(response);
+        } catch (IOException e) {
+            log.debug("Result not cacheable: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private PixelArtResponse read(byte[] bytes) {
+        try {
+            return objectMapper.readValue(bytes, PixelArtResponse.class);
+        } catch (IOException e) {
+            throw new IllegalStateException("Corrupt cached result", e);
+        }
+    }
+
+    private static byte[] joinQuietly(CompletableFuture<byte[]> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            return null;
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for a cached result", e);
+        }
+    }
+
+    private static Counter lookups(MeterRegistry meterRegistry, String level, String result) {
+        return Counter.builder("pixelart.result.cache")
+                .description("Result cache lookups by the level that answered")
+                .tags("level", level, "result", result)
+                .register(meterRegistry);
+    }
+
+    private record L1Entry(byte[] value, long expiresAtNanos) {
+    }
+}
@@ -0,0 +1,342 @@
+package com.pixelart.agent.service.concurrency;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Caps concurrent calls to one backend at a limit that is either fixed or follows a
+ * GradientLimit. Calls over the limit wait in a bounded queue; once the queue is full, or a
+ * call has waited longer than maxWait, it is shed with a LimitExceededException.
+ *
+ * Waiting calls are admitted by weighted fair queuing rather than first come, first served.
+ * Each call belongs to a flow with a weight, and is stamped with a virtual finish time that
+ * advances by 1/weight per queued call of its flow, so when permits are scarce each flow gets
+ * a share proportional to its weight however many calls it has queued. With a single flow
+ * this is plain FIFO.
+ *
+ * Blocking callers park on a condition; non-blocking callers get a future that completes with
+ * a {@link Permit} once dispatch grants one, so reactive pipelines share the same limit and
+ * queue without holding a thread while they wait.
+ */
+public final class AdaptiveLimiter {
+
+    public static final String DEFAULT_FLOW = "default";
+
+    private static final Comparator<Waiter> BY_FINISH = Comparator
+            .comparingDouble((Waiter waiter) -> waiter.finish)
+            .thenComparingLong(waiter -> waiter.sequence);
+
+    private final String name;
+    private final GradientLimit gradient;
+    private final int maxQueue;
+    private final long maxWaitNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final PriorityQueue<Waiter> waiting = new PriorityQueue<>(BY_FINISH);
+    private final Map<String, Double> lastFinish = new HashMap<>();
+    private double virtualTime;
+    private long sequence;
+    private volatile int limit;
+    private volatile int inFlight;
+    private volatile int queued;
+
+    private final AtomicLong rejectedQueueFull = new AtomicLong();
+    private final AtomicLong rejectedTimeout = new AtomicLong();
+
+    /**
+     * @param gradient The adaptive limit, or null for a fixed limit of fixedLimit
+     * @param maxWaitMillis How long a call may wait for a permit, 0 for no bound
+     */
+    public AdaptiveLimiter(String name, GradientLimit gradient, int fixedLimit, int maxQueue, long maxWaitMillis) {
+        this.name = name;
+        this.gradient = gradient;
+        this.limit = gradient != null ? gradient.getLimit() : Math.max(1, fixedLimit);
+        this.maxQueue = Math.max(0, maxQueue);
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, maxWaitMillis));
+    }
+
+    /**
+     * Run the call once a permit is free, feeding its latency back into the limit
+     * @throws LimitExceededException if the call was shed
+     */
+    public <T> T call(Supplier<T> call) {
+        return call(DEFAULT_FLOW, 1.0, call);
+    }
+
+    /**
+     * Run the call as part of a flow, which shares permits with other flows in proportion to its weight
+     * @throws LimitExceededException if the call was shed
+     */
+    public <T> T call(String flow, double weight, Supplier<T> call) {
+        int startInFlight = acquire(flow, weight);
+        long start = System.nanoTime();
+        boolean dropped = true;
+        try {
+            T result = call.get();
+            dropped = false;
+            return result;
+        } finally {
+            release(System.nanoTime() - start, startInFlight, dropped);
+        }
+    }
+
+    /**
+     * Ask for a permit without blocking. The future completes with the permit once granted, or
+     * exceptionally with a LimitExceededException if the call was shed. Cancelling the future
+     * gives up the place in the queue; the permit must otherwise be released exactly once.
+     */
+    public CompletableFuture<Permit> acquireAsync(String flow, double weight) {
+        CompletableFuture<Permit> future = new CompletableFuture<>();
+        Waiter waiter;
+        lock.lock();
+        try {
+            if (inFlight < limit && waiting.isEmpty()) {
+                future.complete(new Permit(++inFlight));
+                return future;
+            }
+            if (waiting.size() >= maxQueue) {
+                rejectedQueueFull.incrementAndGet();
+                future.completeExceptionally(new LimitExceededException(
+                        name + " is at its limit of " + limit + " with " + queued + " calls queued"));
+                return future;
+            }
+            waiter = enqueue(flow, weight, null, future);
+        } finally {
+            lock.unlock();
+        }
+
+        future.whenComplete((permit, error) -> {
+            if (error != null) {
+                abandon(waiter);
+            }
+        });
+        if (maxWaitNanos > 0) {
+            CompletableFuture.delayedExecutor(maxWaitNanos, TimeUnit.NANOSECONDS).execute(() -> {
+                if (future.completeExceptionally(new LimitExceededException(name + " call waited over "
+                        + TimeUnit.NANOSECONDS.toMillis(maxWaitNanos) + "ms for a permit"))) {
+                    rejectedTimeout.incrementAndGet();
+                }
+            });
+        }
+        return future;
+    }
+
+    private int acquire(String flow, double weight) {
+        List<Waiter> granted = List.of();
+        lock.lock();
+        try {
+            if (inFlight < limit && waiting.isEmpty()) {
+                return ++inFlight;
+            }
+            if (waiting.size() >= maxQueue) {
+                rejectedQueueFull.incrementAndGet();
+                throw new LimitExceededException(name + " is at its limit of " + limit + " with " + queued + " calls queued");
+            }
+
+            Waiter waiter = enqueue(flow, weight, lock.newCondition(), null);
+            try {
+                long remaining = maxWaitNanos;
+                while (!waiter.granted) {
+                    if (maxWaitNanos == 0) {
+                        waiter.turn.await();
+                    } else if (remaining <= 0) {
+                        rejectedTimeout.incrementAndGet();
+                        throw new LimitExceededException(name + " call waited over "
+                                + TimeUnit.NANOSECONDS.toMillis(maxWaitNanos) + "ms for a permit");
+                    } else {
+                        remaining = waiter.turn.awaitNanos(remaining);
+                    }
+                }
+                return waiter.startInFlight;
+            } catch (InterruptedException e) {
+                if (waiter.granted) {
+                    // Handed a permit just as the interrupt arrived; pass it on
+                    inFlight--;
+                    granted = dispatch();
+                }
+                Thread.currentThread().interrupt();
+                throw new LimitExceededException("Interrupted waiting for a " + name + " permit");
+            } finally {
+                if (!waiter.granted) {
+                    waiting.remove(waiter);
+                    queued = waiting.size();
+                }
+            }
+        } finally {
+            lock.unlock();
+            complete(granted);
+        }
+    }
+
+    private Waiter enqueue(String flow, double weight, Condition turn, CompletableFuture<Permit> future) {
+        double start = Math.max(virtualTime, lastFinish.getOrDefault(flow, 0.0));
+        Waiter waiter = new Waiter(start + 1.0 / weight, sequence++, turn, future);
+        lastFinish.put(flow, waiter.finish);
+        waiting.add(waiter);
+        queued = waiting.size();
+        return waiter;
+    }
+
+    private void release(long rttNanos, int startInFlight, boolean dropped) {
+        List<Waiter> granted;
+        lock.lock();
+        try {
+            inFlight--;
+            if (gradient != null) {
+                limit = gradient.update(rttNanos, startInFlight, dropped);
+            }
+            granted = dispatch();
+        } finally {
+            lock.unlock();
+        }
+        complete(granted);
+    }
+
+    /**
+     * Give up a non-blocking waiter whose future was cancelled or timed out, passing on the
+     * permit if dispatch had already granted it
+     */
+    private void abandon(Waiter waiter) {
+        List<Waiter> granted = List.of();
+        lock.lock();
+        try {
+            if (waiter.granted) {
+                inFlight--;
+                granted = dispatch();
+            } else if (waiting.remove(waiter)) {
+                queued = waiting.size();
+            }
+        } finally {
+            lock.unlock();
+        }
+        complete(granted);
+    }
+
+    /**
+     * Hand free permits to the waiters with the earliest virtual finish times. Blocking waiters
+     * are signalled here; non-blocking ones are returned so their futures complete, and run
+     * whatever is chained on them, only after the lock is released.
+     */
+    private List<Waiter> dispatch() {
+        List<Waiter> granted = List.of();
+        while (inFlight < limit && !waiting.isEmpty()) {
+            Waiter next = waiting.poll();
+            virtualTime = next.finish;
+            next.granted = true;
+            next.startInFlight = ++inFlight;
+            if (next.future == null) {
+                next.turn.signal();
+            } else {
+                if (granted.isEmpty()) {
+                    granted = new ArrayList<>();
+                }
+                granted.add(next);
+            }
+        }
+        queued = waiting.size();
+        if (waiting.isEmpty()) {
+            // Every flow is idle again, so none has credit or debt to carry forward
+            lastFinish.clear();
+        }
+        return granted;
+    }
+
+    private void complete(List<Waiter> granted) {
+        for (Waiter waiter : granted) {
+            // A future cancelled or timed out in the meantime hands its permit on through abandon()
+            waiter.future.complete(new Permit(waiter.startInFlight));
+        }
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getInFlight() {
+        return inFlight;
+    }
+
+    public int getQueued() {
+        return queued;
+    }
+
+    public long getRejectedQueueFull() {
+        return rejectedQueueFull.get();
+    }
+
+    public long getRejectedTimeout() {
+        return rejectedTimeout.get();
+    }
+
+    /**
+     * A permit granted to a non-blocking caller
+     */
+    public final class Permit {
+        private final int startInFlight;
+        private final long start = System.nanoTime();
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(int startInFlight) {
+            this.startInFlight = startInFlight;
+        }
+
+        /**
+         * Return the permit, feeding the call's latency back into the limit; later calls do nothing
+         * @param dropped Whether the call failed
+         */
+        public void release(boolean dropped) {
+            if (released.compareAndSet(false, true)) {
+                AdaptiveLimiter.this.release(System.nanoTime() - start, startInFlight, dropped);
+            }
+        }
+
+        /**
+         * Return the permit without a latency sample, for a call the caller gave up on
+         */
+        public void abandon() {
+            if (released.compareAndSet(false, true)) {
+                List<Waiter> granted;
+                lock.lock();
+                try {
+                    inFlight--;
+                    granted = dispatch();
+                } finally {
+                    lock.unlock();
+                }
+                complete(granted);
+            }
+        }
+    }
+
+    /**
+     * A queued call, woken or completed once dispatch has taken a permit on its behalf
+     */
+    private static final class Waiter {
+        final double finish;
+        final long sequence;
+        /** Signalled for a blocking caller, null for a non-blocking one */
+        final Condition turn;
+        /** Completed for a non-blocking caller, null for a blocking one */
+        final CompletableFuture<Permit> future;
+        boolean granted;
+        int startInFlight;
+
+        Waiter(double finish, long sequence, Condition turn, CompletableFuture<Permit> future) {
+            this.finish = finish;
+            this.sequence = sequence;
+            this.turn = turn;
+            this.future = future;
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package com.pixelart.agent.service.concurrency;
+
+import com.pixelart.agent.service.quota.Tenant;
+import com.pixelart.agent.service.quota.TenantContext;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Caps concurrent blocking calls per backend.
+ *
+ * With platform threads the request pool size bounds how many calls can be in flight; with
+ * virtual threads there is no such bound, so these limits are what keeps thousands of
+ * parked requests from all hitting Ollama or Stable Diffusion at once. When adaptive, each
+ * limit follows the backend's observed latency between min-limit and max-concurrent-*,
+ * so capacity tracks the hardware instead of a hand-tuned number. Queued calls are admitted
+ * in proportion to their tenant's weight, so one busy client cannot starve the others.
+ * Reactive calls take a permit from the same limiters without blocking a thread while queued.
+ */
+@Slf4j
+@Component
+public class BlockingCallLimiter {
+
+    public static final String LLM = "llm";
+    public static final String IMAGE = "image";
+    public static final String EMBEDDING = "embedding";
+
+    private static final ThreadLocal<Reservation> BOUND = new ThreadLocal<>();
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, AdaptiveLimiter> limiters;
+    private final Map<String, AtomicInteger> reserved = Map.of(
+            LLM, new AtomicInteger(), IMAGE, new AtomicInteger(), EMBEDDING, new AtomicInteger());
+    private final Map<String, Timer> waitTimers = new ConcurrentHashMap<>();
+
+    public BlockingCallLimiter(
+            MeterRegistry meterRegistry,
+            @Value("${pixelart.threads.max-concurrent-llm:32}") int maxLlm,
+            @Value("${pixelart.threads.max-concurrent-image:8}") int maxImage,
+            @Value("${pixelart.threads.max-concurrent-embedding:32}") int maxEmbedding,
+            @Value("${pixelart.threads.adaptive.enabled:true}") boolean adaptive,
+            @Value("${pixelart.threads.adaptive.initial-limit:4}") int initialLimit,
+            @Value("${pixelart.threads.adaptive.min-limit:1}") int minLimit,
+            @Value("${pixelart.threads.adaptive.max-queue:1000}") int maxQueue,
+            @Value("${pixelart.threads.adaptive.max-wait-ms:0}") long maxWaitMs) {
+        this.meterRegistry = meterRegistry;
+        this.limiters = Map.of(
+                LLM, limiter(LLM, adaptive, initialLimit, minLimit, maxLlm, maxQueue, maxWaitMs),
+                IMAGE, limiter(IMAGE, adaptive, initialLimit, minLimit, maxImage, maxQueue, maxWaitMs),
+                EMBEDDING, limiter(EMBEDDING, adaptive, initialLimit, minLimit, maxEmbedding, maxQueue, maxWaitMs));
+        limiters.forEach((backend, limiter) -> registerMeters(meterRegistry, backend, limiter));
+        log.info("Backend concurrency limits are {} (llm<={}, image<={}, embedding<={})",
+                adaptive ? "adaptive" : "fixed", maxLlm, maxImage, maxEmbedding);
+    }
+
+    /**
+     * Run a blocking call once the backend's limit admits it, queued under the current tenant
+     * @throws LimitExceededException if the backend is overloaded and the call was shed
+     */
+    public <T> T call(String backend, Supplier<T> call) {
+        Tenant tenant = TenantContext.current();
+        Timer waitTimer = waitTimers.computeIfAbsent(backend + "/" + tenant.name(),
+                ignored -> waitTimer(meterRegistry, backend, tenant.name()));
+        Reservation reservation = BOUND.get();
+        Timer.Sample waiting = Timer.start();
+        return limiters.get(backend).call(tenant.name(), tenant.weight(), () -> {
+            waiting.stop(waitTimer);
+            if (reservation != null) {
+                reservation.handOver(backend);
+            }
+            return call.get();
+        });
+    }
+
+    /**
+     * Subscribe to a reactive call once the backend's limit admits it, holding the permit until
+     * the call terminates or is cancelled. The tenant is the one current when this is called.
+     * @return The call's result, or a LimitExceededException error if it was shed
+     */
+    public <T> Mono<T> callReactive(String backend, Supplier<Mono<T>> call) {
+        return Mono.usingWhen(permit(backend), permit -> call.get(),
+                permit -> Mono.fromRunnable(() -> permit.release(false)),
+                (permit, error) -> Mono.fromRunnable(() -> permit.release(true)),
+                permit -> Mono.fromRunnable(permit::abandon));
+    }
+
+    /**
+     * Like callReactive, for a streamed call that holds its permit until the last element
+     */
+    public <T> Flux<T> streamReactive(String backend, Supplier<Flux<T>> call) {
+        return Flux.usingWhen(permit(backend), permit -> call.get(),
+                permit -> Mono.fromRunnable(() -> permit.release(false)),
+                (permit, error) -> Mono.fromRunnable(() -> permit.release(true)),
+                permit -> Mono.fromRunnable(permit::abandon));
+    }
+
+    /**
+     * A permit granted without blocking; cancelling while queued gives up the place in the queue
+     */
+    private Mono<AdaptiveLimiter.Permit> permit(String backend) {
+        Tenant tenant = TenantContext.current();
+        Timer waitTimer = waitTimers.computeIfAbsent(backend + "/" + tenant.name(),
+                ignored -> waitTimer(meterRegistry, backend, tenant.name()));
+        AdaptiveLimiter limiter = limiters.get(backend);
+        Reservation reservation = BOUND.get();
+        return Mono.create(sink -> {
+            Timer.Sample waiting = Timer.start();
+            CompletableFuture<AdaptiveLimiter.Permit> pending = limiter.acquireAsync(tenant.name(), tenant.weight());
+            sink.onCancel(() -> {
+                // Already granted but not yet delivered: hand the permit straight back
+                if (!pending.cancel(false)) {
+                    pending.thenAccept(AdaptiveLimiter.Permit::abandon);
+                }
+            });
+            pending.whenComplete((permit, error) -> {
+                if (error != null) {
+                    sink.error(error);
+                } else {
+                    waiting.stop(waitTimer);
+                    if (reservation != null) {
+                        reservation.handOver(backend);
+                    }
+                    sink.success(permit);
+                }
+            });
+        });
+    }
+
+    /**
+     * Permits the backend could grant right now without queueing; negative when calls are waiting
+     */
+    public int headroom(String backend) {
+        AdaptiveLimiter limiter = limiters.get(backend);
+        return limiter.getLimit() - limiter.getInFlight() - limiter.getQueued() - reserved.get(backend).get();
+    }
+
+    /**
+     * Hold a permit's worth of headroom on each backend for work that has been accepted but has
+     * not called them yet, such as a job just claimed from the queue
+     */
+    public Reservation reserve(Set<String> backends) {
+        return new Reservation(backends);
+    }
+
+    /**
+     * Headroom held for accepted work. Once bound to the thread doing the work, each backend's
+     * share is handed over when that thread's first call to it is admitted; whatever is left,
+     * e.g. for calls made on other threads, is given back on close.
+     */
+    public final class Reservation implements AutoCloseable {
+
+        private final Set<String> backends = ConcurrentHashMap.newKeySet();
+
+        private Reservation(Set<String> backends) {
+            for (String backend : backends) {
+                reserved.get(backend).incrementAndGet();
+                this.backends.add(backend);
+            }
+        }
+
+        /**
+         * Let calls on the current thread take over this reservation
+         */
+        public void bind() {
+            BOUND.set(this);
+        }
+
+        private void handOver(String backend) {
+            if (backends.remove(backend)) {
+                reserved.get(backend).decrementAndGet();
+            }
+        }
+
+        @Override
+        public void close() {
+            if (BOUND.get() == this) {
+                BOUND.remove();
+            }
+            List.copyOf(backends).forEach(this::handOver);
+        }
+    }
+
+    private static AdaptiveLimiter limiter(String backend, boolean adaptive, int initialLimit, int minLimit,
+                                           int maxLimit, int maxQueue, long maxWaitMs) {
+        GradientLimit gradient = adaptive ? new GradientLimit(Math.min(initialLimit, maxLimit), minLimit, maxLimit) : null;
+        return new AdaptiveLimiter(backend, gradient, maxLimit, maxQueue, maxWaitMs);
+    }
+
+    private static Timer waitTimer(MeterRegistry meterRegistry, String backend, String tenant) {
+        return Timer.builder("pixelart.blocking.calls.wait")
+                .description("Time spent waiting for a concurrency permit")
+                .tags("backend", backend, "tenant", tenant)
+                .register(meterRegistry);
+    }
+
+    private static void registerMeters(MeterRegistry meterRegistry, String backend, AdaptiveLimiter limiter) {
+        Gauge.builder("pixelart.blocking.calls.limit", limiter, AdaptiveLimiter::getLimit)
+                .description("Current concurrency limit")
+                .tag("backend", backend)
+                .register(meterRegistry);
+        Gauge.builder("pixelart.blocking.calls.active", limiter, AdaptiveLimiter::getInFlight)
+                .description("Calls in flight")
+                .tag("backend", backend)
+                .register(meterRegistry);
+        Gauge.builder("pixelart.blocking.calls.queued", limiter, AdaptiveLimiter::getQueued)
+                .description("Calls waiting for a permit")
+                .tag("backend", backend)
+                .register(meterRegistry);
+        FunctionCounter.builder("pixelart.blocking.calls.rejected", limiter, AdaptiveLimiter::getRejectedQueueFull)
+                .description("Calls shed instead of sent to the backend")
+                .tags("backend", backend, "reason", "queue-full")
+                .register(meterRegistry);
+        FunctionCounter.builder("pixelart.blocking.calls.rejected", limiter, AdaptiveLimiter::getRejectedTimeout)
+                .description("Calls shed instead of sent to the backend")
+                .tags("backend", backend, "reason", "timeout")
+                .register(meterRegistry);
+    }
+}
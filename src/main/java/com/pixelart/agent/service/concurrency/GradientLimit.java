@@ -0,0 +1,81 @@
+package com.pixelart.agent.service.concurrency;
+
+/**
+ * Gradient concurrency limit, after Netflix concurrency-limits' Gradient2.
+ *
+ * Compares a short-window average of call latency with a baseline that stands in for the
+ * backend's unloaded latency: the lowest latency seen. While the two agree within a tolerance
+ * the limit keeps growing; once calls start queueing inside the backend the short average
+ * rises and the limit shrinks by their ratio (at most halving per step). Failed calls cut the
+ * limit multiplicatively, AIMD style.
+ *
+ * A baseline that only ever falls would pin the limit at its minimum after the backend gets
+ * genuinely slower (a bigger model, a busier GPU). At the minimum there is no self-inflicted
+ * queueing left to measure, so there the baseline follows the observed latency instead and the
+ * limit can grow again from it. Not thread-safe; AdaptiveLimiter serializes updates.
+ */
+public final class GradientLimit {
+
+    private static final int SHORT_WINDOW = 10;
+    private static final double TOLERANCE = 1.5;
+    private static final double SMOOTHING = 0.2;
+    private static final double MIN_GRADIENT = 0.5;
+    private static final double DROP_FACTOR = 0.9;
+
+    private final int minLimit;
+    private final int maxLimit;
+
+    private double limit;
+    private double shortRtt;
+    private double baselineRtt;
+
+    public GradientLimit(int initialLimit, int minLimit, int maxLimit) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.limit = clamp(initialLimit);
+    }
+
+    /**
+     * Feed one completed call and return the new limit
+     * @param rttNanos How long the call took
+     * @param inFlight Calls in flight when this one started, including itself
+     * @param dropped Whether the call failed, which is treated as a sign of overload
+     */
+    public int update(long rttNanos, int inFlight, boolean dropped) {
+        if (dropped) {
+            limit = clamp(limit * DROP_FACTOR);
+            return getLimit();
+        }
+        double rtt = rttNanos;
+        if (baselineRtt == 0) {
+            shortRtt = rtt;
+            baselineRtt = rtt;
+        } else {
+            shortRtt += (rtt - shortRtt) * 2.0 / (SHORT_WINDOW + 1);
+            if (rtt < baselineRtt) {
+                baselineRtt = rtt;
+            } else if (getLimit() <= minLimit) {
+                baselineRtt = shortRtt;
+            }
+        }
+
+        // Too little traffic to say anything about capacity
+        if (inFlight < limit / 2) {
+            return getLimit();
+        }
+
+        double gradient = Math.max(MIN_GRADIENT, Math.min(1.0, TOLERANCE * baselineRtt / shortRtt));
+        // Leave headroom for one queued call, unless latency is already as bad as it gets
+        double target = gradient > MIN_GRADIENT ? limit * gradient + 1 : limit * MIN_GRADIENT;
+        limit = clamp(limit * (1 - SMOOTHING) + target * SMOOTHING);
+        return getLimit();
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    private double clamp(double value) {
+        return Math.max(minLimit, Math.min(maxLimit, value));
+    }
+}
@@ -0,0 +1,311 @@
+package com.pixelart.agent.service.concurrency;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hedges calls across redundant backends to cut tail latency.
+ *
+ * The call goes to the first healthy backend. If it has not returned by the configured
+ * percentile of recent latency, or fails outright, one duplicate goes to the next healthy
+ * backend; the first result wins and the loser is cancelled. Duplicates are paid for from a
+ * token budget refilled by a fixed fraction of each call, so hedging can never add more than
+ * that fraction of extra load, however slow the backends get.
+ *
+ * The hedge delay comes from the latency of every attempt, not just the winners: a loser
+ * counts with the time it had run when it was cancelled. Recording winners alone would keep
+ * only the fast side of each hedged call, pulling the percentile down and hedging ever earlier.
+ */
+@Slf4j
+public class Hedger {
+
+    /**
+     * One backend call
+     */
+    @FunctionalInterface
+    public interface HedgedCall<T> {
+        T call(Attempt attempt) throws Exception;
+    }
+
+    /**
+     * Context of one attempt: which backend it targets and how to abort it when it loses
+     */
+    public static final class Attempt {
+
+        private final String backend;
+        private final boolean hedge;
+        private final long startNanos = System.nanoTime();
+        private final List<Runnable> cancelHooks = new ArrayList<>();
+        private volatile boolean cancelled;
+        private volatile boolean done;
+        private boolean recorded;
+        private Future<?> future;
+
+        Attempt(String backend, boolean hedge) {
+            this.backend = backend;
+            this.hedge = hedge;
+        }
+
+        public String backend() {
+            return backend;
+        }
+
+        /**
+         * Whether this is the duplicate rather than the original call
+         */
+        public boolean isHedge() {
+            return hedge;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        /**
+         * Register how to abort the call, e.g. cancel the HTTP request, if it loses
+         */
+        public void onCancel(Runnable hook) {
+            boolean runNow;
+            synchronized (this) {
+                runNow = cancelled;
+                if (!runNow) {
+                    cancelHooks.add(hook);
+                }
+            }
+            if (runNow) {
+                hook.run();
+            }
+        }
+
+        void cancel() {
+            List<Runnable> hooks;
+            synchronized (this) {
+                if (cancelled || done) {
+                    return;
+                }
+                cancelled = true;
+                hooks = new ArrayList<>(cancelHooks);
+            }
+            for (Runnable hook : hooks) {
+                try {
+                    hook.run();
+                } catch (RuntimeException e) {
+                    log.debug("Cancelling call to {} failed: {}", backend, e.getMessage());
+                }
+            }
+            if (future != null) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private record Outcome<T>(Attempt attempt, T value, Throwable failure, long nanos) {
+    }
+
+    private final boolean enabled;
+    private final ExecutorService executor;
+    private final double percentile;
+    private final long minDelayNanos;
+    private final long unhealthyNanos;
+    private final LatencyTracker latencies = new LatencyTracker(1000);
+    private final Map<String, Long> unhealthyUntil = new ConcurrentHashMap<>();
+
+    private final double budgetPerCall;
+    private final double maxBudget;
+    private double budget;
+
+    private final Counter calls;
+    private final Counter hedges;
+    private final Counter hedgeWins;
+    private final Counter primaryWins;
+    private final Counter budgetExhausted;
+
+    /**
+     * @param percentile Hedge once a call has run longer than this percentile (0-100) of recent calls
+     * @param minDelayMs Never hedge earlier than this
+     * @param budgetPercent Hedges allowed per 100 calls
+     * @param unhealthyMs How long a backend that failed is tried last
+     */
+    public Hedger(String stage, MeterRegistry meterRegistry, ExecutorService executor, boolean enabled,
+                  double percentile, long minDelayMs, double budgetPercent, long unhealthyMs) {
+        this.enabled = enabled;
+        this.executor = executor;
+        this.percentile = percentile;
+        this.minDelayNanos = TimeUnit.MILLISECONDS.toNanos(minDelayMs);
+        this.unhealthyNanos = TimeUnit.MILLISECONDS.toNanos(unhealthyMs);
+        this.budgetPerCall = Math.max(0, budgetPercent) / 100.0;
+        this.maxBudget = Math.max(1, budgetPerCall * 100);
+        this.budget = budgetPerCall > 0 ? maxBudget : 0;
+
+        this.calls = Counter.builder("pixelart.hedge.calls").tag("stage", stage)
+                .description("Calls eligible for hedging").register(meterRegistry);
+        this.hedges = Counter.builder("pixelart.hedge.sent").tag("stage", stage)
+                .description("Duplicate calls sent to a second backend").register(meterRegistry);
+        this.hedgeWins = Counter.builder("pixelart.hedge.wins").tags("stage", stage, "winner", "hedge")
+                .register(meterRegistry);
+        this.primaryWins = Counter.builder("pixelart.hedge.wins").tags("stage", stage, "winner", "primary")
+                .register(meterRegistry);
+        this.budgetExhausted = Counter.builder("pixelart.hedge.budget.exhausted").tag("stage", stage)
+                .description("Hedges skipped because the hedge budget was spent").register(meterRegistry);
+        Gauge.builder("pixelart.hedge.delay", this, hedger -> hedger.hedgeDelayNanos() / 1e6)
+                .tag("stage", stage)
+                .description("Current hedge delay in milliseconds, -1 while warming up")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Run the call against the backends, hedging if it is slow or fails
+     * @param backends Candidate backends, most preferred first
+     */
+    public <T> T call(List<String> backends, HedgedCall<T> call) {
+        List<String> ranked = rank(backends);
+        if (!enabled || ranked.size() < 2) {
+            return callDirectly(ranked.get(0), call);
+        }
+        calls.increment();
+        synchronized (this) {
+            budget = Math.min(maxBudget, budget + budgetPerCall);
+        }
+
+        BlockingQueue<Outcome<T>> outcomes = new LinkedBlockingQueue<>();
+        List<Attempt> attempts = new ArrayList<>();
+        attempts.add(launch(ranked.get(0), false, call, outcomes));
+        long delay = hedgeDelayNanos();
+        long hedgeAt = delay < 0 ? Long.MAX_VALUE : System.nanoTime() + delay;
+        boolean hedged = false;
+        Throwable lastFailure = null;
+        int pending = 1;
+
+        try {
+            while (pending > 0) {
+                Outcome<T> outcome = hedged || hedgeAt == Long.MAX_VALUE
+                        ? outcomes.take()
+                        : outcomes.poll(hedgeAt - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (outcome == null) {
+                    // Slower than the percentile: duplicate it
+                    hedged = true;
+                    if (tryHedge()) {
+                        attempts.add(launch(ranked.get(1), true, call, outcomes));
+                        pending++;
+                    }
+                    continue;
+                }
+                pending--;
+                latencies.record(outcome.nanos());
+                outcome.attempt().recorded = true;
+                if (outcome.failure() == null) {
+                    (outcome.attempt().isHedge() ? hedgeWins : primaryWins).increment();
+                    return outcome.value();
+                }
+                lastFailure = outcome.failure();
+                markUnhealthy(outcome.attempt().backend());
+                if (!hedged) {
+                    // Failed fast: try the other backend right away
+                    hedged = true;
+                    if (tryHedge()) {
+                        attempts.add(launch(ranked.get(1), true, call, outcomes));
+                        pending++;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for a backend", e);
+        } finally {
+            long now = System.nanoTime();
+            for (Attempt attempt : attempts) {
+                if (!attempt.recorded) {
+                    // A lower bound for the loser, which is all that is known of it
+                    latencies.record(now - attempt.startNanos);
+                }
+                attempt.cancel();
+            }
+        }
+        throw propagate(lastFailure);
+    }
+
+    private <T> T callDirectly(String backend, HedgedCall<T> call) {
+        long start = System.nanoTime();
+        try {
+            T result = call.call(new Attempt(backend, false));
+            latencies.record(System.nanoTime() - start);
+            return result;
+        } catch (Exception e) {
+            latencies.record(System.nanoTime() - start);
+            markUnhealthy(backend);
+            throw propagate(e);
+        }
+    }
+
+    private <T> Attempt launch(String backend, boolean hedge, HedgedCall<T> call, BlockingQueue<Outcome<T>> outcomes) {
+        Attempt attempt = new Attempt(backend, hedge);
+        attempt.future = executor.submit(() -> {
+            long start = System.nanoTime();
+            Outcome<T> outcome;
+            try {
+                outcome = new Outcome<>(attempt, call.call(attempt), null, System.nanoTime() - start);
+            } catch (Throwable e) {
+                outcome = new Outcome<>(attempt, null, e, System.nanoTime() - start);
+            }
+            attempt.done = true;
+            outcomes.add(outcome);
+        });
+        if (hedge) {
+            hedges.increment();
+            log.debug("Hedging call to {}", backend);
+        }
+        return attempt;
+    }
+
+    private synchronized boolean tryHedge() {
+        if (budget >= 1) {
+            budget -= 1;
+            return true;
+        }
+        budgetExhausted.increment();
+        return false;
+    }
+
+    private long hedgeDelayNanos() {
+        long observed = latencies.percentile(percentile);
+        return observed < 0 ? -1 : Math.max(minDelayNanos, observed);
+    }
+
+    private void markUnhealthy(String backend) {
+        unhealthyUntil.put(backend, System.nanoTime() + unhealthyNanos);
+    }
+
+    /**
+     * Healthy backends first, in the caller's order
+     */
+    private List<String> rank(List<String> backends) {
+        long now = System.nanoTime();
+        List<String> healthy = new ArrayList<>();
+        List<String> unhealthy = new ArrayList<>();
+        for (String backend : backends) {
+            Long until = unhealthyUntil.get(backend);
+            (until != null && until - now > 0 ? unhealthy : healthy).add(backend);
+        }
+        healthy.addAll(unhealthy);
+        return healthy;
+    }
+
+    private static RuntimeException propagate(Throwable failure) {
+        if (failure instanceof RuntimeException runtime) {
+            return runtime;
+        }
+        return new IllegalStateException("All backends failed", failure);
+    }
+}
@@ -0,0 +1,39 @@
+package com.pixelart.agent.service.concurrency;
+
+import java.util.Arrays;
+
+/**
+ * Latencies of the most recent calls, for percentile lookups
+ */
+public final class LatencyTracker {
+
+    private static final int MIN_SAMPLES = 20;
+
+    private final long[] samples;
+    private int next;
+    private int count;
+
+    public LatencyTracker(int window) {
+        this.samples = new long[Math.max(MIN_SAMPLES, window)];
+    }
+
+    public synchronized void record(long nanos) {
+        samples[next] = nanos;
+        next = (next + 1) % samples.length;
+        count = Math.min(count + 1, samples.length);
+    }
+
+    /**
+     * @param percentile 0-100
+     * @return The latency at the percentile, or -1 until enough calls have been seen
+     */
+    public synchronized long percentile(double percentile) {
+        if (count < MIN_SAMPLES) {
+            return -1;
+        }
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100.0 * count) - 1;
+        return sorted[Math.max(0, Math.min(count - 1, index))];
+    }
+}
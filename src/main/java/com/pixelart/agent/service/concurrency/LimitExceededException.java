@@ -0,0 +1,11 @@
+package com.pixelart.agent.service.concurrency;
+
+/**
+ * Thrown when a call is shed instead of being sent to an overloaded backend
+ */
+public class LimitExceededException extends RuntimeException {
+
+    public LimitExceededException(String message) {
+        super(message);
+    }
+}
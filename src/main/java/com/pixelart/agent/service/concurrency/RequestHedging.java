@@ -0,0 +1,60 @@
+package com.pixelart.agent.service.concurrency;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Hedgers for the LLM and image stages, sharing one executor for their attempts
+ */
+@Component
+public class RequestHedging {
+
+    public static final String LLM = "llm";
+    public static final String IMAGE = "image";
+
+    private final MeterRegistry meterRegistry;
+    private final ExecutorService executor;
+    private final boolean enabled;
+    private final double percentile;
+    private final long minDelayMs;
+    private final double budgetPercent;
+    private final long unhealthyMs;
+    private final Map<String, Hedger> hedgers = new ConcurrentHashMap<>();
+
+    public RequestHedging(
+            MeterRegistry meterRegistry,
+            @Value("${pixelart.hedging.enabled:false}") boolean enabled,
+            @Value("${pixelart.hedging.percentile:95}") double percentile,
+            @Value("${pixelart.hedging.min-delay-ms:500}") long minDelayMs,
+            @Value("${pixelart.hedging.budget-percent:10}") double budgetPercent,
+            @Value("${pixelart.hedging.unhealthy-ms:30000}") long unhealthyMs,
+            @Value("${pixelart.hedging.threads:32}") int threads,
+            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.percentile = percentile;
+        this.minDelayMs = minDelayMs;
+        this.budgetPercent = budgetPercent;
+        this.unhealthyMs = unhealthyMs;
+        this.executor = VirtualThreads.executor(virtualThreads, threads, "hedge");
+    }
+
+    /**
+     * The hedger for a stage; with hedging disabled it just tracks backend health
+     */
+    public Hedger forStage(String stage) {
+        return hedgers.computeIfAbsent(stage, key -> new Hedger(key, meterRegistry, executor, enabled,
+                percentile, minDelayMs, budgetPercent, unhealthyMs));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,59 @@
+package com.pixelart.agent.service.concurrency;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Virtual thread support, looked up reflectively so the code still compiles for Java 17
+ */
+public final class VirtualThreads {
+
+    private static final int FIRST_VERSION = 21;
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * Whether the running JDK has virtual threads
+     */
+    public static boolean isSupported() {
+        return Runtime.version().feature() >= FIRST_VERSION;
+    }
+
+    /**
+     * Factory for named virtual threads (prefix-0, prefix-1, ...)
+     */
+    public static ThreadFactory factory(String prefix) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> ofVirtual = Class.forName("java.lang.Thread$Builder$OfVirtual");
+            builder = ofVirtual.getMethod("name", String.class, long.class).invoke(builder, prefix + "-", 0L);
+            return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException("Virtual threads need JDK " + FIRST_VERSION + "+", e);
+        }
+    }
+
+    /**
+     * An executor for blocking work: one virtual thread per task when virtual is true,
+     * otherwise a fixed pool of daemon platform threads
+     */
+    public static ExecutorService executor(boolean virtual, int platformThreads, String prefix) {
+        if (virtual && isSupported()) {
+            try {
+                return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                        .invoke(null, factory(prefix));
+            } catch (ReflectiveOperationException e) {
+                throw new UnsupportedOperationException("Virtual threads need JDK " + FIRST_VERSION + "+", e);
+            }
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        return Executors.newFixedThreadPool(platformThreads, runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
@@ -0,0 +1,53 @@
+package com.pixelart.agent.service.image;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Base64 PNG data along with its pixels, decoded on first use and then shared by validation,
+ * palette extraction and hashing instead of each decoding the PNG again
+ */
+public final class DecodedImage {
+
+    private final String data;
+    private BufferedImage image;
+    private boolean decoded;
+
+    private DecodedImage(String data, BufferedImage image, boolean decoded) {
+        this.data = data;
+        this.image = image;
+        this.decoded = decoded;
+    }
+
+    /**
+     * Wrap base64 PNG data, which may be null or empty when rendering failed
+     */
+    public static DecodedImage of(String data) {
+        return new DecodedImage(data, null, false);
+    }
+
+    /**
+     * Wrap data encoded from image, so it need not be decoded again
+     */
+    public static DecodedImage of(String data, BufferedImage image) {
+        return new DecodedImage(data, image, true);
+    }
+
+    public String data() {
+        return data;
+    }
+
+    public boolean isEmpty() {
+        return data == null || data.isEmpty();
+    }
+
+    /**
+     * The pixels, or null if there is no data or it cannot be decoded
+     */
+    public synchronized BufferedImage image() {
+        if (!decoded) {
+            image = isEmpty() ? null : PerceptualHash.decode(data);
+            decoded = true;
+        }
+        return image;
+    }
+}
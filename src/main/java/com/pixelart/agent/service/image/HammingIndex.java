@@ -0,0 +1,141 @@
+package com.pixelart.agent.service.image;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Multi-index hash table over 64-bit hashes for Hamming-distance range queries.
+ *
+ * Each hash is split into four 16-bit chunks, each with its own bucket table. Two hashes
+ * within distance r must agree on at least one chunk to within r / 4 bits, so a query only
+ * probes the buckets around its own chunks and verifies the few candidates found there.
+ * Unlike a BK-tree this stays fast when the stored hashes are spread uniformly.
+ */
+public class HammingIndex<T> {
+
+    public static final int MAX_DISTANCE = 16;
+
+    private static final int CHUNKS = 4;
+    private static final int CHUNK_BITS = 16;
+    private static final int BUCKETS = 1 << CHUNK_BITS;
+    private static final int[][] NEIGHBOUR_MASKS = neighbourMasks(MAX_DISTANCE / CHUNKS);
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final int[][][] buckets = new int[CHUNKS][BUCKETS][];
+    private final int[][] bucketSizes = new int[CHUNKS][BUCKETS];
+    private long[] hashes = new long[1024];
+    private final List<T> values = new ArrayList<>();
+
+    /**
+     * A value within the query radius
+     */
+    public record Match<T>(T value, long hash, int distance) {
+    }
+
+    public void add(long hash, T value) {
+        lock.writeLock().lock();
+        try {
+            int id = values.size();
+            if (id == hashes.length) {
+                hashes = Arrays.copyOf(hashes, id * 2);
+            }
+            hashes[id] = hash;
+            values.add(value);
+            for (int chunk = 0; chunk < CHUNKS; chunk++) {
+                int key = chunk(hash, chunk);
+                int[] bucket = buckets[chunk][key];
+                int size = bucketSizes[chunk][key];
+                if (bucket == null) {
+                    bucket = buckets[chunk][key] = new int[2];
+                } else if (size == bucket.length) {
+                    bucket = buckets[chunk][key] = Arrays.copyOf(bucket, size * 2);
+                }
+                bucket[size] = id;
+                bucketSizes[chunk][key] = size + 1;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * All values within maxDistance (at most {@link #MAX_DISTANCE}) of the hash, closest first
+     */
+    public List<Match<T>> search(long hash, int maxDistance) {
+        if (maxDistance < 0 || maxDistance > MAX_DISTANCE) {
+            throw new IllegalArgumentException("maxDistance must be between 0 and " + MAX_DISTANCE);
+        }
+        int chunkRadius = maxDistance / CHUNKS;
+        List<Match<T>> matches = new ArrayList<>();
+        Set<Integer> seen = new HashSet<>();
+
+        lock.readLock().lock();
+        try {
+            for (int chunk = 0; chunk < CHUNKS; chunk++) {
+                int key = chunk(hash, chunk);
+                for (int radius = 0; radius <= chunkRadius; radius++) {
+                    for (int mask : NEIGHBOUR_MASKS[radius]) {
+                        int probe = key ^ mask;
+                        int[] bucket = buckets[chunk][probe];
+                        int size = bucketSizes[chunk][probe];
+                        for (int i = 0; i < size; i++) {
+                            int id = bucket[i];
+                            int distance = PerceptualHash.distance(hash, hashes[id]);
+                            if (distance <= maxDistance && seen.add(id)) {
+                                matches.add(new Match<>(values.get(id), hashes[id], distance));
+                            }
+                        }
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        matches.sort(Comparator.comparingInt(Match::distance));
+        return matches;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return values.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static int chunk(long hash, int chunk) {
+        return (int) (hash >>> (chunk * CHUNK_BITS)) & (BUCKETS - 1);
+    }
+
+    /**
+     * All 16-bit masks grouped by popcount, up to maxBits set bits
+     */
+    private static int[][] neighbourMasks(int maxBits) {
+        int[][] masks = new int[maxBits + 1][];
+        int[] counts = new int[maxBits + 1];
+        for (int mask = 0; mask < BUCKETS; mask++) {
+            int bits = Integer.bitCount(mask);
+            if (bits <= maxBits) {
+                counts[bits]++;
+            }
+        }
+        for (int bits = 0; bits <= maxBits; bits++) {
+            masks[bits] = new int[counts[bits]];
+            counts[bits] = 0;
+        }
+        for (int mask = 0; mask < BUCKETS; mask++) {
+            int bits = Integer.bitCount(mask);
+            if (bits <= maxBits) {
+                masks[bits][counts[bits]++] = mask;
+            }
+        }
+        return masks;
+    }
+}
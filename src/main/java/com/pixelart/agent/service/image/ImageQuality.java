@@ -0,0 +1,128 @@
+package com.pixelart.agent.service.image;
+
+import java.awt.image.BufferedImage;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Cheap content statistics of a generated sprite, for telling a usable image from a blank or
+ * broken one without a model.
+ *
+ * Everything is read off a grid of at most GRID x GRID samples per frame, so the cost does not
+ * grow with the render size. Colors are counted on a 5-bit-per-channel histogram, which merges
+ * the near-identical shades diffusion noise produces. Pixels that are transparent, or share the
+ * most common color around the image border, count as background.
+ */
+public final class ImageQuality {
+
+    /** Samples per frame side */
+    static final int GRID = 64;
+
+    /** Luminance step between neighbouring samples that counts as an edge */
+    private static final int EDGE_THRESHOLD = 24;
+
+    /** Histogram bin for transparent pixels, past the 15-bit color bins */
+    private static final int TRANSPARENT = 1 << 15;
+
+    private ImageQuality() {
+    }
+
+    /**
+     * @param colors Distinct histogram bins among foreground samples
+     * @param coverage Share of samples that are foreground
+     * @param edgeDensity Share of neighbouring sample pairs with a clear luminance step
+     * @param frameCoverage Coverage of each of the frames laid out left to right
+     */
+    public record Stats(int colors, double coverage, double edgeDensity, double[] frameCoverage) {
+    }
+
+    /**
+     * Analyse an image laid out as frames equal-width frames side by side
+     */
+    public static Stats analyze(BufferedImage image, int frames) {
+        int frameCount = Math.max(1, Math.min(frames, image.getWidth()));
+        int rows = Math.min(GRID, image.getHeight());
+        int columnsPerFrame = Math.min(GRID, image.getWidth() / frameCount);
+        int columns = columnsPerFrame * frameCount;
+
+        int[][] samples = new int[rows][columns];
+        for (int row = 0; row < rows; row++) {
+            int y = (2 * row + 1) * image.getHeight() / (2 * rows);
+            for (int column = 0; column < columns; column++) {
+                int x = (2 * column + 1) * image.getWidth() / (2 * columns);
+                samples[row][column] = image.getRGB(x, y);
+            }
+        }
+
+        int background = borderColor(samples);
+        BitSet colors = new BitSet(1 << 15);
+        int[] foregroundPerFrame = new int[frameCount];
+        int foreground = 0;
+        int edges = 0;
+        int pairs = 0;
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                int argb = samples[row][column];
+                int bin = bin(argb);
+                if (bin != background && bin != TRANSPARENT) {
+                    foreground++;
+                    foregroundPerFrame[column / columnsPerFrame]++;
+                    colors.set(bin);
+                }
+                if (column + 1 < columns) {
+                    pairs++;
+                    edges += isEdge(argb, samples[row][column + 1]) ? 1 : 0;
+                }
+                if (row + 1 < rows) {
+                    pairs++;
+                    edges += isEdge(argb, samples[row + 1][column]) ? 1 : 0;
+                }
+            }
+        }
+
+        double[] frameCoverage = new double[frameCount];
+        for (int frame = 0; frame < frameCount; frame++) {
+            frameCoverage[frame] = (double) foregroundPerFrame[frame] / (rows * columnsPerFrame);
+        }
+        return new Stats(colors.cardinality(), (double) foreground / (rows * columns),
+                pairs > 0 ? (double) edges / pairs : 0, frameCoverage);
+    }
+
+    /**
+     * The most common histogram bin around the edge of the sampled grid
+     */
+    private static int borderColor(int[][] samples) {
+        Map<Integer, Integer> counts = new HashMap<>();
+        int rows = samples.length;
+        int columns = samples[0].length;
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                if (row == 0 || row == rows - 1 || column == 0 || column == columns - 1) {
+                    counts.merge(bin(samples[row][column]), 1, Integer::sum);
+                }
+            }
+        }
+        return counts.entrySet().stream().max(Map.Entry.comparingByValue()).orElseThrow().getKey();
+    }
+
+    private static boolean isEdge(int a, int b) {
+        return Math.abs(luminance(a) - luminance(b)) > EDGE_THRESHOLD;
+    }
+
+    private static int bin(int argb) {
+        if ((argb >>> 24) < 128) {
+            return TRANSPARENT;
+        }
+        return ((argb >> 19) & 0x1F) << 10 | ((argb >> 11) & 0x1F) << 5 | ((argb >> 3) & 0x1F);
+    }
+
+    /**
+     * Luminance composited over white, as in PerceptualHash
+     */
+    private static int luminance(int argb) {
+        int alpha = (argb >>> 24) & 0xFF;
+        int luma = (299 * ((argb >> 16) & 0xFF) + 587 * ((argb >> 8) & 0xFF) + 114 * (argb & 0xFF)) / 1000;
+        return (alpha * luma + (255 - alpha) * 255) / 255;
+    }
+}
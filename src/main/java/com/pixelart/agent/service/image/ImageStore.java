@@ -0,0 +1,178 @@
+package com.pixelart.agent.service.image;
+
+import com.pixelart.agent.model.PixelArtResponse;
+import com.pixelart.agent.service.cache.SharedCacheStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * Generated images addressed by the SHA-256 of their PNG bytes.
+ *
+ * An id names exactly one image, so a client or proxy holding a copy never needs to fetch it
+ * again, and a conditional request for it can be answered without looking anything up.
+ * Images are kept in a bounded in-memory LRU, and in the shared result cache store when one is
+ * configured so that any instance can serve an id another one issued.
+ */
+@Slf4j
+@Component
+public class ImageStore {
+
+    private static final Pattern VALID_ID = Pattern.compile("[0-9a-f]{64}");
+    private static final String SHARED_KEY_PREFIX = "image/";
+
+    private final SharedCacheStore sharedStore;
+    private final Duration sharedTtl;
+    private final long maxBytes;
+
+    private final LinkedHashMap<String, byte[]> images = new LinkedHashMap<>(256, 0.75f, true);
+    private long storedBytes;
+
+    private final Counter hits;
+    private final Counter sharedHits;
+    private final Counter misses;
+
+    public ImageStore(
+            Optional<SharedCacheStore> sharedStore,
+            MeterRegistry meterRegistry,
+            @Value("${pixelart.images.store.max-size-mb:64}") long maxSizeMb,
+            @Value("${pixelart.images.store.shared-ttl-seconds:86400}") long sharedTtlSeconds) {
+        this.sharedStore = sharedStore.orElse(null);
+        this.sharedTtl = Duration.ofSeconds(sharedTtlSeconds);
+        this.maxBytes = maxSizeMb * 1024 * 1024;
+        this.hits = lookups(meterRegistry, "memory");
+        this.sharedHits = lookups(meterRegistry, "shared");
+        this.misses = lookups(meterRegistry, "miss");
+    }
+
+    /**
+     * Whether the string has the shape of an image id
+     */
+    public static boolean isValidId(String id) {
+        return id != null && VALID_ID.matcher(id).matches();
+    }
+
+    /**
+     * Content hash of the image bytes, used as both id and strong ETag
+     */
+    public static String idOf(byte[] png) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(png));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 unavailable", e);
+        }
+    }
+
+    /**
+     * Store the response's image, if any, and set its id and URL. Cheap for a response that
+     * was published before and is still stored.
+     * @return the same response
+     */
+    public PixelArtResponse publish(PixelArtResponse response) {
+        if (response == null || response.getImageData() == null || response.getImageData().isEmpty()) {
+            return response;
+        }
+        if (response.getImageId() != null && contains(response.getImageId())) {
+            return response;
+        }
+        try {
+            byte[] png = Base64.getDecoder().decode(response.getImageData());
+            String id = put(png);
+            response.setImageId(id);
+            response.setImageUrl("/api/pixelart/image/" + id);
+        } catch (IllegalArgumentException e) {
+            log.debug("Not publishing undecodable image: {}", e.getMessage());
+        }
+        return response;
+    }
+
+    /**
+     * Store an image. Ids are content hashes, so an image already stored here or in the shared
+     * store is not written again.
+     * @return its id
+     */
+    public String put(byte[] png) {
+        String id = idOf(png);
+        boolean added;
+        synchronized (images) {
+            added = images.putIfAbsent(id, png) == null;
+            if (added) {
+                storedBytes += png.length;
+                evict();
+            }
+        }
+        if (added && sharedStore != null && !sharedStore.contains(SHARED_KEY_PREFIX + id)) {
+            sharedStore.put(SHARED_KEY_PREFIX + id, png, sharedTtl);
+        }
+        return id;
+    }
+
+    /**
+     * The image with this id, or null if it is no longer stored
+     */
+    public byte[] get(String id) {
+        if (!isValidId(id)) {
+            return null;
+        }
+        byte[] png;
+        synchronized (images) {
+            png = images.get(id);
+        }
+        if (png != null) {
+            hits.increment();
+            return png;
+        }
+        SharedCacheStore.Entry shared = sharedStore != null ? sharedStore.get(SHARED_KEY_PREFIX + id) : null;
+        png = shared != null ? shared.value() : null;
+        // Guard against a corrupt or foreign shared entry; the id promises these exact bytes
+        if (png != null && id.equals(idOf(png))) {
+            sharedHits.increment();
+            synchronized (images) {
+                if (images.putIfAbsent(id, png) == null) {
+                    storedBytes += png.length;
+                    evict();
+                }
+            }
+            return png;
+        }
+        misses.increment();
+        return null;
+    }
+
+    private boolean contains(String id) {
+        synchronized (images) {
+            return images.containsKey(id);
+        }
+    }
+
+    /**
+     * Drop least recently used images until under the size bound; callers hold the lock
+     */
+    private void evict() {
+        Iterator<Map.Entry<String, byte[]>> oldest = images.entrySet().iterator();
+        while (storedBytes > maxBytes && oldest.hasNext()) {
+            storedBytes -= oldest.next().getValue().length;
+            oldest.remove();
+        }
+    }
+
+    private static Counter lookups(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("pixelart.images.store.lookups")
+                .description("Image lookups by id")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
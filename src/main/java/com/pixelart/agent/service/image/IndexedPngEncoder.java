@@ -0,0 +1,467 @@
+package com.pixelart.agent.service.image;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * PNG encoder tuned for pixel art.
+ *
+ * Images with at most 256 distinct colors are written palette-indexed (PNG-8) at the smallest
+ * bit depth that fits, with a tRNS chunk for transparent entries; anything else falls back to
+ * 8-bit RGB or RGBA. Deflaters are kept in a small shared pool and reset between images rather
+ * than reallocated. The same machinery writes animated PNGs (APNG) from a horizontal spritesheet.
+ */
+public final class IndexedPngEncoder {
+
+    /**
+     * How scanline filters are chosen
+     */
+    public enum FilterStrategy {
+        /** Filter type 0 on every row, which the PNG spec recommends for indexed images */
+        NONE,
+        /** Per-row filter with the smallest sum of absolute signed bytes */
+        ADAPTIVE,
+        /** Compress with both of the above and keep the smaller result */
+        BEST
+    }
+
+    public static final int MAX_PALETTE_SIZE = 256;
+
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final int COLOR_TYPE_RGB = 2;
+    private static final int COLOR_TYPE_INDEXED = 3;
+    private static final int COLOR_TYPE_RGBA = 6;
+    private static final byte APNG_DISPOSE_OP_BACKGROUND = 1;
+    private static final byte APNG_BLEND_OP_SOURCE = 0;
+
+    private final FilterStrategy filterStrategy;
+    private final int compressionLevel;
+    /**
+     * Native zlib state is the expensive part of a Deflater; reset() reuses it. A bounded pool
+     * rather than a ThreadLocal, since every virtual thread would otherwise keep its own native
+     * state alive until the Deflater is garbage collected.
+     */
+    private final ArrayBlockingQueue<Deflater> deflaters;
+
+    public IndexedPngEncoder(int compressionLevel, FilterStrategy filterStrategy) {
+        this.filterStrategy = filterStrategy;
+        this.compressionLevel = compressionLevel;
+        this.deflaters = new ArrayBlockingQueue<>(Runtime.getRuntime().availableProcessors());
+    }
+
+    public byte[] encode(BufferedImage image) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(image.getWidth() * image.getHeight() / 2 + 128);
+        try {
+            encode(image, out);
+        } catch (IOException e) {
+            throw new IllegalStateException("In-memory PNG encoding failed", e);
+        }
+        return out.toByteArray();
+    }
+
+    public void encode(BufferedImage image, OutputStream out) throws IOException {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] argb = pixels(image);
+        Format format = Format.of(argb);
+
+        writeHeader(out, width, height, format);
+        writeChunk(out, "IDAT", compress(rawScanlines(argb, width, 0, width, height, format), height, format));
+        writeChunk(out, "IEND", new byte[0]);
+    }
+
+    /**
+     * Write a looping APNG whose frames are equal-width horizontal slices of the spritesheet.
+     * Frames are compressed and written one at a time, so only one frame is held in memory
+     * besides the decoded sheet.
+     */
+    public void encodeAnimation(BufferedImage sheet, int frameCount, int frameDelayMs, OutputStream out)
+            throws IOException {
+        int frameWidth = sheet.getWidth() / frameCount;
+        int height = sheet.getHeight();
+        if (frameWidth == 0) {
+            throw new IllegalArgumentException("Spritesheet is narrower than its frame count");
+        }
+        int[] argb = pixels(sheet);
+        // One palette for the whole sheet, since PLTE precedes every frame
+        Format format = Format.of(argb);
+
+        writeHeader(out, frameWidth, height, format);
+        ByteArrayOutputStream control = new ByteArrayOutputStream(26);
+        writeInt(control, frameCount);
+        writeInt(control, 0); // loop forever
+        writeChunk(out, "acTL", control.toByteArray());
+
+        int sequence = 0;
+        for (int frame = 0; frame < frameCount; frame++) {
+            control.reset();
+            writeInt(control, sequence++);
+            writeInt(control, frameWidth);
+            writeInt(control, height);
+            writeInt(control, 0);
+            writeInt(control, 0);
+            control.write(frameDelayMs >>> 8);
+            control.write(frameDelayMs);
+            control.write(1000 >>> 8);
+            control.write(1000 & 0xFF);
+            control.write(APNG_DISPOSE_OP_BACKGROUND);
+            control.write(APNG_BLEND_OP_SOURCE);
+            writeChunk(out, "fcTL", control.toByteArray());
+
+            byte[] data = compress(rawScanlines(argb, sheet.getWidth(), frame * frameWidth, frameWidth, height, format),
+                    height, format);
+            if (frame == 0) {
+                // The first frame doubles as the still image for decoders without APNG support
+                writeChunk(out, "IDAT", data);
+            } else {
+                byte[] fdat = new byte[data.length + 4];
+                fdat[0] = (byte) (sequence >>> 24);
+                fdat[1] = (byte) (sequence >>> 16);
+                fdat[2] = (byte) (sequence >>> 8);
+                fdat[3] = (byte) sequence;
+                sequence++;
+                System.arraycopy(data, 0, fdat, 4, data.length);
+                writeChunk(out, "fdAT", fdat);
+            }
+            out.flush();
+        }
+        writeChunk(out, "IEND", new byte[0]);
+    }
+
+    /**
+     * ARGB pixels with every fully transparent pixel collapsed to 0, so they share one palette entry
+     */
+    static int[] pixels(BufferedImage image) {
+        int[] argb = image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+        for (int i = 0; i < argb.length; i++) {
+            if ((argb[i] >>> 24) == 0) {
+                argb[i] = 0;
+            }
+        }
+        return argb;
+    }
+
+    private void writeHeader(OutputStream out, int width, int height, Format format) throws IOException {
+        out.write(SIGNATURE);
+        ByteArrayOutputStream header = new ByteArrayOutputStream(13);
+        writeInt(header, width);
+        writeInt(header, height);
+        header.write(format.bitDepth);
+        header.write(format.colorType);
+        header.write(0); // deflate
+        header.write(0); // adaptive filtering
+        header.write(0); // no interlace
+        writeChunk(out, "IHDR", header.toByteArray());
+
+        if (format.palette != null) {
+            Palette palette = format.palette;
+            byte[] plte = new byte[palette.size * 3];
+            for (int i = 0; i < palette.size; i++) {
+                int color = palette.colors[i];
+                plte[i * 3] = (byte) (color >> 16);
+                plte[i * 3 + 1] = (byte) (color >> 8);
+                plte[i * 3 + 2] = (byte) color;
+            }
+            writeChunk(out, "PLTE", plte);
+            if (palette.translucentCount > 0) {
+                byte[] trns = new byte[palette.translucentCount];
+                for (int i = 0; i < trns.length; i++) {
+                    trns[i] = (byte) (palette.colors[i] >>> 24);
+                }
+                writeChunk(out, "tRNS", trns);
+            }
+        }
+    }
+
+    /**
+     * Unfiltered scanline bytes of a region, packed to the format's bit depth
+     */
+    private static byte[] rawScanlines(int[] argb, int stride, int x0, int width, int height, Format format) {
+        int rowBytes = format.rowBytes(width);
+        byte[] raw = new byte[rowBytes * height];
+        for (int y = 0; y < height; y++) {
+            int rowStart = y * rowBytes;
+            int source = y * stride + x0;
+            switch (format.colorType) {
+                case COLOR_TYPE_INDEXED -> {
+                    int pixelsPerByte = 8 / format.bitDepth;
+                    for (int x = 0; x < width; x++) {
+                        int index = format.palette.indexOf(argb[source + x]);
+                        int shift = 8 - format.bitDepth * (x % pixelsPerByte + 1);
+                        raw[rowStart + x / pixelsPerByte] |= (byte) (index << shift);
+                    }
+                }
+                case COLOR_TYPE_RGB -> {
+                    for (int x = 0, o = rowStart; x < width; x++) {
+                        int pixel = argb[source + x];
+                        raw[o++] = (byte) (pixel >> 16);
+                        raw[o++] = (byte) (pixel >> 8);
+                        raw[o++] = (byte) pixel;
+                    }
+                }
+                default -> {
+                    for (int x = 0, o = rowStart; x < width; x++) {
+                        int pixel = argb[source + x];
+                        raw[o++] = (byte) (pixel >> 16);
+                        raw[o++] = (byte) (pixel >> 8);
+                        raw[o++] = (byte) pixel;
+                        raw[o++] = (byte) (pixel >>> 24);
+                    }
+                }
+            }
+        }
+        return raw;
+    }
+
+    private byte[] compress(byte[] raw, int height, Format format) {
+        int rowBytes = raw.length / Math.max(height, 1);
+        return switch (filterStrategy) {
+            case NONE -> deflate(filter(raw, height, rowBytes, format.filterUnit, false));
+            case ADAPTIVE -> deflate(filter(raw, height, rowBytes, format.filterUnit, true));
+            case BEST -> {
+                byte[] unfiltered = deflate(filter(raw, height, rowBytes, format.filterUnit, false));
+                byte[] adaptive = deflate(filter(raw, height, rowBytes, format.filterUnit, true));
+                yield adaptive.length < unfiltered.length ? adaptive : unfiltered;
+            }
+        };
+    }
+
+    /**
+     * Prefix each row with its filter type; adaptive mode picks the filter with the minimum
+     * sum of absolute differences, the heuristic recommended by the PNG spec
+     */
+    private static byte[] filter(byte[] raw, int height, int rowBytes, int bpp, boolean adaptive) {
+        byte[] filtered = new byte[height * (rowBytes + 1)];
+        byte[] candidate = adaptive ? new byte[rowBytes] : null;
+        byte[] best = adaptive ? new byte[rowBytes] : null;
+        for (int y = 0; y < height; y++) {
+            int row = y * rowBytes;
+            int prior = row - rowBytes;
+            int target = y * (rowBytes + 1);
+            if (!adaptive) {
+                System.arraycopy(raw, row, filtered, target + 1, rowBytes);
+                continue;
+            }
+            long bestSum = Long.MAX_VALUE;
+            int bestType = 0;
+            for (int type = 0; type <= 4; type++) {
+                long sum = 0;
+                for (int i = 0; i < rowBytes; i++) {
+                    int current = raw[row + i] & 0xFF;
+                    int left = i >= bpp ? raw[row + i - bpp] & 0xFF : 0;
+                    int up = y > 0 ? raw[prior + i] & 0xFF : 0;
+                    int upLeft = y > 0 && i >= bpp ? raw[prior + i - bpp] & 0xFF : 0;
+                    int predicted = switch (type) {
+                        case 1 -> left;
+                        case 2 -> up;
+                        case 3 -> (left + up) >>> 1;
+                        case 4 -> paeth(left, up, upLeft);
+                        default -> 0;
+                    };
+                    byte value = (byte) (current - predicted);
+                    candidate[i] = value;
+                    sum += Math.abs(value);
+                }
+                if (sum < bestSum) {
+                    bestSum = sum;
+                    bestType = type;
+                    System.arraycopy(candidate, 0, best, 0, rowBytes);
+                }
+            }
+            filtered[target] = (byte) bestType;
+            System.arraycopy(best, 0, filtered, target + 1, rowBytes);
+        }
+        return filtered;
+    }
+
+    private static int paeth(int left, int up, int upLeft) {
+        int estimate = left + up - upLeft;
+        int distanceLeft = Math.abs(estimate - left);
+        int distanceUp = Math.abs(estimate - up);
+        int distanceUpLeft = Math.abs(estimate - upLeft);
+        if (distanceLeft <= distanceUp && distanceLeft <= distanceUpLeft) {
+            return left;
+        }
+        return distanceUp <= distanceUpLeft ? up : upLeft;
+    }
+
+    private byte[] deflate(byte[] data) {
+        Deflater deflater = deflaters.poll();
+        if (deflater == null) {
+            deflater = new Deflater(compressionLevel);
+        }
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            byte[] buffer = new byte[Math.max(64, data.length / 4)];
+            int length = 0;
+            while (!deflater.finished()) {
+                if (length == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+                length += deflater.deflate(buffer, length, buffer.length - length);
+            }
+            return Arrays.copyOf(buffer, length);
+        } finally {
+            deflater.reset();
+            if (!deflaters.offer(deflater)) {
+                deflater.end();
+            }
+        }
+    }
+
+    private static void writeChunk(OutputStream out, String type, byte[] data) throws IOException {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data);
+        writeInt(out, data.length);
+        out.write(typeBytes);
+        out.write(data);
+        writeInt(out, (int) crc.getValue());
+    }
+
+    private static void writeInt(OutputStream out, int value) throws IOException {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    /**
+     * Color type, bit depth and (for indexed images) palette chosen for a set of pixels
+     */
+    private static final class Format {
+        private final int colorType;
+        private final int bitDepth;
+        private final Palette palette;
+        /** Bytes per complete pixel for filtering, 1 for sub-byte depths */
+        private final int filterUnit;
+
+        private Format(int colorType, int bitDepth, Palette palette, int filterUnit) {
+            this.colorType = colorType;
+            this.bitDepth = bitDepth;
+            this.palette = palette;
+            this.filterUnit = filterUnit;
+        }
+
+        static Format of(int[] argb) {
+            Palette palette = Palette.build(argb);
+            if (palette != null) {
+                int size = palette.size;
+                int bitDepth = size <= 2 ? 1 : size <= 4 ? 2 : size <= 16 ? 4 : 8;
+                return new Format(COLOR_TYPE_INDEXED, bitDepth, palette, 1);
+            }
+            for (int pixel : argb) {
+                if ((pixel >>> 24) != 0xFF) {
+                    return new Format(COLOR_TYPE_RGBA, 8, null, 4);
+                }
+            }
+            return new Format(COLOR_TYPE_RGB, 8, null, 3);
+        }
+
+        int rowBytes(int width) {
+            return switch (colorType) {
+                case COLOR_TYPE_INDEXED -> (width * bitDepth + 7) / 8;
+                case COLOR_TYPE_RGB -> width * 3;
+                default -> width * 4;
+            };
+        }
+    }
+
+    /**
+     * Distinct ARGB colors, translucent ones first so tRNS can stop at the last of them
+     */
+    static final class Palette {
+        private static final int TABLE_SIZE = 1024;
+
+        private final int[] colors;
+        private final int size;
+        private final int translucentCount;
+        private final int[] keys = new int[TABLE_SIZE];
+        /** Palette index + 1, 0 marks an empty slot */
+        private final int[] slots = new int[TABLE_SIZE];
+
+        private Palette(int[] colors, int size, int translucentCount) {
+            this.colors = colors;
+            this.size = size;
+            this.translucentCount = translucentCount;
+            for (int i = 0; i < size; i++) {
+                int slot = slot(keys, slots, colors[i]);
+                keys[slot] = colors[i];
+                slots[slot] = i + 1;
+            }
+        }
+
+        /**
+         * @return The palette, or null if there are more than {@link #MAX_PALETTE_SIZE} colors
+         */
+        static Palette build(int[] argb) {
+            int[] keys = new int[TABLE_SIZE];
+            int[] slots = new int[TABLE_SIZE];
+            int[] distinct = new int[MAX_PALETTE_SIZE];
+            int count = 0;
+            int last = 0;
+            boolean seenAny = false;
+            for (int pixel : argb) {
+                // Runs of the same color are the common case in pixel art
+                if (seenAny && pixel == last) {
+                    continue;
+                }
+                seenAny = true;
+                last = pixel;
+                int slot = slot(keys, slots, pixel);
+                if (slots[slot] == 0) {
+                    if (count == MAX_PALETTE_SIZE) {
+                        return null;
+                    }
+                    keys[slot] = pixel;
+                    slots[slot] = ++count;
+                    distinct[count - 1] = pixel;
+                }
+            }
+
+            int[] colors = new int[count];
+            int translucent = 0;
+            for (int i = 0; i < count; i++) {
+                if ((distinct[i] >>> 24) != 0xFF) {
+                    colors[translucent++] = distinct[i];
+                }
+            }
+            int next = translucent;
+            for (int i = 0; i < count; i++) {
+                if ((distinct[i] >>> 24) == 0xFF) {
+                    colors[next++] = distinct[i];
+                }
+            }
+            return new Palette(colors, count, translucent);
+        }
+
+        int size() {
+            return size;
+        }
+
+        int color(int index) {
+            return colors[index];
+        }
+
+        int indexOf(int argb) {
+            return slots[slot(keys, slots, argb)] - 1;
+        }
+
+        private static int slot(int[] keys, int[] slots, int color) {
+            int slot = (color * 0x9E3779B9) >>> 22;
+            while (slots[slot] != 0 && keys[slot] != color) {
+                slot = (slot + 1) & (TABLE_SIZE - 1);
+            }
+            return slot;
+        }
+    }
+}
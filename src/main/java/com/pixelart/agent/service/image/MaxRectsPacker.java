@@ -0,0 +1,162 @@
+package com.pixelart.agent.service.image;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * MaxRects bin packer (best short side fit) for building texture atlases.
+ *
+ * Keeps the list of maximal free rectangles; each placement splits every free rectangle it
+ * overlaps and prunes those contained in another. The atlas starts at the smallest
+ * power-of-two size that could hold the total area and doubles the shorter side until
+ * everything fits.
+ */
+public final class MaxRectsPacker {
+
+    /**
+     * Placement of the input rectangle with the same index
+     */
+    public record Placement(int x, int y, int width, int height) {
+    }
+
+    /**
+     * Atlas size and one placement per input rectangle, in input order
+     */
+    public record Packing(int width, int height, List<Placement> placements) {
+    }
+
+    private record Rect(int x, int y, int width, int height) {
+        boolean contains(Rect other) {
+            return other.x >= x && other.y >= y
+                    && other.x + other.width <= x + width && other.y + other.height <= y + height;
+        }
+
+        boolean intersects(Rect other) {
+            return other.x < x + width && other.x + other.width > x
+                    && other.y < y + height && other.y + other.height > y;
+        }
+    }
+
+    private MaxRectsPacker() {
+    }
+
+    /**
+     * Pack rectangles without rotation
+     * @param padding Empty pixels kept to the right of and below each rectangle, against filtering bleed
+     * @throws IllegalArgumentException if they cannot fit within maxSide x maxSide
+     */
+    public static Packing pack(int[] widths, int[] heights, int padding, int maxSide) {
+        int count = widths.length;
+        long area = 0;
+        int widest = 1;
+        int tallest = 1;
+        for (int i = 0; i < count; i++) {
+            area += (long) (widths[i] + padding) * (heights[i] + padding);
+            widest = Math.max(widest, widths[i] + padding);
+            tallest = Math.max(tallest, heights[i] + padding);
+        }
+
+        // Largest first packs tighter
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingInt((Integer i) -> Math.max(widths[i], heights[i]))
+                .thenComparingInt(i -> widths[i] * heights[i]).reversed());
+
+        int width = Math.max(powerOfTwoAtLeast(Math.ceil(Math.sqrt(area))), powerOfTwoAtLeast(widest));
+        int height = Math.max(powerOfTwoAtLeast(Math.ceil((double) area / width)), powerOfTwoAtLeast(tallest));
+        while (width <= maxSide && height <= maxSide) {
+            Placement[] placements = tryPack(widths, heights, padding, order, width, height);
+            if (placements != null) {
+                return new Packing(width, height, List.of(placements));
+            }
+            if (width <= height) {
+                width *= 2;
+            } else {
+                height *= 2;
+            }
+        }
+        throw new IllegalArgumentException("Frames do not fit in a " + maxSide + "x" + maxSide + " atlas");
+    }
+
+    private static int powerOfTwoAtLeast(double value) {
+        int target = (int) Math.max(1, value);
+        return target <= 1 ? 1 : Integer.highestOneBit(target - 1) << 1;
+    }
+
+    private static Placement[] tryPack(int[] widths, int[] heights, int padding, Integer[] order,
+                                       int binWidth, int binHeight) {
+        List<Rect> free = new ArrayList<>();
+        // The bin is padded too, so the last row and column need no trailing gap
+        free.add(new Rect(0, 0, binWidth + padding, binHeight + padding));
+        Placement[] placements = new Placement[widths.length];
+
+        for (int index : order) {
+            int width = widths[index] + padding;
+            int height = heights[index] + padding;
+
+            Rect best = null;
+            int bestShortSide = Integer.MAX_VALUE;
+            int bestLongSide = Integer.MAX_VALUE;
+            for (Rect candidate : free) {
+                if (candidate.width >= width && candidate.height >= height) {
+                    int leftoverX = candidate.width - width;
+                    int leftoverY = candidate.height - height;
+                    int shortSide = Math.min(leftoverX, leftoverY);
+                    int longSide = Math.max(leftoverX, leftoverY);
+                    if (shortSide < bestShortSide || (shortSide == bestShortSide && longSide < bestLongSide)) {
+                        best = new Rect(candidate.x, candidate.y, width, height);
+                        bestShortSide = shortSide;
+                        bestLongSide = longSide;
+                    }
+                }
+            }
+            if (best == null) {
+                return null;
+            }
+            placements[index] = new Placement(best.x, best.y, widths[index], heights[index]);
+            split(free, best);
+        }
+        return placements;
+    }
+
+    private static void split(List<Rect> free, Rect used) {
+        List<Rect> created = new ArrayList<>();
+        for (int i = free.size() - 1; i >= 0; i--) {
+            Rect rect = free.get(i);
+            if (!rect.intersects(used)) {
+                continue;
+            }
+            free.remove(i);
+            if (used.x > rect.x) {
+                created.add(new Rect(rect.x, rect.y, used.x - rect.x, rect.height));
+            }
+            if (used.x + used.width < rect.x + rect.width) {
+                created.add(new Rect(used.x + used.width, rect.y, rect.x + rect.width - used.x - used.width, rect.height));
+            }
+            if (used.y > rect.y) {
+                created.add(new Rect(rect.x, rect.y, rect.width, used.y - rect.y));
+            }
+            if (used.y + used.height < rect.y + rect.height) {
+                created.add(new Rect(rect.x, used.y + used.height, rect.width, rect.y + rect.height - used.y - used.height));
+            }
+        }
+        free.addAll(created);
+
+        // Drop free rectangles contained in another
+        for (int i = 0; i < free.size(); i++) {
+            for (int j = i + 1; j < free.size(); j++) {
+                if (free.get(j).contains(free.get(i))) {
+                    free.remove(i--);
+                    break;
+                }
+                if (free.get(i).contains(free.get(j))) {
+                    free.remove(j--);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.pixelart.agent.service.image;
+
+import com.pixelart.agent.service.model.ImageGenerationParams;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.awt.image.BufferedImage;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Rejects generated images that are blank, flat or laid out wrongly, so they can be re-rendered
+ * with another seed instead of being returned to the user.
+ *
+ * Checks run on ImageQuality's sampled histogram and take well under a millisecond. Re-renders
+ * are paid for from a budget refilled by a fixed fraction of each validated image, like the
+ * hedging budget, so a prompt or backend that keeps producing bad images cannot multiply GPU load.
+ * The mock provider's placeholder images would never pass, so they are not validated.
+ */
+@Slf4j
+@Component
+public class OutputValidator {
+
+    /**
+     * Why an image was rejected, as tagged on pixelart.image.validation
+     */
+    public enum Reason {
+        UNREADABLE("unreadable"),
+        TOO_FEW_COLORS("too-few-colors"),
+        LOW_COVERAGE("low-coverage"),
+        LOW_EDGE_DENSITY("low-edge-density"),
+        FRAME_LAYOUT("frame-layout"),
+        EMPTY_FRAME("empty-frame");
+
+        private final String tag;
+
+        Reason(String tag) {
+            this.tag = tag;
+        }
+
+        public String getTag() {
+            return tag;
+        }
+    }
+
+    private final boolean enabled;
+    private final int minColors;
+    private final double minCoverage;
+    private final double minEdgeDensity;
+    private final double frameAspectTolerance;
+    private final int maxRetries;
+    private final double budgetPerImage;
+    private final double maxBudget;
+    private double budget;
+
+    private final Counter passed;
+    private final Map<Reason, Counter> rejected = new EnumMap<>(Reason.class);
+    private final Counter retries;
+    private final Counter budgetExhausted;
+    private final Timer validationTime;
+
+    public OutputValidator(
+            MeterRegistry meterRegistry,
+            @Value("${pixelart.image.validation.enabled:true}") boolean enabled,
+            @Value("${pixelart.models.use-mock:true}") boolean useMockModels,
+            @Value("${pixelart.image-model.mock-responses-enabled:true}") boolean mockImageResponsesEnabled,
+            @Value("${pixelart.image.validation.min-colors:3}") int minColors,
+            @Value("${pixelart.image.validation.min-coverage:0.05}") double minCoverage,
+            @Value("${pixelart.image.validation.min-edge-density:0.01}") double minEdgeDensity,
+            @Value("${pixelart.image.validation.frame-aspect-tolerance:0.25}") double frameAspectTolerance,
+            @Value("${pixelart.image.validation.max-retries:2}") int maxRetries,
+            @Value("${pixelart.image.validation.retry-budget-percent:20}") double retryBudgetPercent) {
+        this.enabled = enabled && !useMockModels && !mockImageResponsesEnabled;
+        this.minColors = minColors;
+        this.minCoverage = minCoverage;
+        this.minEdgeDensity = minEdgeDensity;
+        this.frameAspectTolerance = frameAspectTolerance;
+        this.maxRetries = Math.max(0, maxRetries);
+        this.budgetPerImage = Math.max(0, retryBudgetPercent) / 100.0;
+        this.maxBudget = Math.max(1, budgetPerImage * 100);
+        this.budget = budgetPerImage > 0 ? maxBudget : 0;
+
+        this.passed = Counter.builder("pixelart.image.validation")
+                .description("Generated images checked before being returned")
+                .tags("result", "passed", "reason", "none")
+                .register(meterRegistry);
+        for (Reason reason : Reason.values()) {
+            rejected.put(reason, Counter.builder("pixelart.image.validation")
+                    .description("Generated images checked before being returned")
+                    .tags("result", "rejected", "reason", reason.getTag())
+                    .register(meterRegistry));
+        }
+        this.retries = Counter.builder("pixelart.image.validation.retries")
+                .description("Rejected images re-rendered with a new seed")
+                .register(meterRegistry);
+        this.budgetExhausted = Counter.builder("pixelart.image.validation.budget.exhausted")
+                .description("Rejected images returned because the retry budget was spent")
+                .register(meterRegistry);
+        this.validationTime = Timer.builder("pixelart.image.validation.time")
+                .description("Time spent validating generated images")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Re-renders allowed for one image, before the budget has its say
+     */
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * Check a generated image against the thresholds
+     * @return Why it was rejected, or empty if it passed
+     */
+    public Optional<Reason> validate(String base64Image, ImageGenerationParams params) {
+        return validate(base64Image != null ? PerceptualHash.decode(base64Image) : null, params);
+    }
+
+    /**
+     * Check an already decoded image against the thresholds
+     * @param image The image, or null if it could not be decoded
+     * @return Why it was rejected, or empty if it passed
+     */
+    public Optional<Reason> validate(BufferedImage image, ImageGenerationParams params) {
+        Optional<Reason> reason = validationTime.record(() -> check(image, params));
+        synchronized (this) {
+            budget = Math.min(maxBudget, budget + budgetPerImage);
+        }
+        reason.ifPresentOrElse(rejection -> rejected.get(rejection).increment(), passed::increment);
+        return reason;
+    }
+
+    /**
+     * Take one re-render from the budget
+     * @return false if the budget is spent and the rejected image should be kept
+     */
+    public synchronized boolean tryRetry() {
+        if (budget >= 1) {
+            budget -= 1;
+            retries.increment();
+            return true;
+        }
+        budgetExhausted.increment();
+        return false;
+    }
+
+    private Optional<Reason> check(BufferedImage image, ImageGenerationParams params) {
+        if (image == null) {
+            return Optional.of(Reason.UNREADABLE);
+        }
+
+        int frames = params.isSpritesheet() ? Math.max(1, params.getFrameCount()) : 1;
+        if (frames > 1 && params.getWidth() > 0 && params.getHeight() > 0) {
+            // Each frame should keep the requested sprite's aspect ratio, so the sheet has frames times its width
+            double expected = (double) frames * params.getWidth() / params.getHeight();
+            double actual = (double) image.getWidth() / image.getHeight();
+            if (Math.abs(actual - expected) / expected > frameAspectTolerance) {
+                return Optional.of(Reason.FRAME_LAYOUT);
+            }
+        }
+
+        ImageQuality.Stats stats = ImageQuality.analyze(image, frames);
+        log.debug("Image has {} colors, {} coverage, {} edge density", stats.colors(),
+                String.format("%.3f", stats.coverage()), String.format("%.3f", stats.edgeDensity()));
+        if (stats.coverage() < minCoverage) {
+            return Optional.of(Reason.LOW_COVERAGE);
+        }
+        if (stats.colors() < minColors) {
+            return Optional.of(Reason.TOO_FEW_COLORS);
+        }
+        if (stats.edgeDensity() < minEdgeDensity) {
+            return Optional.of(Reason.LOW_EDGE_DENSITY);
+        }
+        for (double frameCoverage : stats.frameCoverage()) {
+            if (frameCoverage < minCoverage) {
+                return Optional.of(Reason.EMPTY_FRAME);
+            }
+        }
+        return Optional.empty();
+    }
+}
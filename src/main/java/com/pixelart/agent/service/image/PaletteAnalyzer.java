@@ -0,0 +1,110 @@
+package com.pixelart.agent.service.image;
+
+import com.pixelart.agent.model.PaletteColor;
+import com.pixelart.agent.model.PixelArtResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Replaces the colors the language model suggested with the ones actually in the generated
+ * image, and reduces the image to a requested number of its own dominant colors.
+ *
+ * Runs on every image through PaletteExtractor, which samples large renders and takes
+ * microseconds for a sprite. Images that cannot be decoded, like the mock provider's
+ * placeholders, keep the suggested colors from the description.
+ */
+@Slf4j
+@Component
+public class PaletteAnalyzer {
+
+    /** Colors an indexed PNG can hold */
+    private static final int MAX_PALETTE_SIZE = 256;
+
+    private final boolean enabled;
+    private final int maxColors;
+    private final double minCoveragePercent;
+    private final PngOptimizer pngOptimizer;
+    private final Timer extractTime;
+    private final Counter quantized;
+
+    public PaletteAnalyzer(
+            MeterRegistry meterRegistry,
+            PngOptimizer pngOptimizer,
+            @Value("${pixelart.image.palette.enabled:true}") boolean enabled,
+            @Value("${pixelart.image.palette.max-colors:8}") int maxColors,
+            @Value("${pixelart.image.palette.min-coverage-percent:1.0}") double minCoveragePercent) {
+        this.enabled = enabled;
+        this.maxColors = Math.max(1, maxColors);
+        this.minCoveragePercent = minCoveragePercent;
+        this.pngOptimizer = pngOptimizer;
+        this.extractTime = Timer.builder("pixelart.image.palette.time")
+                .description("Time spent extracting and applying image palettes")
+                .register(meterRegistry);
+        this.quantized = Counter.builder("pixelart.image.palette.quantized")
+                .description("Images reduced to a requested number of colors")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Set the response's suggestedColors and palette from the image
+     * @param paletteSize Colors to reduce the image to, null to leave it as rendered
+     * @return The image to return, re-encoded if it was reduced
+     */
+    public String apply(PixelArtResponse response, String imageData, Integer paletteSize) {
+        return apply(response, DecodedImage.of(imageData), paletteSize).data();
+    }
+
+    /**
+     * Like apply for base64 data, reusing pixels the caller has already decoded
+     * @return The image to return, with the reduced pixels if it was reduced
+     */
+    public DecodedImage apply(PixelArtResponse response, DecodedImage decoded, Integer paletteSize) {
+        if (!enabled || decoded.isEmpty()) {
+            return decoded;
+        }
+        return extractTime.record(() -> {
+            BufferedImage image = decoded.image();
+            if (image == null) {
+                log.debug("Palette extraction skipped: image could not be decoded");
+                return decoded;
+            }
+
+            DecodedImage result = decoded;
+            if (paletteSize != null && paletteSize > 0) {
+                PaletteExtractor.Palette constrained = PaletteExtractor.extract(image, Math.min(paletteSize, MAX_PALETTE_SIZE));
+                if (constrained.size() > 0) {
+                    image = PaletteExtractor.quantize(image, constrained);
+                    result = DecodedImage.of(Base64.getEncoder().encodeToString(pngOptimizer.getEncoder().encode(image)), image);
+                    quantized.increment();
+                }
+            }
+
+            PaletteExtractor.Palette palette = PaletteExtractor.extract(image, maxColors);
+            if (palette.size() > 0) {
+                List<PaletteColor> colors = new ArrayList<>();
+                for (int i = 0; i < palette.size(); i++) {
+                    // Drop specks like anti-aliased edges, but always keep the most common color
+                    if (i > 0 && palette.coverage(i) < minCoveragePercent) {
+                        continue;
+                    }
+                    colors.add(PaletteColor.builder()
+                            .hex(palette.hex(i))
+                            .coverage(Math.round(palette.coverage(i) * 10) / 10.0)
+                            .build());
+                }
+                response.setPalette(colors);
+                response.setSuggestedColors(colors.stream().map(PaletteColor::getHex).toList());
+            }
+            return result;
+        });
+    }
+}
@@ -0,0 +1,385 @@
+package com.pixelart.agent.service.image;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+/**
+ * Dominant colors of a sprite by median cut over a 15-bit color histogram.
+ *
+ * Opaque pixels are binned at 5 bits per channel, then the bins are split into boxes until there
+ * are maxColors of them. Rather than halving the most populous box at its median, which tends to
+ * slice one big flat region in two, each round cuts the box with the largest squared color error along
+ * its most varied channel, at the point that best separates the two sides (Otsu's criterion).
+ * Each box's color is the mean of the real pixels in it. Splitting stops early once no box holds
+ * more than one color, and pixel art rarely has more distinct colors than asked for, in which
+ * case the bins are returned as they are without cutting anything.
+ *
+ * Everything runs on primitive arrays that grow with the number of distinct colors, each box's
+ * error is computed once when it is made, and a cut is one pass over the box with 32-bucket
+ * channel histograms rather than a sort, so a 64x64 sprite takes microseconds.
+ */
+public final class PaletteExtractor {
+
+    /** Samples per side read from a bigger image */
+    static final int SAMPLES = 128;
+
+    /** Levels per channel at 5 bits */
+    private static final int LEVELS = 32;
+
+    private PaletteExtractor() {
+    }
+
+    /**
+     * Palette colors as 0xRRGGBB, most common first
+     * @param counts Pixels assigned to each color
+     * @param total Opaque pixels in the image
+     */
+    public record Palette(int[] colors, int[] counts, int total) {
+
+        public int size() {
+            return colors.length;
+        }
+
+        /**
+         * Share of opaque pixels in color i, 0 to 100
+         */
+        public double coverage(int i) {
+            return total > 0 ? 100.0 * counts[i] / total : 0;
+        }
+
+        public String hex(int i) {
+            return String.format("#%06X", colors[i]);
+        }
+    }
+
+    /**
+     * Extract up to maxColors dominant colors, reading at most SAMPLES x SAMPLES evenly spaced
+     * pixels so an upscaled render costs no more than a sprite; counts are then per sample
+     */
+    public static Palette extract(BufferedImage image, int maxColors) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        if (width <= SAMPLES && height <= SAMPLES) {
+            return extract(image.getRGB(0, 0, width, height, null, 0, width), maxColors);
+        }
+        int columns = Math.min(SAMPLES, width);
+        int rows = Math.min(SAMPLES, height);
+        int[] samples = new int[columns * rows];
+        for (int row = 0; row < rows; row++) {
+            int y = (2 * row + 1) * height / (2 * rows);
+            for (int column = 0; column < columns; column++) {
+                samples[row * columns + column] = image.getRGB((2 * column + 1) * width / (2 * columns), y);
+            }
+        }
+        return extract(samples, maxColors);
+    }
+
+    /**
+     * Extract up to maxColors dominant colors from ARGB pixels, ignoring those under half opacity
+     */
+    public static Palette extract(int[] argb, int maxColors) {
+        Histogram histogram = Histogram.of(argb);
+        int distinct = histogram.size;
+        if (distinct == 0) {
+            return new Palette(new int[0], new int[0], 0);
+        }
+
+        // Boxes are ranges of the order array; box b covers order[starts[b]] to order[ends[b] - 1]
+        int limit = Math.max(1, Math.min(maxColors, distinct));
+        int[] order = new int[distinct];
+        for (int i = 0; i < distinct; i++) {
+            order[i] = i;
+        }
+        int[] starts = new int[limit];
+        int[] ends = new int[limit];
+        int boxes;
+        if (distinct > limit) {
+            Split[] splits = new Split[limit];
+            ends[0] = distinct;
+            splits[0] = Split.of(histogram, order, 0, distinct);
+            boxes = 1;
+            while (boxes < limit) {
+                int box = -1;
+                for (int b = 0; b < boxes; b++) {
+                    if (splits[b].error > 0 && (box < 0 || splits[b].error > splits[box].error)) {
+                        box = b;
+                    }
+                }
+                if (box < 0) {
+                    // Every box is down to a single color
+                    break;
+                }
+                int cut = splits[box].partition(histogram, order, starts[box], ends[box]);
+                starts[boxes] = cut;
+                ends[boxes] = ends[box];
+                ends[box] = cut;
+                splits[box] = Split.of(histogram, order, starts[box], cut);
+                splits[boxes] = Split.of(histogram, order, cut, ends[boxes]);
+                boxes++;
+            }
+        } else {
+            boxes = distinct;
+            for (int i = 0; i < distinct; i++) {
+                starts[i] = i;
+                ends[i] = i + 1;
+            }
+        }
+
+        long[] packed = new long[boxes];
+        for (int b = 0; b < boxes; b++) {
+            long count = 0;
+            long red = 0;
+            long green = 0;
+            long blue = 0;
+            for (int i = starts[b]; i < ends[b]; i++) {
+                int entry = order[i];
+                count += histogram.counts[entry];
+                red += histogram.red[entry];
+                green += histogram.green[entry];
+                blue += histogram.blue[entry];
+            }
+            int color = (int) (red / count) << 16 | (int) (green / count) << 8 | (int) (blue / count);
+            // Count in the high bits so sorting puts the most common color last
+            packed[b] = count << 24 | color;
+        }
+        Arrays.sort(packed);
+
+        int[] colors = new int[boxes];
+        int[] counts = new int[boxes];
+        for (int b = 0; b < boxes; b++) {
+            long entry = packed[boxes - 1 - b];
+            colors[b] = (int) (entry & 0xFFFFFF);
+            counts[b] = (int) (entry >>> 24);
+        }
+        return new Palette(colors, counts, histogram.total);
+    }
+
+    /**
+     * Snap every opaque pixel to its nearest palette color and make the rest fully transparent
+     */
+    public static BufferedImage quantize(BufferedImage image, Palette palette) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] argb = quantize(image.getRGB(0, 0, width, height, null, 0, width), palette);
+        BufferedImage quantized = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        quantized.setRGB(0, 0, width, height, argb, 0, width);
+        return quantized;
+    }
+
+    public static int[] quantize(int[] argb, Palette palette) {
+        int[] result = new int[argb.length];
+        if (palette.size() == 0) {
+            return result;
+        }
+        // Runs of one color are common in sprites, so remember the last lookup
+        int lastPixel = 0;
+        int lastColor = 0;
+        for (int i = 0; i < argb.length; i++) {
+            int pixel = argb[i];
+            if ((pixel >>> 24) < 128) {
+                continue;
+            }
+            int rgb = pixel & 0xFFFFFF;
+            if (lastColor == 0 || rgb != lastPixel) {
+                lastPixel = rgb;
+                lastColor = nearestColor(rgb, palette.colors()) | 0xFF000000;
+            }
+            result[i] = lastColor;
+        }
+        return result;
+    }
+
+    private static int nearestColor(int rgb, int[] colors) {
+        int red = (rgb >> 16) & 0xFF;
+        int green = (rgb >> 8) & 0xFF;
+        int blue = rgb & 0xFF;
+        int best = colors[0];
+        int bestDistance = Integer.MAX_VALUE;
+        for (int color : colors) {
+            int dr = red - ((color >> 16) & 0xFF);
+            int dg = green - ((color >> 8) & 0xFF);
+            int db = blue - (color & 0xFF);
+            // Weighted towards green like the eye, which keeps skin tones and foliage apart
+            int distance = 2 * dr * dr + 4 * dg * dg + 3 * db * db;
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = color;
+            }
+        }
+        return best;
+    }
+
+    private static int bin(int argb) {
+        return ((argb >> 19) & 0x1F) << 10 | ((argb >> 11) & 0x1F) << 5 | ((argb >> 3) & 0x1F);
+    }
+
+    /**
+     * A box's squared color error, and where it would best be cut
+     */
+    private static final class Split {
+        double error;
+        int channel;
+        int threshold;
+
+        /**
+         * Sum the box's pixels into 32 buckets per channel, which is all Otsu's criterion needs
+         */
+        static Split of(Histogram histogram, int[] order, int start, int end) {
+            long[][] buckets = new long[3][LEVELS];
+            for (int i = start; i < end; i++) {
+                int entry = order[i];
+                int count = histogram.counts[entry];
+                int bin = histogram.bins[entry];
+                buckets[0][bin >> 10] += count;
+                buckets[1][(bin >> 5) & 0x1F] += count;
+                buckets[2][bin & 0x1F] += count;
+            }
+
+            Split split = new Split();
+            double widestError = 0;
+            for (int channel = 0; channel < 3; channel++) {
+                long[] counts = buckets[channel];
+                long total = 0;
+                long sum = 0;
+                long sumOfSquares = 0;
+                for (int level = 0; level < LEVELS; level++) {
+                    total += counts[level];
+                    sum += counts[level] * level;
+                    sumOfSquares += counts[level] * level * level;
+                }
+                double channelError = sumOfSquares - (double) sum * sum / total;
+                split.error += channelError;
+                if (channelError <= widestError) {
+                    continue;
+                }
+                widestError = channelError;
+                split.channel = channel;
+
+                // Cut where the two sides' means are furthest apart, weighted by their sizes, and only between occupied levels
+                long below = 0;
+                long belowSum = 0;
+                double bestScore = -1;
+                for (int level = 0; level < LEVELS - 1; level++) {
+                    below += counts[level];
+                    belowSum += counts[level] * level;
+                    if (below == 0 || below == total || counts[level + 1] == 0) {
+                        continue;
+                    }
+                    double difference = (double) belowSum / below - (double) (sum - belowSum) / (total - below);
+                    double score = (double) below * (total - below) * difference * difference;
+                    if (score > bestScore) {
+                        bestScore = score;
+                        split.threshold = level;
+                    }
+                }
+            }
+            return split;
+        }
+
+        /**
+         * Move the box's entries at or below the threshold to its front
+         * @return Where the upper side starts
+         */
+        int partition(Histogram histogram, int[] order, int start, int end) {
+            int shift = 10 - 5 * channel;
+            int low = start;
+            int high = end - 1;
+            while (low <= high) {
+                if (((histogram.bins[order[low]] >> shift) & 0x1F) <= threshold) {
+                    low++;
+                } else {
+                    int swap = order[low];
+                    order[low] = order[high];
+                    order[high--] = swap;
+                }
+            }
+            return low;
+        }
+    }
+
+    /**
+     * Non-empty bins with their pixel counts and channel sums, in first-seen order
+     */
+    private static final class Histogram {
+        int size;
+        int total;
+        int[] bins = new int[64];
+        int[] counts = new int[64];
+        long[] red = new long[64];
+        long[] green = new long[64];
+        long[] blue = new long[64];
+        // Open addressing from bin to entry index + 1, grown with the entries so a sprite with a
+        // dozen colors never touches more than a few hundred bytes
+        int[] table = new int[128];
+        int shift = Integer.numberOfLeadingZeros(128) + 1;
+
+        static Histogram of(int[] argb) {
+            Histogram histogram = new Histogram();
+            // Sprites come in runs of one color, which skip the lookup
+            int lastBin = -1;
+            int entry = 0;
+            for (int pixel : argb) {
+                if ((pixel >>> 24) < 128) {
+                    continue;
+                }
+                int bin = bin(pixel);
+                if (bin != lastBin) {
+                    lastBin = bin;
+                    entry = histogram.entry(bin);
+                }
+                histogram.counts[entry]++;
+                histogram.red[entry] += (pixel >> 16) & 0xFF;
+                histogram.green[entry] += (pixel >> 8) & 0xFF;
+                histogram.blue[entry] += pixel & 0xFF;
+                histogram.total++;
+            }
+            return histogram;
+        }
+
+        private int entry(int bin) {
+            int mask = table.length - 1;
+            int slot = (bin * 0x9E3779B1) >>> shift;
+            while (table[slot] != 0) {
+                int entry = table[slot] - 1;
+                if (bins[entry] == bin) {
+                    return entry;
+                }
+                slot = (slot + 1) & mask;
+            }
+            if (size == bins.length) {
+                grow();
+                return entry(bin);
+            }
+            int entry = size++;
+            bins[entry] = bin;
+            table[slot] = entry + 1;
+            return entry;
+        }
+
+        private void insert(int entry) {
+            int mask = table.length - 1;
+            int slot = (bins[entry] * 0x9E3779B1) >>> shift;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = entry + 1;
+        }
+
+        /**
+         * Double the entries and rehash, keeping the table at most half full
+         */
+        private void grow() {
+            int capacity = bins.length * 2;
+            bins = Arrays.copyOf(bins, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+            red = Arrays.copyOf(red, capacity);
+            green = Arrays.copyOf(green, capacity);
+            blue = Arrays.copyOf(blue, capacity);
+            table = new int[capacity * 2];
+            shift = Integer.numberOfLeadingZeros(capacity * 2) + 1;
+            for (int entry = 0; entry < size; entry++) {
+                insert(entry);
+            }
+        }
+    }
+}
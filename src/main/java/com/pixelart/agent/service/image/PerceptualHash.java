@@ -0,0 +1,138 @@
+package com.pixelart.agent.service.image;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * 64-bit perceptual hashes of sprites, compared by Hamming distance.
+ *
+ * Both hashes work on a box-filtered grayscale thumbnail with transparent pixels composited
+ * over white, so they ignore resampling noise and compression differences.
+ */
+public final class PerceptualHash {
+
+    private static final int DCT_SIZE = 32;
+    private static final int HASH_SIZE = 8;
+    private static final double[][] DCT_COEFFICIENTS = dctCoefficients();
+
+    private PerceptualHash() {
+    }
+
+    /**
+     * Difference hash: one bit per horizontally adjacent pixel pair of a 9x8 thumbnail
+     */
+    public static long dHash(BufferedImage image) {
+        double[][] gray = grayscaleThumbnail(image, HASH_SIZE + 1, HASH_SIZE);
+        long hash = 0;
+        for (int y = 0; y < HASH_SIZE; y++) {
+            for (int x = 0; x < HASH_SIZE; x++) {
+                hash = (hash << 1) | (gray[y][x] > gray[y][x + 1] ? 1 : 0);
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * DCT hash: compares the 8x8 lowest frequencies of a 32x32 thumbnail against their median
+     */
+    public static long pHash(BufferedImage image) {
+        double[][] gray = grayscaleThumbnail(image, DCT_SIZE, DCT_SIZE);
+
+        // Separable 2D DCT-II, only the low-frequency corner is needed
+        double[][] rows = new double[DCT_SIZE][HASH_SIZE];
+        for (int y = 0; y < DCT_SIZE; y++) {
+            for (int u = 0; u < HASH_SIZE; u++) {
+                double sum = 0;
+                for (int x = 0; x < DCT_SIZE; x++) {
+                    sum += gray[y][x] * DCT_COEFFICIENTS[u][x];
+                }
+                rows[y][u] = sum;
+            }
+        }
+        double[] low = new double[HASH_SIZE * HASH_SIZE];
+        for (int v = 0; v < HASH_SIZE; v++) {
+            for (int u = 0; u < HASH_SIZE; u++) {
+                double sum = 0;
+                for (int y = 0; y < DCT_SIZE; y++) {
+                    sum += rows[y][u] * DCT_COEFFICIENTS[v][y];
+                }
+                low[v * HASH_SIZE + u] = sum;
+            }
+        }
+
+        // Median of the AC terms; the DC term only reflects overall brightness
+        double[] ac = Arrays.copyOfRange(low, 1, low.length);
+        Arrays.sort(ac);
+        double median = (ac[ac.length / 2 - 1] + ac[ac.length / 2]) / 2;
+
+        long hash = 0;
+        for (double coefficient : low) {
+            hash = (hash << 1) | (coefficient > median ? 1 : 0);
+        }
+        return hash;
+    }
+
+    public static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+
+    /**
+     * Decode base64 PNG data
+     * @return The image, or null if it cannot be decoded
+     */
+    public static BufferedImage decode(String base64Image) {
+        try {
+            return ImageIO.read(new ByteArrayInputStream(Base64.getDecoder().decode(base64Image)));
+        } catch (IOException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Box-filter the image down (or nearest-sample it up) to width x height luminance values
+     */
+    static double[][] grayscaleThumbnail(BufferedImage image, int width, int height) {
+        int sourceWidth = image.getWidth();
+        int sourceHeight = image.getHeight();
+        int[] argb = image.getRGB(0, 0, sourceWidth, sourceHeight, null, 0, sourceWidth);
+
+        double[][] thumbnail = new double[height][width];
+        for (int ty = 0; ty < height; ty++) {
+            int y0 = ty * sourceHeight / height;
+            int y1 = Math.max(y0 + 1, (ty + 1) * sourceHeight / height);
+            for (int tx = 0; tx < width; tx++) {
+                int x0 = tx * sourceWidth / width;
+                int x1 = Math.max(x0 + 1, (tx + 1) * sourceWidth / width);
+                double sum = 0;
+                for (int y = y0; y < y1; y++) {
+                    for (int x = x0; x < x1; x++) {
+                        sum += luminance(argb[y * sourceWidth + x]);
+                    }
+                }
+                thumbnail[ty][tx] = sum / ((y1 - y0) * (x1 - x0));
+            }
+        }
+        return thumbnail;
+    }
+
+    private static double luminance(int argb) {
+        double alpha = ((argb >>> 24) & 0xFF) / 255.0;
+        double luma = 0.299 * ((argb >> 16) & 0xFF) + 0.587 * ((argb >> 8) & 0xFF) + 0.114 * (argb & 0xFF);
+        return alpha * luma + (1 - alpha) * 255.0;
+    }
+
+    private static double[][] dctCoefficients() {
+        double[][] coefficients = new double[HASH_SIZE][DCT_SIZE];
+        for (int u = 0; u < HASH_SIZE; u++) {
+            double scale = u == 0 ? Math.sqrt(1.0 / DCT_SIZE) : Math.sqrt(2.0 / DCT_SIZE);
+            for (int x = 0; x < DCT_SIZE; x++) {
+                coefficients[u][x] = scale * Math.cos((2 * x + 1) * u * Math.PI / (2 * DCT_SIZE));
+            }
+        }
+        return coefficients;
+    }
+}
@@ -0,0 +1,102 @@
+package com.pixelart.agent.service.image;
+
+import com.pixelart.agent.model.json.ImageDataSerializer;
+import com.pixelart.agent.service.buffer.ByteBufferPool;
+import com.pixelart.agent.service.buffer.PooledBuffer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+/**
+ * Re-encodes generated PNGs with {@link IndexedPngEncoder}, keeping whichever encoding is smaller
+ */
+@Slf4j
+@Component
+public class PngOptimizer {
+
+    private final boolean enabled;
+    private final IndexedPngEncoder encoder;
+    private final ByteBufferPool bufferPool;
+    private final Counter originalBytes;
+    private final Counter optimizedBytes;
+    private final Timer encodeTime;
+
+    public PngOptimizer(
+            MeterRegistry meterRegistry,
+            ByteBufferPool bufferPool,
+            @Value("${pixelart.image.png.optimize:true}") boolean enabled,
+            @Value("${pixelart.image.png.compression-level:6}") int compressionLevel,
+            @Value("${pixelart.image.png.filter-strategy:BEST}") IndexedPngEncoder.FilterStrategy filterStrategy) {
+        this.enabled = enabled;
+        this.encoder = new IndexedPngEncoder(compressionLevel, filterStrategy);
+        this.bufferPool = bufferPool;
+        this.originalBytes = Counter.builder("pixelart.image.png.bytes")
+                .tag("encoding", "original")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.optimizedBytes = Counter.builder("pixelart.image.png.bytes")
+                .tag("encoding", "optimized")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.encodeTime = Timer.builder("pixelart.image.png.encode.time")
+                .description("Time spent re-encoding generated PNGs")
+                .register(meterRegistry);
+    }
+
+    public IndexedPngEncoder getEncoder() {
+        return encoder;
+    }
+
+    /**
+     * Re-encode a base64 PNG
+     * @return The smaller of the original and re-encoded image, base64 encoded
+     */
+    public String optimize(String base64Image) {
+        if (!enabled || base64Image == null || base64Image.isEmpty()) {
+            return base64Image;
+        }
+        try (PooledBuffer png = bufferPool.acquire(base64Image.length() / 4 * 3)) {
+            png.readFrom(ImageDataSerializer.decode(base64Image)).flip();
+            return optimize(png);
+        } catch (IOException | IllegalArgumentException e) {
+            log.debug("PNG optimization skipped: {}", e.getMessage());
+            return base64Image;
+        }
+    }
+
+    /**
+     * Re-encode PNG bytes held in a pooled buffer (read mode); the caller keeps its reference
+     * @return The smaller of the original and re-encoded image, base64 encoded
+     */
+    public String optimize(PooledBuffer png) throws IOException {
+        if (!enabled) {
+            return png.toBase64();
+        }
+        BufferedImage image = ImageIO.read(png.inputStream());
+        if (image == null) {
+            return png.toBase64();
+        }
+        int originalLength = png.remaining();
+        try (PooledBuffer optimized = bufferPool.acquire(originalLength)) {
+            Timer.Sample sample = Timer.start();
+            encoder.encode(image, optimized.outputStream());
+            sample.stop(encodeTime);
+            optimized.flip();
+            originalBytes.increment(originalLength);
+            if (optimized.remaining() >= originalLength) {
+                optimizedBytes.increment(originalLength);
+                return png.toBase64();
+            }
+            optimizedBytes.increment(optimized.remaining());
+            log.debug("Re-encoded PNG from {} to {} bytes", originalLength, optimized.remaining());
+            return optimized.toBase64();
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.pixelart.agent.service.image;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.IndexColorModel;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Turns a horizontal spritesheet into a looping animated GIF or APNG, written frame by frame
+ */
+@Component
+public class SpriteAnimationExporter {
+
+    /**
+     * Supported animation containers
+     */
+    public enum Format {
+        GIF("image/gif", "gif"),
+        APNG("image/apng", "png");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    private static final String GIF_METADATA_FORMAT = "javax_imageio_gif_image_1.0";
+    /** Below this alpha a pixel becomes the GIF transparent color */
+    private static final int GIF_ALPHA_THRESHOLD = 128;
+    private static final int MAX_FRAME_DELAY_MS = 65535;
+
+    private final IndexedPngEncoder pngEncoder;
+
+    public SpriteAnimationExporter(PngOptimizer pngOptimizer) {
+        this.pngEncoder = pngOptimizer.getEncoder();
+    }
+
+    /**
+     * Write the animation for a spritesheet whose frames are equal-width horizontal slices
+     */
+    public void export(BufferedImage sheet, int frameCount, Format format, int frameDelayMs, OutputStream out)
+            throws IOException {
+        int frames = Math.max(1, Math.min(frameCount, sheet.getWidth()));
+        int delay = Math.max(10, Math.min(frameDelayMs, MAX_FRAME_DELAY_MS));
+        if (format == Format.APNG) {
+            pngEncoder.encodeAnimation(sheet, frames, delay, out);
+        } else {
+            writeGif(sheet, frames, delay, out);
+        }
+    }
+
+    private void writeGif(BufferedImage sheet, int frameCount, int frameDelayMs, OutputStream out) throws IOException {
+        int frameWidth = sheet.getWidth() / frameCount;
+        int height = sheet.getHeight();
+        int[] argb = IndexedPngEncoder.pixels(sheet);
+        IndexedPngEncoder.Palette palette = IndexedPngEncoder.Palette.build(argb);
+
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("gif").next();
+        try (ImageOutputStream stream = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(stream);
+            writer.prepareWriteSequence(null);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            for (int frame = 0; frame < frameCount; frame++) {
+                int x0 = frame * frameWidth;
+                BufferedImage image;
+                int transparentIndex = -1;
+                if (palette != null) {
+                    transparentIndex = transparentIndex(palette);
+                    image = indexedFrame(argb, sheet.getWidth(), x0, frameWidth, height, palette, transparentIndex);
+                } else {
+                    // Over 256 colors: let the GIF writer build its own palette
+                    image = sheet.getSubimage(x0, 0, frameWidth, height);
+                }
+                IIOMetadata metadata = writer.getDefaultImageMetadata(new ImageTypeSpecifier(image), param);
+                configureGifFrame(metadata, frameDelayMs, transparentIndex, frame == 0);
+                writer.writeToSequence(new IIOImage(image, null, metadata), param);
+                stream.flush();
+            }
+            writer.endWriteSequence();
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    private static int transparentIndex(IndexedPngEncoder.Palette palette) {
+        for (int i = 0; i < palette.size(); i++) {
+            if ((palette.color(i) >>> 24) < GIF_ALPHA_THRESHOLD) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static BufferedImage indexedFrame(int[] argb, int stride, int x0, int width, int height,
+                                              IndexedPngEncoder.Palette palette, int transparentIndex) {
+        int size = palette.size();
+        byte[] reds = new byte[size];
+        byte[] greens = new byte[size];
+        byte[] blues = new byte[size];
+        for (int i = 0; i < size; i++) {
+            int color = palette.color(i);
+            reds[i] = (byte) (color >> 16);
+            greens[i] = (byte) (color >> 8);
+            blues[i] = (byte) color;
+        }
+        int bits = Math.max(1, 32 - Integer.numberOfLeadingZeros(size - 1));
+        IndexColorModel colorModel = new IndexColorModel(bits, size, reds, greens, blues, transparentIndex);
+        BufferedImage frame = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_INDEXED, colorModel);
+        byte[] indices = ((DataBufferByte) frame.getRaster().getDataBuffer()).getData();
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int pixel = argb[y * stride + x0 + x];
+                indices[y * width + x] = (byte) (transparentIndex >= 0 && (pixel >>> 24) < GIF_ALPHA_THRESHOLD
+                        ? transparentIndex
+                        : palette.indexOf(pixel));
+            }
+        }
+        return frame;
+    }
+
+    private static void configureGifFrame(IIOMetadata metadata, int frameDelayMs, int transparentIndex,
+                                          boolean first) throws IOException {
+        IIOMetadataNode root = (IIOMetadataNode) metadata.getAsTree(GIF_METADATA_FORMAT);
+
+        IIOMetadataNode control = child(root, "GraphicControlExtension");
+        // Clear each frame before the next, otherwise transparent areas show earlier frames
+        control.setAttribute("disposalMethod", "restoreToBackgroundColor");
+        control.setAttribute("userInputFlag", "FALSE");
+        control.setAttribute("transparentColorFlag", transparentIndex >= 0 ? "TRUE" : "FALSE");
+        control.setAttribute("transparentColorIndex", String.valueOf(Math.max(0, transparentIndex)));
+        control.setAttribute("delayTime", String.valueOf(Math.max(1, frameDelayMs / 10)));
+
+        if (first) {
+            IIOMetadataNode extensions = child(root, "ApplicationExtensions");
+            IIOMetadataNode loop = new IIOMetadataNode("ApplicationExtension");
+            loop.setAttribute("applicationID", "NETSCAPE");
+            loop.setAttribute("authenticationCode", "2.0");
+            loop.setUserObject(new byte[]{1, 0, 0}); // loop forever
+            extensions.appendChild(loop);
+        }
+        metadata.setFromTree(GIF_METADATA_FORMAT, root);
+    }
+
+    private static IIOMetadataNode child(IIOMetadataNode root, String name) {
+        for (int i = 0; i < root.getLength(); i++) {
+            if (root.item(i).getNodeName().equalsIgnoreCase(name)) {
+                return (IIOMetadataNode) root.item(i);
+            }
+        }
+        IIOMetadataNode node = new IIOMetadataNode(name);
+        root.appendChild(node);
+        return node;
+    }
+}
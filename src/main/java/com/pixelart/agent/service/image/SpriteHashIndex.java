@@ -0,0 +1,250 @@
+package com.pixelart.agent.service.image;
+
+import com.pixelart.agent.model.SimilarSprite;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Perceptual-hash index of every sprite the agent has generated.
+ *
+ * Each image is recorded once (by the SHA-256 of its PNG bytes) in an in-memory
+ * {@link HammingIndex} and an append-only log, which is replayed on first use.
+ */
+@Slf4j
+@Component
+public class SpriteHashIndex {
+
+    private static final int LOG_MAGIC = 0x50584831; // "PXH1"
+    private static final String LOG_FILE = "hashes.bin";
+    private static final int MAX_PROMPT_LENGTH = 200;
+
+    private final boolean enabled;
+    private final Path directory;
+    private final String algorithm;
+    private final int defaultMaxDistance;
+
+    private final HammingIndex<SimilarSprite> index = new HammingIndex<>();
+    private final Set<String> imageIds = new HashSet<>();
+    private DataOutputStream hashLog;
+    private boolean loaded;
+
+    public SpriteHashIndex(
+            @Value("${pixelart.image.dedupe.enabled:true}") boolean enabled,
+            @Value("${pixelart.image.dedupe.directory:./data/sprite-index}") String directory,
+            @Value("${pixelart.image.dedupe.algorithm:phash}") String algorithm,
+            @Value("${pixelart.image.dedupe.max-distance:6}") int defaultMaxDistance) {
+        this.enabled = enabled;
+        this.directory = Paths.get(directory);
+        this.algorithm = algorithm;
+        this.defaultMaxDistance = defaultMaxDistance;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Hamming distance at or below which two sprites count as near-duplicates
+     */
+    public int getDefaultMaxDistance() {
+        return defaultMaxDistance;
+    }
+
+    /**
+     * Compute the perceptual hash of base64 PNG data
+     * @return The hash, or null if the data is not a decodable image
+     */
+    public Long hash(String base64Image) {
+        return hash(PerceptualHash.decode(base64Image));
+    }
+
+    private Long hash(BufferedImage image) {
+        if (image == null) {
+            return null;
+        }
+        return "dhash".equalsIgnoreCase(algorithm) ? PerceptualHash.dHash(image) : PerceptualHash.pHash(image);
+    }
+
+    /**
+     * Add a generated sprite to the library
+     * @return Its perceptual hash, or null if it could not be decoded
+     */
+    public Long record(String base64Image, String prompt, Long seed) {
+        return record(DecodedImage.of(base64Image), prompt, seed);
+    }
+
+    /**
+     * Add a generated sprite to the library, reusing pixels the caller has already decoded
+     * @return Its perceptual hash, or null if it could not be decoded
+     */
+    public Long record(DecodedImage decoded, String prompt, Long seed) {
+        Long hash = hash(decoded.image());
+        String base64Image = decoded.data();
+        if (hash == null || !enabled) {
+            return hash;
+        }
+        String imageId = imageId(base64Image);
+        SimilarSprite sprite = SimilarSprite.builder()
+                .imageId(imageId)
+                .perceptualHash(HexFormat.of().toHexDigits(hash))
+                .prompt(truncate(prompt))
+                .seed(seed)
+                .generatedAt(System.currentTimeMillis())
+                .build();
+
+        synchronized (this) {
+            ensureLoaded();
+            if (!imageIds.add(imageId)) {
+                return hash;
+            }
+            index.add(hash, sprite);
+            append(hash, sprite);
+        }
+        return hash;
+    }
+
+    /**
+     * Find generated sprites that look like the given image, closest first
+     */
+    public List<SimilarSprite> findSimilar(String base64Image, int maxDistance, int limit) {
+        Long hash = hash(base64Image);
+        if (hash == null) {
+            throw new IllegalArgumentException("Not a decodable image");
+        }
+        synchronized (this) {
+            ensureLoaded();
+        }
+        return index.search(hash, Math.min(maxDistance, HammingIndex.MAX_DISTANCE)).stream()
+                .limit(limit)
+                .map(match -> {
+                    SimilarSprite sprite = match.value();
+                    return SimilarSprite.builder()
+                            .imageId(sprite.getImageId())
+                            .distance(match.distance())
+                            .perceptualHash(sprite.getPerceptualHash())
+                            .prompt(sprite.getPrompt())
+                            .seed(sprite.getSeed())
+                            .generatedAt(sprite.getGeneratedAt())
+                            .build();
+                })
+                .toList();
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        if (hashLog != null) {
+            try {
+                hashLog.close();
+            } catch (IOException e) {
+                // Every record is flushed as it is written
+            }
+            hashLog = null;
+        }
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        Path file = directory.resolve(LOG_FILE);
+        if (!Files.exists(file)) {
+            return;
+        }
+        int count = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != LOG_MAGIC) {
+                log.warn("Ignoring sprite hash log with unknown format: {}", file);
+                return;
+            }
+            while (true) {
+                long hash;
+                try {
+                    hash = in.readLong();
+                } catch (EOFException e) {
+                    break;
+                }
+                long seed = in.readLong();
+                SimilarSprite sprite = SimilarSprite.builder()
+                        .perceptualHash(HexFormat.of().toHexDigits(hash))
+                        .generatedAt(in.readLong())
+                        .seed(seed < 0 ? null : seed)
+                        .imageId(in.readUTF())
+                        .prompt(in.readUTF())
+                        .build();
+                if (imageIds.add(sprite.getImageId())) {
+                    index.add(hash, sprite);
+                    count++;
+                }
+            }
+        } catch (IOException e) {
+            // A torn final record from a crash only loses that record
+            log.warn("Sprite hash log truncated after {} entries: {}", count, e.getMessage());
+        }
+        log.info("Loaded {} sprite hashes from {}", count, file);
+    }
+
+    private void append(long hash, SimilarSprite sprite) {
+        try {
+            if (hashLog == null) {
+                Files.createDirectories(directory);
+                Path file = directory.resolve(LOG_FILE);
+                boolean fresh = !Files.exists(file) || Files.size(file) == 0;
+                hashLog = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND)));
+                if (fresh) {
+                    hashLog.writeInt(LOG_MAGIC);
+                }
+            }
+            hashLog.writeLong(hash);
+            hashLog.writeLong(sprite.getSeed() != null ? sprite.getSeed() : -1L);
+            hashLog.writeLong(sprite.getGeneratedAt());
+            hashLog.writeUTF(sprite.getImageId());
+            hashLog.writeUTF(sprite.getPrompt());
+            hashLog.flush();
+        } catch (IOException e) {
+            log.warn("Failed to persist sprite hash: {}", e.getMessage());
+        }
+    }
+
+    private static String truncate(String prompt) {
+        if (prompt == null) {
+            return "";
+        }
+        return prompt.length() <= MAX_PROMPT_LENGTH ? prompt : prompt.substring(0, MAX_PROMPT_LENGTH);
+    }
+
+    private static String imageId(String base64Image) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(Base64.getDecoder().decode(base64Image));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
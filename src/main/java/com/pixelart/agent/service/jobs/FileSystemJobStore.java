@@ -0,0 +1,336 @@
+package com.pixelart.agent.service.jobs;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pixelart.agent.model.GenerationJob;
+import com.pixelart.agent.model.GenerationMode;
+import com.pixelart.agent.model.PixelArtResponse;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Job queue in a directory that every instance on the machine, or every instance mounting
+ * it over a filesystem with working locks, shares.
+ *
+ * Each job is one JSON file, in queue/ while queued or running and in done/ once finished.
+ * Files are written to a temporary file and renamed into place, so readers never see a
+ * partial job. Claims and lease updates read, change and rewrite a job, and run under an OS
+ * lock on queue.lock, which the OS drops if the holding process dies. Job ids start with
+ * their creation time, so ordering queue/ by name gives the oldest job first.
+ *
+ * Each store keeps an index of queue/ in that order with each job's mode, a job's mode never
+ * changing. A claim brings it up to date from a listing taken outside the lock, reading only
+ * the jobs it has not seen, and then reads just the candidates of a wanted mode under the lock
+ * rather than every queued job.
+ */
+@Slf4j
+public class FileSystemJobStore implements JobStore {
+
+    private static final String JOB_SUFFIX = ".json";
+    private static final Pattern VALID_ID = Pattern.compile("[0-9a-zA-Z-]{1,64}");
+
+    /**
+     * The OS lock is held per process, so threads of one process take turns on this first
+     */
+    private static final Map<Path, ReentrantLock> PROCESS_LOCKS = new ConcurrentHashMap<>();
+
+    private final Path queueDirectory;
+    private final Path doneDirectory;
+    private final Path lockFile;
+    private final ObjectMapper objectMapper;
+    private final Clock clock;
+    private final int maxAttempts;
+    private final ReentrantLock processLock;
+    private final ConcurrentSkipListMap<String, GenerationMode> queueIndex = new ConcurrentSkipListMap<>();
+
+    public FileSystemJobStore(Path directory, ObjectMapper objectMapper, Clock clock, int maxAttempts) {
+        this.queueDirectory = directory.resolve("queue");
+        this.doneDirectory = directory.resolve("done");
+        this.lockFile = directory.resolve("queue.lock");
+        this.objectMapper = objectMapper;
+        this.clock = clock;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.processLock = PROCESS_LOCKS.computeIfAbsent(directory.toAbsolutePath().normalize(), ignored -> new ReentrantLock());
+        try {
+            Files.createDirectories(queueDirectory);
+            Files.createDirectories(doneDirectory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create job directory " + directory, e);
+        }
+    }
+
+    @Override
+    public void submit(GenerationJob job) {
+        write(queueDirectory, job);
+        queueIndex.put(job.getId(), job.getMode());
+    }
+
+    @Override
+    public Optional<GenerationJob> get(String id) {
+        if (!VALID_ID.matcher(id).matches()) {
+            return Optional.empty();
+        }
+        // Finishing writes done/ before removing queue/, so look in done/ on either side of queue/
+        GenerationJob job = read(doneDirectory, id);
+        if (job == null) {
+            job = read(queueDirectory, id);
+        }
+        if (job == null) {
+            job = read(doneDirectory, id);
+        }
+        return Optional.ofNullable(job);
+    }
+
+    @Override
+    public Optional<GenerationJob> claim(String worker, Set<GenerationMode> modes, Duration lease) {
+        if (modes.isEmpty()) {
+            return Optional.empty();
+        }
+        refreshIndex();
+        return locked(() -> {
+            long now = clock.millis();
+            for (Map.Entry<String, GenerationMode> candidate : queueIndex.entrySet()) {
+                if (!modes.contains(candidate.getValue())) {
+                    continue;
+                }
+                String id = candidate.getKey();
+                GenerationJob job = read(queueDirectory, id);
+                if (job == null) {
+                    queueIndex.remove(id);
+                    continue;
+                }
+                if (Files.exists(doneDirectory.resolve(id + JOB_SUFFIX))) {
+                    // Left behind by a process that died while finishing the job
+                    delete(queueDirectory, id);
+                    queueIndex.remove(id);
+                    continue;
+                }
+                boolean abandoned = job.getState() == GenerationJob.State.RUNNING && job.getLeaseExpiresAt() <= now;
+                if (job.getState() != GenerationJob.State.QUEUED && !abandoned) {
+                    continue;
+                }
+                if (abandoned) {
+                    log.warn("Job {} lease held by {} expired, taking it over", id, job.getWorker());
+                    if (job.getAttempts() >= maxAttempts) {
+                        job.setError("Lease expired on the last of " + maxAttempts + " attempts");
+                        finish(job, GenerationJob.State.FAILED, now);
+                        continue;
+                    }
+                }
+                job.setState(GenerationJob.State.RUNNING);
+                job.setWorker(worker);
+                job.setAttempts(job.getAttempts() + 1);
+                job.setLeaseExpiresAt(now + lease.toMillis());
+                job.setUpdatedAt(now);
+                write(queueDirectory, job);
+                return Optional.of(job);
+            }
+            return Optional.<GenerationJob>empty();
+        });
+    }
+
+    @Override
+    public boolean heartbeat(String id, String worker, Duration lease) {
+        return locked(() -> {
+            GenerationJob job = leased(id, worker);
+            if (job == null) {
+                return false;
+            }
+            long now = clock.millis();
+            job.setLeaseExpiresAt(now + lease.toMillis());
+            job.setUpdatedAt(now);
+            write(queueDirectory, job);
+            return true;
+        });
+    }
+
+    @Override
+    public boolean complete(String id, String worker, PixelArtResponse result) {
+        return locked(() -> {
+            GenerationJob job = leased(id, worker);
+            if (job == null) {
+                return false;
+            }
+            job.setResult(result);
+            job.setError(null);
+            finish(job, GenerationJob.State.SUCCEEDED, clock.millis());
+            return true;
+        });
+    }
+
+    @Override
+    public boolean fail(String id, String worker, String error) {
+        return locked(() -> {
+            GenerationJob job = leased(id, worker);
+            if (job == null) {
+                return false;
+            }
+            long now = clock.millis();
+            job.setError(error);
+            if (job.getAttempts() >= maxAttempts) {
+                finish(job, GenerationJob.State.FAILED, now);
+            } else {
+                requeue(job, now);
+            }
+            return true;
+        });
+    }
+
+    @Override
+    public void release(String id, String worker) {
+        locked(() -> {
+            GenerationJob job = leased(id, worker);
+            if (job != null) {
+                job.setAttempts(job.getAttempts() - 1);
+                requeue(job, clock.millis());
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public int pending() {
+        return queuedIds().size();
+    }
+
+    @Override
+    public int purgeFinished(long olderThanMillis) {
+        int purged = 0;
+        try (Stream<Path> files = Files.list(doneDirectory)) {
+            for (Path file : files.filter(path -> path.toString().endsWith(JOB_SUFFIX)).toList()) {
+                try {
+                    if (Files.getLastModifiedTime(file).toMillis() < olderThanMillis && Files.deleteIfExists(file)) {
+                        purged++;
+                    }
+                } catch (IOException e) {
+                    log.debug("Could not purge finished job {}: {}", file, e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Could not list finished jobs in {}: {}", doneDirectory, e.getMessage());
+        }
+        return purged;
+    }
+
+    private GenerationJob leased(String id, String worker) {
+        GenerationJob job = read(queueDirectory, id);
+        if (job == null || job.getState() != GenerationJob.State.RUNNING || !worker.equals(job.getWorker())) {
+            return null;
+        }
+        return job;
+    }
+
+    private void requeue(GenerationJob job, long now) {
+        job.setState(GenerationJob.State.QUEUED);
+        job.setWorker(null);
+        job.setLeaseExpiresAt(0);
+        job.setUpdatedAt(now);
+        write(queueDirectory, job);
+    }
+
+    private void finish(GenerationJob job, GenerationJob.State state, long now) {
+        job.setState(state);
+        job.setWorker(null);
+        job.setLeaseExpiresAt(0);
+        job.setUpdatedAt(now);
+        write(doneDirectory, job);
+        delete(queueDirectory, job.getId());
+        queueIndex.remove(job.getId());
+    }
+
+    /**
+     * Add jobs other instances submitted and drop those they finished
+     */
+    private void refreshIndex() {
+        List<String> ids = queuedIds();
+        for (String id : ids) {
+            if (!queueIndex.containsKey(id)) {
+                GenerationJob job = read(queueDirectory, id);
+                if (job != null) {
+                    queueIndex.put(id, job.getMode());
+                }
+            }
+        }
+        queueIndex.keySet().retainAll(new HashSet<>(ids));
+    }
+
+    private List<String> queuedIds() {
+        try (Stream<Path> files = Files.list(queueDirectory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.endsWith(JOB_SUFFIX))
+                    .map(name -> name.substring(0, name.length() - JOB_SUFFIX.length()))
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot list jobs in " + queueDirectory, e);
+        }
+    }
+
+    private <T> T locked(Supplier<T> action) {
+        processLock.lock();
+        try (FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+             FileLock ignored = channel.lock()) {
+            return action.get();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot lock job queue " + lockFile, e);
+        } finally {
+            processLock.unlock();
+        }
+    }
+
+    private GenerationJob read(Path directory, String id) {
+        Path file = directory.resolve(id + JOB_SUFFIX);
+        try {
+            return objectMapper.readValue(Files.readAllBytes(file), GenerationJob.class);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            log.warn("Job file {} unreadable: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    private void write(Path directory, GenerationJob job) {
+        Path target = directory.resolve(job.getId() + JOB_SUFFIX);
+        try {
+            Path temp = Files.createTempFile(directory, job.getId(), ".tmp");
+            try {
+                Files.write(temp, objectMapper.writeValueAsBytes(job));
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write job " + target, e);
+        }
+    }
+
+    private void delete(Path directory, String id) {
+        try {
+            Files.deleteIfExists(directory.resolve(id + JOB_SUFFIX));
+        } catch (IOException e) {
+            log.warn("Could not delete job file {}: {}", id, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.pixelart.agent.service.jobs;
+
+import com.pixelart.agent.model.GenerationJob;
+import com.pixelart.agent.model.GenerationMode;
+import com.pixelart.agent.model.PixelArtRequest;
+import com.pixelart.agent.service.quota.Tenant;
+import com.pixelart.agent.service.quota.TenantContext;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Accepts generations to run in the background on whichever instance has capacity first
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "pixelart.jobs.enabled", havingValue = "true")
+public class JobQueue {
+
+    private final JobStore jobStore;
+    private final Clock clock;
+    private final Counter submitted;
+
+    public JobQueue(JobStore jobStore, MeterRegistry meterRegistry) {
+        this.jobStore = jobStore;
+        this.clock = Clock.systemUTC();
+        this.submitted = Counter.builder("pixelart.jobs.submitted")
+                .description("Jobs added to the shared queue")
+                .register(meterRegistry);
+        Gauge.builder("pixelart.jobs.pending", jobStore, JobStore::pending)
+                .description("Jobs queued or running across all instances")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Queue a generation under the current tenant
+     */
+    public GenerationJob submit(PixelArtRequest request, GenerationMode mode) {
+        long now = clock.millis();
+        Tenant tenant = TenantContext.current();
+        GenerationJob job = GenerationJob.builder()
+                .id(newId(now))
+                .state(GenerationJob.State.QUEUED)
+                .mode(mode)
+                .request(request)
+                .createdAt(now)
+                .updatedAt(now)
+                .tenant(tenant.name())
+                .tenantWeight(tenant.weight())
+                .build();
+        jobStore.submit(job);
+        submitted.increment();
+        log.info("Queued {} job {}", mode.getValue(), job.getId());
+        return job;
+    }
+
+    public Optional<GenerationJob> get(String id) {
+        return jobStore.get(id);
+    }
+
+    /**
+     * Creation time first, so ids sort oldest first
+     */
+    private static String newId(long now) {
+        return String.format("%013d-%s", now, UUID.randomUUID().toString().substring(0, 8));
+    }
+}
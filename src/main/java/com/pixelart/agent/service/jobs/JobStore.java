@@ -0,0 +1,68 @@
+package com.pixelart.agent.service.jobs;
+
+import com.pixelart.agent.model.GenerationJob;
+import com.pixelart.agent.model.GenerationMode;
+import com.pixelart.agent.model.PixelArtResponse;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Job queue shared by every agent instance.
+ *
+ * A worker claims a job by taking a lease on it and keeps the lease by heartbeating. A job
+ * whose lease runs out, because its worker crashed or stalled, can be claimed again by any
+ * worker. Updates from a worker that no longer holds the lease are refused.
+ */
+public interface JobStore {
+
+    /**
+     * Add a queued job
+     */
+    void submit(GenerationJob job);
+
+    /**
+     * The job with this id, finished or not
+     */
+    Optional<GenerationJob> get(String id);
+
+    /**
+     * Lease the oldest queued or abandoned job in one of the given modes
+     */
+    Optional<GenerationJob> claim(String worker, Set<GenerationMode> modes, Duration lease);
+
+    /**
+     * Extend a lease
+     * @return false if the worker no longer holds it
+     */
+    boolean heartbeat(String id, String worker, Duration lease);
+
+    /**
+     * Record the result of a leased job
+     * @return false if the worker no longer holds the lease
+     */
+    boolean complete(String id, String worker, PixelArtResponse result);
+
+    /**
+     * Record a failed attempt; the job is queued again until it runs out of attempts
+     * @return false if the worker no longer holds the lease
+     */
+    boolean fail(String id, String worker, String error);
+
+    /**
+     * Give a leased job back to the queue without counting the attempt, e.g. on shutdown
+     */
+    void release(String id, String worker);
+
+    /**
+     * Jobs queued or running
+     */
+    int pending();
+
+    /**
+     * Delete finished jobs last updated before the cutoff
+     * @return how many were deleted
+     */
+    int purgeFinished(long olderThanMillis);
+}
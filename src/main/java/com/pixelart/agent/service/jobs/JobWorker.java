@@ -0,0 +1,267 @@
+package com.pixelart.agent.service.jobs;
+
+import com.pixelart.agent.model.GenerationJob;
+import com.pixelart.agent.model.GenerationMode;
+import com.pixelart.agent.model.PixelArtResponse;
+import com.pixelart.agent.service.PixelArtAgentService;
+import com.pixelart.agent.service.concurrency.BlockingCallLimiter;
+import com.pixelart.agent.service.concurrency.LimitExceededException;
+import com.pixelart.agent.service.concurrency.VirtualThreads;
+import com.pixelart.agent.service.quota.Tenant;
+import com.pixelart.agent.service.quota.TenantContext;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs jobs from the shared queue on this instance.
+ *
+ * Workers pull rather than being pushed to: a job is only claimed while this instance has
+ * free permits for the backends it needs and fewer than max-concurrent jobs running, so a
+ * busy or slow instance simply claims less. A claimed job reserves its permits until it
+ * makes its first calls, so one poll cannot claim more jobs than there is room for. Running jobs are kept leased by a heartbeat.
+ * If this instance dies the heartbeat stops and another instance takes the job over once
+ * the lease expires; on a clean shutdown running jobs are handed back straight away, as are
+ * jobs shed by a limiter, without using up an attempt.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "pixelart.jobs.enabled", havingValue = "true")
+public class JobWorker {
+
+    private final JobStore jobStore;
+    private final PixelArtAgentService pixelArtAgentService;
+    private final BlockingCallLimiter blockingCallLimiter;
+    private final boolean consume;
+    private final String workerId;
+    private final Duration lease;
+    private final long heartbeatMs;
+    private final long pollMs;
+    private final int maxConcurrent;
+    private final Duration retention;
+
+    private final Map<String, Future<?>> running = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService executor;
+
+    private final Counter claimed;
+    private final Counter succeeded;
+    private final Counter failed;
+    private final Counter shed;
+    private final Counter leasesLost;
+
+    public JobWorker(JobStore jobStore, PixelArtAgentService pixelArtAgentService,
+                     BlockingCallLimiter blockingCallLimiter, MeterRegistry meterRegistry,
+                     @Value("${pixelart.jobs.worker.enabled:true}") boolean consume,
+                     @Value("${pixelart.jobs.worker.id:}") String workerId,
+                     @Value("${pixelart.jobs.worker.max-concurrent:4}") int maxConcurrent,
+                     @Value("${pixelart.jobs.lease-ms:60000}") long leaseMs,
+                     @Value("${pixelart.jobs.heartbeat-ms:15000}") long heartbeatMs,
+                     @Value("${pixelart.jobs.poll-ms:1000}") long pollMs,
+                     @Value("${pixelart.jobs.retention-hours:24}") long retentionHours,
+                     @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.jobStore = jobStore;
+        this.pixelArtAgentService = pixelArtAgentService;
+        this.blockingCallLimiter = blockingCallLimiter;
+        this.consume = consume;
+        this.workerId = workerId.isBlank() ? ManagementFactory.getRuntimeMXBean().getName() : workerId;
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.lease = Duration.ofMillis(leaseMs);
+        this.heartbeatMs = Math.min(heartbeatMs, leaseMs / 2);
+        this.pollMs = pollMs;
+        this.retention = Duration.ofHours(retentionHours);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "job-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor = VirtualThreads.executor(virtualThreads, this.maxConcurrent, "job");
+
+        this.claimed = Counter.builder("pixelart.jobs.claimed")
+                .description("Jobs this instance took from the shared queue")
+                .register(meterRegistry);
+        this.succeeded = outcomeCounter(meterRegistry, "succeeded");
+        this.failed = outcomeCounter(meterRegistry, "failed");
+        this.shed = outcomeCounter(meterRegistry, "shed");
+        this.leasesLost = Counter.builder("pixelart.jobs.leases.lost")
+                .description("Running jobs whose lease passed to another instance")
+                .register(meterRegistry);
+        Gauge.builder("pixelart.jobs.running", running, Map::size)
+                .description("Jobs running on this instance")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void start() {
+        if (!consume) {
+            log.info("Job worker disabled; this instance only submits jobs");
+            return;
+        }
+        scheduler.scheduleWithFixedDelay(this::poll, pollMs, pollMs, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::heartbeat, heartbeatMs, heartbeatMs, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::purge, 0, 1, TimeUnit.HOURS);
+        log.info("Job worker {} running up to {} jobs, lease {}ms", workerId, maxConcurrent, lease.toMillis());
+    }
+
+    @PreDestroy
+    void stop() {
+        scheduler.shutdownNow();
+        executor.shutdownNow();
+        running.keySet().forEach(id -> {
+            log.info("Returning job {} to the queue", id);
+            jobStore.release(id, workerId);
+        });
+    }
+
+    /**
+     * Claim jobs while this instance has room for them
+     */
+    void poll() {
+        try {
+            while (running.size() < maxConcurrent) {
+                Set<GenerationMode> modes = acceptableModes();
+                if (modes.isEmpty()) {
+                    return;
+                }
+                Optional<GenerationJob> job = jobStore.claim(workerId, modes, lease);
+                if (job.isEmpty()) {
+                    return;
+                }
+                claimed.increment();
+                String id = job.get().getId();
+                log.info("Claimed {} job {} (attempt {})", job.get().getMode().getValue(), id, job.get().getAttempts());
+                BlockingCallLimiter.Reservation reservation = blockingCallLimiter.reserve(backends(job.get().getMode()));
+                // Registered before it starts, so a job that finishes at once is never left behind in running
+                FutureTask<Void> task = new FutureTask<>(() -> run(job.get(), reservation), null) {
+                    @Override
+                    protected void done() {
+                        // Also covers a job cancelled before it started
+                        reservation.close();
+                    }
+                };
+                running.put(id, task);
+                try {
+                    executor.execute(task);
+                } catch (RuntimeException e) {
+                    running.remove(id);
+                    reservation.close();
+                    throw e;
+                }
+            }
+        } catch (RuntimeException e) {
+            log.warn("Polling the job queue failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Modes whose backends have a free permit here; full generations need both
+     */
+    private Set<GenerationMode> acceptableModes() {
+        boolean llm = blockingCallLimiter.headroom(BlockingCallLimiter.LLM) > 0;
+        boolean image = blockingCallLimiter.headroom(BlockingCallLimiter.IMAGE) > 0;
+        Set<GenerationMode> modes = EnumSet.noneOf(GenerationMode.class);
+        if (llm) {
+            modes.add(GenerationMode.TEXT_ONLY);
+        }
+        if (image) {
+            modes.add(GenerationMode.IMAGE_ONLY);
+        }
+        if (llm && image) {
+            modes.add(GenerationMode.FULL);
+        }
+        return modes;
+    }
+
+    private static Set<String> backends(GenerationMode mode) {
+        return switch (mode) {
+            case TEXT_ONLY -> Set.of(BlockingCallLimiter.LLM);
+            case IMAGE_ONLY -> Set.of(BlockingCallLimiter.IMAGE);
+            case FULL -> Set.of(BlockingCallLimiter.LLM, BlockingCallLimiter.IMAGE);
+        };
+    }
+
+    private void run(GenerationJob job, BlockingCallLimiter.Reservation reservation) {
+        String id = job.getId();
+        try {
+            reservation.bind();
+            if (job.getTenant() != null) {
+                TenantContext.set(new Tenant(job.getTenant(), job.getTenantWeight()));
+            }
+            PixelArtResponse result = pixelArtAgentService.generatePixelArt(job.getRequest(), job.getMode());
+            if (jobStore.complete(id, workerId, result)) {
+                succeeded.increment();
+                log.info("Job {} succeeded", id);
+            }
+        } catch (LimitExceededException e) {
+            // The backend never ran the job, so this instance's backpressure must not cost it an attempt
+            log.info("Job {} shed ({}), returning it to the queue", id, e.getMessage());
+            jobStore.release(id, workerId);
+            shed.increment();
+        } catch (Exception e) {
+            if (Thread.currentThread().isInterrupted()) {
+                // Cancelled after losing the lease, or shutting down
+                return;
+            }
+            log.warn("Job {} attempt {} failed: {}", id, job.getAttempts(), e.getMessage());
+            if (jobStore.fail(id, workerId, e.getMessage())) {
+                failed.increment();
+            }
+        } finally {
+            reservation.close();
+            TenantContext.clear();
+            running.remove(id);
+        }
+    }
+
+    /**
+     * Extend the leases of running jobs, dropping any that another instance has taken over
+     */
+    void heartbeat() {
+        running.forEach((id, future) -> {
+            try {
+                if (!jobStore.heartbeat(id, workerId, lease)) {
+                    log.warn("Lost the lease on job {}, stopping it", id);
+                    leasesLost.increment();
+                    running.remove(id);
+                    future.cancel(true);
+                }
+            } catch (RuntimeException e) {
+                log.warn("Heartbeat for job {} failed: {}", id, e.getMessage());
+            }
+        });
+    }
+
+    private void purge() {
+        int purged = jobStore.purgeFinished(System.currentTimeMillis() - retention.toMillis());
+        if (purged > 0) {
+            log.info("Purged {} finished jobs older than {}", purged, retention);
+        }
+    }
+
+    private static Counter outcomeCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("pixelart.jobs.attempts")
+                .description("Job attempts finished on this instance")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
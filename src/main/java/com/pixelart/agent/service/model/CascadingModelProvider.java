@@ -0,0 +1,185 @@
+package com.pixelart.agent.service.model;
+
+import com.pixelart.agent.model.ResponseQuality;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Two-tier Ollama provider: drafts go to a small, fast model with a hard output budget, and
+ * only escalate to the larger model when the draft is cut off at the budget or fails the
+ * caller's validation. High-quality prompts skip the small model entirely.
+ *
+ * Each tier reports its latency and token use, and escalations are counted by reason, so the
+ * share of drafts that end up paying for both models can be read off the metrics.
+ */
+@Slf4j
+@Lazy
+@Component
+public class CascadingModelProvider implements ModelProvider {
+
+    private static final String SMALL = "small";
+    private static final String LARGE = "large";
+    private static final List<String> ESCALATION_REASONS = List.of("truncated", "validation", "error");
+
+    /**
+     * The calls the cascade makes to Ollama, so tests can stand in for it
+     */
+    interface Backend {
+        ModelReply generate(String prompt, String model, Integer numPredict);
+
+        void warmUp(String model);
+
+        boolean isAvailable();
+    }
+
+    private final Backend backend;
+    private final String smallModel;
+    private final int smallNumPredict;
+    private final String largeModel;
+    private final Integer largeNumPredict;
+
+    private final Map<ResponseQuality, Counter> requests = new EnumMap<>(ResponseQuality.class);
+    private final Map<String, Counter> escalations = new HashMap<>();
+    private final Map<String, Tier> tiers = new HashMap<>();
+
+    @Autowired
+    public CascadingModelProvider(
+            OllamaModelProvider ollama,
+            MeterRegistry meterRegistry,
+            @Value("${pixelart.chat-model.cascade.small-model:qwen2.5:0.5b}") String smallModel,
+            @Value("${pixelart.chat-model.cascade.small-num-predict:384}") int smallNumPredict,
+            @Value("${pixelart.chat-model.cascade.large-model:}") String largeModel,
+            @Value("${pixelart.chat-model.cascade.large-num-predict:0}") int largeNumPredict) {
+        this(new Backend() {
+            @Override
+            public ModelReply generate(String prompt, String model, Integer numPredict) {
+                return ollama.generate(prompt, model, numPredict);
+            }
+
+            @Override
+            public void warmUp(String model) {
+                ollama.warmUp(model);
+            }
+
+            @Override
+            public boolean isAvailable() {
+                return ollama.isAvailable();
+            }
+        }, meterRegistry, smallModel, smallNumPredict,
+                largeModel.isBlank() ? ollama.getDefaultModel() : largeModel, largeNumPredict);
+    }
+
+    CascadingModelProvider(Backend backend, MeterRegistry meterRegistry, String smallModel, int smallNumPredict,
+                           String largeModel, int largeNumPredict) {
+        this.backend = backend;
+        this.smallModel = smallModel;
+        this.smallNumPredict = smallNumPredict;
+        this.largeModel = largeModel;
+        this.largeNumPredict = largeNumPredict > 0 ? largeNumPredict : null;
+
+        // Registered once here rather than looked up on every call
+        for (ResponseQuality quality : ResponseQuality.values()) {
+            requests.put(quality, Counter.builder("pixelart.llm.cascade.requests")
+                    .description("Prompts routed through the model cascade")
+                    .tag("quality", quality.getValue())
+                    .register(meterRegistry));
+        }
+        for (String reason : ESCALATION_REASONS) {
+            escalations.put(reason, Counter.builder("pixelart.llm.cascade.escalations")
+                    .description("Drafts re-run on the larger model")
+                    .tag("reason", reason)
+                    .register(meterRegistry));
+        }
+        for (String tier : List.of(SMALL, LARGE)) {
+            tiers.put(tier, new Tier(meterRegistry, tier));
+        }
+    }
+
+    @Override
+    public String generateResponse(String prompt) {
+        return generateResponse(prompt, ResponseQuality.DRAFT, response -> true);
+    }
+
+    @Override
+    public String generateResponse(String prompt, ResponseQuality quality, Predicate<String> acceptable) {
+        requests.get(quality).increment();
+        if (quality == ResponseQuality.HIGH) {
+            return call(LARGE, largeModel, largeNumPredict, prompt).text();
+        }
+
+        String reason;
+        try {
+            ModelReply draft = call(SMALL, smallModel, smallNumPredict, prompt);
+            if (draft.truncated()) {
+                reason = "truncated";
+            } else if (!acceptable.test(draft.text())) {
+                reason = "validation";
+            } else {
+                return draft.text();
+            }
+        } catch (RuntimeException e) {
+            log.warn("Small model {} failed, escalating: {}", smallModel, e.getMessage());
+            reason = "error";
+        }
+
+        log.debug("Escalating draft to {} ({})", largeModel, reason);
+        escalations.get(reason).increment();
+        return call(LARGE, largeModel, largeNumPredict, prompt).text();
+    }
+
+    private ModelReply call(String tierName, String model, Integer numPredict, String prompt) {
+        Tier tier = tiers.get(tierName);
+        ModelReply reply = tier.latency.record(() -> backend.generate(prompt, model, numPredict));
+        tier.promptTokens.increment(reply.promptTokens());
+        tier.outputTokens.increment(reply.outputTokens());
+        return reply;
+    }
+
+    @Override
+    public void warmUp() {
+        backend.warmUp(smallModel);
+        backend.warmUp(largeModel);
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return backend.isAvailable();
+    }
+
+    /**
+     * Latency and token meters of one cascade tier
+     */
+    private static final class Tier {
+        final Timer latency;
+        final Counter promptTokens;
+        final Counter outputTokens;
+
+        Tier(MeterRegistry meterRegistry, String tier) {
+            this.latency = Timer.builder("pixelart.llm.cascade.latency")
+                    .description("Model call latency per cascade tier")
+                    .tag("tier", tier)
+                    .register(meterRegistry);
+            this.promptTokens = tokens(meterRegistry, tier, "prompt");
+            this.outputTokens = tokens(meterRegistry, tier, "output");
+        }
+
+        private static Counter tokens(MeterRegistry meterRegistry, String tier, String type) {
+            return Counter.builder("pixelart.llm.cascade.tokens")
+                    .description("Tokens processed per cascade tier")
+                    .tags("tier", tier, "type", type)
+                    .register(meterRegistry);
+        }
+    }
+}
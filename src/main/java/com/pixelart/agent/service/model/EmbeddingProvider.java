@@ -0,0 +1,25 @@
+package com.pixelart.agent.service.model;
+
+/**
+ * Interface for text embedding providers
+ * Implementations can provide real or mocked embeddings
+ */
+public interface EmbeddingProvider {
+    /**
+     * Embed a piece of text
+     * @param text The text to embed
+     * @return The embedding vector, always of length dimensions()
+     */
+    float[] embed(String text);
+    
+    /**
+     * Length of the vectors returned by embed()
+     */
+    int dimensions();
+    
+    /**
+     * Check if the embedding provider is available
+     * @return true if the provider is available and working
+     */
+    boolean isAvailable();
+}
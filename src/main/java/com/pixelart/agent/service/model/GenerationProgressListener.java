@@ -0,0 +1,15 @@
+package com.pixelart.agent.service.model;
+
+import com.pixelart.agent.model.GenerationProgress;
+
+/**
+ * Callback receiving progress snapshots while a generation is running
+ */
+@FunctionalInterface
+public interface GenerationProgressListener {
+    /**
+     * Called for every progress snapshot, possibly from a background polling thread
+     * @param progress The latest progress snapshot
+     */
+    void onProgress(GenerationProgress progress);
+}
@@ -0,0 +1,103 @@
+package com.pixelart.agent.service.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Parameters for a single image generation call
+ */
+@Data
+@Builder(toBuilder = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImageGenerationParams {
+
+    /** Stable Diffusion seeds are 32-bit unsigned */
+    private static final long MAX_SEED = 1L << 32;
+
+    /**
+     * The text prompt describing the image
+     */
+    private String prompt;
+
+    /**
+     * Image width for a single sprite
+     */
+    private int width;
+
+    /**
+     * Image height for a single sprite
+     */
+    private int height;
+
+    /**
+     * Whether to generate a spritesheet
+     */
+    private boolean spritesheet;
+
+    /**
+     * Number of frames for spritesheet
+     */
+    @Builder.Default
+    private int frameCount = 1;
+
+    /**
+     * Number of images to render from this prompt in one backend call
+     */
+    @Builder.Default
+    private int batchSize = 1;
+
+    /**
+     * LoRA name, null to use the configured default
+     */
+    private String lora;
+
+    /**
+     * LoRA strength, null to use the configured default
+     */
+    private Double loraStrength;
+
+    /**
+     * Checkpoint name, null to keep the checkpoint currently loaded by the backend
+     */
+    private String checkpoint;
+
+    /**
+     * Seed of the first image in the batch, later images use seed + 1, seed + 2, ...
+     * Null lets the backend pick a random seed, which disables caching
+     */
+    private Long seed;
+
+    /**
+     * Colors to quantize the finished image to, null to keep it as rendered
+     */
+    private Integer paletteSize;
+
+    /**
+     * A seed picked here rather than by the backend, so every image can be reproduced and cached
+     */
+    public static long randomSeed() {
+        return ThreadLocalRandom.current().nextLong(0, MAX_SEED);
+    }
+
+    /**
+     * Key identifying the weights a backend must load for this job
+     */
+    public String modelKey() {
+        return (checkpoint != null && !checkpoint.isEmpty() ? checkpoint : "default")
+                + "|" + (lora != null && !lora.isEmpty() ? lora : "default");
+    }
+
+    /**
+     * Optional listener for progress updates, ignored by providers that cannot report progress
+     */
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private GenerationProgressListener progressListener;
+}
@@ -1,5 +1,8 @@
 package com.pixelart.agent.service.model;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Interface for image generation providers
  * Implementations can provide real or mocked responses
@@ -25,6 +28,49 @@ public interface ImageProvider {
      */
     String generateImage(String prompt, int width, int height, boolean isSpritesheet, int frameCount);
     
+    /**
+     * Generate an image from a full parameter set
+     * Providers that support progress reporting publish updates to the params' listener
+     * @param params The generation parameters
+     * @return Base64 encoded image data
+     */
+    default String generateImage(ImageGenerationParams params) {
+        return generateImage(params.getPrompt(), params.getWidth(), params.getHeight(),
+            params.isSpritesheet(), params.getFrameCount());
+    }
+    
+    /**
+     * Generate params.batchSize images from the same prompt
+     * Providers that can render a batch in one backend call should override this
+     * @param params The generation parameters
+     * @return Base64 encoded image data per successfully generated image
+     */
+    default List<String> generateImages(ImageGenerationParams params) {
+        List<String> images = new ArrayList<>();
+        for (int i = 0; i < Math.max(1, params.getBatchSize()); i++) {
+            String image = generateImage(params);
+            if (image != null) {
+                images.add(image);
+            }
+        }
+        return images;
+    }
+    
+    /**
+     * Look up previously generated images for the params without calling the backend
+     * @param params The generation parameters, including a fixed seed
+     * @return Base64 encoded images for the whole batch, or an empty list on a miss
+     */
+    default List<String> cachedImages(ImageGenerationParams params) {
+        return List.of();
+    }
+    
+    /**
+     * Load the model ahead of the first request, for providers where that is slow
+     */
+    default void warmUp() {
+    }
+    
     /**
      * Check if the image provider is available
      * @return true if the provider is available and working
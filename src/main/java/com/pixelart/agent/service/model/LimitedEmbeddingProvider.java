@@ -0,0 +1,32 @@
+package com.pixelart.agent.service.model;
+
+import com.pixelart.agent.service.concurrency.BlockingCallLimiter;
+
+/**
+ * Embedding provider decorator that caps concurrent calls to the underlying backend
+ */
+public class LimitedEmbeddingProvider implements EmbeddingProvider {
+
+    private final EmbeddingProvider delegate;
+    private final BlockingCallLimiter limiter;
+
+    public LimitedEmbeddingProvider(EmbeddingProvider delegate, BlockingCallLimiter limiter) {
+        this.delegate = delegate;
+        this.limiter = limiter;
+    }
+
+    @Override
+    public float[] embed(String text) {
+        return limiter.call(BlockingCallLimiter.EMBEDDING, () -> delegate.embed(text));
+    }
+
+    @Override
+    public int dimensions() {
+        return delegate.dimensions();
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return delegate.isAvailable();
+    }
+}
@@ -0,0 +1,56 @@
+package com.pixelart.agent.service.model;
+
+import com.pixelart.agent.service.concurrency.BlockingCallLimiter;
+
+import java.util.List;
+
+/**
+ * Image provider decorator that caps concurrent calls to the underlying backend.
+ * Cache lookups are not backend calls and bypass the cap.
+ */
+public class LimitedImageProvider implements ImageProvider {
+
+    private final ImageProvider delegate;
+    private final BlockingCallLimiter limiter;
+
+    public LimitedImageProvider(ImageProvider delegate, BlockingCallLimiter limiter) {
+        this.delegate = delegate;
+        this.limiter = limiter;
+    }
+
+    @Override
+    public String generateImage(String prompt, int width, int height) {
+        return limiter.call(BlockingCallLimiter.IMAGE, () -> delegate.generateImage(prompt, width, height));
+    }
+
+    @Override
+    public String generateImage(String prompt, int width, int height, boolean isSpritesheet, int frameCount) {
+        return limiter.call(BlockingCallLimiter.IMAGE,
+                () -> delegate.generateImage(prompt, width, height, isSpritesheet, frameCount));
+    }
+
+    @Override
+    public String generateImage(ImageGenerationParams params) {
+        return limiter.call(BlockingCallLimiter.IMAGE, () -> delegate.generateImage(params));
+    }
+
+    @Override
+    public List<String> generateImages(ImageGenerationParams params) {
+        return limiter.call(BlockingCallLimiter.IMAGE, () -> delegate.generateImages(params));
+    }
+
+    @Override
+    public List<String> cachedImages(ImageGenerationParams params) {
+        return delegate.cachedImages(params);
+    }
+
+    @Override
+    public void warmUp() {
+        delegate.warmUp();
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return delegate.isAvailable();
+    }
+}
@@ -0,0 +1,40 @@
+package com.pixelart.agent.service.model;
+
+import com.pixelart.agent.model.ResponseQuality;
+import com.pixelart.agent.service.concurrency.BlockingCallLimiter;
+
+import java.util.function.Predicate;
+
+/**
+ * Model provider decorator that caps concurrent calls to the underlying backend
+ */
+public class LimitedModelProvider implements ModelProvider {
+
+    private final ModelProvider delegate;
+    private final BlockingCallLimiter limiter;
+
+    public LimitedModelProvider(ModelProvider delegate, BlockingCallLimiter limiter) {
+        this.delegate = delegate;
+        this.limiter = limiter;
+    }
+
+    @Override
+    public String generateResponse(String prompt) {
+        return limiter.call(BlockingCallLimiter.LLM, () -> delegate.generateResponse(prompt));
+    }
+
+    @Override
+    public String generateResponse(String prompt, ResponseQuality quality, Predicate<String> acceptable) {
+        return limiter.call(BlockingCallLimiter.LLM, () -> delegate.generateResponse(prompt, quality, acceptable));
+    }
+
+    @Override
+    public void warmUp() {
+        delegate.warmUp();
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return delegate.isAvailable();
+    }
+}
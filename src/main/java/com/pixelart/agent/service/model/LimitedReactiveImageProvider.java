@@ -0,0 +1,29 @@
+package com.pixelart.agent.service.model;
+
+import com.pixelart.agent.service.concurrency.BlockingCallLimiter;
+import reactor.core.publisher.Mono;
+
+/**
+ * Reactive image provider decorator that takes its permits from the same image limit as the
+ * blocking providers, waiting for one without holding a thread
+ */
+public class LimitedReactiveImageProvider implements ReactiveImageProvider {
+
+    private final ReactiveImageProvider delegate;
+    private final BlockingCallLimiter limiter;
+
+    public LimitedReactiveImageProvider(ReactiveImageProvider delegate, BlockingCallLimiter limiter) {
+        this.delegate = delegate;
+        this.limiter = limiter;
+    }
+
+    @Override
+    public Mono<String> generateImage(ImageGenerationParams params) {
+        return limiter.callReactive(BlockingCallLimiter.IMAGE, () -> delegate.generateImage(params));
+    }
+
+    @Override
+    public Mono<Boolean> isAvailable() {
+        return delegate.isAvailable();
+    }
+}
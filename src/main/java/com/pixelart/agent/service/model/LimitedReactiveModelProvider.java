@@ -0,0 +1,35 @@
+package com.pixelart.agent.service.model;
+
+import com.pixelart.agent.service.concurrency.BlockingCallLimiter;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Reactive model provider decorator that takes its permits from the same LLM limit as the
+ * blocking providers, waiting for one without holding a thread
+ */
+public class LimitedReactiveModelProvider implements ReactiveModelProvider {
+
+    private final ReactiveModelProvider delegate;
+    private final BlockingCallLimiter limiter;
+
+    public LimitedReactiveModelProvider(ReactiveModelProvider delegate, BlockingCallLimiter limiter) {
+        this.delegate = delegate;
+        this.limiter = limiter;
+    }
+
+    @Override
+    public Flux<String> streamResponse(String prompt) {
+        return limiter.streamReactive(BlockingCallLimiter.LLM, () -> delegate.streamResponse(prompt));
+    }
+
+    @Override
+    public Mono<String> generateResponse(String prompt) {
+        return limiter.callReactive(BlockingCallLimiter.LLM, () -> delegate.generateResponse(prompt));
+    }
+
+    @Override
+    public Mono<Boolean> isAvailable() {
+        return delegate.isAvailable();
+    }
+}
@@ -0,0 +1,57 @@
+package com.pixelart.agent.service.model;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+
+/**
+ * Mock embedding provider for local development and testing
+ * Hashes words into a fixed-size vector, so texts sharing vocabulary are similar regardless of
+ * word order. Deterministic and needs no model.
+ */
+@Slf4j
+@Lazy
+@Component
+public class MockEmbeddingProvider implements EmbeddingProvider {
+    
+    private static final Set<String> STOP_WORDS = Set.of(
+        "a", "an", "the", "and", "or", "with", "of", "in", "on", "at", "to", "for", "holding", "having");
+    
+    private final int dimensions;
+    
+    public MockEmbeddingProvider(@Value("${pixelart.semantic-cache.mock-dimensions:256}") int dimensions) {
+        this.dimensions = dimensions;
+    }
+    
+    @Override
+    public float[] embed(String text) {
+        float[] vector = new float[dimensions];
+        String[] words = text.toLowerCase().split("[^a-z0-9]+");
+        for (String word : words) {
+            if (!word.isEmpty() && !STOP_WORDS.contains(word)) {
+                addFeature(vector, word, 1.0f);
+            }
+        }
+        return vector;
+    }
+    
+    private void addFeature(float[] vector, String feature, float weight) {
+        int hash = feature.hashCode() * 0x9E3779B1;
+        int bucket = Math.floorMod(hash, dimensions);
+        // Sign hashing keeps unrelated features from only ever adding up
+        vector[bucket] += (hash >>> 31) == 0 ? weight : -weight;
+    }
+    
+    @Override
+    public int dimensions() {
+        return dimensions;
+    }
+    
+    @Override
+    public boolean isAvailable() {
+        return true;
+    }
+}
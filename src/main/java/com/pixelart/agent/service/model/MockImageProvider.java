@@ -1,13 +1,26 @@
 package com.pixelart.agent.service.model;
 
+import com.pixelart.agent.config.MockResponsesConfig;
+import com.pixelart.agent.service.concurrency.BlockingCallLimiter;
+import com.pixelart.agent.service.traffic.BackendCall;
+import com.pixelart.agent.service.traffic.TrafficContext;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Component;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
 /**
  * Mock image provider for local development and testing
  * Returns spoofed base64 encoded pixel art images
+ * Replayed requests get the latency and PNG size of the call they recorded
  */
 @Slf4j
+@Lazy
 @Component
 public class MockImageProvider implements ImageProvider {
     
@@ -15,11 +28,21 @@ public class MockImageProvider implements ImageProvider {
     private static final String PLACEHOLDER_IMAGE = 
         "iVBORw0KGgoAAAANSUhEUgAAAAEAAAABCAYAAAAfFcSJAAAADUlEQVR42mNk+M9QDwADhgGAWjR9awAAAABJRU5ErkJggg==";
     
+    /** Ancillary, private, safe-to-copy chunk type that decoders skip */
+    private static final byte[] PADDING_CHUNK = "paDd".getBytes(StandardCharsets.US_ASCII);
+    private static final int CHUNK_OVERHEAD = 12;
+    private static final int IEND_LENGTH = 12;
+    
     // 8x8 colored pixel pattern PNG (red and blue checkerboard)
     private static final String COLORED_PIXEL_IMAGE = 
         "iVBORw0KGgoAAAANSUhEUgAAAAgAAAAICAIAAABLbSncAAAAJ0lEQVQY02P4/x8DAxgYGBhgAIwMjAyMjAzwAKMDrAyMjIxgEgAA//8DAK0DDhU2XoYAAAAASUVORK5CYII=";
     
-    private int callCount = 0;
+    private final MockResponsesConfig mockResponsesConfig;
+    private final AtomicInteger callCount = new AtomicInteger();
+    
+    public MockImageProvider(MockResponsesConfig mockResponsesConfig) {
+        this.mockResponsesConfig = mockResponsesConfig;
+    }
     
     @Override
     public String generateImage(String prompt, int width, int height) {
@@ -28,15 +51,50 @@ public class MockImageProvider implements ImageProvider {
     
     @Override
     public String generateImage(String prompt, int width, int height, boolean isSpritesheet, int frameCount) {
+        BackendCall recorded = TrafficContext.nextPlayback(BlockingCallLimiter.IMAGE);
+        if (recorded != null) {
+            MockModelProvider.simulateLatency(recorded.latencyMs());
+            return padTo(nextImage(prompt, width, height, isSpritesheet), recorded.bytes());
+        }
+        MockModelProvider.simulateLatency(mockResponsesConfig.getImageDelayMs());
+        return nextImage(prompt, width, height, isSpritesheet);
+    }
+    
+    /**
+     * Grow a PNG to the recorded size with a padding chunk before IEND, so it stays a valid image
+     */
+    static String padTo(String base64Png, long bytes) {
+        byte[] png = Base64.getDecoder().decode(base64Png);
+        long padding = bytes - png.length - CHUNK_OVERHEAD;
+        if (padding <= 0 || bytes > Integer.MAX_VALUE) {
+            return base64Png;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(PADDING_CHUNK);
+        crc.update(new byte[(int) padding]);
+        ByteBuffer padded = ByteBuffer.allocate((int) bytes)
+                .put(png, 0, png.length - IEND_LENGTH)
+                .putInt((int) padding)
+                .put(PADDING_CHUNK)
+                .put(new byte[(int) padding])
+                .putInt((int) crc.getValue())
+                .put(png, png.length - IEND_LENGTH, IEND_LENGTH);
+        return Base64.getEncoder().encodeToString(padded.array());
+    }
+    
+    /**
+     * The next spoofed image, without the simulated latency
+     */
+    String nextImage(String prompt, int width, int height, boolean isSpritesheet) {
         log.info("MockImageProvider: Generating spoofed image for prompt: '{}', dimensions: {}x{}, spritesheet: {}", 
             prompt.substring(0, Math.min(50, prompt.length())), width, height, isSpritesheet);
         
-        callCount++;
+        int call = callCount.incrementAndGet();
         
         // Alternate between different responses
-        String response = callCount % 2 == 0 ? PLACEHOLDER_IMAGE : COLORED_PIXEL_IMAGE;
+        String response = call % 2 == 0 ? PLACEHOLDER_IMAGE : COLORED_PIXEL_IMAGE;
         
-        log.debug("MockImageProvider: Returning spoofed image #{} (base64 length: {})", callCount, response.length());
+        log.debug("MockImageProvider: Returning spoofed image #{} (base64 length: {})", call, response.length());
         return response;
     }
     
@@ -1,21 +1,30 @@
 package com.pixelart.agent.service.model;
 
 import com.pixelart.agent.config.MockResponsesConfig;
+import com.pixelart.agent.service.concurrency.BlockingCallLimiter;
+import com.pixelart.agent.service.traffic.BackendCall;
+import com.pixelart.agent.service.traffic.TrafficContext;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * Mock model provider for local development and testing
  * Returns spoofed pixel art descriptions
  * Responses can be customized via MockResponsesConfig
+ * Replayed requests get the latency and response size of the call they recorded
  */
 @Slf4j
+@Lazy
 @Component
 public class MockModelProvider implements ModelProvider {
     
     private final MockResponsesConfig mockResponsesConfig;
-    private int responseIndex = 0;
+    private final AtomicInteger responseIndex = new AtomicInteger();
     
     @Autowired
     public MockModelProvider(MockResponsesConfig mockResponsesConfig) {
@@ -24,17 +33,40 @@ public class MockModelProvider implements ModelProvider {
     
     @Override
     public String generateResponse(String prompt) {
+        BackendCall recorded = TrafficContext.nextPlayback(BlockingCallLimiter.LLM);
+        if (recorded != null) {
+            simulateLatency(recorded.latencyMs());
+            return padTo(nextResponse(prompt), recorded.bytes());
+        }
+        simulateLatency(mockResponsesConfig.getChatDelayMs());
+        return nextResponse(prompt);
+    }
+    
+    /**
+     * Pad with trailing blank space, which the description parser ignores, up to the recorded size
+     */
+    static String padTo(String response, long bytes) {
+        long missing = bytes - response.getBytes(StandardCharsets.UTF_8).length;
+        if (missing <= 1) {
+            return response;
+        }
+        return response + "\n" + " ".repeat((int) (missing - 1));
+    }
+    
+    /**
+     * The next configured response, without the simulated latency
+     */
+    String nextResponse(String prompt) {
         log.info("MockModelProvider: Returning spoofed response for prompt (first 50 chars): {}...", 
             prompt.substring(0, Math.min(50, prompt.length())));
         
         // Get response from config, cycling through available responses
+        int index = responseIndex.getAndIncrement();
         String response = mockResponsesConfig.getChatResponses()
-            .getOrDefault(responseIndex % mockResponsesConfig.getChatResponses().size(),
+            .getOrDefault(index % mockResponsesConfig.getChatResponses().size(),
                 getDefaultResponse());
         
-        responseIndex++;
-        
-        log.debug("MockModelProvider: Returning response #{}", responseIndex);
+        log.debug("MockModelProvider: Returning response #{}", index + 1);
         return response;
     }
     
@@ -43,6 +75,17 @@ public class MockModelProvider implements ModelProvider {
         return true;
     }
     
+    static void simulateLatency(long delayMs) {
+        if (delayMs <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(delayMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
     private String getDefaultResponse() {
         return "Unable to load mock response. Please check MockResponsesConfig.";
     }
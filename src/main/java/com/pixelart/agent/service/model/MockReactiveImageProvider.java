@@ -0,0 +1,40 @@
+package com.pixelart.agent.service.model;
+
+import com.pixelart.agent.config.MockResponsesConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * Reactive mock image provider
+ * Serves the same spoofed images as MockImageProvider after the simulated latency, on a timer
+ */
+@Slf4j
+@Lazy
+@Component
+public class MockReactiveImageProvider implements ReactiveImageProvider {
+    
+    private final MockImageProvider mockImageProvider;
+    private final MockResponsesConfig mockResponsesConfig;
+    
+    public MockReactiveImageProvider(MockImageProvider mockImageProvider, MockResponsesConfig mockResponsesConfig) {
+        this.mockImageProvider = mockImageProvider;
+        this.mockResponsesConfig = mockResponsesConfig;
+    }
+    
+    @Override
+    public Mono<String> generateImage(ImageGenerationParams params) {
+        Mono<String> image = Mono.fromSupplier(() -> mockImageProvider.nextImage(
+            params.getPrompt(), params.getWidth(), params.getHeight(), params.isSpritesheet()));
+        long delayMs = mockResponsesConfig.getImageDelayMs();
+        return delayMs > 0 ? Mono.delay(Duration.ofMillis(delayMs)).then(image) : image;
+    }
+    
+    @Override
+    public Mono<Boolean> isAvailable() {
+        return Mono.just(true);
+    }
+}
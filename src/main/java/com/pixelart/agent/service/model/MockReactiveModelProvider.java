@@ -0,0 +1,63 @@
+package com.pixelart.agent.service.model;
+
+import com.pixelart.agent.config.MockResponsesConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reactive mock model provider
+ * Serves the same responses as MockModelProvider, streamed line by line, with the simulated
+ * latency spread over the lines as a timer rather than a sleeping thread
+ */
+@Slf4j
+@Lazy
+@Component
+public class MockReactiveModelProvider implements ReactiveModelProvider {
+    
+    private final MockModelProvider mockModelProvider;
+    private final MockResponsesConfig mockResponsesConfig;
+    
+    public MockReactiveModelProvider(MockModelProvider mockModelProvider, MockResponsesConfig mockResponsesConfig) {
+        this.mockModelProvider = mockModelProvider;
+        this.mockResponsesConfig = mockResponsesConfig;
+    }
+    
+    @Override
+    public Flux<String> streamResponse(String prompt) {
+        return Flux.defer(() -> {
+            List<String> lines = lines(mockModelProvider.nextResponse(prompt));
+            long delayMs = mockResponsesConfig.getChatDelayMs();
+            if (delayMs <= 0) {
+                return Flux.fromIterable(lines);
+            }
+            return Flux.fromIterable(lines).delayElements(Duration.ofMillis(Math.max(1, delayMs / lines.size())));
+        });
+    }
+    
+    @Override
+    public Mono<Boolean> isAvailable() {
+        return Mono.just(true);
+    }
+    
+    private static List<String> lines(String response) {
+        List<String> lines = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i < response.length(); i++) {
+            if (response.charAt(i) == '\n') {
+                lines.add(response.substring(start, i + 1));
+                start = i + 1;
+            }
+        }
+        if (start < response.length() || lines.isEmpty()) {
+            lines.add(response.substring(start));
+        }
+        return lines;
+    }
+}
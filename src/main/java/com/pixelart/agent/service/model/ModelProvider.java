@@ -1,5 +1,9 @@
 package com.pixelart.agent.service.model;
 
+import com.pixelart.agent.model.ResponseQuality;
+
+import java.util.function.Predicate;
+
 /**
  * Interface for AI model providers
  * Implementations can provide real or mocked responses
@@ -12,6 +16,21 @@ public interface ModelProvider {
      */
     String generateResponse(String prompt);
     
+    /**
+     * Generate a response, letting providers with more than one model pick by quality.
+     * Providers with a single model ignore the hints.
+     * @param acceptable Whether an answer from a cheaper model is good enough to return
+     */
+    default String generateResponse(String prompt, ResponseQuality quality, Predicate<String> acceptable) {
+        return generateResponse(prompt);
+    }
+    
+    /**
+     * Load the model ahead of the first request, for providers where that is slow
+     */
+    default void warmUp() {
+    }
+    
     /**
      * Check if the model provider is available
      * @return true if the model is available and working
@@ -0,0 +1,11 @@
+package com.pixelart.agent.service.model;
+
+/**
+ * A model's answer along with what it cost
+ *
+ * @param promptTokens Tokens read, 0 if the backend did not report it
+ * @param outputTokens Tokens generated, 0 if the backend did not report it
+ * @param truncated Whether generation stopped at the output token budget rather than finishing
+ */
+public record ModelReply(String text, long promptTokens, long outputTokens, boolean truncated) {
+}
@@ -0,0 +1,87 @@
+package com.pixelart.agent.service.model;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pixelart.agent.service.tracing.PipelineTracing;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.client5.http.classic.methods.HttpPost;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.apache.hc.core5.http.io.entity.StringEntity;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Real Ollama embedding provider using the /api/embeddings endpoint
+ */
+@Slf4j
+@Lazy
+@Component
+public class OllamaEmbeddingProvider implements EmbeddingProvider {
+    
+    @Value("${spring.ai.ollama.base-url:http://localhost:11434}")
+    private String ollamaBaseUrl;
+    
+    @Value("${pixelart.semantic-cache.embedding-model:nomic-embed-text}")
+    private String embeddingModel;
+    
+    @Value("${pixelart.semantic-cache.embedding-dimensions:768}")
+    private int dimensions;
+    
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final PipelineTracing tracing;
+    
+    public OllamaEmbeddingProvider(PipelineTracing tracing) {
+        this.tracing = tracing;
+    }
+    
+    @Override
+    public float[] embed(String text) {
+        try (CloseableHttpClient httpClient = HttpClients.createDefault()) {
+            HttpPost request = new HttpPost(ollamaBaseUrl + "/api/embeddings");
+            tracing.outboundHeaders().forEach(request::setHeader);
+            String payload = objectMapper.writeValueAsString(Map.of("model", embeddingModel, "prompt", text));
+            request.setEntity(new StringEntity(payload, ContentType.APPLICATION_JSON));
+            
+            return httpClient.execute(request, response -> {
+                if (response.getCode() != 200) {
+                    throw new IOException("Ollama embeddings returned status " + response.getCode());
+                }
+                JsonNode embedding = objectMapper.readTree(EntityUtils.toString(response.getEntity())).path("embedding");
+                if (embedding.size() != dimensions) {
+                    throw new IOException("Expected " + dimensions + " dimensions from " + embeddingModel
+                        + " but got " + embedding.size());
+                }
+                float[] vector = new float[embedding.size()];
+                for (int i = 0; i < vector.length; i++) {
+                    vector[i] = (float) embedding.get(i).asDouble();
+                }
+                return vector;
+            });
+        } catch (Exception e) {
+            log.error("Error calling Ollama embedding model", e);
+            throw new RuntimeException("Failed to get embedding from Ollama", e);
+        }
+    }
+    
+    @Override
+    public int dimensions() {
+        return dimensions;
+    }
+    
+    @Override
+    public boolean isAvailable() {
+        try {
+            return embed("test").length == dimensions;
+        } catch (Exception e) {
+            log.debug("Ollama embedding model not available: {}", e.getMessage());
+            return false;
+        }
+    }
+}
@@ -1,43 +1,229 @@
 package com.pixelart.agent.service.model;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pixelart.agent.service.concurrency.Hedger;
+import com.pixelart.agent.service.concurrency.RequestHedging;
+import com.pixelart.agent.service.tracing.PipelineTracing;
+import io.micrometer.observation.Observation;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.client5.http.classic.methods.HttpGet;
+import org.apache.hc.client5.http.classic.methods.HttpPost;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.apache.hc.core5.http.io.entity.StringEntity;
 import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.ollama.api.OllamaOptions;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * Real Ollama model provider for generating pixel art descriptions
+ * With a pool of Ollama nodes configured, calls go to the nodes' /api/chat directly so they
+ * can be hedged across them; otherwise they go through Spring AI's ChatClient, which uses the
+ * same endpoint, so both paths apply the model's chat template alike
+ * Each call runs in a pixelart.ollama.generate span carrying the model and token counts, and
+ * pool requests carry its trace context so Ollama-side traces join the request's trace
  */
 @Slf4j
+@Lazy
 @Component
 public class OllamaModelProvider implements ModelProvider {
     
     private final ChatClient chatClient;
+    private final Hedger hedger;
+    private final PipelineTracing tracing;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    
+    /** Optional pool of interchangeable Ollama nodes serving the chat model */
+    @Value("${pixelart.chat-model.ollama-urls:}")
+    private List<String> ollamaUrls;
+    
+    @Value("${spring.ai.ollama.base-url:http://localhost:11434}")
+    private String baseUrl;
+    
+    /** How long Ollama keeps a model loaded after warmup */
+    @Value("${pixelart.warmup.keep-alive:30m}")
+    private String keepAlive;
     
-    public OllamaModelProvider(ChatClient.Builder chatClientBuilder) {
+    @Value("${spring.ai.ollama.chat.options.model:qwen2.5:3b}")
+    private String model;
+    
+    @Value("${spring.ai.ollama.chat.options.temperature:0.8}")
+    private double temperature;
+    
+    @Value("${spring.ai.ollama.chat.options.top-p:0.9}")
+    private double topP;
+    
+    public OllamaModelProvider(ChatClient.Builder chatClientBuilder, RequestHedging requestHedging,
+                               PipelineTracing tracing) {
         this.chatClient = chatClientBuilder.build();
+        this.hedger = requestHedging.forStage(RequestHedging.LLM);
+        this.tracing = tracing;
     }
     
     @Override
     public String generateResponse(String prompt) {
+        return generate(prompt, model, null).text();
+    }
+    
+    /**
+     * Generate with a specific model and an optional cap on output tokens
+     * @param numPredict Maximum tokens to generate, or null for the model's default
+     */
+    public ModelReply generate(String prompt, String model, Integer numPredict) {
         try {
-            log.debug("Calling Ollama with prompt (first 100 chars): {}", 
-                prompt.substring(0, Math.min(100, prompt.length())));
+            log.debug("Calling Ollama model {} with prompt (first 100 chars): {}", 
+                model, prompt.substring(0, Math.min(100, prompt.length())));
             
-            String response = chatClient.prompt()
-                    .user(prompt)
-                    .call()
-                    .content();
+            Observation span = tracing.start(PipelineTracing.OLLAMA_GENERATE)
+                    .lowCardinalityKeyValue("gen_ai.system", "ollama")
+                    .lowCardinalityKeyValue("gen_ai.request.model", model)
+                    .highCardinalityKeyValue("pixelart.prompt.length", String.valueOf(prompt.length()));
+            ModelReply reply = span.observe(() -> {
+                ModelReply generated;
+                if (usesPool()) {
+                    // Hedged attempts run on other threads, so take the trace context here
+                    Map<String, String> traceHeaders = tracing.outboundHeaders();
+                    generated = hedger.call(ollamaUrls, attempt -> chat(attempt, prompt, model, numPredict, traceHeaders));
+                } else {
+                    generated = chat(prompt, model, numPredict);
+                }
+                span.highCardinalityKeyValue("gen_ai.usage.input_tokens", String.valueOf(generated.promptTokens()))
+                        .highCardinalityKeyValue("gen_ai.usage.output_tokens", String.valueOf(generated.outputTokens()))
+                        .highCardinalityKeyValue("pixelart.truncated", String.valueOf(generated.truncated()));
+                return generated;
+            });
             
-            log.debug("Ollama response received (length: {})", response.length());
-            return response;
+            log.debug("Ollama response received (length: {}, tokens: {})", reply.text().length(), reply.outputTokens());
+            return reply;
         } catch (Exception e) {
             log.error("Error calling Ollama model", e);
             throw new RuntimeException("Failed to get response from Ollama", e);
         }
     }
     
+    /**
+     * The model chat calls use unless told otherwise
+     */
+    public String getDefaultModel() {
+        return model;
+    }
+    
+    private ModelReply chat(String prompt, String model, Integer numPredict) {
+        OllamaOptions options = OllamaOptions.create()
+                .withModel(model)
+                .withTemperature(temperature)
+                .withTopP(topP);
+        if (numPredict != null) {
+            options.withNumPredict(numPredict);
+        }
+        ChatResponse response = chatClient.prompt()
+                .user(prompt)
+                .options(options)
+                .call()
+                .chatResponse();
+        
+        Usage usage = response.getMetadata().getUsage();
+        String finishReason = response.getResult().getMetadata().getFinishReason();
+        return new ModelReply(
+                response.getResult().getOutput().getContent(),
+                usage != null && usage.getPromptTokens() != null ? usage.getPromptTokens() : 0,
+                usage != null && usage.getGenerationTokens() != null ? usage.getGenerationTokens() : 0,
+                "length".equalsIgnoreCase(finishReason));
+    }
+    
+    private boolean usesPool() {
+        return ollamaUrls != null && !ollamaUrls.isEmpty();
+    }
+    
+    private ModelReply chat(Hedger.Attempt attempt, String prompt, String model, Integer numPredict,
+                            Map<String, String> traceHeaders) throws IOException {
+        try (CloseableHttpClient httpClient = HttpClients.createDefault()) {
+            HttpPost request = new HttpPost(attempt.backend() + "/api/chat");
+            traceHeaders.forEach(request::setHeader);
+            Map<String, Object> options = new HashMap<>(Map.of("temperature", temperature, "top_p", topP));
+            if (numPredict != null) {
+                options.put("num_predict", numPredict);
+            }
+            String payload = objectMapper.writeValueAsString(Map.of(
+                "model", model,
+                "messages", List.of(Map.of("role", "user", "content", prompt)),
+                "stream", false,
+                "options", options));
+            request.setEntity(new StringEntity(payload, ContentType.APPLICATION_JSON));
+            // Ollama stops generating when the client goes away
+            attempt.onCancel(request::cancel);
+            
+            return httpClient.execute(request, response -> {
+                if (response.getCode() != 200) {
+                    throw new IOException("Ollama at " + attempt.backend() + " returned status " + response.getCode());
+                }
+                JsonNode body = objectMapper.readTree(EntityUtils.toString(response.getEntity()));
+                return new ModelReply(
+                        body.path("message").path("content").asText(),
+                        body.path("prompt_eval_count").asLong(),
+                        body.path("eval_count").asLong(),
+                        "length".equals(body.path("done_reason").asText()));
+            });
+        }
+    }
+    
+    @Override
+    public void warmUp() {
+        warmUp(model);
+    }
+    
+    /**
+     * Load a model into memory on every node. A generate call without a prompt only loads the
+     * model, and keep_alive holds it there instead of Ollama's default five minutes.
+     */
+    public void warmUp(String model) {
+        List<String> nodes = usesPool() ? ollamaUrls : List.of(baseUrl);
+        for (String node : nodes) {
+            try (CloseableHttpClient httpClient = HttpClients.createDefault()) {
+                HttpPost request = new HttpPost(node + "/api/generate");
+                String payload = objectMapper.writeValueAsString(Map.of("model", model, "keep_alive", keepAlive));
+                request.setEntity(new StringEntity(payload, ContentType.APPLICATION_JSON));
+                int status = httpClient.execute(request, response -> {
+                    EntityUtils.consume(response.getEntity());
+                    return response.getCode();
+                });
+                if (status != 200) {
+                    throw new IOException("Ollama at " + node + " returned status " + status + " loading " + model);
+                }
+                log.info("Loaded {} on {} (keep_alive {})", model, node, keepAlive);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to load " + model + " on " + node, e);
+            }
+        }
+    }
+    
     @Override
     public boolean isAvailable() {
+        if (usesPool()) {
+            for (String url : ollamaUrls) {
+                try (CloseableHttpClient httpClient = HttpClients.createDefault()) {
+                    if (httpClient.execute(new HttpGet(url + "/api/tags"), response -> response.getCode() == 200)) {
+                        return true;
+                    }
+                } catch (Exception e) {
+                    log.debug("Ollama node {} not available: {}", url, e.getMessage());
+                }
+            }
+            return false;
+        }
         try {
             // Try to get a simple response to verify availability
             String testResponse = chatClient.prompt()
@@ -0,0 +1,45 @@
+package com.pixelart.agent.service.model;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Reactive Ollama model provider, backed by Spring AI's streaming chat
+ */
+@Slf4j
+@Lazy
+@Component
+public class OllamaReactiveModelProvider implements ReactiveModelProvider {
+    
+    private final ChatClient chatClient;
+    
+    public OllamaReactiveModelProvider(ChatClient.Builder chatClientBuilder) {
+        this.chatClient = chatClientBuilder.build();
+    }
+    
+    @Override
+    public Flux<String> streamResponse(String prompt) {
+        log.debug("Streaming from Ollama with prompt (first 100 chars): {}", 
+            prompt.substring(0, Math.min(100, prompt.length())));
+        
+        return chatClient.prompt()
+                .user(prompt)
+                .stream()
+                .content()
+                .onErrorMap(e -> new RuntimeException("Failed to get response from Ollama", e));
+    }
+    
+    @Override
+    public Mono<Boolean> isAvailable() {
+        return streamResponse("test")
+                .hasElements()
+                .onErrorResume(e -> {
+                    log.debug("Ollama model not available: {}", e.getMessage());
+                    return Mono.just(false);
+                });
+    }
+}
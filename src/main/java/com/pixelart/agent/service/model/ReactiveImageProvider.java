@@ -0,0 +1,22 @@
+package com.pixelart.agent.service.model;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking sibling of ImageProvider
+ * No thread is held while the backend renders; the image arrives as a signal
+ */
+public interface ReactiveImageProvider {
+    /**
+     * Generate an image from a full parameter set
+     * @param params The generation parameters
+     * @return Base64 encoded image data, or empty if the backend produced none
+     */
+    Mono<String> generateImage(ImageGenerationParams params);
+    
+    /**
+     * Check if the image provider is available
+     * @return true if the provider is available and working
+     */
+    Mono<Boolean> isAvailable();
+}
@@ -0,0 +1,34 @@
+package com.pixelart.agent.service.model;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.stream.Collectors;
+
+/**
+ * Non-blocking sibling of ModelProvider
+ * No thread is held while the model is thinking; results arrive as signals
+ */
+public interface ReactiveModelProvider {
+    /**
+     * Stream the model's response as it is generated
+     * @param prompt The input prompt
+     * @return Chunks of the response, in order
+     */
+    Flux<String> streamResponse(String prompt);
+    
+    /**
+     * Generate the complete response from the model
+     * @param prompt The input prompt
+     * @return The model's response
+     */
+    default Mono<String> generateResponse(String prompt) {
+        return streamResponse(prompt).collect(Collectors.joining());
+    }
+    
+    /**
+     * Check if the model provider is available
+     * @return true if the model is available and working
+     */
+    Mono<Boolean> isAvailable();
+}
@@ -0,0 +1,78 @@
+package com.pixelart.agent.service.model;
+
+import com.pixelart.agent.service.concurrency.BlockingCallLimiter;
+import com.pixelart.agent.service.traffic.BackendCall;
+import com.pixelart.agent.service.traffic.TrafficContext;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Image provider decorator that adds each call's latency and PNG size to the traffic capture.
+ * Cache lookups are not backend calls and are not recorded.
+ */
+public class RecordingImageProvider implements ImageProvider {
+
+    private final ImageProvider delegate;
+
+    public RecordingImageProvider(ImageProvider delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public String generateImage(String prompt, int width, int height) {
+        return record(() -> delegate.generateImage(prompt, width, height));
+    }
+
+    @Override
+    public String generateImage(String prompt, int width, int height, boolean isSpritesheet, int frameCount) {
+        return record(() -> delegate.generateImage(prompt, width, height, isSpritesheet, frameCount));
+    }
+
+    @Override
+    public String generateImage(ImageGenerationParams params) {
+        return record(() -> delegate.generateImage(params));
+    }
+
+    @Override
+    public List<String> generateImages(ImageGenerationParams params) {
+        long start = System.nanoTime();
+        List<String> images = delegate.generateImages(params);
+        long bytes = images.stream().mapToLong(RecordingImageProvider::pngBytes).sum();
+        TrafficContext.captureCall(new BackendCall(BlockingCallLimiter.IMAGE, (System.nanoTime() - start) / 1_000_000, bytes));
+        return images;
+    }
+
+    @Override
+    public List<String> cachedImages(ImageGenerationParams params) {
+        return delegate.cachedImages(params);
+    }
+
+    private static String record(Supplier<String> call) {
+        long start = System.nanoTime();
+        String image = call.get();
+        TrafficContext.captureCall(new BackendCall(BlockingCallLimiter.IMAGE, (System.nanoTime() - start) / 1_000_000, pngBytes(image)));
+        return image;
+    }
+
+    /**
+     * Decoded size of a base64 image, without decoding it
+     */
+    private static long pngBytes(String base64) {
+        if (base64 == null) {
+            return 0;
+        }
+        int padding = base64.endsWith("==") ? 2 : base64.endsWith("=") ? 1 : 0;
+        return base64.length() / 4L * 3 - padding;
+    }
+
+    @Override
+    public void warmUp() {
+        delegate.warmUp();
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return delegate.isAvailable();
+    }
+}
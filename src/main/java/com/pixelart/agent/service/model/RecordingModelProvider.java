@@ -0,0 +1,50 @@
+package com.pixelart.agent.service.model;
+
+import com.pixelart.agent.model.ResponseQuality;
+import com.pixelart.agent.service.concurrency.BlockingCallLimiter;
+import com.pixelart.agent.service.traffic.BackendCall;
+import com.pixelart.agent.service.traffic.TrafficContext;
+
+import java.nio.charset.StandardCharsets;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Model provider decorator that adds each call's latency and response size to the traffic capture
+ */
+public class RecordingModelProvider implements ModelProvider {
+
+    private final ModelProvider delegate;
+
+    public RecordingModelProvider(ModelProvider delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public String generateResponse(String prompt) {
+        return record(() -> delegate.generateResponse(prompt));
+    }
+
+    @Override
+    public String generateResponse(String prompt, ResponseQuality quality, Predicate<String> acceptable) {
+        return record(() -> delegate.generateResponse(prompt, quality, acceptable));
+    }
+
+    private static String record(Supplier<String> call) {
+        long start = System.nanoTime();
+        String response = call.get();
+        long bytes = response != null ? response.getBytes(StandardCharsets.UTF_8).length : 0;
+        TrafficContext.captureCall(new BackendCall(BlockingCallLimiter.LLM, (System.nanoTime() - start) / 1_000_000, bytes));
+        return response;
+    }
+
+    @Override
+    public void warmUp() {
+        delegate.warmUp();
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return delegate.isAvailable();
+    }
+}
@@ -0,0 +1,59 @@
+package com.pixelart.agent.service.model;
+
+import com.pixelart.agent.service.scheduling.ModelAffinityScheduler;
+
+import java.util.List;
+
+/**
+ * Image provider decorator that admits each call through the ModelAffinityScheduler, so jobs
+ * holding a concurrency permit run in an order that minimises checkpoint/LoRA swaps.
+ * Cache lookups are not backend calls and skip the queue.
+ */
+public class ScheduledImageProvider implements ImageProvider {
+
+    private static final String DEFAULT_MODEL_KEY = ImageGenerationParams.builder().build().modelKey();
+
+    private final ImageProvider delegate;
+    private final ModelAffinityScheduler scheduler;
+
+    public ScheduledImageProvider(ImageProvider delegate, ModelAffinityScheduler scheduler) {
+        this.delegate = delegate;
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public String generateImage(String prompt, int width, int height) {
+        return scheduler.run(DEFAULT_MODEL_KEY, null, () -> delegate.generateImage(prompt, width, height));
+    }
+
+    @Override
+    public String generateImage(String prompt, int width, int height, boolean isSpritesheet, int frameCount) {
+        return scheduler.run(DEFAULT_MODEL_KEY, null,
+                () -> delegate.generateImage(prompt, width, height, isSpritesheet, frameCount));
+    }
+
+    @Override
+    public String generateImage(ImageGenerationParams params) {
+        return scheduler.run(params.modelKey(), params.getProgressListener(), () -> delegate.generateImage(params));
+    }
+
+    @Override
+    public List<String> generateImages(ImageGenerationParams params) {
+        return scheduler.run(params.modelKey(), params.getProgressListener(), () -> delegate.generateImages(params));
+    }
+
+    @Override
+    public List<String> cachedImages(ImageGenerationParams params) {
+        return delegate.cachedImages(params);
+    }
+
+    @Override
+    public void warmUp() {
+        delegate.warmUp();
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return delegate.isAvailable();
+    }
+}
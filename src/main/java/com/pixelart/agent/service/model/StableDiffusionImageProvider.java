@@ -1,30 +1,57 @@
 package com.pixelart.agent.service.model;
 
-import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pixelart.agent.service.buffer.ByteBufferPool;
+import com.pixelart.agent.service.buffer.PooledBuffer;
+import com.pixelart.agent.service.cache.ImageDiskCache;
+import com.pixelart.agent.service.concurrency.Hedger;
+import com.pixelart.agent.service.concurrency.RequestHedging;
+import com.pixelart.agent.service.image.PngOptimizer;
+import com.pixelart.agent.service.tracing.PipelineTracing;
+import io.micrometer.observation.Observation;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.hc.client5.http.classic.methods.HttpPost;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
 import org.apache.hc.client5.http.impl.classic.HttpClients;
 import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.HttpEntity;
 import org.apache.hc.core5.http.io.entity.EntityUtils;
 import org.apache.hc.core5.http.io.entity.StringEntity;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Real Stable Diffusion image provider for generating pixel art images
+ * Each backend call runs in a pixelart.sd.txt2img span carrying the steps, size, sampler and
+ * checkpoint, and sends its trace context to the web UI
  */
 @Slf4j
+@Lazy
 @Component
 public class StableDiffusionImageProvider implements ImageProvider {
     
     @Value("${pixelart.image.generation.api-url:http://localhost:7860}")
     private String sdApiUrl;
     
+    /** Optional pool of interchangeable backends, replaces api-url when set */
+    @Value("${pixelart.image.generation.api-urls:}")
+    private List<String> sdApiUrls;
+    
     @Value("${pixelart.image.generation.lora:}")
     private String loraModel;
     
@@ -32,6 +59,25 @@ public class StableDiffusionImageProvider implements ImageProvider {
     private double loraStrength;
     
     private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, AtomicInteger> backendLoad = new ConcurrentHashMap<>();
+    
+    private final StableDiffusionProgressMonitor progressMonitor;
+    private final ImageDiskCache imageCache;
+    private final PngOptimizer pngOptimizer;
+    private final ByteBufferPool bufferPool;
+    private final Hedger hedger;
+    private final PipelineTracing tracing;
+    
+    public StableDiffusionImageProvider(StableDiffusionProgressMonitor progressMonitor, ImageDiskCache imageCache,
+                                        PngOptimizer pngOptimizer, ByteBufferPool bufferPool,
+                                        RequestHedging requestHedging, PipelineTracing tracing) {
+        this.progressMonitor = progressMonitor;
+        this.imageCache = imageCache;
+        this.pngOptimizer = pngOptimizer;
+        this.bufferPool = bufferPool;
+        this.hedger = requestHedging.forStage(RequestHedging.IMAGE);
+        this.tracing = tracing;
+    }
     
     @Override
     public String generateImage(String prompt, int width, int height) {
@@ -40,86 +86,316 @@ public class StableDiffusionImageProvider implements ImageProvider {
     
     @Override
     public String generateImage(String prompt, int width, int height, boolean isSpritesheet, int frameCount) {
+        return generateImage(ImageGenerationParams.builder()
+                .prompt(prompt)
+                .width(width)
+                .height(height)
+                .spritesheet(isSpritesheet)
+                .frameCount(frameCount)
+                .build());
+    }
+    
+    @Override
+    public String generateImage(ImageGenerationParams params) {
+        List<String> images = generateImages(params);
+        return images.isEmpty() ? null : images.get(0);
+    }
+    
+    /**
+     * Backend failures are thrown rather than returned as an empty list, so the concurrency
+     * limit in front of this provider sees them as dropped calls
+     */
+    @Override
+    public List<String> generateImages(ImageGenerationParams params) {
+        int finalWidth = sheetWidth(params);
+        int finalHeight = params.getHeight();
+        
+        if (params.isSpritesheet() && params.getFrameCount() > 1) {
+            log.info("Generating spritesheet with {} frames ({}x{})", params.getFrameCount(), finalWidth, finalHeight);
+        } else {
+            log.info("Generating single sprite image ({}x{})", finalWidth, finalHeight);
+        }
+        
+        Map<String, Object> payload = buildPayload(params, finalWidth, finalHeight);
+        
+        List<String> cached = cachedImages(payload, params);
+        if (!cached.isEmpty()) {
+            log.info("Serving {} image(s) from disk cache (seed {})", cached.size(), params.getSeed());
+            return cached;
+        }
+        
+        List<String> images = generateWithStableDiffusion(params, payload);
         try {
-            int finalWidth = width;
-            int finalHeight = height;
-            
-            if (isSpritesheet && frameCount > 1) {
-                finalWidth = width * frameCount;
-                log.info("Generating spritesheet with {} frames ({}x{})", frameCount, finalWidth, finalHeight);
-            } else {
-                log.info("Generating single sprite image ({}x{})", finalWidth, finalHeight);
-            }
-            
-            return generateWithStableDiffusion(prompt, finalWidth, finalHeight, isSpritesheet, frameCount);
-            
+            storeInCache(payload, params, images);
         } catch (Exception e) {
-            log.error("Error generating image", e);
-            return null;
+            log.warn("Could not cache generated images: {}", e.getMessage());
         }
+        return images;
+    }
+    
+    @Override
+    public List<String> cachedImages(ImageGenerationParams params) {
+        return cachedImages(payloadFor(params), params);
     }
     
-    private String generateWithStableDiffusion(String prompt, int width, int height, boolean isSpritesheet, int frameCount) {
+    private List<String> cachedImages(Map<String, Object> payload, ImageGenerationParams params) {
+        try {
+            return lookupCache(payload, params);
+        } catch (Exception e) {
+            log.debug("Image cache lookup failed: {}", e.getMessage());
+            return List.of();
+        }
+    }
+    
+    /**
+     * The txt2img payload for the params, which is also the basis of their cache keys
+     */
+    Map<String, Object> payloadFor(ImageGenerationParams params) {
+        return buildPayload(params, sheetWidth(params), params.getHeight());
+    }
+    
+    private int sheetWidth(ImageGenerationParams params) {
+        return params.isSpritesheet() && params.getFrameCount() > 1
+            ? params.getWidth() * params.getFrameCount()
+            : params.getWidth();
+    }
+    
+    private Map<String, Object> buildPayload(ImageGenerationParams params, int width, int height) {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("prompt", enhancePromptForPixelArt(params.getPrompt(), params.isSpritesheet(), params.getFrameCount(),
+            params.getLora() != null ? params.getLora() : loraModel,
+            params.getLoraStrength() != null ? params.getLoraStrength() : loraStrength));
+        payload.put("negative_prompt", 
+            "blurry, smooth, realistic, photograph, photorealistic, 3d render, detailed textures, " +
+            "soft edges, gradients, anti-aliasing, high resolution, smooth shading, dithering, " +
+            "detailed, complex, modern graphics, HD, 4K, ray tracing, ambient occlusion");
+        payload.put("steps", 50);
+        payload.put("width", width * 8);
+        payload.put("height", height * 8);
+        payload.put("cfg_scale", 15);
+        payload.put("sampler_name", "Euler a");
+        payload.put("seed", params.getSeed() != null ? params.getSeed() : -1L);
+        payload.put("denoising_strength", 0.4);
+        payload.put("batch_size", Math.max(1, params.getBatchSize()));
+        
+        if (params.getCheckpoint() != null && !params.getCheckpoint().isEmpty()) {
+            // Keep the checkpoint loaded afterwards so consecutive jobs for it don't pay another swap
+            payload.put("override_settings", Map.of("sd_model_checkpoint", params.getCheckpoint()));
+            payload.put("override_settings_restore_afterwards", false);
+        }
+        return payload;
+    }
+    
+    /**
+     * Cache key for the i-th image of a batch: the web UI renders batch images with seeds seed, seed+1, ...
+     */
+    private String cacheKey(Map<String, Object> payload, long seed) throws Exception {
+        Map<String, Object> key = new TreeMap<>(payload);
+        key.remove("batch_size");
+        key.put("seed", seed);
+        return objectMapper.writeValueAsString(key);
+    }
+    
+    List<String> lookupCache(Map<String, Object> payload, ImageGenerationParams params) throws Exception {
+        if (!imageCache.isEnabled() || params.getSeed() == null) {
+            return List.of();
+        }
+        List<String> images = new ArrayList<>();
+        for (int i = 0; i < Math.max(1, params.getBatchSize()); i++) {
+            String image = imageCache.get(cacheKey(payload, params.getSeed() + i));
+            if (image == null) {
+                return List.of();
+            }
+            images.add(image);
+        }
+        return images;
+    }
+    
+    void storeInCache(Map<String, Object> payload, ImageGenerationParams params, List<String> images) throws Exception {
+        if (!imageCache.isEnabled() || params.getSeed() == null) {
+            return;
+        }
+        for (int i = 0; i < images.size(); i++) {
+            imageCache.put(cacheKey(payload, params.getSeed() + i), images.get(i));
+        }
+    }
+    
+    private List<String> generateWithStableDiffusion(ImageGenerationParams params, Map<String, Object> payload) {
+        String jsonPayload;
+        try {
+            jsonPayload = objectMapper.writeValueAsString(payload);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        Observation span = tracing.start(PipelineTracing.SD_TXT2IMG)
+                .lowCardinalityKeyValue("sd.sampler", String.valueOf(payload.get("sampler_name")))
+                .lowCardinalityKeyValue("sd.checkpoint", params.getCheckpoint() != null ? params.getCheckpoint() : "default")
+                .highCardinalityKeyValue("sd.steps", String.valueOf(payload.get("steps")))
+                .highCardinalityKeyValue("sd.width", String.valueOf(payload.get("width")))
+                .highCardinalityKeyValue("sd.height", String.valueOf(payload.get("height")))
+                .highCardinalityKeyValue("sd.batch_size", String.valueOf(payload.get("batch_size")));
+        return span.observe(() -> {
+            // Hedged attempts run on other threads, so take the trace context here
+            Observation parent = tracing.current();
+            Map<String, String> traceHeaders = tracing.outboundHeaders();
+            return hedger.call(rankedBackends(), attempt -> txt2img(attempt, params, jsonPayload, parent, traceHeaders));
+        });
+    }
+    
+    private List<String> txt2img(Hedger.Attempt attempt, ImageGenerationParams params, String jsonPayload,
+                                 Observation parent, Map<String, String> traceHeaders) throws IOException {
+        boolean isSpritesheet = params.isSpritesheet();
+        int frameCount = params.getFrameCount();
+        int batchSize = Math.max(1, params.getBatchSize());
+        String backendUrl = attempt.backend();
+        backendLoad.computeIfAbsent(backendUrl, key -> new AtomicInteger()).incrementAndGet();
+        
+        // Only the original call reports progress, so a hedge doesn't interleave a second set of previews
+        GenerationProgressListener listener = attempt.isHedge() ? null : params.getProgressListener();
         try (CloseableHttpClient httpClient = HttpClients.custom()
                 .setConnectionManagerShared(false)
-                .build()) {
+                .build();
+             StableDiffusionProgressMonitor.Tracking tracking = progressMonitor.track(backendUrl, listener)) {
             
-            HttpPost request = new HttpPost(sdApiUrl + "/sdapi/v1/txt2img");
-            
-            Map<String, Object> payload = new HashMap<>();
-            payload.put("prompt", enhancePromptForPixelArt(prompt, isSpritesheet, frameCount));
-            payload.put("negative_prompt", 
-                "blurry, smooth, realistic, photograph, photorealistic, 3d render, detailed textures, " +
-                "soft edges, gradients, anti-aliasing, high resolution, smooth shading, dithering, " +
-                "detailed, complex, modern graphics, HD, 4K, ray tracing, ambient occlusion");
-            payload.put("steps", 50);
-            payload.put("width", width * 8);
-            payload.put("height", height * 8);
-            payload.put("cfg_scale", 15);
-            payload.put("sampler_name", "Euler a");
-            payload.put("seed", -1);
-            payload.put("denoising_strength", 0.4);
-            
-            String jsonPayload = objectMapper.writeValueAsString(payload);
+            HttpPost request = new HttpPost(backendUrl + "/sdapi/v1/txt2img");
+            traceHeaders.forEach(request::setHeader);
             request.setEntity(new StringEntity(jsonPayload, ContentType.APPLICATION_JSON));
+            attempt.onCancel(() -> abort(request, backendUrl));
             
             return httpClient.execute(request, response -> {
                 int statusCode = response.getCode();
                 log.debug("Stable Diffusion API response status: {}", statusCode);
                 
-                if (statusCode == 200) {
-                    try {
-                        String responseBody = EntityUtils.toString(response.getEntity());
-                        JsonNode jsonResponse = objectMapper.readTree(responseBody);
-                        
-                        if (jsonResponse.has("images") && jsonResponse.get("images").size() > 0) {
-                            String base64Image = jsonResponse.get("images").get(0).asText();
-                            log.info("Successfully generated {} with Stable Diffusion (image size: {} bytes)", 
-                                isSpritesheet ? frameCount + "-frame spritesheet" : "sprite image",
-                                base64Image.length());
-                            return base64Image;
-                        } else {
-                            log.warn("Response missing 'images' field or empty array");
-                        }
-                    } catch (Exception e) {
-                        log.error("Error parsing Stable Diffusion response", e);
-                    }
+                if (statusCode != 200) {
+                    throw new IOException("Stable Diffusion API at " + backendUrl + " returned status: " + statusCode);
                 }
-                log.warn("Stable Diffusion API returned status: {}", statusCode);
-                return null;
+                List<String> images = tracing.span(PipelineTracing.SD_READ, parent,
+                        () -> readImages(response.getEntity(), batchSize));
+                if (images.isEmpty()) {
+                    throw new IOException("Response from " + backendUrl + " missing 'images' field or empty array");
+                }
+                log.info("Successfully generated {} x {} with Stable Diffusion (first image size: {} bytes)", 
+                    images.size(),
+                    isSpritesheet ? frameCount + "-frame spritesheet" : "sprite image",
+                    images.get(0).length());
+                return images;
             });
-            
+        } finally {
+            releaseBackend(backendUrl);
+        }
+    }
+    
+    /**
+     * Abort a txt2img call that lost a hedge. Dropping the connection doesn't stop the web UI
+     * rendering, so it is also interrupted, unless other jobs from here are running on it.
+     */
+    private void abort(HttpPost request, String backendUrl) {
+        request.cancel();
+        if (backendLoad.get(backendUrl).get() > 1) {
+            return;
+        }
+        try (CloseableHttpClient httpClient = HttpClients.createDefault()) {
+            httpClient.execute(new HttpPost(backendUrl + "/sdapi/v1/interrupt"), response -> response.getCode());
         } catch (Exception e) {
-            log.error("Stable Diffusion API error at {}", sdApiUrl, e);
-            return null;
+            log.debug("Could not interrupt {}: {}", backendUrl, e.getMessage());
+        }
+    }
+    
+    /**
+     * Pull the first batchSize images out of a txt2img response.
+     * The body is buffered in a pooled buffer and each image is base64-decoded by the streaming
+     * parser straight into another pooled buffer, so neither the multi-megabyte body nor the
+     * images ever exist as heap strings before re-encoding.
+     */
+    private List<String> readImages(HttpEntity entity, int batchSize) throws IOException {
+        long contentLength = entity.getContentLength();
+        int sizeHint = contentLength > 0 && contentLength < Integer.MAX_VALUE ? (int) contentLength : 0;
+        try (PooledBuffer body = bufferPool.acquire(sizeHint)) {
+            try (InputStream content = entity.getContent()) {
+                body.readFrom(content).flip();
+            }
+            return parseImages(body.inputStream(), batchSize);
+        }
+    }
+    
+    /**
+     * Decode and re-encode the first batchSize images of a txt2img response body, each
+     * re-encode in its own span under the current one
+     */
+    List<String> parseImages(InputStream body, int batchSize) throws IOException {
+        List<String> images = new ArrayList<>();
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return images;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if (!"images".equals(field) || value != JsonToken.START_ARRAY) {
+                    parser.skipChildren();
+                    continue;
+                }
+                // The web UI may append extra grid images after the batch
+                while (parser.nextToken() == JsonToken.VALUE_STRING) {
+                    if (images.size() >= batchSize) {
+                        continue;
+                    }
+                    try (PooledBuffer png = bufferPool.acquire(0)) {
+                        parser.readBinaryValue(png.outputStream());
+                        // Re-encode before caching so cache hits are small too
+                        images.add(tracing.span(PipelineTracing.IMAGE_OPTIMIZE, () -> pngOptimizer.optimize(png.flip())));
+                    }
+                }
+            }
+        }
+        return images;
+    }
+    
+    List<String> backends() {
+        return sdApiUrls == null || sdApiUrls.isEmpty() ? List.of(sdApiUrl) : sdApiUrls;
+    }
+    
+    /**
+     * Backends ordered by jobs in flight from this instance, fewest first
+     */
+    private List<String> rankedBackends() {
+        List<String> ranked = new ArrayList<>(backends());
+        ranked.sort(Comparator.comparingInt(url -> backendLoad.computeIfAbsent(url, key -> new AtomicInteger()).get()));
+        return ranked;
+    }
+    
+    /**
+     * Pick the backend with the fewest jobs in flight from this instance.
+     * Lock-free, so a reactive caller never parks an event loop or pins a virtual thread; if another
+     * caller takes the chosen backend in between, the choice is made again.
+     */
+    String acquireBackend() {
+        while (true) {
+            String best = null;
+            int bestLoad = Integer.MAX_VALUE;
+            for (String url : backends()) {
+                int load = backendLoad.computeIfAbsent(url, key -> new AtomicInteger()).get();
+                if (load < bestLoad) {
+                    best = url;
+                    bestLoad = load;
+                }
+            }
+            if (backendLoad.get(best).compareAndSet(bestLoad, bestLoad + 1)) {
+                return best;
+            }
         }
     }
     
-    private String enhancePromptForPixelArt(String prompt, boolean isSpritesheet, int frameCount) {
+    void releaseBackend(String backendUrl) {
+        backendLoad.get(backendUrl).decrementAndGet();
+    }
+    
+    private String enhancePromptForPixelArt(String prompt, boolean isSpritesheet, int frameCount,
+                                            String lora, double strength) {
         StringBuilder enhancedPrompt = new StringBuilder();
         
-        if (loraModel != null && !loraModel.isEmpty()) {
-            enhancedPrompt.append(String.format("<lora:%s:%.1f> ", loraModel, loraStrength));
+        if (lora != null && !lora.isEmpty()) {
+            enhancedPrompt.append(String.format("<lora:%s:%.1f> ", lora, strength));
         }
         
         enhancedPrompt.append("((pixel art)), ((16-bit)), ((retro game sprite)), ");
@@ -145,14 +421,49 @@ public class StableDiffusionImageProvider implements ImageProvider {
         return enhancedPrompt.toString();
     }
     
+    /**
+     * Render a tiny one-step image on every backend, so the checkpoint is loaded onto the GPU
+     * before the first real job. Bypasses the cache and the hedger.
+     */
+    @Override
+    public void warmUp() {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("prompt", "pixel art");
+        payload.put("steps", 1);
+        payload.put("width", 64);
+        payload.put("height", 64);
+        payload.put("batch_size", 1);
+        payload.put("save_images", false);
+        for (String url : backends()) {
+            try (CloseableHttpClient httpClient = HttpClients.createDefault()) {
+                HttpPost request = new HttpPost(url + "/sdapi/v1/txt2img");
+                request.setEntity(new StringEntity(objectMapper.writeValueAsString(payload), ContentType.APPLICATION_JSON));
+                int status = httpClient.execute(request, response -> {
+                    EntityUtils.consume(response.getEntity());
+                    return response.getCode();
+                });
+                if (status != 200) {
+                    throw new IOException("Stable Diffusion API at " + url + " returned status: " + status);
+                }
+                log.info("Warmed up Stable Diffusion backend {}", url);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to warm up Stable Diffusion backend " + url, e);
+            }
+        }
+    }
+    
     @Override
     public boolean isAvailable() {
-        try (CloseableHttpClient httpClient = HttpClients.createDefault()) {
-            HttpPost request = new HttpPost(sdApiUrl + "/sdapi/v1/options");
-            return httpClient.execute(request, response -> response.getCode() == 200);
-        } catch (Exception e) {
-            log.debug("Image generation service not available: {}", e.getMessage());
-            return false;
+        for (String url : backends()) {
+            try (CloseableHttpClient httpClient = HttpClients.createDefault()) {
+                HttpPost request = new HttpPost(url + "/sdapi/v1/options");
+                if (httpClient.execute(request, response -> response.getCode() == 200)) {
+                    return true;
+                }
+            } catch (Exception e) {
+                log.debug("Image generation backend {} not available: {}", url, e.getMessage());
+            }
         }
+        return false;
     }
 }
@@ -0,0 +1,270 @@
+package com.pixelart.agent.service.model;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pixelart.agent.model.GenerationProgress;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.client5.http.classic.methods.HttpGet;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Polls the Stable Diffusion progress endpoint while jobs are running and fans the
+ * snapshots out to the listeners of those jobs.
+ *
+ * There is at most one poller per backend URL no matter how many jobs are in flight.
+ * The backend renders jobs one at a time in arrival order, so the oldest tracked job
+ * receives the live progress and the others are reported as queued.
+ */
+@Slf4j
+@Lazy
+@Component
+public class StableDiffusionProgressMonitor {
+
+    private final long pollIntervalMs;
+    private final int previewSize;
+    private final long previewIntervalMs;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, BackendPoller> pollers = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+    private final CloseableHttpClient httpClient;
+
+    public StableDiffusionProgressMonitor(
+            @Value("${pixelart.image.progress.poll-interval-ms:500}") long pollIntervalMs,
+            @Value("${pixelart.image.progress.preview-size:64}") int previewSize,
+            @Value("${pixelart.image.progress.preview-interval-ms:1500}") long previewIntervalMs) {
+        this.pollIntervalMs = pollIntervalMs;
+        this.previewSize = previewSize;
+        this.previewIntervalMs = previewIntervalMs;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "sd-progress-poller");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Timeout timeout = Timeout.ofMilliseconds(Math.max(1000, pollIntervalMs * 4));
+        this.httpClient = HttpClients.custom()
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(timeout)
+                        .setResponseTimeout(timeout)
+                        .build())
+                .build();
+    }
+
+    /**
+     * Start tracking a job submitted to the given backend.
+     * Every job must be tracked, including those without a listener, so that queue
+     * positions stay correct. Close the returned handle once the backend call returns.
+     *
+     * @param backendUrl Base URL of the Stable Diffusion backend
+     * @param listener Listener for progress updates, may be null
+     * @return Handle that stops tracking when closed
+     */
+    public Tracking track(String backendUrl, GenerationProgressListener listener) {
+        while (true) {
+            // A poller retired by its last job is already out of the map, so the next attempt makes a new one
+            Tracking tracking = pollers.computeIfAbsent(backendUrl, BackendPoller::new).register(listener);
+            if (tracking != null) {
+                return tracking;
+            }
+        }
+    }
+
+    /**
+     * Backends with jobs currently tracked
+     */
+    int activeBackends() {
+        return pollers.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        try {
+            httpClient.close();
+        } catch (IOException e) {
+            log.debug("Error closing progress poller HTTP client: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Handle for a tracked job
+     */
+    public final class Tracking implements AutoCloseable {
+
+        private final BackendPoller poller;
+        private final GenerationProgressListener listener;
+
+        private Tracking(BackendPoller poller, GenerationProgressListener listener) {
+            this.poller = poller;
+            this.listener = listener;
+        }
+
+        @Override
+        public void close() {
+            poller.unregister(this);
+        }
+    }
+
+    private final class BackendPoller {
+
+        private final String backendUrl;
+        private final List<Tracking> jobs = new ArrayList<>();
+        private ScheduledFuture<?> pollTask;
+        private long lastPreviewAt;
+        private boolean retired;
+
+        private BackendPoller(String backendUrl) {
+            this.backendUrl = backendUrl;
+        }
+
+        /**
+         * @return The handle, or null if the poller has been retired and dropped from the map
+         */
+        private synchronized Tracking register(GenerationProgressListener listener) {
+            if (retired) {
+                return null;
+            }
+            Tracking tracking = new Tracking(this, listener);
+            jobs.add(tracking);
+            if (listener != null && pollTask == null) {
+                pollTask = scheduler.scheduleWithFixedDelay(this::poll, 0, pollIntervalMs, TimeUnit.MILLISECONDS);
+                log.debug("Started progress polling for {}", backendUrl);
+            }
+            return tracking;
+        }
+
+        private synchronized void unregister(Tracking tracking) {
+            jobs.remove(tracking);
+            if (pollTask != null && jobs.stream().noneMatch(job -> job.listener != null)) {
+                pollTask.cancel(false);
+                pollTask = null;
+                log.debug("Stopped progress polling for {}", backendUrl);
+            }
+            if (jobs.isEmpty()) {
+                // Drop idle pollers so backends that come and go, like hedge targets, don't pile up
+                retired = true;
+                pollers.remove(backendUrl, this);
+            }
+        }
+
+        private void poll() {
+            List<Tracking> snapshot;
+            boolean wantPreview;
+            synchronized (this) {
+                snapshot = new ArrayList<>(jobs);
+                long now = System.currentTimeMillis();
+                wantPreview = previewSize > 0 && !snapshot.isEmpty() && snapshot.get(0).listener != null
+                        && now - lastPreviewAt >= previewIntervalMs;
+                if (wantPreview) {
+                    lastPreviewAt = now;
+                }
+            }
+            if (snapshot.isEmpty()) {
+                return;
+            }
+
+            GenerationProgress running;
+            try {
+                running = fetchProgress(wantPreview);
+            } catch (Exception e) {
+                log.debug("Progress poll against {} failed: {}", backendUrl, e.getMessage());
+                return;
+            }
+
+            for (int i = 0; i < snapshot.size(); i++) {
+                GenerationProgressListener listener = snapshot.get(i).listener;
+                if (listener == null) {
+                    continue;
+                }
+                GenerationProgress progress = i == 0 ? running : GenerationProgress.builder()
+                        .state(GenerationProgress.STATE_QUEUED)
+                        .queuePosition(i)
+                        .build();
+                try {
+                    listener.onProgress(progress);
+                } catch (Exception e) {
+                    log.debug("Progress listener failed: {}", e.getMessage());
+                }
+            }
+        }
+
+        private GenerationProgress fetchProgress(boolean includePreview) throws IOException {
+            HttpGet request = new HttpGet(backendUrl + "/sdapi/v1/progress?skip_current_image=" + !includePreview);
+            return httpClient.execute(request, response -> {
+                if (response.getCode() != 200) {
+                    throw new IOException("progress endpoint returned status " + response.getCode());
+                }
+                JsonNode json = objectMapper.readTree(EntityUtils.toString(response.getEntity()));
+                JsonNode state = json.path("state");
+
+                GenerationProgress.GenerationProgressBuilder progress = GenerationProgress.builder()
+                        .state(GenerationProgress.STATE_RENDERING)
+                        .progress(json.path("progress").asDouble(0.0))
+                        .etaSeconds(json.hasNonNull("eta_relative") ? json.get("eta_relative").asDouble() : null)
+                        .step(state.hasNonNull("sampling_step") ? state.get("sampling_step").asInt() : null)
+                        .totalSteps(state.hasNonNull("sampling_steps") ? state.get("sampling_steps").asInt() : null);
+
+                String currentImage = json.path("current_image").asText(null);
+                if (includePreview && currentImage != null && !currentImage.isEmpty()) {
+                    progress.previewImage(downscalePreview(currentImage));
+                }
+                return progress.build();
+            });
+        }
+    }
+
+    /**
+     * Downscale a live preview with nearest-neighbour sampling so pixel edges stay sharp
+     */
+    private String downscalePreview(String base64Image) {
+        try {
+            String data = base64Image.contains(",") ? base64Image.substring(base64Image.indexOf(',') + 1) : base64Image;
+            BufferedImage source = ImageIO.read(new ByteArrayInputStream(Base64.getDecoder().decode(data)));
+            if (source == null) {
+                return null;
+            }
+
+            double scale = Math.min(1.0, (double) previewSize / Math.max(source.getWidth(), source.getHeight()));
+            int width = Math.max(1, (int) Math.round(source.getWidth() * scale));
+            int height = Math.max(1, (int) Math.round(source.getHeight() * scale));
+
+            BufferedImage preview = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D graphics = preview.createGraphics();
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+            graphics.drawImage(source, 0, 0, width, height, null);
+            graphics.dispose();
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ImageIO.write(preview, "png", out);
+            return Base64.getEncoder().encodeToString(out.toByteArray());
+        } catch (Exception e) {
+            log.debug("Could not build progress preview: {}", e.getMessage());
+            return null;
+        }
+    }
+}
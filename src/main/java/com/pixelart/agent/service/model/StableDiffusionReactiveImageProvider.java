@@ -0,0 +1,100 @@
+package com.pixelart.agent.service.model;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reactive Stable Diffusion image provider
+ * The txt2img call runs on a non-blocking WebClient; payloads, backend selection, the disk cache
+ * and PNG re-encoding are shared with StableDiffusionImageProvider, and the parts of those that
+ * do block (disk I/O, decoding) are moved off the event loop.
+ */
+@Slf4j
+@Lazy
+@Component
+public class StableDiffusionReactiveImageProvider implements ReactiveImageProvider {
+    
+    private final StableDiffusionImageProvider imageProvider;
+    private final WebClient webClient;
+    
+    /** txt2img bodies carry base64 images and easily exceed WebClient's default in-memory limit */
+    @Value("${pixelart.image.generation.max-response-mb:64}")
+    private int maxResponseMb;
+    
+    public StableDiffusionReactiveImageProvider(StableDiffusionImageProvider imageProvider,
+                                                WebClient.Builder webClientBuilder) {
+        this.imageProvider = imageProvider;
+        this.webClient = webClientBuilder.build();
+    }
+    
+    @Override
+    public Mono<String> generateImage(ImageGenerationParams params) {
+        return Mono.fromCallable(() -> imageProvider.payloadFor(params))
+                .flatMap(payload -> Mono.fromCallable(() -> imageProvider.lookupCache(payload, params))
+                        .subscribeOn(Schedulers.boundedElastic())
+                        .flatMap(cached -> cached.isEmpty() ? render(params, payload) : Mono.just(cached)))
+                .flatMap(images -> images.isEmpty() ? Mono.<String>empty() : Mono.just(images.get(0)))
+                .onErrorResume(e -> {
+                    log.error("Error generating image", e);
+                    return Mono.empty();
+                });
+    }
+    
+    private Mono<List<String>> render(ImageGenerationParams params, Map<String, Object> payload) {
+        int batchSize = Math.max(1, params.getBatchSize());
+        return Mono.defer(() -> {
+            String backendUrl = imageProvider.acquireBackend();
+            log.info("Generating {} on {} without blocking",
+                params.isSpritesheet() ? params.getFrameCount() + "-frame spritesheet" : "sprite image", backendUrl);
+            return DataBufferUtils.join(webClient.post()
+                            .uri(backendUrl + "/sdapi/v1/txt2img")
+                            .bodyValue(payload)
+                            .retrieve()
+                            .bodyToFlux(DataBuffer.class), maxResponseMb * 1024 * 1024)
+                    .publishOn(Schedulers.boundedElastic())
+                    .map(body -> decode(body, batchSize))
+                    .doOnNext(images -> store(payload, params, images))
+                    .doFinally(signal -> imageProvider.releaseBackend(backendUrl));
+        });
+    }
+    
+    private List<String> decode(DataBuffer body, int batchSize) {
+        try (InputStream in = body.asInputStream(true)) {
+            return imageProvider.parseImages(in, batchSize);
+        } catch (Exception e) {
+            throw new IllegalStateException("Error parsing Stable Diffusion response", e);
+        }
+    }
+    
+    private void store(Map<String, Object> payload, ImageGenerationParams params, List<String> images) {
+        try {
+            imageProvider.storeInCache(payload, params, images);
+        } catch (Exception e) {
+            log.debug("Image cache store failed: {}", e.getMessage());
+        }
+    }
+    
+    @Override
+    public Mono<Boolean> isAvailable() {
+        return Flux.fromIterable(imageProvider.backends())
+                .flatMap(url -> webClient.get()
+                        .uri(url + "/sdapi/v1/options")
+                        .retrieve()
+                        .toBodilessEntity()
+                        .map(response -> response.getStatusCode().is2xxSuccessful())
+                        .onErrorReturn(false))
+                .any(Boolean::booleanValue);
+    }
+}
@@ -0,0 +1,75 @@
+package com.pixelart.agent.service.model;
+
+import com.pixelart.agent.service.tracing.PipelineTracing;
+import io.micrometer.observation.Observation;
+import org.springframework.util.ClassUtils;
+
+import java.util.List;
+
+/**
+ * Image provider decorator that runs each call in a pixelart.image.call span, tagged with the
+ * provider, prompt length, size, frames and batch. Cache lookups are not traced.
+ */
+public class TracedImageProvider implements ImageProvider {
+
+    private final ImageProvider delegate;
+    private final PipelineTracing tracing;
+    private final String provider;
+
+    public TracedImageProvider(ImageProvider delegate, PipelineTracing tracing) {
+        this.delegate = delegate;
+        this.tracing = tracing;
+        this.provider = ClassUtils.getUserClass(delegate).getSimpleName();
+    }
+
+    @Override
+    public String generateImage(String prompt, int width, int height) {
+        return span(prompt, width, height, 1, 1).observe(() -> delegate.generateImage(prompt, width, height));
+    }
+
+    @Override
+    public String generateImage(String prompt, int width, int height, boolean isSpritesheet, int frameCount) {
+        return span(prompt, width, height, isSpritesheet ? frameCount : 1, 1)
+                .observe(() -> delegate.generateImage(prompt, width, height, isSpritesheet, frameCount));
+    }
+
+    @Override
+    public String generateImage(ImageGenerationParams params) {
+        return span(params).observe(() -> delegate.generateImage(params));
+    }
+
+    @Override
+    public List<String> generateImages(ImageGenerationParams params) {
+        return span(params).observe(() -> delegate.generateImages(params));
+    }
+
+    @Override
+    public List<String> cachedImages(ImageGenerationParams params) {
+        return delegate.cachedImages(params);
+    }
+
+    private Observation span(ImageGenerationParams params) {
+        return span(params.getPrompt(), params.getWidth(), params.getHeight(),
+                params.isSpritesheet() ? params.getFrameCount() : 1, Math.max(1, params.getBatchSize()));
+    }
+
+    private Observation span(String prompt, int width, int height, int frames, int batch) {
+        return tracing.start(PipelineTracing.IMAGE_CALL)
+                .lowCardinalityKeyValue("provider", provider)
+                .highCardinalityKeyValue("pixelart.prompt.length", String.valueOf(prompt != null ? prompt.length() : 0))
+                .highCardinalityKeyValue("pixelart.image.width", String.valueOf(width))
+                .highCardinalityKeyValue("pixelart.image.height", String.valueOf(height))
+                .highCardinalityKeyValue("pixelart.image.frames", String.valueOf(frames))
+                .highCardinalityKeyValue("pixelart.image.batch", String.valueOf(batch));
+    }
+
+    @Override
+    public void warmUp() {
+        delegate.warmUp();
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return delegate.isAvailable();
+    }
+}
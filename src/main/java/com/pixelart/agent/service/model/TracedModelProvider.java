@@ -0,0 +1,55 @@
+package com.pixelart.agent.service.model;
+
+import com.pixelart.agent.model.ResponseQuality;
+import com.pixelart.agent.service.tracing.PipelineTracing;
+import io.micrometer.observation.Observation;
+import org.springframework.util.ClassUtils;
+
+import java.util.function.Predicate;
+
+/**
+ * Model provider decorator that runs each call in a pixelart.llm.call span, tagged with the
+ * provider and prompt length. Providers add model and token counts to the span themselves.
+ */
+public class TracedModelProvider implements ModelProvider {
+
+    private final ModelProvider delegate;
+    private final PipelineTracing tracing;
+    private final String provider;
+
+    public TracedModelProvider(ModelProvider delegate, PipelineTracing tracing) {
+        this.delegate = delegate;
+        this.tracing = tracing;
+        this.provider = ClassUtils.getUserClass(delegate).getSimpleName();
+    }
+
+    @Override
+    public String generateResponse(String prompt) {
+        return span(prompt, null).observe(() -> delegate.generateResponse(prompt));
+    }
+
+    @Override
+    public String generateResponse(String prompt, ResponseQuality quality, Predicate<String> acceptable) {
+        return span(prompt, quality).observe(() -> delegate.generateResponse(prompt, quality, acceptable));
+    }
+
+    private Observation span(String prompt, ResponseQuality quality) {
+        Observation span = tracing.start(PipelineTracing.LLM_CALL)
+                .lowCardinalityKeyValue("provider", provider)
+                .highCardinalityKeyValue("pixelart.prompt.length", String.valueOf(prompt != null ? prompt.length() : 0));
+        if (quality != null) {
+            span.lowCardinalityKeyValue("quality", quality.name());
+        }
+        return span;
+    }
+
+    @Override
+    public void warmUp() {
+        delegate.warmUp();
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return delegate.isAvailable();
+    }
+}
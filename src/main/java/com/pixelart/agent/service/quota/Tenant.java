@@ -0,0 +1,12 @@
+package com.pixelart.agent.service.quota;
+
+/**
+ * A client of the service, as identified by its API key
+ *
+ * @param name Name used in metrics; unconfigured clients all share "default"
+ * @param weight Share of backend capacity relative to other tenants with queued calls
+ */
+public record Tenant(String name, double weight) {
+
+    public static final Tenant DEFAULT = new Tenant("default", 1.0);
+}
@@ -0,0 +1,67 @@
+package com.pixelart.agent.service.quota;
+
+import java.util.function.Supplier;
+
+/**
+ * The tenant a request is running for, carried on the request thread and onto the pools it hands work to
+ */
+public final class TenantContext {
+
+    private static final ThreadLocal<Tenant> CURRENT = new ThreadLocal<>();
+
+    private TenantContext() {
+    }
+
+    /**
+     * The current tenant, or Tenant.DEFAULT outside a request
+     */
+    public static Tenant current() {
+        Tenant tenant = CURRENT.get();
+        return tenant != null ? tenant : Tenant.DEFAULT;
+    }
+
+    public static void set(Tenant tenant) {
+        CURRENT.set(tenant);
+    }
+
+    public static void clear() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Run the task under the tenant current at the time of wrapping
+     */
+    public static Runnable wrap(Runnable task) {
+        Tenant tenant = CURRENT.get();
+        return () -> {
+            Tenant previous = CURRENT.get();
+            restore(tenant);
+            try {
+                task.run();
+            } finally {
+                restore(previous);
+            }
+        };
+    }
+
+    public static <T> Supplier<T> wrap(Supplier<T> task) {
+        Tenant tenant = CURRENT.get();
+        return () -> {
+            Tenant previous = CURRENT.get();
+            restore(tenant);
+            try {
+                return task.get();
+            } finally {
+                restore(previous);
+            }
+        };
+    }
+
+    private static void restore(Tenant tenant) {
+        if (tenant != null) {
+            CURRENT.set(tenant);
+        } else {
+            CURRENT.remove();
+        }
+    }
+}
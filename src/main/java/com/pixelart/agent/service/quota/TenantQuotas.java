@@ -0,0 +1,146 @@
+package com.pixelart.agent.service.quota;
+
+import com.pixelart.agent.config.QuotaProperties;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Resolves API keys to tenants and applies each client's request rate.
+ *
+ * Configured tenants get their own bucket and metrics. Every other client gets a bucket of its
+ * own at the default rate, keyed by remote address, and is reported as the default tenant so
+ * metric cardinality stays bounded. An unknown API key counts for nothing: keying buckets by it
+ * would let a client dodge its quota by sending a fresh key with every request.
+ */
+@Slf4j
+@Component
+public class TenantQuotas {
+
+    private final QuotaProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Tenant> tenantsByKey = new HashMap<>();
+    private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+    private final Map<String, Throughput> throughput = new ConcurrentHashMap<>();
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+
+    public TenantQuotas(QuotaProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        properties.getTenants().forEach((name, quota) -> {
+            if (quota.getApiKey() == null || quota.getApiKey().isBlank()) {
+                log.warn("Tenant {} has no api-key and will never be matched", name);
+                return;
+            }
+            tenantsByKey.put(quota.getApiKey(), new Tenant(name, Math.max(0.01, quota.getWeight())));
+            buckets.put(bucketKey(name), bucket(quota.getRequestsPerMinute(), quota.getBurst()));
+        });
+        if (properties.isEnabled()) {
+            log.info("Request quotas enabled for {} tenants, {} requests/minute for other clients",
+                     tenantsByKey.size(), properties.getDefaultRequestsPerMinute());
+        }
+    }
+
+    /**
+     * Identify the client and charge one request against its quota
+     * @param apiKey The key the client sent, or null
+     * @param remoteAddress Used to tell apart clients that sent no key
+     */
+    public Admission admit(String apiKey, String remoteAddress) {
+        Tenant tenant = apiKey != null ? tenantsByKey.getOrDefault(apiKey, Tenant.DEFAULT) : Tenant.DEFAULT;
+        Throughput counts = throughput.computeIfAbsent(tenant.name(), this::registerThroughput);
+        if (!properties.isEnabled()) {
+            counts.admitted.increment();
+            return new Admission(tenant, 0);
+        }
+
+        long retryAfterNanos = bucketFor(tenant, remoteAddress).tryAcquire();
+        (retryAfterNanos == 0 ? counts.admitted : counts.throttled).increment();
+        return new Admission(tenant, retryAfterNanos);
+    }
+
+    /**
+     * Charge an admitted request for the extra items it turned out to carry, such as the rest of a
+     * batch. The request itself already went through; the client's later requests wait off the debt.
+     */
+    public void charge(String apiKey, String remoteAddress, int extraItems) {
+        if (!properties.isEnabled() || extraItems <= 0) {
+            return;
+        }
+        Tenant tenant = apiKey != null ? tenantsByKey.getOrDefault(apiKey, Tenant.DEFAULT) : Tenant.DEFAULT;
+        bucketFor(tenant, remoteAddress).charge(extraItems);
+    }
+
+    private TokenBucket bucketFor(Tenant tenant, String remoteAddress) {
+        String key = tenant != Tenant.DEFAULT ? bucketKey(tenant.name()) : "addr:" + remoteAddress;
+        TokenBucket bucket = buckets.get(key);
+        if (bucket == null) {
+            sweepIfFull();
+            bucket = buckets.computeIfAbsent(key,
+                    ignored -> bucket(properties.getDefaultRequestsPerMinute(), properties.getDefaultBurst()));
+        }
+        return bucket;
+    }
+
+    /**
+     * Drop buckets of unconfigured clients that have refilled, once too many are tracked
+     */
+    private void sweepIfFull() {
+        if (buckets.size() < properties.getMaxTrackedClients() || !sweeping.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            int before = buckets.size();
+            buckets.entrySet().removeIf(entry -> !entry.getKey().startsWith("tenant:") && entry.getValue().isFull());
+            log.debug("Dropped {} idle client buckets", before - buckets.size());
+        } finally {
+            sweeping.set(false);
+        }
+    }
+
+    private static String bucketKey(String tenantName) {
+        return "tenant:" + tenantName;
+    }
+
+    private static TokenBucket bucket(double requestsPerMinute, int burst) {
+        return new TokenBucket(requestsPerMinute / 60.0, burst, System::nanoTime);
+    }
+
+    private Throughput registerThroughput(String tenant) {
+        Throughput counts = new Throughput();
+        FunctionCounter.builder("pixelart.tenant.requests", counts.admitted, LongAdder::sum)
+                .description("Requests received per tenant")
+                .tags("tenant", tenant, "outcome", "admitted")
+                .register(meterRegistry);
+        FunctionCounter.builder("pixelart.tenant.requests", counts.throttled, LongAdder::sum)
+                .description("Requests received per tenant")
+                .tags("tenant", tenant, "outcome", "throttled")
+                .register(meterRegistry);
+        return counts;
+    }
+
+    /**
+     * Striped so that a busy tenant's requests do not contend on one counter
+     */
+    private static final class Throughput {
+        final LongAdder admitted = new LongAdder();
+        final LongAdder throttled = new LongAdder();
+    }
+
+    /**
+     * @param retryAfterNanos 0 if the request may proceed, otherwise how long until it could
+     */
+    public record Admission(Tenant tenant, long retryAfterNanos) {
+
+        public boolean isAdmitted() {
+            return retryAfterNanos == 0;
+        }
+    }
+}
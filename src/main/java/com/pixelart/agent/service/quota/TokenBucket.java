@@ -0,0 +1,80 @@
+package com.pixelart.agent.service.quota;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Lock-free token bucket.
+ *
+ * Rather than a token count and a refill timestamp, the bucket keeps a single "theoretical
+ * arrival time": when the next call would be due if calls arrived exactly at the refill rate
+ * (the generic cell rate algorithm). A call is admitted while that time is no more than
+ * burst intervals ahead of now, so admission is one compare-and-set and never blocks.
+ */
+public final class TokenBucket {
+
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final LongSupplier clock;
+    private final AtomicLong theoreticalArrival;
+
+    /**
+     * @param permitsPerSecond Sustained rate
+     * @param burst Calls admitted back to back from a full bucket
+     * @param clock Nanosecond clock, System::nanoTime outside tests
+     */
+    public TokenBucket(double permitsPerSecond, int burst, LongSupplier clock) {
+        if (permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("Rate must be positive: " + permitsPerSecond);
+        }
+        this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+        this.burstNanos = intervalNanos * Math.max(1, burst);
+        this.clock = clock;
+        this.theoreticalArrival = new AtomicLong(clock.getAsLong());
+    }
+
+    /**
+     * Take a token if one is available
+     * @return 0 if the call is admitted, otherwise the nanoseconds until a token will be
+     */
+    public long tryAcquire() {
+        while (true) {
+            long now = clock.getAsLong();
+            long due = theoreticalArrival.get();
+            long next = Math.max(due, now) + intervalNanos;
+            long wait = next - now - burstNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (theoreticalArrival.compareAndSet(due, next)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Take tokens without checking the bucket, going into debt if it runs dry.
+     * Used for work whose size is only known once the call has been admitted; later calls
+     * then wait until the debt has been refilled.
+     */
+    public void charge(int permits) {
+        if (permits <= 0) {
+            return;
+        }
+        while (true) {
+            long now = clock.getAsLong();
+            long due = theoreticalArrival.get();
+            if (theoreticalArrival.compareAndSet(due, Math.max(due, now) + intervalNanos * permits)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Whether the bucket has refilled completely, so dropping it loses nothing
+     */
+    public boolean isFull() {
+        return theoreticalArrival.get() <= clock.getAsLong();
+    }
+}
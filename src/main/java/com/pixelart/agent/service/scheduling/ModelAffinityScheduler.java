@@ -0,0 +1,269 @@
+package com.pixelart.agent.service.scheduling;
+
+import com.pixelart.agent.model.GenerationProgress;
+import com.pixelart.agent.service.model.GenerationProgressListener;
+import com.pixelart.agent.service.quota.Tenant;
+import com.pixelart.agent.service.quota.TenantContext;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Supplier;
+
+/**
+ * Admits image jobs to the backend in an order that keeps the loaded checkpoint/LoRA warm.
+ *
+ * Queued jobs are kept in weighted fair order: each is stamped with a virtual finish time that
+ * advances by 1/weight per queued job of its tenant, as in AdaptiveLimiter, so a tenant's share
+ * of the GPU follows its weight however many jobs it has queued. With a single tenant this is
+ * arrival order. When a slot frees up, the first job in that order using the same weights as
+ * the previous job runs next, so same-model work is batched together. A job overtaken
+ * max-bypass times runs next regardless of its model, which bounds how long any job can be starved.
+ */
+@Slf4j
+@Component
+public class ModelAffinityScheduler {
+
+    private static final String DEFAULT = "default";
+
+    private final boolean enabled;
+    private final int maxConcurrent;
+    private final int maxBypass;
+
+    private final List<QueuedJob> queue = new ArrayList<>();
+    private final Map<String, Double> lastFinish = new HashMap<>();
+    private double virtualTime;
+    private long sequence;
+    private int running;
+    private String lastModelKey;
+    private double steadyJobMillis;
+
+    private final Counter modelSwitches;
+    private final Counter reorderedJobs;
+    private final Timer swapTime;
+    private final Timer jobsWithSwitch;
+    private final Timer jobsWithoutSwitch;
+
+    public ModelAffinityScheduler(
+            MeterRegistry meterRegistry,
+            @Value("${pixelart.image.scheduler.enabled:true}") boolean enabled,
+            @Value("${pixelart.image.scheduler.max-concurrent:1}") int maxConcurrent,
+            @Value("${pixelart.image.scheduler.max-bypass:4}") int maxBypass) {
+        this.enabled = enabled;
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.maxBypass = Math.max(0, maxBypass);
+
+        this.modelSwitches = Counter.builder("pixelart.image.model.switches")
+                .description("Image jobs that required the backend to load different weights")
+                .register(meterRegistry);
+        this.reorderedJobs = Counter.builder("pixelart.image.scheduler.reordered")
+                .description("Image jobs dispatched ahead of older queued jobs")
+                .register(meterRegistry);
+        this.swapTime = Timer.builder("pixelart.image.model.swap.time")
+                .description("Estimated time lost to model swaps (job time above the steady-state average)")
+                .register(meterRegistry);
+        this.jobsWithSwitch = Timer.builder("pixelart.image.jobs")
+                .tag("model.switch", "true")
+                .register(meterRegistry);
+        this.jobsWithoutSwitch = Timer.builder("pixelart.image.jobs")
+                .tag("model.switch", "false")
+                .register(meterRegistry);
+        Gauge.builder("pixelart.image.scheduler.queue.size", this, ModelAffinityScheduler::queueSize)
+                .description("Image jobs waiting for a backend slot")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Run the job once the scheduler admits it
+     *
+     * @param modelKey Key of the weights the job needs, see ImageGenerationParams.modelKey()
+     * @param listener Optional listener notified of the job's queue position
+     * @param job The backend call
+     * @return The job's result
+     */
+    public <T> T run(String modelKey, GenerationProgressListener listener, Supplier<T> job) {
+        if (!enabled) {
+            return job.get();
+        }
+
+        QueuedJob ticket = enqueue(modelKey, TenantContext.current(), listener);
+        try {
+            ticket.granted.await();
+        } catch (InterruptedException e) {
+            abandon(ticket);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for an image generation slot", e);
+        }
+
+        long start = System.nanoTime();
+        try {
+            return job.get();
+        } finally {
+            complete(ticket, System.nanoTime() - start);
+        }
+    }
+
+    private synchronized int queueSize() {
+        return queue.size();
+    }
+
+    private QueuedJob enqueue(String modelKey, Tenant tenant, GenerationProgressListener listener) {
+        int jobsAhead;
+        QueuedJob ticket;
+        synchronized (this) {
+            double start = Math.max(virtualTime, lastFinish.getOrDefault(tenant.name(), 0.0));
+            ticket = new QueuedJob(modelKey, start, start + 1.0 / tenant.weight(), sequence++);
+            lastFinish.put(tenant.name(), ticket.finish);
+            int slot = 0;
+            while (slot < queue.size() && queue.get(slot).isBefore(ticket)) {
+                slot++;
+            }
+            queue.add(slot, ticket);
+            dispatch();
+            int position = queue.indexOf(ticket);
+            jobsAhead = position >= 0 ? position + running : -1;
+        }
+        if (jobsAhead >= 0 && listener != null) {
+            listener.onProgress(GenerationProgress.builder()
+                    .state(GenerationProgress.STATE_QUEUED)
+                    .queuePosition(jobsAhead)
+                    .build());
+        }
+        return ticket;
+    }
+
+    private synchronized void abandon(QueuedJob ticket) {
+        if (!queue.remove(ticket)) {
+            // Granted concurrently with the interrupt, give the slot back
+            running--;
+        }
+        dispatch();
+    }
+
+    private synchronized void complete(QueuedJob ticket, long durationNanos) {
+        running--;
+
+        double millis = durationNanos / 1_000_000.0;
+        if (ticket.switched) {
+            jobsWithSwitch.record(Duration.ofNanos(durationNanos));
+            if (steadyJobMillis > 0) {
+                swapTime.record(Duration.ofNanos((long) (Math.max(0, millis - steadyJobMillis) * 1_000_000)));
+            }
+        } else {
+            jobsWithoutSwitch.record(Duration.ofNanos(durationNanos));
+            steadyJobMillis = steadyJobMillis == 0 ? millis : 0.8 * steadyJobMillis + 0.2 * millis;
+        }
+
+        dispatch();
+    }
+
+    /**
+     * Grant free slots to queued jobs. Must be called while holding the monitor.
+     */
+    private void dispatch() {
+        while (running < maxConcurrent && !queue.isEmpty()) {
+            QueuedJob next = selectNext();
+            int position = queue.indexOf(next);
+            for (int i = 0; i < position; i++) {
+                queue.get(i).bypassed++;
+            }
+            if (position > 0) {
+                reorderedJobs.increment();
+            }
+            // Virtual time follows the head of the fair order, so a job picked early for its model
+            // doesn't push newly arriving tenants behind the ones still waiting
+            virtualTime = Math.max(virtualTime, queue.get(0).start);
+            queue.remove(position);
+
+            next.switched = lastModelKey != null && !matchesLoaded(next.modelKey);
+            if (next.switched) {
+                modelSwitches.increment();
+                log.debug("Switching image model from {} to {}", lastModelKey, next.modelKey);
+            }
+            lastModelKey = loadedAfter(next.modelKey);
+            running++;
+            next.granted.countDown();
+        }
+        if (queue.isEmpty()) {
+            // Every tenant is idle again, so none has credit or debt to carry forward
+            lastFinish.clear();
+        }
+    }
+
+    private QueuedJob selectNext() {
+        QueuedJob head = queue.get(0);
+        if (head.bypassed >= maxBypass || lastModelKey == null) {
+            return head;
+        }
+        for (QueuedJob job : queue) {
+            if (matchesLoaded(job.modelKey)) {
+                return job;
+            }
+        }
+        return head;
+    }
+
+    /**
+     * Whether the job can run on the loaded weights. A job without a checkpoint keeps whichever
+     * one is loaded, so only its LoRA has to match; the default LoRA is a specific configured one.
+     */
+    private boolean matchesLoaded(String modelKey) {
+        if (lastModelKey == null) {
+            return false;
+        }
+        String checkpoint = checkpoint(modelKey);
+        return (checkpoint.equals(DEFAULT) || checkpoint.equals(checkpoint(lastModelKey)))
+                && lora(modelKey).equals(lora(lastModelKey));
+    }
+
+    /**
+     * The weights loaded once the job has run
+     */
+    private String loadedAfter(String modelKey) {
+        if (lastModelKey != null && checkpoint(modelKey).equals(DEFAULT)) {
+            return checkpoint(lastModelKey) + "|" + lora(modelKey);
+        }
+        return modelKey;
+    }
+
+    private static String checkpoint(String modelKey) {
+        int separator = modelKey.indexOf('|');
+        return separator >= 0 ? modelKey.substring(0, separator) : modelKey;
+    }
+
+    private static String lora(String modelKey) {
+        int separator = modelKey.indexOf('|');
+        return separator >= 0 ? modelKey.substring(separator + 1) : DEFAULT;
+    }
+
+    private static final class QueuedJob {
+        private final String modelKey;
+        private final double start;
+        private final double finish;
+        private final long sequence;
+        private final CountDownLatch granted = new CountDownLatch(1);
+        private int bypassed;
+        private boolean switched;
+
+        private QueuedJob(String modelKey, double start, double finish, long sequence) {
+            this.modelKey = modelKey;
+            this.start = start;
+            this.finish = finish;
+            this.sequence = sequence;
+        }
+
+        private boolean isBefore(QueuedJob other) {
+            return finish < other.finish || (finish == other.finish && sequence < other.sequence);
+        }
+    }
+}
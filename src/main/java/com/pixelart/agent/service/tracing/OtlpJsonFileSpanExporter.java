@@ -0,0 +1,193 @@
+package com.pixelart.agent.service.tracing;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.common.InstrumentationScopeInfo;
+import io.opentelemetry.sdk.resources.Resource;
+import io.opentelemetry.sdk.trace.data.EventData;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Appends finished spans to a file in the OTLP/JSON encoding, one export request per line.
+ * The file can be inspected offline, or shipped by an OpenTelemetry Collector's otlpjsonfile
+ * receiver into the same tracing backend the OTLP exporter feeds in production.
+ */
+@Slf4j
+public class OtlpJsonFileSpanExporter implements SpanExporter {
+
+    private final Path file;
+    private final ObjectMapper objectMapper;
+    /** Serializes writes; a lock rather than a monitor so a virtual thread exporting spans is not pinned */
+    private final ReentrantLock lock = new ReentrantLock();
+    private BufferedWriter writer;
+
+    public OtlpJsonFileSpanExporter(Path file, ObjectMapper objectMapper) {
+        this.file = file;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public CompletableResultCode export(Collection<SpanData> spans) {
+        if (spans.isEmpty()) {
+            return CompletableResultCode.ofSuccess();
+        }
+        lock.lock();
+        try {
+            if (writer == null) {
+                if (file.getParent() != null) {
+                    Files.createDirectories(file.getParent());
+                }
+                writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+            writer.write(objectMapper.writeValueAsString(toRequest(spans)));
+            writer.newLine();
+            writer.flush();
+            return CompletableResultCode.ofSuccess();
+        } catch (IOException e) {
+            log.warn("Could not write {} spans to {}: {}", spans.size(), file, e.getMessage());
+            return CompletableResultCode.ofFailure();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public CompletableResultCode flush() {
+        return CompletableResultCode.ofSuccess();
+    }
+
+    @Override
+    public CompletableResultCode shutdown() {
+        lock.lock();
+        try {
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    log.debug("Could not close {}: {}", file, e.getMessage());
+                }
+                writer = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+        return CompletableResultCode.ofSuccess();
+    }
+
+    /**
+     * An ExportTraceServiceRequest: spans grouped by resource, then by instrumentation scope
+     */
+    ObjectNode toRequest(Collection<SpanData> spans) {
+        Map<Resource, Map<InstrumentationScopeInfo, ArrayNode>> grouped = new LinkedHashMap<>();
+        for (SpanData span : spans) {
+            grouped.computeIfAbsent(span.getResource(), ignored -> new LinkedHashMap<>())
+                    .computeIfAbsent(span.getInstrumentationScopeInfo(), ignored -> objectMapper.createArrayNode())
+                    .add(toSpan(span));
+        }
+
+        ObjectNode request = objectMapper.createObjectNode();
+        ArrayNode resourceSpans = request.putArray("resourceSpans");
+        grouped.forEach((resource, scopes) -> {
+            ObjectNode entry = resourceSpans.addObject();
+            entry.putObject("resource").set("attributes", toAttributes(resource.getAttributes()));
+            ArrayNode scopeSpans = entry.putArray("scopeSpans");
+            scopes.forEach((scope, scopeSpanList) -> {
+                ObjectNode scopeEntry = scopeSpans.addObject();
+                ObjectNode scopeNode = scopeEntry.putObject("scope");
+                scopeNode.put("name", scope.getName());
+                if (scope.getVersion() != null) {
+                    scopeNode.put("version", scope.getVersion());
+                }
+                scopeEntry.set("spans", scopeSpanList);
+            });
+        });
+        return request;
+    }
+
+    private ObjectNode toSpan(SpanData span) {
+        ObjectNode node = objectMapper.createObjectNode();
+        node.put("traceId", span.getTraceId());
+        node.put("spanId", span.getSpanId());
+        if (span.getParentSpanContext().isValid()) {
+            node.put("parentSpanId", span.getParentSpanId());
+        }
+        node.put("name", span.getName());
+        // OTLP numbers span kinds from 1 in the same order as the API's enum
+        node.put("kind", span.getKind().ordinal() + 1);
+        // 64-bit integers are strings in OTLP/JSON
+        node.put("startTimeUnixNano", String.valueOf(span.getStartEpochNanos()));
+        node.put("endTimeUnixNano", String.valueOf(span.getEndEpochNanos()));
+        node.set("attributes", toAttributes(span.getAttributes()));
+        if (!span.getEvents().isEmpty()) {
+            ArrayNode events = node.putArray("events");
+            for (EventData event : span.getEvents()) {
+                ObjectNode eventNode = events.addObject();
+                eventNode.put("timeUnixNano", String.valueOf(event.getEpochNanos()));
+                eventNode.put("name", event.getName());
+                eventNode.set("attributes", toAttributes(event.getAttributes()));
+            }
+        }
+        ObjectNode status = node.putObject("status");
+        // UNSET, OK, ERROR are 0, 1, 2 in both
+        status.put("code", span.getStatus().getStatusCode().ordinal());
+        if (!span.getStatus().getDescription().isEmpty()) {
+            status.put("message", span.getStatus().getDescription());
+        }
+        return node;
+    }
+
+    private ArrayNode toAttributes(Attributes attributes) {
+        ArrayNode array = objectMapper.createArrayNode();
+        attributes.forEach((key, value) -> {
+            ObjectNode attribute = array.addObject();
+            attribute.put("key", key.getKey());
+            attribute.set("value", toValue(key, value));
+        });
+        return array;
+    }
+
+    private ObjectNode toValue(AttributeKey<?> key, Object value) {
+        ObjectNode node = objectMapper.createObjectNode();
+        switch (key.getType()) {
+            case BOOLEAN -> node.put("boolValue", (Boolean) value);
+            case LONG -> node.put("intValue", String.valueOf(value));
+            case DOUBLE -> node.put("doubleValue", (Double) value);
+            case STRING -> node.put("stringValue", (String) value);
+            default -> {
+                ArrayNode values = node.putObject("arrayValue").putArray("values");
+                for (Object element : (List<?>) value) {
+                    ObjectNode elementNode = values.addObject();
+                    if (element instanceof Boolean bool) {
+                        elementNode.put("boolValue", bool);
+                    } else if (element instanceof Long number) {
+                        elementNode.put("intValue", String.valueOf(number));
+                    } else if (element instanceof Double number) {
+                        elementNode.put("doubleValue", number);
+                    } else {
+                        elementNode.put("stringValue", String.valueOf(element));
+                    }
+                }
+            }
+        }
+        return node;
+    }
+}
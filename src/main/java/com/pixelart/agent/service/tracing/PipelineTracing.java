@@ -0,0 +1,103 @@
+package com.pixelart.agent.service.tracing;
+
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.tracing.Span;
+import io.micrometer.tracing.Tracer;
+import io.micrometer.tracing.propagation.Propagator;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Spans for the stages of the generation pipeline.
+ *
+ * Stages are Micrometer observations, which Boot turns into OpenTelemetry spans (and timers)
+ * nested under the HTTP request's span. Work handed to another thread, such as a hedged
+ * backend call, has no current span there, so the caller passes its parent along explicitly.
+ */
+@Component
+public class PipelineTracing {
+
+    public static final String PROMPT_BUILD = "pixelart.prompt.build";
+    public static final String LLM_CALL = "pixelart.llm.call";
+    public static final String OLLAMA_GENERATE = "pixelart.ollama.generate";
+    public static final String RESPONSE_PARSE = "pixelart.response.parse";
+    public static final String IMAGE_CALL = "pixelart.image.call";
+    public static final String SD_TXT2IMG = "pixelart.sd.txt2img";
+    public static final String SD_READ = "pixelart.sd.read";
+    public static final String IMAGE_OPTIMIZE = "pixelart.image.optimize";
+    public static final String IMAGE_VALIDATE = "pixelart.image.validate";
+    public static final String IMAGE_PALETTE = "pixelart.image.palette";
+    public static final String IMAGE_ATTACH = "pixelart.image.attach";
+    public static final String SERIALIZE = "pixelart.response.serialize";
+
+    private final ObservationRegistry registry;
+    private final ObjectProvider<Tracer> tracer;
+    private final ObjectProvider<Propagator> propagator;
+
+    public PipelineTracing(ObservationRegistry registry, ObjectProvider<Tracer> tracer,
+                           ObjectProvider<Propagator> propagator) {
+        this.registry = registry;
+        this.tracer = tracer;
+        this.propagator = propagator;
+    }
+
+    /**
+     * Start a span under the current one; the caller adds attributes and observes work with it
+     */
+    public Observation start(String name) {
+        return Observation.createNotStarted(name, registry);
+    }
+
+    /**
+     * Run work in a span under the current one
+     */
+    public <T, E extends Throwable> T span(String name, Observation.CheckedCallable<T, E> work) throws E {
+        return Observation.createNotStarted(name, registry).observeChecked(work);
+    }
+
+    /**
+     * Run work in a span under an explicit parent, for work running on another thread
+     */
+    public <T, E extends Throwable> T span(String name, Observation parent, Observation.CheckedCallable<T, E> work) throws E {
+        return Observation.createNotStarted(name, registry).parentObservation(parent).observeChecked(work);
+    }
+
+    /**
+     * The current span's observation, to hand to work on another thread, or null outside one
+     */
+    public Observation current() {
+        return registry.getCurrentObservation();
+    }
+
+    /**
+     * Add an attribute to the current span, if there is one
+     */
+    public void tag(String key, Object value) {
+        Observation current = registry.getCurrentObservation();
+        if (current != null && value != null) {
+            current.highCardinalityKeyValue(key, String.valueOf(value));
+        }
+    }
+
+    /**
+     * Trace context headers (traceparent, tracestate) for an outbound call made from the current
+     * span. Taken on the calling thread, so they can be set on requests sent from other threads.
+     */
+    public Map<String, String> outboundHeaders() {
+        Map<String, String> headers = new LinkedHashMap<>();
+        Tracer currentTracer = tracer.getIfAvailable();
+        Propagator currentPropagator = propagator.getIfAvailable();
+        if (currentTracer == null || currentPropagator == null) {
+            return headers;
+        }
+        Span span = currentTracer.currentSpan();
+        if (span != null) {
+            currentPropagator.inject(span.context(), headers, Map::put);
+        }
+        return headers;
+    }
+}
@@ -0,0 +1,87 @@
+package com.pixelart.agent.service.tracing;
+
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the most recently finished spans in memory, for looking at traces without a tracing
+ * backend. Once full, the oldest spans are dropped.
+ */
+public class RecentSpanExporter implements SpanExporter {
+
+    private final int capacity;
+    private final Deque<SpanData> spans = new ArrayDeque<>();
+
+    public RecentSpanExporter(int capacity) {
+        this.capacity = Math.max(1, capacity);
+    }
+
+    @Override
+    public synchronized CompletableResultCode export(Collection<SpanData> batch) {
+        for (SpanData span : batch) {
+            if (spans.size() == capacity) {
+                spans.removeFirst();
+            }
+            spans.addLast(span);
+        }
+        return CompletableResultCode.ofSuccess();
+    }
+
+    /**
+     * Retained spans, oldest first, optionally only those of one trace
+     * @param traceId The trace to return, or null for all of them
+     */
+    public List<RecordedSpan> spans(String traceId) {
+        List<SpanData> snapshot;
+        synchronized (this) {
+            snapshot = new ArrayList<>(spans);
+        }
+        return snapshot.stream()
+                .filter(span -> traceId == null || traceId.equals(span.getTraceId()))
+                .sorted(Comparator.comparingLong(SpanData::getStartEpochNanos))
+                .map(RecentSpanExporter::toRecordedSpan)
+                .toList();
+    }
+
+    private static RecordedSpan toRecordedSpan(SpanData span) {
+        Map<String, String> attributes = new LinkedHashMap<>();
+        span.getAttributes().forEach((key, value) -> attributes.put(key.getKey(), String.valueOf(value)));
+        return new RecordedSpan(
+                span.getTraceId(),
+                span.getSpanId(),
+                span.getParentSpanContext().isValid() ? span.getParentSpanId() : null,
+                span.getName(),
+                span.getStartEpochNanos() / 1_000_000,
+                (span.getEndEpochNanos() - span.getStartEpochNanos()) / 1_000_000.0,
+                span.getStatus().getStatusCode().name(),
+                attributes);
+    }
+
+    @Override
+    public CompletableResultCode flush() {
+        return CompletableResultCode.ofSuccess();
+    }
+
+    @Override
+    public CompletableResultCode shutdown() {
+        return CompletableResultCode.ofSuccess();
+    }
+
+    /**
+     * A finished span as the spans endpoint shows it
+     */
+    public record RecordedSpan(String traceId, String spanId, String parentSpanId, String name,
+                               long startEpochMillis, double durationMillis, String status,
+                               Map<String, String> attributes) {
+    }
+}
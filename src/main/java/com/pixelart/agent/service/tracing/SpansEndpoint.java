@@ -0,0 +1,26 @@
+package com.pixelart.agent.service.tracing;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+
+import java.util.List;
+
+/**
+ * /actuator/spans lists the spans kept by the in-memory exporter; ?traceId= narrows it to one
+ * request, whose trace id is in the traceparent of its logs and outbound calls
+ */
+@Endpoint(id = "spans")
+public class SpansEndpoint {
+
+    private final RecentSpanExporter exporter;
+
+    public SpansEndpoint(RecentSpanExporter exporter) {
+        this.exporter = exporter;
+    }
+
+    @ReadOperation
+    public List<RecentSpanExporter.RecordedSpan> spans(@Nullable String traceId) {
+        return exporter.spans(traceId);
+    }
+}
@@ -0,0 +1,11 @@
+package com.pixelart.agent.service.traffic;
+
+/**
+ * One call a request made to a backend, as recorded or to be replayed
+ *
+ * @param backend BlockingCallLimiter.LLM or BlockingCallLimiter.IMAGE
+ * @param latencyMs Time the backend took, excluding time queued for a permit
+ * @param bytes Size of what the backend returned: UTF-8 text for the LLM, PNG bytes for images
+ */
+public record BackendCall(String backend, long latencyMs, long bytes) {
+}
@@ -0,0 +1,142 @@
+package com.pixelart.agent.service.traffic;
+
+import com.pixelart.agent.model.PixelArtRequest;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Traffic capture and playback state of the request on the current thread.
+ *
+ * While capturing, provider decorators append each backend call. While playing back, the mock
+ * providers take the next recorded call for their backend and reproduce its latency and size.
+ * Neither carries over to pools the request hands work to, so only calls made on the request
+ * thread itself are captured or replayed.
+ */
+public final class TrafficContext {
+
+    /** Header the replayer sends the recorded backend calls in, as backend:latencyMs:bytes,... */
+    public static final String PLAYBACK_HEADER = "X-Replay-Calls";
+
+    private static final ThreadLocal<Capture> CAPTURE = new ThreadLocal<>();
+    private static final ThreadLocal<Deque<BackendCall>> PLAYBACK = new ThreadLocal<>();
+
+    private TrafficContext() {
+    }
+
+    public static void startCapture() {
+        CAPTURE.set(new Capture());
+    }
+
+    /**
+     * Attach the request body to the capture in progress, if any
+     */
+    public static void captureRequest(PixelArtRequest request) {
+        Capture capture = CAPTURE.get();
+        if (capture != null) {
+            capture.request = request;
+        }
+    }
+
+    /**
+     * Record a backend call against the capture in progress, if any
+     */
+    public static void captureCall(BackendCall call) {
+        Capture capture = CAPTURE.get();
+        if (capture != null) {
+            capture.calls.add(call);
+        }
+    }
+
+    /**
+     * End the capture on this thread
+     * @return what was captured, or null if nothing was being captured
+     */
+    public static Capture endCapture() {
+        Capture capture = CAPTURE.get();
+        CAPTURE.remove();
+        return capture;
+    }
+
+    public static void startPlayback(List<BackendCall> calls) {
+        PLAYBACK.set(new ArrayDeque<>(calls));
+    }
+
+    /**
+     * Take the next recorded call to the backend, or null when none is left to replay
+     */
+    public static BackendCall nextPlayback(String backend) {
+        Deque<BackendCall> calls = PLAYBACK.get();
+        if (calls == null) {
+            return null;
+        }
+        for (Iterator<BackendCall> it = calls.iterator(); it.hasNext(); ) {
+            BackendCall call = it.next();
+            if (call.backend().equals(backend)) {
+                it.remove();
+                return call;
+            }
+        }
+        return null;
+    }
+
+    public static void clear() {
+        CAPTURE.remove();
+        PLAYBACK.remove();
+    }
+
+    /**
+     * Format calls for the playback header
+     */
+    public static String formatCalls(List<BackendCall> calls) {
+        StringBuilder header = new StringBuilder();
+        for (BackendCall call : calls) {
+            if (header.length() > 0) {
+                header.append(',');
+            }
+            header.append(call.backend()).append(':').append(call.latencyMs()).append(':').append(call.bytes());
+        }
+        return header.toString();
+    }
+
+    /**
+     * Parse the playback header, skipping malformed entries
+     */
+    public static List<BackendCall> parseCalls(String header) {
+        List<BackendCall> calls = new ArrayList<>();
+        if (header == null || header.isBlank()) {
+            return calls;
+        }
+        for (String entry : header.split(",")) {
+            String[] parts = entry.trim().split(":");
+            if (parts.length != 3) {
+                continue;
+            }
+            try {
+                calls.add(new BackendCall(parts[0], Long.parseLong(parts[1]), Long.parseLong(parts[2])));
+            } catch (NumberFormatException e) {
+                // Skip it; the mock falls back to its configured latency
+            }
+        }
+        return calls;
+    }
+
+    /**
+     * A request being captured
+     */
+    public static final class Capture {
+        private PixelArtRequest request;
+        private final List<BackendCall> calls = new ArrayList<>();
+
+        public PixelArtRequest getRequest() {
+            return request;
+        }
+
+        public List<BackendCall> getCalls() {
+            return calls;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.pixelart.agent.service.traffic;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.pixelart.agent.model.PixelArtRequest;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * One line of the traffic log: an anonymized API request, when it arrived, and what it cost
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TrafficRecord {
+
+    /**
+     * Epoch millis the request arrived at
+     */
+    private long arrivedAt;
+
+    private String method;
+
+    /**
+     * Path and query string, e.g. /api/pixelart/generate?mode=text-only
+     */
+    private String path;
+
+    /**
+     * The request body with its free text replaced by salted word hashes
+     */
+    private PixelArtRequest request;
+
+    private int status;
+
+    private long latencyMs;
+
+    /**
+     * Backend calls made on the request thread, in order
+     */
+    private List<BackendCall> calls;
+}
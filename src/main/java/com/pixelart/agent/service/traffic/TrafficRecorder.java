@@ -0,0 +1,202 @@
+package com.pixelart.agent.service.traffic;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pixelart.agent.model.PixelArtRequest;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Appends anonymized API traffic to a JSON Lines log for TrafficReplayer.
+ *
+ * Free text in requests is replaced word by word with a salted hash, which keeps word counts,
+ * and so prompt sizes, and keeps identical requests identical so cache hit rates replay
+ * faithfully. Structured fields (asset type, size, style, seed, model choices) are kept as they
+ * are. Records are handed to a writer thread through a bounded queue and dropped when it is
+ * full, so a slow disk never holds up a request.
+ */
+@Slf4j
+@Component
+public class TrafficRecorder {
+
+    private static final int QUEUE_CAPACITY = 10_000;
+
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final Path file;
+    private final int samplePercent;
+    private final byte[] salt;
+    private final BlockingQueue<TrafficRecord> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    private final Counter recorded;
+    private final Counter dropped;
+
+    public TrafficRecorder(
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${pixelart.traffic.record.enabled:false}") boolean enabled,
+            @Value("${pixelart.traffic.record.file:./data/traffic.jsonl}") String file,
+            @Value("${pixelart.traffic.record.sample-percent:100}") int samplePercent,
+            @Value("${pixelart.traffic.record.salt:}") String salt) {
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.file = Paths.get(file);
+        this.samplePercent = Math.max(0, Math.min(100, samplePercent));
+        this.salt = salt.isBlank() ? randomSalt() : salt.getBytes(StandardCharsets.UTF_8);
+        this.recorded = Counter.builder("pixelart.traffic.recorded")
+                .description("Requests written to the traffic log")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("pixelart.traffic.dropped")
+                .description("Requests not recorded because the log writer fell behind")
+                .register(meterRegistry);
+        if (enabled) {
+            this.writer = new Thread(this::writeLoop, "traffic-recorder");
+            writer.setDaemon(true);
+            writer.start();
+            log.info("Recording {}% of API traffic to {}", this.samplePercent, this.file);
+        } else {
+            this.writer = null;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Whether to capture the request now arriving
+     */
+    public boolean sample() {
+        return enabled && (samplePercent >= 100 || ThreadLocalRandom.current().nextInt(100) < samplePercent);
+    }
+
+    /**
+     * Queue a captured request for writing
+     */
+    public void record(long arrivedAt, String method, String path, int status, long latencyMs,
+                       TrafficContext.Capture capture) {
+        TrafficRecord record = TrafficRecord.builder()
+                .arrivedAt(arrivedAt)
+                .method(method)
+                .path(path)
+                .request(anonymize(capture.getRequest()))
+                .status(status)
+                .latencyMs(latencyMs)
+                .calls(List.copyOf(capture.getCalls()))
+                .build();
+        if (!queue.offer(record)) {
+            dropped.increment();
+        }
+    }
+
+    /**
+     * A copy of the request with every free text field hashed word by word
+     */
+    PixelArtRequest anonymize(PixelArtRequest request) {
+        if (request == null) {
+            return null;
+        }
+        PixelArtRequest copy = objectMapper.convertValue(request, PixelArtRequest.class);
+        copy.setDescription(anonymize(request.getDescription()));
+        copy.setAdditionalContext(anonymize(request.getAdditionalContext()));
+        copy.setColorPalette(anonymize(request.getColorPalette()));
+        return copy;
+    }
+
+    private String anonymize(String text) {
+        if (text == null || text.isBlank()) {
+            return text;
+        }
+        MessageDigest digest = sha256();
+        StringBuilder out = new StringBuilder(text.length());
+        for (String word : text.trim().split("\\s+")) {
+            digest.update(salt);
+            byte[] hash = digest.digest(word.toLowerCase().getBytes(StandardCharsets.UTF_8));
+            if (out.length() > 0) {
+                out.append(' ');
+            }
+            out.append('w').append(HexFormat.of().formatHex(hash, 0, 3));
+        }
+        return out.toString();
+    }
+
+    private void writeLoop() {
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+        } catch (IOException e) {
+            log.error("Cannot create directory for traffic log {}: {}", file, e.getMessage());
+            return;
+        }
+        List<TrafficRecord> batch = new ArrayList<>();
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            while (running || !queue.isEmpty()) {
+                TrafficRecord first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch);
+                for (TrafficRecord record : batch) {
+                    out.write(objectMapper.writeValueAsString(record));
+                    out.newLine();
+                }
+                out.flush();
+                recorded.increment(batch.size());
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            log.error("Traffic log {} unwritable, recording stopped: {}", file, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    void close() throws InterruptedException {
+        running = false;
+        if (writer != null) {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 unavailable", e);
+        }
+    }
+
+    /**
+     * A salt for this run only; set pixelart.traffic.record.salt to keep hashes stable across restarts
+     */
+    private static byte[] randomSalt() {
+        byte[] salt = new byte[16];
+        new SecureRandom().nextBytes(salt);
+        return salt;
+    }
+}
@@ -0,0 +1,158 @@
+package com.pixelart.agent.service.traffic;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Drives a traffic log recorded by TrafficRecorder through the API.
+ *
+ * Requests are sent at their recorded spacing divided by the speed factor, or back to back at
+ * max speed, with their recorded backend calls in the playback header so that an instance
+ * running the mock providers with pixelart.traffic.playback.enabled=true reproduces each
+ * request's backend latencies and payload sizes. Needs only the JDK and Jackson, so it can be
+ * run from the application jar:
+ *
+ * java -Dloader.main=com.pixelart.agent.service.traffic.TrafficReplayer -cp pixel-art-agent.jar \
+ *   org.springframework.boot.loader.launch.PropertiesLauncher traffic.jsonl http://localhost:8080 [speed|max] [max-in-flight]
+ */
+public class TrafficReplayer {
+
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper;
+    private final URI target;
+    private final double speed;
+    private final int maxInFlight;
+
+    /**
+     * @param speed Multiple of the recorded rate, or 0 to send as fast as maxInFlight allows
+     */
+    public TrafficReplayer(HttpClient httpClient, ObjectMapper objectMapper, URI target, double speed, int maxInFlight) {
+        this.httpClient = httpClient;
+        this.objectMapper = objectMapper;
+        this.target = target;
+        this.speed = speed;
+        this.maxInFlight = Math.max(1, maxInFlight);
+    }
+
+    /**
+     * Replay every record in the log and wait for all responses
+     */
+    public Summary replay(Path log) throws IOException, InterruptedException {
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger failed = new AtomicInteger();
+        int sent = 0;
+        long maxLagMs = 0;
+        long firstArrival = -1;
+        long start = System.nanoTime();
+
+        try (BufferedReader reader = Files.newBufferedReader(log, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                TrafficRecord record = objectMapper.readValue(line, TrafficRecord.class);
+                if (firstArrival < 0) {
+                    firstArrival = record.getArrivedAt();
+                }
+                if (speed > 0) {
+                    long dueNanos = start + (long) ((record.getArrivedAt() - firstArrival) * 1_000_000 / speed);
+                    long waitNanos = dueNanos - System.nanoTime();
+                    if (waitNanos > 0) {
+                        TimeUnit.NANOSECONDS.sleep(waitNanos);
+                    }
+                    inFlight.acquire();
+                    // How far behind schedule the replay fell, because responses were slow or the client saturated
+                    maxLagMs = Math.max(maxLagMs, (System.nanoTime() - dueNanos) / 1_000_000);
+                } else {
+                    inFlight.acquire();
+                }
+                send(record, inFlight, latencies, failed);
+                sent++;
+            }
+        }
+        inFlight.acquire(maxInFlight);
+        return new Summary(sent, failed.get(), (System.nanoTime() - start) / 1_000_000, maxLagMs, latencies);
+    }
+
+    private void send(TrafficRecord record, Semaphore inFlight, List<Long> latencies, AtomicInteger failed)
+            throws IOException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(target.resolve(record.getPath()))
+                .timeout(Duration.ofMinutes(10))
+                .header("Content-Type", "application/json");
+        if (record.getCalls() != null && !record.getCalls().isEmpty()) {
+            request.header(TrafficContext.PLAYBACK_HEADER, TrafficContext.formatCalls(record.getCalls()));
+        }
+        byte[] body = record.getRequest() != null ? objectMapper.writeValueAsBytes(record.getRequest()) : new byte[0];
+        String method = record.getMethod() != null ? record.getMethod() : "POST";
+        request.method(method, HttpRequest.BodyPublishers.ofByteArray(body));
+
+        long sentAt = System.nanoTime();
+        httpClient.sendAsync(request.build(), HttpResponse.BodyHandlers.discarding())
+                .whenComplete((response, error) -> {
+                    latencies.add((System.nanoTime() - sentAt) / 1_000_000);
+                    if (error != null || response.statusCode() >= 400) {
+                        failed.incrementAndGet();
+                    }
+                    inFlight.release();
+                });
+    }
+
+    /**
+     * Outcome of a replay; latencies are client-side, in milliseconds
+     */
+    public record Summary(int sent, int failed, long elapsedMs, long maxLagMs, List<Long> latencies) {
+
+        public long percentile(double percentile) {
+            if (latencies.isEmpty()) {
+                return 0;
+            }
+            List<Long> sorted = new ArrayList<>(latencies);
+            Collections.sort(sorted);
+            int index = (int) Math.ceil(percentile / 100.0 * sorted.size()) - 1;
+            return sorted.get(Math.max(0, Math.min(index, sorted.size() - 1)));
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d requests (%d failed) in %d ms, max lag %d ms, latency p50 %d / p95 %d / p99 %d / max %d ms",
+                    sent, failed, elapsedMs, maxLagMs, percentile(50), percentile(95), percentile(99), percentile(100));
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: TrafficReplayer <log> <base-url> [speed|max] [max-in-flight]");
+            System.exit(2);
+        }
+        double speed = 1;
+        if (args.length > 2) {
+            speed = args[2].equals("max") ? 0 : Double.parseDouble(args[2]);
+        }
+        int maxInFlight = args.length > 3 ? Integer.parseInt(args[3]) : 256;
+        // Tolerate logs written by a newer version with fields this one doesn't know
+        ObjectMapper objectMapper = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        TrafficReplayer replayer = new TrafficReplayer(HttpClient.newHttpClient(), objectMapper,
+                URI.create(args[1]), speed, maxInFlight);
+        System.out.println(replayer.replay(Paths.get(args[0])));
+    }
+}
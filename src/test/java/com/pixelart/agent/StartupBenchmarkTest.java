@@ -0,0 +1,91 @@
+package com.pixelart.agent;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Time from launch to ready, and the latency of the first request against a later one.
+ * Runs against the mock providers by default; with -Dbenchmark.real=true it uses Ollama and
+ * Stable Diffusion, where -Dbenchmark.warmup=true shows the load moving from the first request
+ * into startup. Run with:
+ * mvn test -Dtest=StartupBenchmarkTest -Dbenchmark=true [-Dbenchmark.runs=5 -Dbenchmark.real=true -Dbenchmark.warmup=true]
+ */
+class StartupBenchmarkTest {
+
+    private static final String REQUEST = """
+            {"assetType": "CHARACTER", "description": "knight with a sword", "size": "32x32"}
+            """;
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void benchmarkStartupAndFirstRequest() throws Exception {
+        int runs = Integer.getInteger("benchmark.runs", 5);
+        boolean real = Boolean.getBoolean("benchmark.real");
+        boolean warmup = Boolean.getBoolean("benchmark.warmup");
+
+        List<Long> startups = new ArrayList<>();
+        List<Long> firsts = new ArrayList<>();
+        List<Long> seconds = new ArrayList<>();
+        for (int i = 0; i < runs; i++) {
+            long start = System.nanoTime();
+            try (ConfigurableApplicationContext context = SpringApplication.run(PixelArtAgentApplication.class,
+                    "--server.port=0",
+                    "--spring.main.banner-mode=off",
+                    "--logging.level.root=WARN",
+                    "--logging.level.com.pixelart.agent=WARN",
+                    "--pixelart.models.use-mock=" + !real,
+                    "--pixelart.chat-model.mock-responses-enabled=" + !real,
+                    "--pixelart.image-model.mock-responses-enabled=" + !real,
+                    "--pixelart.warmup.enabled=" + warmup)) {
+                startups.add(millisSince(start));
+
+                int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+                firsts.add(timeRequest(port));
+                seconds.add(timeRequest(port));
+            }
+        }
+
+        System.out.printf("%s providers, warmup %s, %d runs%n", real ? "real" : "mock", warmup ? "on" : "off", runs);
+        System.out.printf("  startup:        median %5d ms, max %5d ms%n", median(startups), max(startups));
+        System.out.printf("  first request:  median %5d ms, max %5d ms%n", median(firsts), max(firsts));
+        System.out.printf("  second request: median %5d ms, max %5d ms%n", median(seconds), max(seconds));
+    }
+
+    private static long timeRequest(int port) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/pixelart/generate"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(REQUEST))
+                .build();
+        long start = System.nanoTime();
+        HttpResponse<String> response = HttpClient.newHttpClient().send(request, HttpResponse.BodyHandlers.ofString());
+        long millis = millisSince(start);
+        assertThat(response.statusCode()).isEqualTo(200);
+        return millis;
+    }
+
+    private static long millisSince(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    private static long median(List<Long> values) {
+        List<Long> sorted = new ArrayList<>(values);
+        sorted.sort(null);
+        return sorted.get(sorted.size() / 2);
+    }
+
+    private static long max(List<Long> values) {
+        return values.stream().mapToLong(Long::longValue).max().orElse(0);
+    }
+}
@@ -0,0 +1,109 @@
+package com.pixelart.agent.model.json;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import com.pixelart.agent.model.PixelArtResponse;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.Base64;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ImageDataSerializerTest {
+
+    @Test
+    void writesBase64TextInJson() throws Exception {
+        PixelArtResponse response = PixelArtResponse.builder().imageData(randomImage(1000)).build();
+
+        String json = JsonMapper.builder().findAndAddModules().build().writeValueAsString(response);
+
+        assertThat(json).contains("\"imageData\":\"" + response.getImageData() + "\"");
+    }
+
+    @Test
+    void writesRawBytesInBinaryFormatsAndReadsThemBack() throws Exception {
+        for (int size : new int[]{0, 1, 2, 3, 1000, 300_001}) {
+            String imageData = randomImage(size);
+            PixelArtResponse response = PixelArtResponse.builder().imageData(imageData).imageStatus("generated").build();
+
+            for (ObjectMapper mapper : new ObjectMapper[]{new CBORMapper(), new SmileMapper()}) {
+                mapper.findAndRegisterModules();
+                byte[] encoded = mapper.writeValueAsBytes(response);
+                int withoutImage = mapper.writeValueAsBytes(PixelArtResponse.builder().imageStatus("generated").build()).length;
+
+                // Raw bytes, or 8/7 of them in Smile's 7-bit safe encoding, against 4/3 as base64 text
+                assertThat(encoded.length).isLessThanOrEqualTo(withoutImage + size * 8 / 7 + 16);
+                assertThat(mapper.readValue(encoded, PixelArtResponse.class).getImageData()).isEqualTo(imageData);
+            }
+        }
+    }
+
+    @Test
+    void readsNonAsciiAsAnInvalidDigitOnBothPaths() throws Exception {
+        String text = "QUJD\u00e9";
+
+        AsciiInputStream single = new AsciiInputStream(text);
+        byte[] oneByOne = new byte[text.length()];
+        for (int i = 0; i < oneByOne.length; i++) {
+            oneByOne[i] = (byte) single.read();
+        }
+        assertThat(single.read()).isEqualTo(-1);
+        assertThat(new AsciiInputStream(text).readAllBytes()).isEqualTo(oneByOne).endsWith((byte) '?');
+        assertThatThrownBy(() -> ImageDataSerializer.decode(text + "AAA").readAllBytes()).isInstanceOf(IOException.class);
+    }
+
+    /**
+     * Run with -Dbenchmark=true
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void benchmarkAllocationAndThroughput() throws Exception {
+        ObjectMapper json = JsonMapper.builder().findAndAddModules().build();
+        ObjectMapper cbor = new CBORMapper();
+        cbor.findAndRegisterModules();
+        PixelArtResponse response = PixelArtResponse.builder().imageData(randomImage(8 * 1024 * 1024)).build();
+        OutputStream sink = OutputStream.nullOutputStream();
+
+        for (int i = 0; i < 5; i++) {
+            sink.write(json.writeValueAsBytes(response));
+            json.writeValue(sink, response);
+            cbor.writeValue(sink, response);
+        }
+
+        measure("JSON via byte[]", () -> sink.write(json.writeValueAsBytes(response)));
+        measure("JSON streamed", () -> json.writeValue(sink, response));
+        measure("CBOR streamed", () -> cbor.writeValue(sink, response));
+    }
+
+    private interface Write {
+        void run() throws Exception;
+    }
+
+    private static void measure(String label, Write write) throws Exception {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        int iterations = 20;
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            write.run();
+        }
+        double ms = (System.nanoTime() - start) / 1e6 / iterations;
+        long allocated = (threads.getThreadAllocatedBytes(threadId) - allocatedBefore) / iterations;
+        System.out.printf("%-16s %8.2f ms  %,12d bytes allocated per response%n", label, ms, allocated);
+    }
+
+    private static String randomImage(int bytes) {
+        byte[] data = new byte[bytes];
+        new Random(bytes).nextBytes(data);
+        return Base64.getEncoder().encodeToString(data);
+    }
+}
@@ -0,0 +1,154 @@
+package com.pixelart.agent.service;
+
+import com.pixelart.agent.model.BatchItemResult;
+import com.pixelart.agent.model.PixelArtRequest;
+import com.pixelart.agent.model.PixelArtResponse;
+import com.pixelart.agent.service.cache.SemanticResultCache;
+import com.pixelart.agent.service.cache.TwoLevelResultCache;
+import com.pixelart.agent.service.image.ImageStore;
+import com.pixelart.agent.service.image.PaletteAnalyzer;
+import com.pixelart.agent.service.image.SpriteHashIndex;
+import com.pixelart.agent.service.model.GenerationProgressListener;
+import com.pixelart.agent.service.model.ModelProvider;
+import com.pixelart.agent.service.tracing.PipelineTracing;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+class BatchGenerationServiceTest {
+
+    @Autowired
+    private BatchGenerationService service;
+
+    @Autowired
+    private ModelProvider modelProvider;
+    @Autowired
+    private ImageGenerationService imageGenerationService;
+    @Autowired
+    private SemanticResultCache semanticResultCache;
+    @Autowired
+    private TwoLevelResultCache resultCache;
+    @Autowired
+    private SpriteHashIndex spriteHashIndex;
+    @Autowired
+    private SpriteAtlasService spriteAtlasService;
+    @Autowired
+    private ImageStore imageStore;
+    @Autowired
+    private PaletteAnalyzer paletteAnalyzer;
+    @Autowired
+    private PipelineTracing tracing;
+
+    private final List<BatchGenerationService> stubbed = new ArrayList<>();
+
+    @AfterEach
+    void shutdownStubbed() {
+        stubbed.forEach(BatchGenerationService::shutdown);
+    }
+
+    @Test
+    void batchItemsArePublishedLikeSingleRequests() {
+        PixelArtRequest knight = request("knight");
+        List<BatchItemResult> results = new ArrayList<>();
+
+        service.generateBatch(List.of(knight, request("dragon"), knight), results::add);
+
+        assertThat(results).hasSize(3);
+        assertThat(results).allSatisfy(result -> {
+            assertThat(result.getError()).isNull();
+            assertThat(result.getResponse().getImageUrl()).startsWith("/api/pixelart/image/");
+        });
+        assertThat(results).filteredOn(result -> result.getIndex() == 2)
+                .singleElement()
+                .satisfies(result -> assertThat(result.getDuplicateOf()).isZero());
+    }
+
+    @Test
+    void anErrorWhileDescribingStillCompletesTheBatch() throws Exception {
+        BatchGenerationService batch = stub(request -> {
+            throw new AssertionError("describe blew up");
+        });
+        List<BatchItemResult> results = new ArrayList<>();
+
+        CompletableFuture.runAsync(() -> batch.generateBatch(List.of(request("knight")), results::add))
+                .get(10, TimeUnit.SECONDS);
+
+        assertThat(results).singleElement().satisfies(result -> {
+            assertThat(result.getResponse()).isNull();
+            assertThat(result.getError()).isNotBlank();
+        });
+    }
+
+    @Test
+    void aFailingSinkCancelsOutstandingDescriptions() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch cancelled = new CountDownLatch(1);
+        BatchGenerationService batch = stub(request -> {
+            try {
+                if (request.getDescription().startsWith("fail fast")) {
+                    started.await(5, TimeUnit.SECONDS);
+                    throw new IllegalStateException("model unavailable");
+                }
+                started.countDown();
+                Thread.sleep(TimeUnit.SECONDS.toMillis(30));
+            } catch (InterruptedException e) {
+                cancelled.countDown();
+                Thread.currentThread().interrupt();
+            }
+            throw new IllegalStateException("interrupted");
+        });
+
+        // The first item fails once the second is being described, and the client has gone by the time it is written
+        assertThatThrownBy(() -> batch.generateBatch(List.of(request("fail fast"), request("slow knight")),
+                result -> {
+                    throw new UncheckedIOException(new IOException("Broken pipe"));
+                }))
+                .isInstanceOf(UncheckedIOException.class);
+
+        assertThat(cancelled.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    /**
+     * A batch service whose descriptions come from describe; planning and rendering go through the real pipeline
+     */
+    private BatchGenerationService stub(Function<PixelArtRequest, PixelArtResponse> describe) {
+        PixelArtAgentService agent = new PixelArtAgentService(modelProvider, imageGenerationService,
+                semanticResultCache, resultCache, spriteHashIndex, spriteAtlasService, imageStore,
+                paletteAnalyzer, tracing, new SimpleMeterRegistry(), 30000, 5000, 25000) {
+            @Override
+            public PixelArtResponse describePixelArt(PixelArtRequest request, GenerationProgressListener listener) {
+                return describe.apply(request);
+            }
+        };
+        BatchGenerationService batch = new BatchGenerationService(agent, imageGenerationService, 4, false);
+        stubbed.add(batch);
+        return batch;
+    }
+
+    /**
+     * A request no earlier test or run has cached
+     */
+    private static PixelArtRequest request(String description) {
+        PixelArtRequest request = new PixelArtRequest();
+        request.setAssetType("character");
+        request.setDescription(description + " " + UUID.randomUUID());
+        request.setSize("32x32");
+        return request;
+    }
+}
@@ -0,0 +1,173 @@
+package com.pixelart.agent.service;
+
+import com.pixelart.agent.service.concurrency.BlockingCallLimiter;
+import com.pixelart.agent.service.concurrency.LimitExceededException;
+import com.pixelart.agent.service.image.OutputValidator;
+import com.pixelart.agent.service.model.ImageGenerationParams;
+import com.pixelart.agent.service.model.ImageProvider;
+import com.pixelart.agent.service.model.LimitedImageProvider;
+import com.pixelart.agent.service.model.ScheduledImageProvider;
+import com.pixelart.agent.service.scheduling.ModelAffinityScheduler;
+import com.pixelart.agent.service.tracing.PipelineTracing;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ImageGenerationServiceTest {
+
+    private static final String BLANK = encode(new BufferedImage(64, 64, BufferedImage.TYPE_INT_RGB));
+    private static final String SPRITE = encode(sprite());
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final BlockingCallLimiter limiter = new BlockingCallLimiter(registry, 1, 1, 1, false, 1, 1, 0, 0);
+    private final ModelAffinityScheduler scheduler = new ModelAffinityScheduler(registry, true, 1, 4);
+    private OutputValidator validator = new OutputValidator(registry, false, true, true, 3, 0.05, 0.01, 0.25, 2, 20);
+
+    @Test
+    void returnsNoImageWhenTheBackendFails() {
+        ImageGenerationService service = service(params -> {
+            throw new IllegalStateException("backend down");
+        });
+
+        assertThat(service.generateImage(params())).isNull();
+        assertThat(service.generateImages(params())).isEmpty();
+    }
+
+    @Test
+    void shedsCallsBeforeTheyQueueInTheScheduler() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ImageGenerationService service = service(params -> {
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "image";
+        });
+
+        CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> service.generateImage(params()));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // The only permit is taken and the queue holds none, so the second call never reaches the scheduler
+        assertThatThrownBy(() -> service.generateImage(params())).isInstanceOf(LimitExceededException.class);
+        assertThat(registry.get("pixelart.image.scheduler.queue.size").gauge().value()).isZero();
+
+        release.countDown();
+        assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo("image");
+    }
+
+    @Test
+    void reRendersARejectedImageWithANewSeed() {
+        validator = new OutputValidator(registry, true, false, false, 3, 0.05, 0.01, 0.25, 2, 100);
+        List<Long> seeds = new ArrayList<>();
+        ImageGenerationService service = service(params -> {
+            seeds.add(params.getSeed());
+            return seeds.size() == 1 ? BLANK : SPRITE;
+        });
+        ImageGenerationParams params = params();
+        params.setSeed(42L);
+
+        String image = service.generateValidatedImage(params, false).data();
+
+        assertThat(image).isEqualTo(SPRITE);
+        assertThat(seeds).hasSize(2);
+        assertThat(seeds.get(1)).isNotEqualTo(42L);
+        assertThat(params.getSeed()).isEqualTo(seeds.get(1));
+        assertThat(registry.get("pixelart.image.validation.retries").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void keepsARejectedImageWhenTheSeedIsPinned() {
+        validator = new OutputValidator(registry, true, false, false, 3, 0.05, 0.01, 0.25, 2, 100);
+        List<Long> seeds = new ArrayList<>();
+        ImageGenerationService service = service(params -> {
+            seeds.add(params.getSeed());
+            return BLANK;
+        });
+        ImageGenerationParams params = params();
+        params.setSeed(42L);
+
+        assertThat(service.generateValidatedImage(params, true).data()).isEqualTo(BLANK);
+        assertThat(seeds).containsExactly(42L);
+        assertThat(registry.get("pixelart.image.validation.retries").counter().count()).isZero();
+    }
+
+    private ImageGenerationService service(Function<ImageGenerationParams, String> backend) {
+        ImageProvider provider = new ImageProvider() {
+            @Override
+            public String generateImage(ImageGenerationParams params) {
+                return backend.apply(params);
+            }
+
+            @Override
+            public String generateImage(String prompt, int width, int height) {
+                return generateImage(prompt, width, height, false, 1);
+            }
+
+            @Override
+            public String generateImage(String prompt, int width, int height, boolean isSpritesheet, int frameCount) {
+                return backend.apply(params());
+            }
+
+            @Override
+            public boolean isAvailable() {
+                return true;
+            }
+        };
+        return new ImageGenerationService(new LimitedImageProvider(new ScheduledImageProvider(provider, scheduler), limiter),
+                validator, new PipelineTracing(ObservationRegistry.NOOP, null, null));
+    }
+
+    private static ImageGenerationParams params() {
+        return ImageGenerationParams.builder().prompt("knight").width(32).height(32).build();
+    }
+
+    /**
+     * A blocky figure in a few flat colors on a white background
+     */
+    private static BufferedImage sprite() {
+        BufferedImage image = new BufferedImage(64, 64, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.WHITE);
+        graphics.fillRect(0, 0, 64, 64);
+        graphics.setColor(new Color(60, 40, 20));
+        graphics.fillRect(20, 8, 24, 20);
+        graphics.setColor(new Color(200, 30, 30));
+        graphics.fillRect(16, 28, 32, 20);
+        graphics.setColor(new Color(40, 40, 160));
+        graphics.fillRect(20, 48, 8, 12);
+        graphics.fillRect(36, 48, 8, 12);
+        graphics.dispose();
+        return image;
+    }
+
+    private static String encode(BufferedImage image) {
+        try {
+            ByteArrayOutputStream png = new ByteArrayOutputStream();
+            ImageIO.write(image, "png", png);
+            return Base64.getEncoder().encodeToString(png.toByteArray());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.pixelart.agent.service;
+
+import com.pixelart.agent.model.GenerationMode;
+import com.pixelart.agent.model.PixelArtRequest;
+import com.pixelart.agent.model.PixelArtResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class PixelArtAgentServiceTest {
+
+    @Autowired
+    private PixelArtAgentService service;
+
+    @Test
+    void fullModeDescribesAndRenders() {
+        PixelArtResponse response = service.generatePixelArt(request("knight"), GenerationMode.FULL);
+
+        assertThat(response.getDetailedDescription()).isNotBlank();
+        assertThat(response.getImageData()).isNotBlank();
+        assertThat(response.getImageUrl()).startsWith("/api/pixelart/image/");
+    }
+
+    @Test
+    void textOnlyModeSkipsTheImage() {
+        PixelArtResponse response = service.generatePixelArt(request("knight"), GenerationMode.TEXT_ONLY);
+
+        assertThat(response.getDetailedDescription()).isNotBlank();
+        assertThat(response.getImageData()).isNull();
+        assertThat(response.getImageStatus()).isEqualTo("text-only");
+    }
+
+    @Test
+    void imageOnlyModeRendersWithoutADescription() {
+        PixelArtResponse response = service.generatePixelArt(request("knight"), GenerationMode.IMAGE_ONLY);
+
+        assertThat(response.getDetailedDescription()).isNull();
+        assertThat(response.getSuggestedColors()).isNull();
+        assertThat(response.getPrompt()).isNull();
+        assertThat(response.getImageData()).isNotBlank();
+        assertThat(response.getImageUrl()).startsWith("/api/pixelart/image/");
+    }
+
+    @Test
+    void imageOnlyModeTakesAnimationsFromTheRequest() {
+        PixelArtResponse response = service.generatePixelArt(request("knight with walk and attack cycles"),
+                GenerationMode.IMAGE_ONLY);
+
+        assertThat(response.getAnimationSuggestions()).containsExactly("walk", "attack");
+    }
+
+    /**
+     * A request no earlier test or run has cached
+     */
+    private static PixelArtRequest request(String description) {
+        PixelArtRequest request = new PixelArtRequest();
+        request.setAssetType("character");
+        request.setDescription(description + " " + UUID.randomUUID());
+        request.setSize("32x32");
+        return request;
+    }
+}
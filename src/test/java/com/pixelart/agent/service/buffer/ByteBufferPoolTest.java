@@ -0,0 +1,70 @@
+package com.pixelart.agent.service.buffer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ByteBufferPoolTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ByteBufferPool pool = new ByteBufferPool(registry, true, 4, 2);
+
+    @Test
+    void reusesBuffersOnceTheLastReferenceIsReleased() {
+        PooledBuffer first = pool.acquire(100);
+        ByteBuffer storage = first.buffer();
+        first.retain();
+
+        first.release();
+        assertThat(pool.inUse()).isEqualTo(1);
+        first.release();
+        assertThat(pool.inUse()).isZero();
+
+        try (PooledBuffer second = pool.acquire(100)) {
+            assertThat(second.buffer()).isSameAs(storage);
+            assertThat(second.buffer().isDirect()).isTrue();
+        }
+        assertThatThrownBy(first::buffer).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void countsMissesWhenExhaustedOrOversized() {
+        PooledBuffer a = pool.acquire(0);
+        PooledBuffer b = pool.acquire(0);
+        PooledBuffer c = pool.acquire(0);
+        PooledBuffer big = pool.acquire(1024 * 1024);
+
+        assertThat(c.buffer().isDirect()).isFalse();
+        assertThat(big.buffer().isDirect()).isFalse();
+        assertThat(registry.get("pixelart.buffer.pool.misses").tag("reason", "exhausted").counter().count()).isEqualTo(1);
+        assertThat(registry.get("pixelart.buffer.pool.misses").tag("reason", "oversize").counter().count()).isEqualTo(1);
+        assertThat(registry.get("pixelart.buffer.pool.occupancy").gauge().value()).isEqualTo(1.0);
+
+        a.release();
+        b.release();
+        c.release();
+        big.release();
+        assertThat(pool.inUse()).isZero();
+    }
+
+    @Test
+    void growsOutOfThePoolWithoutLosingData() throws Exception {
+        byte[] data = new byte[10_000];
+        new Random(1).nextBytes(data);
+
+        try (PooledBuffer buffer = pool.acquire(0)) {
+            buffer.readFrom(new ByteArrayInputStream(data)).flip();
+
+            assertThat(pool.inUse()).isZero();
+            assertThat(buffer.inputStream().readAllBytes()).isEqualTo(data);
+            assertThat(buffer.toBase64()).isEqualTo(Base64.getEncoder().encodeToString(data));
+        }
+    }
+}
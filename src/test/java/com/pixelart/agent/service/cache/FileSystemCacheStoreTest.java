@@ -0,0 +1,125 @@
+package com.pixelart.agent.service.cache;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FileSystemCacheStoreTest {
+
+    @TempDir
+    Path directory;
+
+    private final AtomicLong now = new AtomicLong(1_700_000_000_000L);
+    private final Clock clock = new Clock() {
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(now.get());
+        }
+    };
+
+    @Test
+    void instancesSharingADirectorySeeEachOthersEntries() {
+        FileSystemCacheStore first = new FileSystemCacheStore(directory, clock);
+        FileSystemCacheStore second = new FileSystemCacheStore(directory, clock);
+
+        first.put("knight", bytes("armored knight"), Duration.ofMinutes(5));
+
+        assertThat(second.get("knight").value()).isEqualTo(bytes("armored knight"));
+        assertThat(second.get("dragon")).isNull();
+    }
+
+    @Test
+    void entriesExpireAfterTheirTtl() {
+        FileSystemCacheStore store = new FileSystemCacheStore(directory, clock);
+        store.put("knight", bytes("armored knight"), Duration.ofSeconds(10));
+
+        now.addAndGet(9_000);
+        assertThat(store.get("knight").remaining()).isEqualTo(Duration.ofSeconds(1));
+        now.addAndGet(1_000);
+        assertThat(store.get("knight")).isNull();
+    }
+
+    @Test
+    void readingAnExpiredEntryLeavesItForTheSweep() throws Exception {
+        FileSystemCacheStore store = new FileSystemCacheStore(directory, clock);
+        store.put("knight", bytes("old knight"), Duration.ofSeconds(1));
+        now.addAndGet(2_000);
+
+        assertThat(store.get("knight")).isNull();
+        assertThat(entryCount()).isEqualTo(1);
+
+        new FileSystemCacheStore(directory, clock).put("knight", bytes("new knight"), Duration.ofMinutes(5));
+        store.sweepExpired();
+
+        assertThat(store.get("knight").value()).isEqualTo(bytes("new knight"));
+    }
+
+    @Test
+    void invalidateRemovesAnEntry() {
+        FileSystemCacheStore store = new FileSystemCacheStore(directory, clock);
+        store.put("knight", bytes("armored knight"), Duration.ofMinutes(5));
+
+        store.invalidate("knight");
+
+        assertThat(store.get("knight")).isNull();
+    }
+
+    @Test
+    void onlyOneHolderGetsALease() {
+        FileSystemCacheStore first = new FileSystemCacheStore(directory, clock);
+        FileSystemCacheStore second = new FileSystemCacheStore(directory, clock);
+
+        SharedCacheStore.Lease lease = first.tryLease("knight", Duration.ofMinutes(1));
+        assertThat(lease).isNotNull();
+        assertThat(second.tryLease("knight", Duration.ofMinutes(1))).isNull();
+        assertThat(second.tryLease("dragon", Duration.ofMinutes(1))).isNotNull();
+
+        lease.close();
+        assertThat(second.tryLease("knight", Duration.ofMinutes(1))).isNotNull();
+    }
+
+    @Test
+    void sweepDeletesOnlyExpiredEntries() throws Exception {
+        FileSystemCacheStore store = new FileSystemCacheStore(directory, clock);
+        store.put("short", bytes("a"), Duration.ofSeconds(1));
+        store.put("long", bytes("b"), Duration.ofHours(1));
+
+        now.addAndGet(2_000);
+        store.sweepExpired();
+
+        assertThat(entryCount()).isEqualTo(1);
+        assertThat(store.get("long").value()).isEqualTo(bytes("b"));
+    }
+
+    private long entryCount() throws Exception {
+        try (Stream<Path> files = Files.walk(directory)) {
+            return files.filter(path -> path.toString().endsWith(".entry")).count();
+        }
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
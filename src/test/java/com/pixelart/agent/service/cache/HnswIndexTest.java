@@ -0,0 +1,142 @@
+package com.pixelart.agent.service.cache;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HnswIndexTest {
+
+    @Test
+    void findsNearestNeighboursWithHighRecall() {
+        Random random = new Random(7);
+        HnswIndex index = new HnswIndex(32, 16, 100, 64);
+        float[][] centers = randomVectors(random, 50, 32);
+        for (int i = 0; i < 5_000; i++) {
+            index.add(nearby(random, centers[i % centers.length], 0.3f));
+        }
+
+        assertThat(recallAt10(index, random, centers, 100)).isGreaterThan(0.9);
+    }
+
+    @Test
+    void returnsExactMatchFirst() {
+        Random random = new Random(11);
+        HnswIndex index = new HnswIndex(16, 8, 50, 32);
+        float[][] vectors = randomVectors(random, 500, 16);
+        for (float[] vector : vectors) {
+            index.add(vector);
+        }
+
+        List<HnswIndex.Match> matches = index.search(vectors[123], 3);
+        assertThat(matches.get(0).id()).isEqualTo(123);
+        assertThat(matches.get(0).similarity()).isGreaterThan(0.999f);
+    }
+
+    @Test
+    void survivesPersistenceRoundTrip() throws Exception {
+        Random random = new Random(3);
+        HnswIndex index = new HnswIndex(16, 8, 50, 32);
+        for (float[] vector : randomVectors(random, 1_000, 16)) {
+            index.add(vector);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        index.writeTo(new DataOutputStream(bytes));
+        HnswIndex restored = HnswIndex.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        float[] query = randomVectors(random, 1, 16)[0];
+        assertThat(restored.size()).isEqualTo(index.size());
+        assertThat(restored.search(query, 10)).isEqualTo(index.search(query, 10));
+    }
+
+    /**
+     * Build-time, recall and latency at scale. Run with:
+     * mvn test -Dtest=HnswIndexTest -Dbenchmark=true [-Dbenchmark.entries=1000000 -Dbenchmark.dimension=64]
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void benchmarkRecallAndLatency() {
+        int entries = Integer.getInteger("benchmark.entries", 1_000_000);
+        int dimension = Integer.getInteger("benchmark.dimension", 64);
+        Random random = new Random(42);
+        float[][] centers = randomVectors(random, 1_000, dimension);
+
+        HnswIndex index = new HnswIndex(dimension, 16, 64, 64);
+        long buildStart = System.nanoTime();
+        for (int i = 0; i < entries; i++) {
+            index.add(nearby(random, centers[random.nextInt(centers.length)], 0.3f));
+        }
+        long buildMillis = (System.nanoTime() - buildStart) / 1_000_000;
+
+        for (int efSearch : new int[]{32, 64, 128, 256}) {
+            index.setEfSearch(efSearch);
+            int queries = 500;
+            long[] latencies = new long[queries];
+            float[][] queryVectors = new float[queries][];
+            for (int q = 0; q < queries; q++) {
+                queryVectors[q] = nearby(random, centers[random.nextInt(centers.length)], 0.3f);
+                long start = System.nanoTime();
+                index.search(queryVectors[q], 10);
+                latencies[q] = System.nanoTime() - start;
+            }
+            Arrays.sort(latencies);
+            double recall = recallAt10(index, queryVectors, 100);
+            System.out.printf("HNSW entries=%d dim=%d build=%dms efSearch=%d recall@10=%.3f p50=%dus p99=%dus%n",
+                    entries, dimension, buildMillis, efSearch, recall,
+                    latencies[queries / 2] / 1_000, latencies[queries * 99 / 100] / 1_000);
+        }
+    }
+
+    private static double recallAt10(HnswIndex index, Random random, float[][] centers, int queries) {
+        float[][] queryVectors = new float[queries][];
+        for (int q = 0; q < queries; q++) {
+            queryVectors[q] = nearby(random, centers[random.nextInt(centers.length)], 0.3f);
+        }
+        return recallAt10(index, queryVectors, queries);
+    }
+
+    private static double recallAt10(HnswIndex index, float[][] queryVectors, int queries) {
+        int found = 0;
+        int total = 0;
+        for (int q = 0; q < queries; q++) {
+            Set<Integer> exact = new HashSet<>();
+            index.exactSearch(queryVectors[q], 10).forEach(match -> exact.add(match.id()));
+            for (HnswIndex.Match match : index.search(queryVectors[q], 10)) {
+                if (exact.contains(match.id())) {
+                    found++;
+                }
+            }
+            total += exact.size();
+        }
+        return (double) found / total;
+    }
+
+    private static float[][] randomVectors(Random random, int count, int dimension) {
+        float[][] vectors = new float[count][dimension];
+        for (float[] vector : vectors) {
+            for (int i = 0; i < dimension; i++) {
+                vector[i] = (float) random.nextGaussian();
+            }
+        }
+        return vectors;
+    }
+
+    private static float[] nearby(Random random, float[] center, float spread) {
+        float[] vector = new float[center.length];
+        for (int i = 0; i < center.length; i++) {
+            vector[i] = center[i] + (float) random.nextGaussian() * spread;
+        }
+        return vector;
+    }
+}
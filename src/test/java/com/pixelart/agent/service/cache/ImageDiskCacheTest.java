@@ -0,0 +1,94 @@
+package com.pixelart.agent.service.cache;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ImageDiskCacheTest {
+
+    private static final int KB = 1024;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void evictsTheLeastRecentlyUsedImageOverTheSizeCap() {
+        ImageDiskCache cache = cache();
+        String a = image(400 * KB);
+        cache.put("a", a);
+        cache.put("b", image(400 * KB));
+        cache.get("a");
+        cache.put("c", image(400 * KB));
+
+        assertThat(cache.get("a")).isEqualTo(a);
+        assertThat(cache.get("b")).isNull();
+        assertThat(cache.get("c")).isNotNull();
+    }
+
+    @Test
+    void keepsTheDirectoryUnderTheSizeCap() throws IOException {
+        ImageDiskCache cache = cache();
+        for (int i = 0; i < 10; i++) {
+            cache.put("image-" + i, image(300 * KB));
+        }
+
+        assertThat(imageBytes()).isLessThanOrEqualTo(1024 * KB);
+        assertThat(cache.get("image-9")).isNotNull();
+        assertThat(cache.get("image-0")).isNull();
+    }
+
+    @Test
+    void findsImagesWrittenAfterTheLastIndexSaveAfterARestart() {
+        ImageDiskCache cache = cache();
+        String a = image(KB);
+        String b = image(KB);
+        cache.put("a", a);
+        cache.flush();
+        cache.put("b", b);
+
+        ImageDiskCache restarted = cache();
+
+        assertThat(restarted.get("a")).isEqualTo(a);
+        assertThat(restarted.get("b")).isEqualTo(b);
+    }
+
+    @Test
+    void countsUnindexedFilesTowardsTheCapAfterARestart() throws IOException {
+        ImageDiskCache cache = cache();
+        cache.put("a", image(400 * KB));
+        cache.flush();
+        cache.put("b", image(400 * KB));
+
+        ImageDiskCache restarted = cache();
+        restarted.put("c", image(400 * KB));
+
+        assertThat(restarted.get("a")).isNull();
+        assertThat(restarted.get("b")).isNotNull();
+        assertThat(restarted.get("c")).isNotNull();
+        assertThat(imageBytes()).isLessThanOrEqualTo(1024 * KB);
+    }
+
+    private ImageDiskCache cache() {
+        return new ImageDiskCache(true, directory.toString(), 1);
+    }
+
+    private long imageBytes() throws IOException {
+        try (Stream<Path> walk = Files.walk(directory)) {
+            return walk.filter(path -> path.toString().endsWith(".png")).mapToLong(path -> path.toFile().length()).sum();
+        }
+    }
+
+    private static String image(int bytes) {
+        byte[] data = new byte[bytes];
+        new Random().nextBytes(data);
+        return Base64.getEncoder().encodeToString(data);
+    }
+}
@@ -0,0 +1,85 @@
+package com.pixelart.agent.service.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pixelart.agent.model.PixelArtRequest;
+import com.pixelart.agent.model.PixelArtResponse;
+import com.pixelart.agent.model.SemanticMatch;
+import com.pixelart.agent.service.model.MockEmbeddingProvider;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SemanticResultCacheTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void findsAParaphrasedRequestAfterARestart() {
+        SemanticResultCache cache = cache(32);
+        cache.store(request("brave knight holding a sword", "32x32"), response("knight"));
+        cache.flush();
+
+        List<SemanticMatch> matches = cache(32).findSimilar(request("a sword holding brave knight", "32x32"), 1);
+
+        assertThat(matches).hasSize(1);
+        assertThat(matches.get(0).getResponse().getImageData()).isEqualTo("knight");
+    }
+
+    @Test
+    void keepsHardKeysInIdOrderUnderConcurrentStores() throws Exception {
+        SemanticResultCache cache = cache(8);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            for (int i = 0; i < 24; i++) {
+                int size = 16 + i;
+                executor.execute(() -> cache.store(request("slime monster " + size, size + "x" + size),
+                        response("slime-" + size)));
+            }
+        } finally {
+            executor.shutdown();
+            assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+        }
+        cache.flush();
+
+        SemanticResultCache reloaded = cache(8);
+        for (int i = 0; i < 24; i++) {
+            int size = 16 + i;
+            List<SemanticMatch> matches = reloaded.findSimilar(request("slime monster " + size, size + "x" + size), 1);
+            assertThat(matches).extracting(match -> match.getResponse().getImageData()).containsExactly("slime-" + size);
+        }
+    }
+
+    private SemanticResultCache cache(int saveInterval) {
+        SemanticResultCache cache = new SemanticResultCache(new MockEmbeddingProvider(256), new ObjectMapper());
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "mode", "return");
+        ReflectionTestUtils.setField(cache, "similarityThreshold", 0.9);
+        ReflectionTestUtils.setField(cache, "directory", directory.toString());
+        ReflectionTestUtils.setField(cache, "saveInterval", saveInterval);
+        ReflectionTestUtils.setField(cache, "hnswM", 16);
+        ReflectionTestUtils.setField(cache, "hnswEfConstruction", 100);
+        ReflectionTestUtils.setField(cache, "hnswEfSearch", 64);
+        return cache;
+    }
+
+    private static PixelArtRequest request(String description, String size) {
+        PixelArtRequest request = new PixelArtRequest();
+        request.setAssetType("character");
+        request.setDescription(description);
+        request.setSize(size);
+        return request;
+    }
+
+    private static PixelArtResponse response(String imageData) {
+        return PixelArtResponse.builder().imageData(imageData).imageStatus("generated").build();
+    }
+}
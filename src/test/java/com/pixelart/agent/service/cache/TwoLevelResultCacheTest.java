@@ -0,0 +1,169 @@
+package com.pixelart.agent.service.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pixelart.agent.model.GenerationMode;
+import com.pixelart.agent.model.PixelArtRequest;
+import com.pixelart.agent.model.PixelArtResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TwoLevelResultCacheTest {
+
+    @TempDir
+    Path directory;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private final AtomicInteger generations = new AtomicInteger();
+
+    @Test
+    void generatesOnceForConcurrentMisses() throws Exception {
+        TwoLevelResultCache cache = cache(null);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<PixelArtResponse>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> cache.getOrGenerate(request(), GenerationMode.FULL, () -> {
+                    await(release);
+                    return generate();
+                }, response -> true)));
+            }
+            Thread.sleep(100);
+            release.countDown();
+            for (Future<PixelArtResponse> result : results) {
+                assertThat(result.get(5, TimeUnit.SECONDS).getDetailedDescription()).isEqualTo("generated 1");
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(generations.get()).isEqualTo(1);
+    }
+
+    @Test
+    void instancesShareResultsThroughTheStore() {
+        FileSystemCacheStore store = new FileSystemCacheStore(directory, Clock.systemUTC());
+        TwoLevelResultCache first = cache(store);
+        TwoLevelResultCache second = cache(store);
+
+        first.getOrGenerate(request(), GenerationMode.FULL, this::generate, response -> true);
+        PixelArtResponse shared = second.getOrGenerate(request(), GenerationMode.FULL, this::generate, response -> true);
+
+        assertThat(shared.getDetailedDescription()).isEqualTo("generated 1");
+        assertThat(generations.get()).isEqualTo(1);
+    }
+
+    @Test
+    void waitsForAnotherInstanceThatHoldsTheLease() throws Exception {
+        FileSystemCacheStore sibling = new FileSystemCacheStore(directory, Clock.systemUTC());
+        TwoLevelResultCache cache = cache(new FileSystemCacheStore(directory, Clock.systemUTC()));
+        String key = GenerationMode.FULL.getValue() + ":" + objectMapper.writeValueAsString(request());
+        SharedCacheStore.Lease lease = sibling.tryLease(key, Duration.ofMinutes(1));
+
+        Thread publisher = new Thread(() -> {
+            sleep(200);
+            sibling.put(key, write(PixelArtResponse.builder().detailedDescription("from sibling").build()), Duration.ofMinutes(5));
+            lease.close();
+        });
+        publisher.start();
+
+        PixelArtResponse result = cache.getOrGenerate(request(), GenerationMode.FULL, this::generate, response -> true);
+        publisher.join();
+
+        assertThat(result.getDetailedDescription()).isEqualTo("from sibling");
+        assertThat(generations.get()).isZero();
+    }
+
+    @Test
+    void keepsOnlyCacheableResultsAndSeparatesModes() {
+        TwoLevelResultCache cache = cache(null);
+
+        cache.getOrGenerate(request(), GenerationMode.FULL, this::generate, response -> false);
+        cache.getOrGenerate(request(), GenerationMode.FULL, this::generate, response -> true);
+        cache.getOrGenerate(request(), GenerationMode.FULL, this::generate, response -> true);
+        cache.getOrGenerate(request(), GenerationMode.TEXT_ONLY, this::generate, response -> true);
+
+        assertThat(generations.get()).isEqualTo(3);
+    }
+
+    @Test
+    void expiresEntriesAfterTheTtl() {
+        TwoLevelResultCache cache = new TwoLevelResultCache(Optional.empty(), objectMapper, new SimpleMeterRegistry(),
+                true, 0, 64, 1_000, 10);
+
+        cache.getOrGenerate(request(), GenerationMode.FULL, this::generate, response -> true);
+        cache.getOrGenerate(request(), GenerationMode.FULL, this::generate, response -> true);
+
+        assertThat(generations.get()).isEqualTo(2);
+    }
+
+    @Test
+    void aCopyFromTheSharedStoreExpiresWithIt() throws Exception {
+        FileSystemCacheStore store = new FileSystemCacheStore(directory, Clock.systemUTC());
+        String key = GenerationMode.FULL.getValue() + ":" + objectMapper.writeValueAsString(request());
+        store.put(key, write(PixelArtResponse.builder().detailedDescription("nearly expired").build()), Duration.ofMillis(300));
+        TwoLevelResultCache cache = cache(store);
+
+        assertThat(cache.get(request(), GenerationMode.FULL)).isPresent();
+        sleep(400);
+
+        // Not kept in memory for a fresh ttl just because it was copied there late in its life
+        assertThat(cache.get(request(), GenerationMode.FULL)).isEmpty();
+    }
+
+    private TwoLevelResultCache cache(SharedCacheStore store) {
+        return new TwoLevelResultCache(Optional.ofNullable(store), objectMapper, new SimpleMeterRegistry(),
+                true, 3600, 64, 5_000, 10);
+    }
+
+    private PixelArtResponse generate() {
+        return PixelArtResponse.builder().detailedDescription("generated " + generations.incrementAndGet()).build();
+    }
+
+    private static PixelArtRequest request() {
+        PixelArtRequest request = new PixelArtRequest();
+        request.setAssetType("CHARACTER");
+        request.setDescription("armored knight");
+        request.setSeed(42L);
+        return request;
+    }
+
+    private byte[] write(PixelArtResponse response) {
+        try {
+            return objectMapper.writeValueAsBytes(response);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.pixelart.agent.service.concurrency;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AdaptiveLimiterTest {
+
+    private static final long MS = 1_000_000L;
+
+    @Test
+    void growsWhileLatencyStaysFlat() {
+        GradientLimit limit = new GradientLimit(4, 1, 64);
+        for (int i = 0; i < 400; i++) {
+            limit.update(100 * MS, limit.getLimit(), false);
+        }
+        assertThat(limit.getLimit()).isEqualTo(64);
+    }
+
+    @Test
+    void shrinksWhenLatencyRises() {
+        GradientLimit limit = new GradientLimit(4, 1, 64);
+        for (int i = 0; i < 400; i++) {
+            limit.update(100 * MS, limit.getLimit(), false);
+        }
+        // The backend saturates: every extra call now just queues inside it
+        for (int i = 0; i < 50; i++) {
+            limit.update(400 * MS, limit.getLimit(), false);
+        }
+        assertThat(limit.getLimit()).isLessThan(16);
+    }
+
+    @Test
+    void settlesNearBackendCapacity() {
+        GradientLimit limit = new GradientLimit(1, 1, 64);
+        for (int i = 0; i < 2000; i++) {
+            simulateBackend(limit, 100, 8);
+        }
+        assertThat(limit.getLimit()).isBetween(8, 16);
+    }
+
+    @Test
+    void recoversAfterTheBackendGetsSlower() {
+        GradientLimit limit = new GradientLimit(1, 1, 64);
+        for (int i = 0; i < 1000; i++) {
+            simulateBackend(limit, 100, 8);
+        }
+        for (int i = 0; i < 1000; i++) {
+            simulateBackend(limit, 500, 8);
+        }
+        assertThat(limit.getLimit()).isBetween(8, 16);
+    }
+
+    @Test
+    void doesNotGrowWhenUnderused() {
+        GradientLimit limit = new GradientLimit(10, 1, 64);
+        for (int i = 0; i < 200; i++) {
+            limit.update(100 * MS, 1, false);
+        }
+        assertThat(limit.getLimit()).isEqualTo(10);
+    }
+
+    @Test
+    void backsOffOnFailures() {
+        GradientLimit limit = new GradientLimit(20, 2, 64);
+        for (int i = 0; i < 100; i++) {
+            limit.update(0, 20, true);
+        }
+        assertThat(limit.getLimit()).isEqualTo(2);
+    }
+
+    @Test
+    void shedsCallsOnceTheQueueIsFull() throws Exception {
+        AdaptiveLimiter limiter = new AdaptiveLimiter("test", null, 1, 1, 0);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> running = executor.submit(() -> limiter.call(() -> {
+                started.countDown();
+                await(finish);
+                return "first";
+            }));
+            started.await(5, TimeUnit.SECONDS);
+            Future<String> queued = executor.submit(() -> limiter.call(() -> "second"));
+            while (limiter.getQueued() == 0) {
+                Thread.onSpinWait();
+            }
+
+            assertThatThrownBy(() -> limiter.call(() -> "third")).isInstanceOf(LimitExceededException.class);
+            assertThat(limiter.getRejectedQueueFull()).isEqualTo(1);
+
+            finish.countDown();
+            assertThat(running.get(5, TimeUnit.SECONDS)).isEqualTo("first");
+            assertThat(queued.get(5, TimeUnit.SECONDS)).isEqualTo("second");
+            assertThat(limiter.getInFlight()).isZero();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void shedsCallsThatWaitTooLong() throws Exception {
+        AdaptiveLimiter limiter = new AdaptiveLimiter("test", null, 1, 10, 50);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            executor.submit(() -> limiter.call(() -> {
+                started.countDown();
+                await(finish);
+                return null;
+            }));
+            started.await(5, TimeUnit.SECONDS);
+
+            assertThatThrownBy(() -> limiter.call(() -> "late")).isInstanceOf(LimitExceededException.class);
+            assertThat(limiter.getRejectedTimeout()).isEqualTo(1);
+        } finally {
+            finish.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void sharesPermitsByFlowWeight() throws Exception {
+        AdaptiveLimiter limiter = new AdaptiveLimiter("test", null, 1, 100, 0);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            executor.submit(() -> limiter.call(() -> {
+                started.countDown();
+                await(finish);
+                return null;
+            }));
+            started.await(5, TimeUnit.SECONDS);
+
+            // The batch client queues everything first, then the interactive one shows up
+            List<Future<?>> calls = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                calls.add(executor.submit(() -> limiter.call("batch", 1, () -> order.add("batch"))));
+                awaitQueued(limiter, calls.size());
+            }
+            for (int i = 0; i < 4; i++) {
+                calls.add(executor.submit(() -> limiter.call("interactive", 3, () -> order.add("interactive"))));
+                awaitQueued(limiter, calls.size());
+            }
+
+            finish.countDown();
+            for (Future<?> call : calls) {
+                call.get(5, TimeUnit.SECONDS);
+            }
+            // Weight 3 against 1: the interactive calls go ahead of all but one of the eight batch calls
+            assertThat(Collections.frequency(order.subList(0, 5), "interactive")).isEqualTo(4);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void awaitQueued(AdaptiveLimiter limiter, int count) {
+        while (limiter.getQueued() < count) {
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * A backend that serves capacity calls at once and queues the rest
+     */
+    private static void simulateBackend(GradientLimit limit, long latencyMs, int capacity) {
+        int inFlight = limit.getLimit();
+        limit.update((long) (latencyMs * MS * Math.max(1.0, inFlight / (double) capacity)), inFlight, false);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.pixelart.agent.service.concurrency;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BlockingCallLimiterTest {
+
+    private final BlockingCallLimiter limiter = new BlockingCallLimiter(new SimpleMeterRegistry(),
+            4, 2, 4, false, 4, 1, 100, 0);
+
+    @Test
+    void reservationsCountAgainstHeadroomUntilTheirFirstCall() {
+        BlockingCallLimiter.Reservation reservation =
+                limiter.reserve(Set.of(BlockingCallLimiter.LLM, BlockingCallLimiter.IMAGE));
+        assertThat(limiter.headroom(BlockingCallLimiter.LLM)).isEqualTo(3);
+        assertThat(limiter.headroom(BlockingCallLimiter.IMAGE)).isEqualTo(1);
+
+        reservation.bind();
+        try {
+            int duringCall = limiter.call(BlockingCallLimiter.LLM, () -> limiter.headroom(BlockingCallLimiter.LLM));
+            // The call's own permit replaces the reservation rather than adding to it
+            assertThat(duringCall).isEqualTo(3);
+            assertThat(limiter.headroom(BlockingCallLimiter.LLM)).isEqualTo(4);
+            assertThat(limiter.headroom(BlockingCallLimiter.IMAGE)).isEqualTo(1);
+        } finally {
+            reservation.close();
+        }
+
+        assertThat(limiter.headroom(BlockingCallLimiter.IMAGE)).isEqualTo(2);
+    }
+
+    @Test
+    void closingTwiceGivesTheReservationBackOnce() {
+        BlockingCallLimiter.Reservation reservation = limiter.reserve(Set.of(BlockingCallLimiter.IMAGE));
+        reservation.close();
+        reservation.close();
+
+        assertThat(limiter.headroom(BlockingCallLimiter.IMAGE)).isEqualTo(2);
+    }
+}
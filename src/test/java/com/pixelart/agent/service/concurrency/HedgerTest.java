@@ -0,0 +1,199 @@
+package com.pixelart.agent.service.concurrency;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HedgerTest {
+
+    private final List<StubBackend> backends = new ArrayList<>();
+    private final HttpClient client = HttpClient.newHttpClient();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @AfterEach
+    void tearDown() {
+        backends.forEach(backend -> backend.server.stop(0));
+        executor.shutdownNow();
+    }
+
+    @Test
+    void hedgesAStalledBackendAndCancelsTheLoser() {
+        StubBackend slow = backend("slow");
+        StubBackend fast = backend("fast");
+        Hedger hedger = hedger(100);
+        warmUp(hedger, slow);
+
+        slow.stallMs.set(5_000);
+        long start = System.nanoTime();
+        String result = hedger.call(urls(slow, fast), this::get);
+        long millis = (System.nanoTime() - start) / 1_000_000;
+
+        assertThat(result).isEqualTo("fast");
+        assertThat(millis).isLessThan(2_000);
+        assertThat(meterRegistry.counter("pixelart.hedge.sent", "stage", "test").count()).isEqualTo(1);
+        assertThat(meterRegistry.counter("pixelart.hedge.wins", "stage", "test", "winner", "hedge").count()).isEqualTo(1);
+    }
+
+    @Test
+    void countsTheLosersLatencyTowardsTheHedgeDelay() {
+        Hedger hedger = hedger(100);
+        for (int i = 0; i < 100; i++) {
+            hedger.call(List.of("primary"), attempt -> "primary");
+        }
+        assertThat(hedgeDelayMs()).isEqualTo(20.0);
+
+        for (int i = 0; i < 10; i++) {
+            String result = hedger.call(List.of("primary", "spare"), attempt -> {
+                if (!attempt.isHedge()) {
+                    Thread.sleep(5_000);
+                }
+                return attempt.backend();
+            });
+            assertThat(result).isEqualTo("spare");
+        }
+
+        // Each cancelled primary ran past the 20ms delay; winners alone would leave it at the floor
+        assertThat(hedgeDelayMs()).isGreaterThan(20.0);
+    }
+
+    @Test
+    void doesNotHedgeCallsWithinThePercentile() {
+        StubBackend primary = backend("primary");
+        StubBackend spare = backend("spare");
+        Hedger hedger = hedger(100);
+        warmUp(hedger, primary);
+
+        assertThat(hedger.call(urls(primary, spare), this::get)).isEqualTo("primary");
+        assertThat(spare.requests.get()).isZero();
+    }
+
+    @Test
+    void failsOverWhenABackendErrors() {
+        StubBackend broken = backend("broken");
+        StubBackend healthy = backend("healthy");
+        Hedger hedger = hedger(100);
+        broken.status.set(500);
+
+        assertThat(hedger.call(urls(broken, healthy), this::get)).isEqualTo("healthy");
+        // The broken backend is now tried last
+        assertThat(hedger.call(urls(broken, healthy), this::get)).isEqualTo("healthy");
+        assertThat(broken.requests.get()).isEqualTo(1);
+    }
+
+    @Test
+    void budgetCapsTheHedgeRate() {
+        StubBackend slow = backend("slow");
+        StubBackend fast = backend("fast");
+        Hedger hedger = hedger(0);
+        warmUp(hedger, slow);
+
+        slow.stallMs.set(300);
+        assertThat(hedger.call(urls(slow, fast), this::get)).isEqualTo("slow");
+        assertThat(fast.requests.get()).isZero();
+        assertThat(meterRegistry.counter("pixelart.hedge.budget.exhausted", "stage", "test").count()).isEqualTo(1);
+    }
+
+    private Hedger hedger(double budgetPercent) {
+        return new Hedger("test", meterRegistry, executor, true, 95, 20, budgetPercent, 30_000);
+    }
+
+    private double hedgeDelayMs() {
+        return meterRegistry.get("pixelart.hedge.delay").tag("stage", "test").gauge().value();
+    }
+
+    private void warmUp(Hedger hedger, StubBackend backend) {
+        for (int i = 0; i < 30; i++) {
+            hedger.call(List.of(backend.url()), this::get);
+        }
+        backend.requests.set(0);
+    }
+
+    private String get(Hedger.Attempt attempt) throws Exception {
+        CompletableFuture<HttpResponse<String>> response = client.sendAsync(
+                HttpRequest.newBuilder(URI.create(attempt.backend())).build(), HttpResponse.BodyHandlers.ofString());
+        attempt.onCancel(() -> response.cancel(true));
+        HttpResponse<String> result = response.get();
+        if (result.statusCode() != 200) {
+            throw new IOException("status " + result.statusCode());
+        }
+        return result.body();
+    }
+
+    private static List<String> urls(StubBackend... backends) {
+        List<String> urls = new ArrayList<>();
+        for (StubBackend backend : backends) {
+            urls.add(backend.url());
+        }
+        return urls;
+    }
+
+    private StubBackend backend(String name) {
+        try {
+            StubBackend backend = new StubBackend(name, HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0));
+            backends.add(backend);
+            return backend;
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Local backend that answers with its name, optionally after a stall or with an error status
+     */
+    private static final class StubBackend {
+
+        final HttpServer server;
+        final AtomicLong stallMs = new AtomicLong();
+        final AtomicInteger status = new AtomicInteger(200);
+        final AtomicInteger requests = new AtomicInteger();
+
+        StubBackend(String name, HttpServer server) {
+            this.server = server;
+            server.setExecutor(Executors.newCachedThreadPool());
+            server.createContext("/", exchange -> {
+                requests.incrementAndGet();
+                try {
+                    Thread.sleep(stallMs.get());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                byte[] body = name.getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(status.get(), body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            });
+            server.start();
+        }
+
+        String url() {
+            return "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+        }
+    }
+}
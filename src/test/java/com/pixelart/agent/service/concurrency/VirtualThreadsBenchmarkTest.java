@@ -0,0 +1,150 @@
+package com.pixelart.agent.service.concurrency;
+
+import com.pixelart.agent.service.ImageGenerationService;
+import com.pixelart.agent.service.image.IndexedPngEncoder;
+import com.pixelart.agent.service.image.OutputValidator;
+import com.pixelart.agent.service.model.ImageProvider;
+import com.pixelart.agent.service.model.LimitedImageProvider;
+import com.pixelart.agent.service.model.ScheduledImageProvider;
+import com.pixelart.agent.service.scheduling.ModelAffinityScheduler;
+import com.pixelart.agent.service.tracing.PipelineTracing;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class VirtualThreadsBenchmarkTest {
+
+    @Test
+    void platformExecutorUsesNamedDaemonThreads() throws Exception {
+        ExecutorService executor = VirtualThreads.executor(false, 2, "bench");
+        try {
+            Thread thread = CompletableFuture.supplyAsync(Thread::currentThread, executor).get(5, TimeUnit.SECONDS);
+            assertThat(thread.isDaemon()).isTrue();
+            assertThat(thread.getName()).startsWith("bench-");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void virtualExecutorRunsTasks() throws Exception {
+        assumeTrue(VirtualThreads.isSupported());
+        ExecutorService executor = VirtualThreads.executor(true, 2, "bench");
+        try {
+            String name = CompletableFuture.supplyAsync(() -> Thread.currentThread().getName(), executor)
+                    .get(5, TimeUnit.SECONDS);
+            assertThat(name).startsWith("bench-");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Thousands of concurrent slow requests: a 200-thread platform pool (Tomcat's default)
+     * against one virtual thread per request. Each request goes through the application's image
+     * path (concurrency limiter, model scheduler, PNG encoding) in front of a backend that sleeps
+     * for the configured latency. Run with:
+     * mvn test -Dtest=VirtualThreadsBenchmarkTest -Dbenchmark=true [-Dbenchmark.requests=5000 -Dbenchmark.latencyMs=200]
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void benchmarkThroughputAndMemory() {
+        assumeTrue(VirtualThreads.isSupported(), "virtual threads need JDK 21+");
+        int requests = Integer.getInteger("benchmark.requests", 5_000);
+        int latencyMs = Integer.getInteger("benchmark.latencyMs", 200);
+        int permits = Integer.getInteger("benchmark.permits", 1_000);
+
+        run("platform", VirtualThreads.executor(false, 200, "bench-platform"), requests, latencyMs, permits);
+        run("virtual", VirtualThreads.executor(true, 0, "bench-virtual"), requests, latencyMs, permits);
+    }
+
+    private static void run(String label, ExecutorService executor, int requests, int latencyMs, int permits) {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        long heapBefore = memory.getHeapMemoryUsage().getUsed();
+        int threadsBefore = ManagementFactory.getThreadMXBean().getThreadCount();
+        AtomicInteger peakThreads = new AtomicInteger();
+        AtomicLong peakHeap = new AtomicLong(heapBefore);
+        ImageGenerationService service = service(latencyMs, permits, requests, peakThreads, peakHeap);
+
+        long start = System.nanoTime();
+        List<CompletableFuture<String>> futures = new ArrayList<>(requests);
+        for (int i = 0; i < requests; i++) {
+            String prompt = "slime " + i;
+            futures.add(CompletableFuture.supplyAsync(() -> service.generateImage(prompt, 32, 32), executor));
+        }
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        executor.shutdownNow();
+        assertThat(futures).allMatch(future -> future.join() != null);
+
+        System.out.printf("%-8s requests=%d latency=%dms wall=%dms throughput=%.0f req/s heap+%dKB platformThreads+%d%n",
+                label, requests, latencyMs, millis, requests * 1000.0 / millis,
+                (peakHeap.get() - heapBefore) / 1024, peakThreads.get() - threadsBefore);
+    }
+
+    /**
+     * The image stack as ModelConfig assembles it, with a backend that sleeps and then encodes a
+     * sprite. Thread count and heap are sampled while each call holds its permit, when the most
+     * requests are in flight, rather than once after submission.
+     */
+    private static ImageGenerationService service(int latencyMs, int permits, int requests,
+                                                  AtomicInteger peakThreads, AtomicLong peakHeap) {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        BlockingCallLimiter limiter = new BlockingCallLimiter(registry, permits, permits, permits, false,
+                permits, 1, requests, 0);
+        ModelAffinityScheduler scheduler = new ModelAffinityScheduler(registry, true, permits, 4);
+        IndexedPngEncoder encoder = new IndexedPngEncoder(6, IndexedPngEncoder.FilterStrategy.NONE);
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        ImageProvider backend = new ImageProvider() {
+            @Override
+            public String generateImage(String prompt, int width, int height) {
+                return generateImage(prompt, width, height, false, 1);
+            }
+
+            @Override
+            public String generateImage(String prompt, int width, int height, boolean isSpritesheet, int frameCount) {
+                try {
+                    Thread.sleep(latencyMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return null;
+                }
+                BufferedImage sprite = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+                for (int y = 0; y < height; y++) {
+                    for (int x = 0; x < width; x++) {
+                        sprite.setRGB(x, y, (x + y) % 4 == 0 ? 0xFF2E7D32 : 0xFF81C784);
+                    }
+                }
+                String png = Base64.getEncoder().encodeToString(encoder.encode(sprite));
+                peakThreads.accumulateAndGet(ManagementFactory.getThreadMXBean().getThreadCount(), Math::max);
+                peakHeap.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max);
+                return png;
+            }
+
+            @Override
+            public boolean isAvailable() {
+                return true;
+            }
+        };
+        OutputValidator validator = new OutputValidator(registry, false, true, true, 3, 0.05, 0.01, 0.25, 2, 20);
+        return new ImageGenerationService(new LimitedImageProvider(new ScheduledImageProvider(backend, scheduler), limiter),
+                validator, new PipelineTracing(ObservationRegistry.NOOP, null, null));
+    }
+}
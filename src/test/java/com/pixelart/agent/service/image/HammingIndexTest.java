@@ -0,0 +1,73 @@
+package com.pixelart.agent.service.image;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HammingIndexTest {
+
+    @Test
+    void matchesBruteForceWithinRadius() {
+        Random random = new Random(5);
+        HammingIndex<Integer> index = new HammingIndex<>();
+        long[] hashes = new long[20_000];
+        for (int i = 0; i < hashes.length; i++) {
+            hashes[i] = random.nextLong();
+            index.add(hashes[i], i);
+        }
+
+        for (int q = 0; q < 200; q++) {
+            // Flip roughly a handful of bits of a stored hash
+            long query = hashes[q] ^ (random.nextLong() & random.nextLong() & random.nextLong() & random.nextLong());
+            int radius = q % (HammingIndex.MAX_DISTANCE + 1);
+
+            List<HammingIndex.Match<Integer>> matches = index.search(query, radius);
+
+            long expected = 0;
+            for (long hash : hashes) {
+                if (PerceptualHash.distance(hash, query) <= radius) {
+                    expected++;
+                }
+            }
+            assertThat(matches).hasSize((int) expected);
+            assertThat(matches).allMatch(match -> match.distance() <= radius);
+        }
+    }
+
+    @Test
+    void perceptualHashIgnoresSmallEditsButSeparatesDifferentSprites() {
+        Random random = new Random(9);
+        BufferedImage sprite = randomSprite(random);
+        BufferedImage edited = new BufferedImage(64, 64, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < 64; y++) {
+            for (int x = 0; x < 64; x++) {
+                int argb = sprite.getRGB(x, y);
+                edited.setRGB(x, y, (argb >>> 24) == 0 ? argb : (argb & 0xFFFFFF00) | Math.min(255, (argb & 0xFF) + random.nextInt(6)));
+            }
+        }
+        edited.setRGB(10, 10, 0xFFFF0000);
+
+        assertThat(PerceptualHash.distance(PerceptualHash.pHash(sprite), PerceptualHash.pHash(edited))).isLessThanOrEqualTo(4);
+        assertThat(PerceptualHash.distance(PerceptualHash.dHash(sprite), PerceptualHash.dHash(edited))).isLessThanOrEqualTo(4);
+        assertThat(PerceptualHash.distance(PerceptualHash.pHash(sprite), PerceptualHash.pHash(randomSprite(random)))).isGreaterThan(12);
+    }
+
+    private static BufferedImage randomSprite(Random random) {
+        BufferedImage image = new BufferedImage(64, 64, BufferedImage.TYPE_INT_ARGB);
+        for (int blockY = 0; blockY < 16; blockY++) {
+            for (int blockX = 0; blockX < 16; blockX++) {
+                int argb = random.nextInt(4) == 0 ? 0 : 0xFF000000 | random.nextInt(0x1000000);
+                for (int y = 0; y < 4; y++) {
+                    for (int x = 0; x < 4; x++) {
+                        image.setRGB(blockX * 4 + x, blockY * 4 + y, argb);
+                    }
+                }
+            }
+        }
+        return image;
+    }
+}
@@ -0,0 +1,99 @@
+package com.pixelart.agent.service.image;
+
+import com.pixelart.agent.model.PixelArtResponse;
+import com.pixelart.agent.service.cache.FileSystemCacheStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ImageStoreTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void publishesImagesUnderTheirContentHash() {
+        ImageStore store = new ImageStore(Optional.empty(), new SimpleMeterRegistry(), 1, 60);
+        PixelArtResponse response = response(new byte[]{1, 2, 3});
+
+        store.publish(response);
+
+        assertThat(response.getImageId()).isEqualTo(ImageStore.idOf(new byte[]{1, 2, 3})).hasSize(64);
+        assertThat(response.getImageUrl()).isEqualTo("/api/pixelart/image/" + response.getImageId());
+        assertThat(store.get(response.getImageId())).containsExactly(1, 2, 3);
+        // Same bytes, same id
+        assertThat(store.publish(response(new byte[]{1, 2, 3})).getImageId()).isEqualTo(response.getImageId());
+    }
+
+    @Test
+    void evictsTheLeastRecentlyUsedImagesOverTheSizeBound() {
+        ImageStore store = new ImageStore(Optional.empty(), new SimpleMeterRegistry(), 1, 60);
+        String first = store.put(image(1, 400_000));
+        String second = store.put(image(2, 400_000));
+        store.get(first);
+        String third = store.put(image(3, 400_000));
+
+        assertThat(store.get(first)).isNotNull();
+        assertThat(store.get(second)).isNull();
+        assertThat(store.get(third)).isNotNull();
+    }
+
+    @Test
+    void servesImagesPublishedByAnotherInstanceThroughTheSharedStore() {
+        FileSystemCacheStore shared = new FileSystemCacheStore(directory, Clock.systemUTC());
+        ImageStore first = new ImageStore(Optional.of(shared), new SimpleMeterRegistry(), 1, 60);
+        ImageStore second = new ImageStore(Optional.of(shared), new SimpleMeterRegistry(), 1, 60);
+
+        String id = first.put(new byte[]{4, 5, 6});
+
+        assertThat(second.get(id)).containsExactly(4, 5, 6);
+    }
+
+    @Test
+    void writesEachImageToTheSharedStoreOnce() {
+        AtomicInteger writes = new AtomicInteger();
+        FileSystemCacheStore shared = new FileSystemCacheStore(directory, Clock.systemUTC()) {
+            @Override
+            public void put(String key, byte[] value, Duration ttl) {
+                writes.incrementAndGet();
+                super.put(key, value, ttl);
+            }
+        };
+        ImageStore first = new ImageStore(Optional.of(shared), new SimpleMeterRegistry(), 1, 60);
+        ImageStore second = new ImageStore(Optional.of(shared), new SimpleMeterRegistry(), 1, 60);
+
+        first.put(new byte[]{7, 8, 9});
+        first.put(new byte[]{7, 8, 9});
+        second.put(new byte[]{7, 8, 9});
+
+        assertThat(writes).hasValue(1);
+    }
+
+    @Test
+    void rejectsMalformedIds() {
+        ImageStore store = new ImageStore(Optional.empty(), new SimpleMeterRegistry(), 1, 60);
+
+        assertThat(ImageStore.isValidId("../../etc/passwd")).isFalse();
+        assertThat(store.get("abc")).isNull();
+    }
+
+    private static PixelArtResponse response(byte[] png) {
+        return PixelArtResponse.builder().imageData(Base64.getEncoder().encodeToString(png)).build();
+    }
+
+    private static byte[] image(int fill, int size) {
+        byte[] png = new byte[size];
+        Arrays.fill(png, (byte) fill);
+        return png;
+    }
+}
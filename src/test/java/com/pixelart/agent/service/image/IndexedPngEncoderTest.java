@@ -0,0 +1,138 @@
+package com.pixelart.agent.service.image;
+
+import com.pixelart.agent.service.buffer.ByteBufferPool;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IndexedPngEncoderTest {
+
+    @Test
+    void palettedImagesRoundTripAtEveryBitDepth() throws Exception {
+        Random random = new Random(3);
+        for (IndexedPngEncoder.FilterStrategy strategy : IndexedPngEncoder.FilterStrategy.values()) {
+            IndexedPngEncoder encoder = new IndexedPngEncoder(6, strategy);
+            for (int colors : new int[]{1, 2, 3, 4, 12, 16, 17, 200, 256}) {
+                BufferedImage image = sprite(random, 37, 29, colors, 1);
+                assertSamePixels(image, decode(encoder.encode(image)));
+            }
+        }
+    }
+
+    @Test
+    void fallsBackToTruecolorAboveThePaletteLimit() throws Exception {
+        Random random = new Random(5);
+        BufferedImage image = new BufferedImage(50, 40, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, (random.nextInt(255) + 1) << 24 | random.nextInt(0x1000000));
+            }
+        }
+
+        assertSamePixels(image, decode(new IndexedPngEncoder(6, IndexedPngEncoder.FilterStrategy.BEST).encode(image)));
+    }
+
+    @Test
+    void exportsEveryFrameOfASpritesheet() throws Exception {
+        BufferedImage sheet = sprite(new Random(7), 256, 64, 12, 4);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        SpriteAnimationExporter exporter = new SpriteAnimationExporter(new PngOptimizer(registry,
+                new ByteBufferPool(registry, true, 64, 2), true, 6, IndexedPngEncoder.FilterStrategy.BEST));
+
+        ByteArrayOutputStream gif = new ByteArrayOutputStream();
+        exporter.export(sheet, 4, SpriteAnimationExporter.Format.GIF, 120, gif);
+        ImageReader reader = ImageIO.getImageReadersByFormatName("gif").next();
+        reader.setInput(ImageIO.createImageInputStream(new ByteArrayInputStream(gif.toByteArray())));
+        assertThat(reader.getNumImages(true)).isEqualTo(4);
+        assertSamePixels(sheet.getSubimage(128, 0, 64, 64), reader.read(2));
+
+        // Decoders without APNG support show the first frame
+        ByteArrayOutputStream apng = new ByteArrayOutputStream();
+        exporter.export(sheet, 4, SpriteAnimationExporter.Format.APNG, 120, apng);
+        String chunks = new String(apng.toByteArray(), StandardCharsets.ISO_8859_1);
+        assertThat(chunks.indexOf("acTL")).isPositive().isLessThan(chunks.indexOf("IDAT"));
+        assertThat(chunks.split("fdAT", -1)).hasSize(4);
+        assertSamePixels(sheet.getSubimage(0, 0, 64, 64), decode(apng.toByteArray()));
+    }
+
+    /**
+     * Run with -Dbenchmark=true
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void benchmarkAgainstImageIo() throws Exception {
+        BufferedImage image = sprite(new Random(1), 512, 512, 14, 8);
+        IndexedPngEncoder encoder = new IndexedPngEncoder(6, IndexedPngEncoder.FilterStrategy.BEST);
+        for (int i = 0; i < 30; i++) {
+            encoder.encode(image);
+            ImageIO.write(image, "png", new ByteArrayOutputStream());
+        }
+
+        int iterations = 100;
+        byte[] ours = null;
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            ours = encoder.encode(image);
+        }
+        double oursMs = (System.nanoTime() - start) / 1e6 / iterations;
+
+        ByteArrayOutputStream theirs = null;
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            theirs = new ByteArrayOutputStream();
+            ImageIO.write(image, "png", theirs);
+        }
+        double imageIoMs = (System.nanoTime() - start) / 1e6 / iterations;
+
+        System.out.printf("PNG-8 encoder: %d bytes in %.2f ms, ImageIO: %d bytes in %.2f ms%n",
+                ours.length, oursMs, theirs.size(), imageIoMs);
+        assertThat(ours.length).isLessThan(theirs.size());
+    }
+
+    private static BufferedImage sprite(Random random, int width, int height, int colors, int block) {
+        int[] palette = new int[colors];
+        for (int i = 1; i < colors; i++) {
+            palette[i] = 0xFF000000 | random.nextInt(0x1000000);
+        }
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < height; y += block) {
+            for (int x = 0; x < width; x += block) {
+                int color = palette[random.nextInt(colors)];
+                for (int dy = 0; dy < block && y + dy < height; dy++) {
+                    for (int dx = 0; dx < block && x + dx < width; dx++) {
+                        image.setRGB(x + dx, y + dy, color);
+                    }
+                }
+            }
+        }
+        return image;
+    }
+
+    private static BufferedImage decode(byte[] png) throws Exception {
+        return ImageIO.read(new ByteArrayInputStream(png));
+    }
+
+    private static void assertSamePixels(BufferedImage expected, BufferedImage actual) {
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                int expectedPixel = expected.getRGB(x, y);
+                int actualPixel = actual.getRGB(x, y);
+                if ((expectedPixel >>> 24) == 0) {
+                    assertThat(actualPixel >>> 24).as("alpha at %d,%d", x, y).isZero();
+                } else {
+                    assertThat(actualPixel).as("pixel at %d,%d", x, y).isEqualTo(expectedPixel);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.pixelart.agent.service.image;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MaxRectsPackerTest {
+
+    @Test
+    void placesEveryRectangleInsideTheAtlasWithoutOverlap() {
+        Random random = new Random(2);
+        for (int round = 0; round < 100; round++) {
+            int count = 1 + random.nextInt(40);
+            int[] widths = new int[count];
+            int[] heights = new int[count];
+            for (int i = 0; i < count; i++) {
+                widths[i] = 8 + random.nextInt(120);
+                heights[i] = 8 + random.nextInt(120);
+            }
+            int padding = 2;
+
+            MaxRectsPacker.Packing packing = MaxRectsPacker.pack(widths, heights, padding, 8192);
+            List<MaxRectsPacker.Placement> placements = packing.placements();
+
+            assertThat(placements).hasSize(count);
+            for (int i = 0; i < count; i++) {
+                MaxRectsPacker.Placement a = placements.get(i);
+                assertThat(a.width()).isEqualTo(widths[i]);
+                assertThat(a.x() + a.width()).isLessThanOrEqualTo(packing.width());
+                assertThat(a.y() + a.height()).isLessThanOrEqualTo(packing.height());
+                for (int j = i + 1; j < count; j++) {
+                    MaxRectsPacker.Placement b = placements.get(j);
+                    boolean apart = a.x() + a.width() + padding <= b.x() || b.x() + b.width() + padding <= a.x()
+                            || a.y() + a.height() + padding <= b.y() || b.y() + b.height() + padding <= a.y();
+                    assertThat(apart).as("%s and %s", a, b).isTrue();
+                }
+            }
+        }
+    }
+
+    @Test
+    void packsEqualFramesIntoTheSmallestPowerOfTwoAtlas() {
+        int[] sizes = new int[8];
+        Arrays.fill(sizes, 256);
+
+        MaxRectsPacker.Packing packing = MaxRectsPacker.pack(sizes, sizes, 0, 4096);
+
+        assertThat(packing.width() * packing.height()).isEqualTo(8 * 256 * 256);
+    }
+
+    @Test
+    void rejectsFramesLargerThanTheMaximumSize() {
+        assertThatThrownBy(() -> MaxRectsPacker.pack(new int[]{600}, new int[]{600}, 0, 512))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
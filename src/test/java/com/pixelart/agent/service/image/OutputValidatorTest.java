@@ -0,0 +1,154 @@
+package com.pixelart.agent.service.image;
+
+import com.pixelart.agent.service.model.ImageGenerationParams;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OutputValidatorTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final OutputValidator validator = new OutputValidator(meterRegistry, true, false, false,
+            3, 0.05, 0.01, 0.25, 2, 20);
+
+    @Test
+    void passesASpriteOnAPlainBackground() throws IOException {
+        BufferedImage image = canvas(256, 256, Color.WHITE);
+        drawSprite(image, 0, 256);
+
+        assertThat(validator.validate(encode(image), params(32, 32, 1))).isEmpty();
+        assertThat(meterRegistry.get("pixelart.image.validation").tag("result", "passed").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void rejectsBlankAndFlatImages() throws IOException {
+        assertThat(validator.validate(encode(canvas(256, 256, Color.BLACK)), params(32, 32, 1)))
+                .contains(OutputValidator.Reason.LOW_COVERAGE);
+
+        // A big single-color blob covers plenty but has nothing in it
+        BufferedImage blob = canvas(256, 256, Color.WHITE);
+        Graphics2D graphics = blob.createGraphics();
+        graphics.setColor(Color.RED);
+        graphics.fillRect(32, 32, 192, 192);
+        graphics.dispose();
+        assertThat(validator.validate(encode(blob), params(32, 32, 1))).contains(OutputValidator.Reason.TOO_FEW_COLORS);
+
+        // A washed-out gradient: many shades, no shapes
+        BufferedImage haze = canvas(256, 256, Color.WHITE);
+        for (int y = 0; y < 256; y++) {
+            for (int x = 0; x < 256; x++) {
+                int shade = 80 + x * 96 / 256;
+                haze.setRGB(x, y, new Color(shade, shade, shade + 20).getRGB());
+            }
+        }
+        assertThat(validator.validate(encode(haze), params(32, 32, 1))).contains(OutputValidator.Reason.LOW_EDGE_DENSITY);
+
+        assertThat(validator.validate(Base64.getEncoder().encodeToString(new byte[]{1, 2, 3}), params(32, 32, 1)))
+                .contains(OutputValidator.Reason.UNREADABLE);
+        assertThat(meterRegistry.get("pixelart.image.validation").tag("reason", "low-coverage").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void checksTheSpritesheetFrameLayout() throws IOException {
+        BufferedImage sheet = canvas(1024, 256, Color.WHITE);
+        for (int frame = 0; frame < 4; frame++) {
+            drawSprite(sheet, frame * 256, 256);
+        }
+        assertThat(validator.validate(encode(sheet), params(32, 32, 4))).isEmpty();
+
+        // Square output for a four-frame sheet: the frames were not laid out side by side
+        BufferedImage square = canvas(256, 256, Color.WHITE);
+        drawSprite(square, 0, 256);
+        assertThat(validator.validate(encode(square), params(32, 32, 4))).contains(OutputValidator.Reason.FRAME_LAYOUT);
+
+        BufferedImage missingFrame = canvas(1024, 256, Color.WHITE);
+        for (int frame = 0; frame < 3; frame++) {
+            drawSprite(missingFrame, frame * 256, 256);
+        }
+        assertThat(validator.validate(encode(missingFrame), params(32, 32, 4))).contains(OutputValidator.Reason.EMPTY_FRAME);
+    }
+
+    @Test
+    void treatsTransparencyAsBackground() throws IOException {
+        BufferedImage image = new BufferedImage(64, 64, BufferedImage.TYPE_INT_ARGB);
+        assertThat(validator.validate(encode(image), params(64, 64, 1))).contains(OutputValidator.Reason.LOW_COVERAGE);
+
+        drawSprite(image, 0, 64);
+        assertThat(validator.validate(encode(image), params(64, 64, 1))).isEmpty();
+    }
+
+    @Test
+    void retriesComeOutOfABudgetRefilledByValidatedImages() throws IOException {
+        OutputValidator stingy = new OutputValidator(meterRegistry, true, false, false, 3, 0.05, 0.01, 0.25, 2, 50);
+        String blank = encode(canvas(32, 32, Color.BLACK));
+
+        // Starts with a full budget of 50 retries, then earns half a retry per validated image
+        for (int i = 0; i < 50; i++) {
+            assertThat(stingy.tryRetry()).isTrue();
+        }
+        assertThat(stingy.tryRetry()).isFalse();
+        stingy.validate(blank, params(32, 32, 1));
+        assertThat(stingy.tryRetry()).isFalse();
+        stingy.validate(blank, params(32, 32, 1));
+        assertThat(stingy.tryRetry()).isTrue();
+        assertThat(meterRegistry.get("pixelart.image.validation.budget.exhausted").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void isOffForMockImages() {
+        assertThat(new OutputValidator(meterRegistry, true, true, true, 3, 0.05, 0.01, 0.25, 2, 20).isEnabled()).isFalse();
+        assertThat(validator.isEnabled()).isTrue();
+    }
+
+    private static ImageGenerationParams params(int width, int height, int frames) {
+        return ImageGenerationParams.builder()
+                .prompt("knight")
+                .width(width)
+                .height(height)
+                .spritesheet(frames > 1)
+                .frameCount(frames)
+                .build();
+    }
+
+    private static BufferedImage canvas(int width, int height, Color background) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(background);
+        graphics.fillRect(0, 0, width, height);
+        graphics.dispose();
+        return image;
+    }
+
+    /**
+     * A blocky figure in a few flat colors, scaled to the frame like an upscaled sprite
+     */
+    private static void drawSprite(BufferedImage image, int left, int size) {
+        Graphics2D graphics = image.createGraphics();
+        int unit = size / 16;
+        graphics.setColor(new Color(60, 40, 20));
+        graphics.fillRect(left + 5 * unit, 2 * unit, 6 * unit, 5 * unit);
+        graphics.setColor(new Color(200, 30, 30));
+        graphics.fillRect(left + 4 * unit, 7 * unit, 8 * unit, 5 * unit);
+        graphics.setColor(new Color(40, 40, 160));
+        graphics.fillRect(left + 5 * unit, 12 * unit, 2 * unit, 3 * unit);
+        graphics.fillRect(left + 9 * unit, 12 * unit, 2 * unit, 3 * unit);
+        graphics.setColor(new Color(230, 200, 60));
+        graphics.fillRect(left + 12 * unit, 5 * unit, unit, 8 * unit);
+        graphics.dispose();
+    }
+
+    private static String encode(BufferedImage image) throws IOException {
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", png);
+        return Base64.getEncoder().encodeToString(png.toByteArray());
+    }
+}
@@ -0,0 +1,132 @@
+package com.pixelart.agent.service.image;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class PaletteExtractorTest {
+
+    @Test
+    void returnsTheExactColorsOfASpriteWithFewOfThem() {
+        int[] argb = new int[64 * 64];
+        Arrays.fill(argb, 0, 2048, 0xFF2C3E50);
+        Arrays.fill(argb, 2048, 3072, 0xFFE74C3C);
+        Arrays.fill(argb, 3072, 3584, 0xFFF39C12);
+        // Transparent background is not a color
+        Arrays.fill(argb, 3584, argb.length, 0x00FFFFFF);
+
+        PaletteExtractor.Palette palette = PaletteExtractor.extract(argb, 8);
+
+        assertThat(palette.size()).isEqualTo(3);
+        assertThat(palette.hex(0)).isEqualTo("#2C3E50");
+        assertThat(palette.hex(1)).isEqualTo("#E74C3C");
+        assertThat(palette.hex(2)).isEqualTo("#F39C12");
+        assertThat(palette.coverage(0)).isCloseTo(57.14, within(0.01));
+        assertThat(palette.coverage(2)).isCloseTo(14.29, within(0.01));
+    }
+
+    @Test
+    void cutsManyColorsDownToTheDominantOnes() {
+        // Four flat regions with diffusion noise on top
+        int[] bases = {0x203060, 0xC04030, 0x40A040, 0xE0D080};
+        int[] shares = {40, 30, 20, 10};
+        Random random = new Random(3);
+        int[] argb = new int[100 * 100];
+        int pixel = 0;
+        for (int region = 0; region < bases.length; region++) {
+            for (int i = 0; i < shares[region] * 100; i++) {
+                argb[pixel++] = 0xFF000000 | jitter(bases[region], random);
+            }
+        }
+
+        PaletteExtractor.Palette palette = PaletteExtractor.extract(argb, 4);
+
+        assertThat(palette.size()).isEqualTo(4);
+        for (int i = 0; i < 4; i++) {
+            assertThat(distance(palette.colors()[i], bases[i])).isLessThan(12);
+            assertThat(palette.coverage(i)).isCloseTo(shares[i], within(0.5));
+        }
+        assertThat(Arrays.stream(palette.counts()).sum()).isEqualTo(palette.total()).isEqualTo(argb.length);
+    }
+
+    @Test
+    void stopsEarlyWhenThereIsNothingLeftToSplit() {
+        int[] argb = new int[256];
+        Arrays.fill(argb, 0xFF112233);
+
+        assertThat(PaletteExtractor.extract(argb, 16).size()).isEqualTo(1);
+        assertThat(PaletteExtractor.extract(new int[256], 16).size()).isZero();
+    }
+
+    @Test
+    void quantizesAnImageToItsPalette() {
+        Random random = new Random(7);
+        BufferedImage image = new BufferedImage(64, 64, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < 64; y++) {
+            for (int x = 0; x < 64; x++) {
+                if (x < 8) {
+                    continue;
+                }
+                image.setRGB(x, y, 0xFF000000 | jitter(y < 32 ? 0x8040C0 : 0x30B0B0, random));
+            }
+        }
+
+        PaletteExtractor.Palette palette = PaletteExtractor.extract(image, 2);
+        BufferedImage quantized = PaletteExtractor.quantize(image, palette);
+
+        assertThat(quantized.getRGB(0, 0)).isZero();
+        assertThat(palette.colors()).contains(quantized.getRGB(20, 10) & 0xFFFFFF, quantized.getRGB(20, 50) & 0xFFFFFF);
+        assertThat(quantized.getRGB(20, 10)).isNotEqualTo(quantized.getRGB(20, 50));
+        int[] pixels = quantized.getRGB(0, 0, 64, 64, null, 0, 64);
+        assertThat(Arrays.stream(pixels).filter(p -> p != 0).distinct().count()).isEqualTo(2);
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void extractsASpritePaletteInMicroseconds() {
+        Random random = new Random(11);
+        int[] bases = {0x203060, 0xC04030, 0x40A040, 0xE0D080, 0x101010, 0xF0F0F0};
+        BufferedImage image = new BufferedImage(64, 64, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < 64; y++) {
+            for (int x = 0; x < 64; x++) {
+                image.setRGB(x, y, 0xFF000000 | jitter(bases[(x / 11 + y / 16) % bases.length], random));
+            }
+        }
+        for (int i = 0; i < 2_000; i++) {
+            PaletteExtractor.extract(image, 8);
+        }
+
+        int iterations = 5_000;
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            PaletteExtractor.extract(image, 8);
+        }
+        double micros = (System.nanoTime() - start) / 1e3 / iterations;
+
+        System.out.printf("64x64 palette extraction: %.1f us%n", micros);
+        assertThat(micros).isLessThan(1_000);
+    }
+
+    private static int jitter(int rgb, Random random) {
+        int result = 0;
+        for (int shift = 0; shift <= 16; shift += 8) {
+            int value = ((rgb >> shift) & 0xFF) + random.nextInt(13) - 6;
+            result |= Math.max(0, Math.min(255, value)) << shift;
+        }
+        return result;
+    }
+
+    private static int distance(int a, int b) {
+        int max = 0;
+        for (int shift = 0; shift <= 16; shift += 8) {
+            max = Math.max(max, Math.abs(((a >> shift) & 0xFF) - ((b >> shift) & 0xFF)));
+        }
+        return max;
+    }
+}
@@ -0,0 +1,276 @@
+package com.pixelart.agent.service.jobs;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pixelart.agent.model.GenerationJob;
+import com.pixelart.agent.model.GenerationMode;
+import com.pixelart.agent.model.PixelArtRequest;
+import com.pixelart.agent.model.PixelArtResponse;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FileSystemJobStoreTest {
+
+    private static final Set<GenerationMode> ALL_MODES = EnumSet.allOf(GenerationMode.class);
+    private static final Duration LEASE = Duration.ofSeconds(30);
+
+    @TempDir
+    Path directory;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicLong now = new AtomicLong(1_700_000_000_000L);
+    private final Clock clock = new Clock() {
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(now.get());
+        }
+    };
+
+    @Test
+    void claimsTheOldestQueuedJobOnce() {
+        FileSystemJobStore first = store();
+        FileSystemJobStore second = store();
+        first.submit(job("0000000000002-b", GenerationMode.FULL));
+        first.submit(job("0000000000001-a", GenerationMode.FULL));
+
+        assertThat(first.claim("node-1", ALL_MODES, LEASE)).map(GenerationJob::getId).contains("0000000000001-a");
+        assertThat(second.claim("node-2", ALL_MODES, LEASE)).map(GenerationJob::getId).contains("0000000000002-b");
+        assertThat(second.claim("node-2", ALL_MODES, LEASE)).isEmpty();
+    }
+
+    @Test
+    void onlyClaimsModesTheWorkerHasCapacityFor() {
+        FileSystemJobStore store = store();
+        store.submit(job("0000000000001-a", GenerationMode.FULL));
+        store.submit(job("0000000000002-b", GenerationMode.TEXT_ONLY));
+
+        Optional<GenerationJob> claimed = store.claim("node-1", EnumSet.of(GenerationMode.TEXT_ONLY), LEASE);
+
+        assertThat(claimed).map(GenerationJob::getId).contains("0000000000002-b");
+        assertThat(store.claim("node-1", EnumSet.noneOf(GenerationMode.class), LEASE)).isEmpty();
+    }
+
+    @Test
+    void seesJobsOtherInstancesSubmitAndFinishAfterItsFirstClaim() {
+        FileSystemJobStore worker = store();
+        FileSystemJobStore other = store();
+        other.submit(job("0000000000001-a", GenerationMode.FULL));
+        other.submit(job("0000000000002-b", GenerationMode.FULL));
+        assertThat(worker.claim("node-1", ALL_MODES, LEASE)).map(GenerationJob::getId).contains("0000000000001-a");
+
+        GenerationJob taken = other.claim("node-2", ALL_MODES, LEASE).orElseThrow();
+        other.complete(taken.getId(), "node-2", result("knight"));
+        other.submit(job("0000000000003-c", GenerationMode.TEXT_ONLY));
+
+        assertThat(worker.claim("node-1", ALL_MODES, LEASE)).map(GenerationJob::getId).contains("0000000000003-c");
+        assertThat(worker.claim("node-1", ALL_MODES, LEASE)).isEmpty();
+    }
+
+    @Test
+    void anotherWorkerTakesOverAnExpiredLease() {
+        FileSystemJobStore store = store();
+        store.submit(job("0000000000001-a", GenerationMode.FULL));
+        store.claim("crashed", ALL_MODES, LEASE);
+
+        now.addAndGet(LEASE.toMillis() - 1);
+        assertThat(store.claim("survivor", ALL_MODES, LEASE)).isEmpty();
+
+        now.addAndGet(1);
+        GenerationJob takenOver = store.claim("survivor", ALL_MODES, LEASE).orElseThrow();
+        assertThat(takenOver.getWorker()).isEqualTo("survivor");
+        assertThat(takenOver.getAttempts()).isEqualTo(2);
+
+        // The original worker has lost the job and can no longer update it
+        assertThat(store.heartbeat("0000000000001-a", "crashed", LEASE)).isFalse();
+        assertThat(store.complete("0000000000001-a", "crashed", result("late"))).isFalse();
+        assertThat(store.complete("0000000000001-a", "survivor", result("knight"))).isTrue();
+
+        GenerationJob done = store.get("0000000000001-a").orElseThrow();
+        assertThat(done.getState()).isEqualTo(GenerationJob.State.SUCCEEDED);
+        assertThat(done.getResult().getDetailedDescription()).isEqualTo("knight");
+        assertThat(store.pending()).isZero();
+    }
+
+    @Test
+    void heartbeatsKeepTheLease() {
+        FileSystemJobStore store = store();
+        store.submit(job("0000000000001-a", GenerationMode.FULL));
+        store.claim("node-1", ALL_MODES, LEASE);
+
+        for (int i = 0; i < 5; i++) {
+            now.addAndGet(LEASE.toMillis() / 2);
+            assertThat(store.heartbeat("0000000000001-a", "node-1", LEASE)).isTrue();
+        }
+        assertThat(store.claim("node-2", ALL_MODES, LEASE)).isEmpty();
+    }
+
+    @Test
+    void failedJobsAreRetriedUntilTheyRunOutOfAttempts() {
+        FileSystemJobStore store = new FileSystemJobStore(directory, objectMapper, clock, 2);
+        store.submit(job("0000000000001-a", GenerationMode.FULL));
+
+        store.claim("node-1", ALL_MODES, LEASE);
+        assertThat(store.fail("0000000000001-a", "node-1", "backend down")).isTrue();
+        assertThat(store.get("0000000000001-a").orElseThrow().getState()).isEqualTo(GenerationJob.State.QUEUED);
+
+        store.claim("node-2", ALL_MODES, LEASE);
+        store.fail("0000000000001-a", "node-2", "backend still down");
+
+        GenerationJob failed = store.get("0000000000001-a").orElseThrow();
+        assertThat(failed.getState()).isEqualTo(GenerationJob.State.FAILED);
+        assertThat(failed.getError()).isEqualTo("backend still down");
+        assertThat(store.claim("node-3", ALL_MODES, LEASE)).isEmpty();
+    }
+
+    @Test
+    void releasedJobsGoBackToTheQueueWithoutUsingAnAttempt() {
+        FileSystemJobStore store = store();
+        store.submit(job("0000000000001-a", GenerationMode.FULL));
+        store.claim("node-1", ALL_MODES, LEASE);
+
+        store.release("0000000000001-a", "node-1");
+
+        GenerationJob reclaimed = store.claim("node-2", ALL_MODES, LEASE).orElseThrow();
+        assertThat(reclaimed.getAttempts()).isEqualTo(1);
+    }
+
+    @Test
+    void rejectsIdsOutsideTheStore() {
+        assertThat(store().get("../queue.lock")).isEmpty();
+    }
+
+    @Test
+    void concurrentWorkersNeverClaimTheSameJob() throws Exception {
+        FileSystemJobStore submitter = store();
+        for (int i = 0; i < 200; i++) {
+            submitter.submit(job(String.format("%013d-%s", i, "job"), GenerationMode.FULL));
+        }
+
+        Set<String> claimed = ConcurrentHashMap.newKeySet();
+        List<String> duplicates = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int w = 0; w < 8; w++) {
+            // One store per worker, as if each were its own instance
+            FileSystemJobStore store = store();
+            String worker = "node-" + w;
+            workers.add(executor.submit(() -> {
+                Optional<GenerationJob> job;
+                while ((job = store.claim(worker, ALL_MODES, LEASE)).isPresent()) {
+                    if (!claimed.add(job.get().getId())) {
+                        synchronized (duplicates) {
+                            duplicates.add(job.get().getId());
+                        }
+                    }
+                    store.complete(job.get().getId(), worker, result(worker));
+                }
+            }));
+        }
+        for (Future<?> worker : workers) {
+            worker.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertThat(duplicates).isEmpty();
+        assertThat(claimed).hasSize(200);
+    }
+
+    /**
+     * Several JVMs share one queue; one of them dies holding a lease and the others finish its
+     * job once the lease expires. Run with:
+     * mvn test -Dtest=FileSystemJobStoreTest -Dmultinode=true
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "multinode", matches = "true")
+    void jobsOfACrashedProcessAreFinishedByTheOthers() throws Exception {
+        FileSystemJobStore store = new FileSystemJobStore(directory, objectMapper, Clock.systemUTC(), 3);
+        for (int i = 0; i < 60; i++) {
+            store.submit(job(String.format("%013d-%s", i, "job"), GenerationMode.FULL));
+        }
+
+        Process crashing = startWorker("crashing");
+        assertThat(crashing.waitFor(60, TimeUnit.SECONDS)).isTrue();
+        List<Process> workers = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            workers.add(startWorker("node-" + i));
+        }
+        for (Process worker : workers) {
+            assertThat(worker.waitFor(120, TimeUnit.SECONDS)).isTrue();
+            assertThat(worker.exitValue()).isZero();
+        }
+
+        Set<String> finishers = new HashSet<>();
+        for (int i = 0; i < 60; i++) {
+            GenerationJob job = store.get(String.format("%013d-%s", i, "job")).orElseThrow();
+            assertThat(job.getState()).isEqualTo(GenerationJob.State.SUCCEEDED);
+            finishers.add(job.getResult().getDetailedDescription());
+        }
+        GenerationJob abandoned = store.get(String.format("%013d-%s", 0, "job")).orElseThrow();
+        assertThat(abandoned.getAttempts()).isEqualTo(2);
+        assertThat(finishers).doesNotContain("crashing");
+        System.out.printf("60 jobs finished by %s%n", finishers);
+    }
+
+    private Process startWorker(String worker) throws Exception {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        return new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                JobWorkerProcess.class.getName(), directory.toString(), worker)
+                .inheritIO()
+                .start();
+    }
+
+    private FileSystemJobStore store() {
+        return new FileSystemJobStore(directory, objectMapper, clock, 3);
+    }
+
+    private static GenerationJob job(String id, GenerationMode mode) {
+        return GenerationJob.builder()
+                .id(id)
+                .state(GenerationJob.State.QUEUED)
+                .mode(mode)
+                .request(request("knight"))
+                .build();
+    }
+
+    private static PixelArtRequest request(String description) {
+        PixelArtRequest request = new PixelArtRequest();
+        request.setDescription(description);
+        return request;
+    }
+
+    private static PixelArtResponse result(String description) {
+        return PixelArtResponse.builder().detailedDescription(description).build();
+    }
+}
@@ -0,0 +1,46 @@
+package com.pixelart.agent.service.jobs;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pixelart.agent.model.GenerationJob;
+import com.pixelart.agent.model.GenerationMode;
+import com.pixelart.agent.model.PixelArtResponse;
+
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.EnumSet;
+import java.util.Optional;
+
+/**
+ * A separate JVM draining a shared queue for FileSystemJobStoreTest. The worker named
+ * "crashing" claims one job and halts without releasing it.
+ */
+public final class JobWorkerProcess {
+
+    private static final Duration LEASE = Duration.ofSeconds(2);
+
+    private JobWorkerProcess() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        String worker = args[1];
+        FileSystemJobStore store = new FileSystemJobStore(Paths.get(args[0]), new ObjectMapper(), Clock.systemUTC(), 3);
+        if (worker.equals("crashing")) {
+            store.claim(worker, EnumSet.allOf(GenerationMode.class), LEASE);
+            Runtime.getRuntime().halt(1);
+        }
+
+        long idleSince = System.currentTimeMillis();
+        // Keep polling past the lease so the crashed worker's job is picked up
+        while (System.currentTimeMillis() - idleSince < LEASE.toMillis() * 2) {
+            Optional<GenerationJob> job = store.claim(worker, EnumSet.allOf(GenerationMode.class), LEASE);
+            if (job.isEmpty()) {
+                Thread.sleep(100);
+                continue;
+            }
+            Thread.sleep(20);
+            store.complete(job.get().getId(), worker, PixelArtResponse.builder().detailedDescription(worker).build());
+            idleSince = System.currentTimeMillis();
+        }
+    }
+}
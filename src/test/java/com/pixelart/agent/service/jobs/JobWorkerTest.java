@@ -0,0 +1,78 @@
+package com.pixelart.agent.service.jobs;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pixelart.agent.model.GenerationJob;
+import com.pixelart.agent.model.GenerationMode;
+import com.pixelart.agent.model.PixelArtRequest;
+import com.pixelart.agent.model.PixelArtResponse;
+import com.pixelart.agent.service.PixelArtAgentService;
+import com.pixelart.agent.service.concurrency.BlockingCallLimiter;
+import com.pixelart.agent.service.concurrency.LimitExceededException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Clock;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JobWorkerTest {
+
+    @TempDir
+    Path directory;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void aShedJobGoesBackToTheQueueWithoutUsingAnAttempt() throws Exception {
+        // With a single attempt, a shed that counted as a failure would fail the job for good
+        FileSystemJobStore store = new FileSystemJobStore(directory, new ObjectMapper(), Clock.systemUTC(), 1);
+        store.submit(GenerationJob.builder()
+                .id("0000000000001-a")
+                .state(GenerationJob.State.QUEUED)
+                .mode(GenerationMode.TEXT_ONLY)
+                .request(new PixelArtRequest())
+                .build());
+        AtomicInteger calls = new AtomicInteger();
+        JobWorker worker = worker(store, new PixelArtAgentService(null, null, null, null, null, null, null,
+                null, null, registry, 1, 1, 1) {
+            @Override
+            public PixelArtResponse generatePixelArt(PixelArtRequest request, GenerationMode mode) {
+                if (calls.incrementAndGet() == 1) {
+                    throw new LimitExceededException("llm queue full");
+                }
+                return new PixelArtResponse();
+            }
+        });
+
+        try {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (!isFinished(store) && System.nanoTime() < deadline) {
+                worker.poll();
+                Thread.sleep(20);
+            }
+        } finally {
+            worker.stop();
+        }
+
+        GenerationJob job = store.get("0000000000001-a").orElseThrow();
+        assertThat(job.getState()).isEqualTo(GenerationJob.State.SUCCEEDED);
+        assertThat(job.getAttempts()).isEqualTo(1);
+        assertThat(calls).hasValue(2);
+        assertThat(registry.get("pixelart.jobs.attempts").tag("outcome", "shed").counter().count()).isEqualTo(1);
+    }
+
+    private boolean isFinished(FileSystemJobStore store) {
+        return store.get("0000000000001-a")
+                .map(job -> job.getState() == GenerationJob.State.SUCCEEDED || job.getState() == GenerationJob.State.FAILED)
+                .orElse(false);
+    }
+
+    private JobWorker worker(JobStore store, PixelArtAgentService service) {
+        BlockingCallLimiter limiter = new BlockingCallLimiter(registry, 1, 1, 1, false, 1, 1, 0, 0);
+        return new JobWorker(store, service, limiter, registry, true, "node-1", 1, 30_000, 10_000, 1_000, 24, false);
+    }
+}
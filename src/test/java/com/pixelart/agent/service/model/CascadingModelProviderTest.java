@@ -0,0 +1,133 @@
+package com.pixelart.agent.service.model;
+
+import com.pixelart.agent.model.ResponseQuality;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CascadingModelProviderTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void keepsAnAcceptedDraftFromTheSmallModel() {
+        StubBackend backend = new StubBackend(Map.of("small", new ModelReply("draft", 10, 20, false)));
+
+        String answer = cascade(backend).generateResponse("knight", ResponseQuality.DRAFT, response -> true);
+
+        assertThat(answer).isEqualTo("draft");
+        assertThat(backend.models).containsExactly("small");
+        assertThat(escalations("truncated") + escalations("validation") + escalations("error")).isZero();
+        assertThat(tokens("small", "output")).isEqualTo(20);
+    }
+
+    @Test
+    void escalatesATruncatedDraft() {
+        StubBackend backend = new StubBackend(Map.of(
+                "small", new ModelReply("dra", 10, 384, true),
+                "large", new ModelReply("full", 10, 500, false)));
+
+        String answer = cascade(backend).generateResponse("knight", ResponseQuality.DRAFT, response -> true);
+
+        assertThat(answer).isEqualTo("full");
+        assertThat(backend.models).containsExactly("small", "large");
+        assertThat(escalations("truncated")).isEqualTo(1);
+    }
+
+    @Test
+    void escalatesADraftThatFailsValidation() {
+        StubBackend backend = new StubBackend(Map.of(
+                "small", new ModelReply("not json", 10, 20, false),
+                "large", new ModelReply("{}", 10, 30, false)));
+
+        String answer = cascade(backend).generateResponse("knight", ResponseQuality.DRAFT,
+                response -> response.startsWith("{"));
+
+        assertThat(answer).isEqualTo("{}");
+        assertThat(escalations("validation")).isEqualTo(1);
+    }
+
+    @Test
+    void escalatesWhenTheSmallModelFails() {
+        StubBackend backend = new StubBackend(Map.of("large", new ModelReply("full", 10, 30, false)));
+
+        String answer = cascade(backend).generateResponse("knight", ResponseQuality.DRAFT, response -> true);
+
+        assertThat(answer).isEqualTo("full");
+        assertThat(backend.models).containsExactly("small", "large");
+        assertThat(escalations("error")).isEqualTo(1);
+    }
+
+    @Test
+    void sendsHighQualityRequestsStraightToTheLargeModel() {
+        StubBackend backend = new StubBackend(Map.of("large", new ModelReply("full", 10, 30, false)));
+
+        String answer = cascade(backend).generateResponse("knight", ResponseQuality.HIGH, response -> false);
+
+        assertThat(answer).isEqualTo("full");
+        assertThat(backend.models).containsExactly("large");
+        assertThat(registry.get("pixelart.llm.cascade.requests").tag("quality", "high").counter().count())
+                .isEqualTo(1);
+        assertThat(registry.get("pixelart.llm.cascade.requests").tag("quality", "draft").counter().count())
+                .isZero();
+    }
+
+    @Test
+    void registersEveryMeterUpFront() {
+        cascade(new StubBackend(Map.of()));
+
+        assertThat(registry.find("pixelart.llm.cascade.requests").counters()).hasSize(2);
+        assertThat(registry.find("pixelart.llm.cascade.escalations").counters()).hasSize(3);
+        assertThat(registry.find("pixelart.llm.cascade.latency").timers()).hasSize(2);
+        assertThat(registry.find("pixelart.llm.cascade.tokens").counters()).hasSize(4);
+    }
+
+    private CascadingModelProvider cascade(StubBackend backend) {
+        return new CascadingModelProvider(backend, registry, "small", 384, "large", 0);
+    }
+
+    private double escalations(String reason) {
+        return registry.get("pixelart.llm.cascade.escalations").tag("reason", reason).counter().count();
+    }
+
+    private double tokens(String tier, String type) {
+        return registry.get("pixelart.llm.cascade.tokens").tags("tier", tier, "type", type).counter().count();
+    }
+
+    /**
+     * Answers each model with a fixed reply, failing for models it has none for
+     */
+    private static final class StubBackend implements CascadingModelProvider.Backend {
+
+        private final Map<String, ModelReply> replies;
+        private final List<String> models = new ArrayList<>();
+
+        StubBackend(Map<String, ModelReply> replies) {
+            this.replies = replies;
+        }
+
+        @Override
+        public ModelReply generate(String prompt, String model, Integer numPredict) {
+            models.add(model);
+            ModelReply reply = replies.get(model);
+            if (reply == null) {
+                throw new IllegalStateException(model + " is down");
+            }
+            return reply;
+        }
+
+        @Override
+        public void warmUp(String model) {
+        }
+
+        @Override
+        public boolean isAvailable() {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.pixelart.agent.service.model;
+
+import com.pixelart.agent.service.concurrency.BlockingCallLimiter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LimitedReactiveImageProviderTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final BlockingCallLimiter limiter = new BlockingCallLimiter(registry, 1, 1, 1, false, 1, 1, 4, 0);
+
+    @Test
+    void waitsForAPermitHeldByABlockingCall() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<String> blocking = CompletableFuture.supplyAsync(() -> limiter.call(BlockingCallLimiter.IMAGE, () -> {
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "blocking";
+        }));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        AtomicInteger rendered = new AtomicInteger();
+        LimitedReactiveImageProvider provider = new LimitedReactiveImageProvider(new ReactiveImageProvider() {
+            @Override
+            public Mono<String> generateImage(ImageGenerationParams params) {
+                return Mono.fromSupplier(() -> {
+                    rendered.incrementAndGet();
+                    return "reactive";
+                });
+            }
+
+            @Override
+            public Mono<Boolean> isAvailable() {
+                return Mono.just(true);
+            }
+        }, limiter);
+        AtomicReference<String> image = new AtomicReference<>();
+        provider.generateImage(ImageGenerationParams.builder().prompt("knight").build()).subscribe(image::set);
+
+        assertThat(rendered).hasValue(0);
+        assertThat(registry.get("pixelart.blocking.calls.queued").tag("backend", BlockingCallLimiter.IMAGE).gauge().value())
+                .isEqualTo(1.0);
+
+        release.countDown();
+        assertThat(blocking.get(5, TimeUnit.SECONDS)).isEqualTo("blocking");
+        assertThat(image).hasValue("reactive");
+    }
+}
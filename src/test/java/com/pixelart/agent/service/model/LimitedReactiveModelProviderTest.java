@@ -0,0 +1,96 @@
+package com.pixelart.agent.service.model;
+
+import com.pixelart.agent.service.concurrency.BlockingCallLimiter;
+import com.pixelart.agent.service.concurrency.LimitExceededException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LimitedReactiveModelProviderTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final BlockingCallLimiter limiter = new BlockingCallLimiter(registry, 1, 1, 1, false, 1, 1, 1, 0);
+    private final List<Sinks.Many<String>> streams = new CopyOnWriteArrayList<>();
+    private final LimitedReactiveModelProvider provider = new LimitedReactiveModelProvider(new ReactiveModelProvider() {
+        @Override
+        public Flux<String> streamResponse(String prompt) {
+            return Flux.defer(() -> {
+                Sinks.Many<String> stream = Sinks.many().unicast().onBackpressureBuffer();
+                streams.add(stream);
+                return stream.asFlux();
+            });
+        }
+
+        @Override
+        public Mono<Boolean> isAvailable() {
+            return Mono.just(true);
+        }
+    }, limiter);
+
+    @Test
+    void holdsTheSecondStreamUntilTheFirstCompletes() {
+        List<String> received = new CopyOnWriteArrayList<>();
+        provider.streamResponse("first").subscribe(received::add);
+        provider.streamResponse("second").subscribe(received::add);
+
+        assertThat(streams).hasSize(1);
+        assertThat(gauge("pixelart.blocking.calls.active")).isEqualTo(1.0);
+        assertThat(gauge("pixelart.blocking.calls.queued")).isEqualTo(1.0);
+
+        streams.get(0).tryEmitNext("a");
+        streams.get(0).tryEmitComplete();
+        assertThat(streams).hasSize(2);
+        streams.get(1).tryEmitNext("b");
+        streams.get(1).tryEmitComplete();
+
+        assertThat(received).containsExactly("a", "b");
+        assertThat(gauge("pixelart.blocking.calls.active")).isZero();
+    }
+
+    @Test
+    void shedsACallOnceTheQueueIsFull() {
+        provider.streamResponse("first").subscribe();
+        provider.streamResponse("second").subscribe();
+
+        assertThatThrownBy(() -> provider.generateResponse("third").block(Duration.ofSeconds(5)))
+                .isInstanceOf(LimitExceededException.class);
+        assertThat(streams).hasSize(1);
+    }
+
+    @Test
+    void givesUpTheQueuedPlaceWhenCancelled() {
+        provider.streamResponse("first").subscribe();
+        Disposable second = provider.streamResponse("second").subscribe();
+
+        second.dispose();
+        assertThat(gauge("pixelart.blocking.calls.queued")).isZero();
+
+        streams.get(0).tryEmitComplete();
+        assertThat(streams).hasSize(1);
+        assertThat(gauge("pixelart.blocking.calls.active")).isZero();
+    }
+
+    @Test
+    void releasesThePermitWhenARunningStreamIsCancelled() {
+        Disposable first = provider.streamResponse("first").subscribe();
+        first.dispose();
+
+        assertThat(gauge("pixelart.blocking.calls.active")).isZero();
+        provider.streamResponse("second").subscribe();
+        assertThat(streams).hasSize(2);
+    }
+
+    private double gauge(String name) {
+        return registry.get(name).tag("backend", BlockingCallLimiter.LLM).gauge().value();
+    }
+}
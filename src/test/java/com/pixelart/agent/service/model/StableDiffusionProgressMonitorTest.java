@@ -0,0 +1,123 @@
+package com.pixelart.agent.service.model;
+
+import com.pixelart.agent.model.GenerationProgress;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StableDiffusionProgressMonitorTest {
+
+    private static final String PROGRESS_JSON = """
+            {"progress": 0.5, "eta_relative": 3.25,
+             "state": {"sampling_step": 25, "sampling_steps": 50},
+             "current_image": null, "textinfo": null}
+            """;
+
+    private HttpServer stub;
+    private String backendUrl;
+    private final AtomicInteger progressCalls = new AtomicInteger();
+    private StableDiffusionProgressMonitor monitor;
+
+    @BeforeEach
+    void startStub() throws Exception {
+        stub = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        stub.createContext("/sdapi/v1/progress", exchange -> {
+            progressCalls.incrementAndGet();
+            byte[] body = PROGRESS_JSON.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        stub.start();
+        backendUrl = "http://127.0.0.1:" + stub.getAddress().getPort();
+        monitor = new StableDiffusionProgressMonitor(20, 0, 1000);
+    }
+
+    @AfterEach
+    void stopStub() {
+        monitor.shutdown();
+        stub.stop(0);
+    }
+
+    @Test
+    void sharesOnePollerAcrossConcurrentJobs() throws Exception {
+        List<GenerationProgress> first = new CopyOnWriteArrayList<>();
+        List<GenerationProgress> second = new CopyOnWriteArrayList<>();
+        CountDownLatch bothNotified = new CountDownLatch(2);
+
+        try (StableDiffusionProgressMonitor.Tracking a = monitor.track(backendUrl, progress -> {
+                 if (first.isEmpty()) bothNotified.countDown();
+                 first.add(progress);
+             });
+             StableDiffusionProgressMonitor.Tracking b = monitor.track(backendUrl, progress -> {
+                 if (second.isEmpty()) bothNotified.countDown();
+                 second.add(progress);
+             })) {
+            assertThat(bothNotified.await(5, TimeUnit.SECONDS)).isTrue();
+            Thread.sleep(100);
+        }
+
+        GenerationProgress running = first.get(first.size() - 1);
+        assertThat(running.getState()).isEqualTo(GenerationProgress.STATE_RENDERING);
+        assertThat(running.getProgress()).isEqualTo(0.5);
+        assertThat(running.getEtaSeconds()).isEqualTo(3.25);
+        assertThat(running.getStep()).isEqualTo(25);
+        assertThat(running.getTotalSteps()).isEqualTo(50);
+
+        GenerationProgress queued = second.get(second.size() - 1);
+        assertThat(queued.getState()).isEqualTo(GenerationProgress.STATE_QUEUED);
+        assertThat(queued.getQueuePosition()).isEqualTo(1);
+
+        // one HTTP poll per tick feeds both jobs
+        assertThat(progressCalls.get()).isLessThanOrEqualTo(first.size() + 1);
+    }
+
+    @Test
+    void stopsPollingWhenLastListenerLeaves() throws Exception {
+        CountDownLatch notified = new CountDownLatch(1);
+        try (StableDiffusionProgressMonitor.Tracking tracking = monitor.track(backendUrl, progress -> notified.countDown())) {
+            assertThat(notified.await(5, TimeUnit.SECONDS)).isTrue();
+        }
+        Thread.sleep(50);
+        int callsAfterClose = progressCalls.get();
+        Thread.sleep(200);
+        assertThat(progressCalls.get()).isLessThanOrEqualTo(callsAfterClose + 1);
+    }
+
+    @Test
+    void dropsThePollerOnceItsLastJobIsDone() {
+        StableDiffusionProgressMonitor.Tracking first = monitor.track(backendUrl, null);
+        StableDiffusionProgressMonitor.Tracking second = monitor.track(backendUrl, null);
+        assertThat(monitor.activeBackends()).isEqualTo(1);
+
+        first.close();
+        assertThat(monitor.activeBackends()).isEqualTo(1);
+        second.close();
+        assertThat(monitor.activeBackends()).isZero();
+
+        // Tracking again after the poller was dropped starts a fresh one
+        try (StableDiffusionProgressMonitor.Tracking again = monitor.track(backendUrl, null)) {
+            assertThat(monitor.activeBackends()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void doesNotPollForJobsWithoutListeners() throws Exception {
+        try (StableDiffusionProgressMonitor.Tracking tracking = monitor.track(backendUrl, null)) {
+            Thread.sleep(150);
+        }
+        assertThat(progressCalls.get()).isZero();
+    }
+}
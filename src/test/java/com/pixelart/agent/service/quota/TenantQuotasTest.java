@@ -0,0 +1,51 @@
+package com.pixelart.agent.service.quota;
+
+import com.pixelart.agent.config.QuotaProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TenantQuotasTest {
+
+    @Test
+    void unknownKeysShareTheCallersAddressBucket() {
+        TenantQuotas quotas = new TenantQuotas(properties(), new SimpleMeterRegistry());
+
+        assertThat(quotas.admit(UUID.randomUUID().toString(), "10.0.0.1").isAdmitted()).isTrue();
+        assertThat(quotas.admit(UUID.randomUUID().toString(), "10.0.0.1").isAdmitted()).isTrue();
+        // A fresh key per request buys no fresh quota
+        TenantQuotas.Admission third = quotas.admit(UUID.randomUUID().toString(), "10.0.0.1");
+        assertThat(third.isAdmitted()).isFalse();
+        assertThat(third.tenant()).isEqualTo(Tenant.DEFAULT);
+
+        assertThat(quotas.admit(null, "10.0.0.2").isAdmitted()).isTrue();
+    }
+
+    @Test
+    void configuredKeysGetTheirTenantsBucket() {
+        QuotaProperties properties = properties();
+        QuotaProperties.TenantQuota ci = new QuotaProperties.TenantQuota();
+        ci.setApiKey("ci-key");
+        ci.setBurst(5);
+        properties.getTenants().put("ci", ci);
+        TenantQuotas quotas = new TenantQuotas(properties, new SimpleMeterRegistry());
+
+        quotas.admit(null, "10.0.0.1");
+        quotas.admit(null, "10.0.0.1");
+        TenantQuotas.Admission admission = quotas.admit("ci-key", "10.0.0.1");
+
+        assertThat(admission.isAdmitted()).isTrue();
+        assertThat(admission.tenant().name()).isEqualTo("ci");
+    }
+
+    private static QuotaProperties properties() {
+        QuotaProperties properties = new QuotaProperties();
+        properties.setEnabled(true);
+        properties.setDefaultRequestsPerMinute(1);
+        properties.setDefaultBurst(2);
+        return properties;
+    }
+}
@@ -0,0 +1,83 @@
+package com.pixelart.agent.service.quota;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenBucketTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final AtomicLong clock = new AtomicLong(1_000 * SECOND);
+
+    @Test
+    void admitsABurstThenThrottles() {
+        TokenBucket bucket = new TokenBucket(1, 5, clock::get);
+        for (int i = 0; i < 5; i++) {
+            assertThat(bucket.tryAcquire()).isZero();
+        }
+        assertThat(bucket.tryAcquire()).isEqualTo(SECOND);
+    }
+
+    @Test
+    void refillsAtTheConfiguredRate() {
+        TokenBucket bucket = new TokenBucket(2, 1, clock::get);
+        assertThat(bucket.tryAcquire()).isZero();
+        assertThat(bucket.tryAcquire()).isEqualTo(SECOND / 2);
+
+        clock.addAndGet(SECOND / 4);
+        assertThat(bucket.tryAcquire()).isEqualTo(SECOND / 4);
+        clock.addAndGet(SECOND / 4);
+        assertThat(bucket.tryAcquire()).isZero();
+    }
+
+    @Test
+    void doesNotAccumulateBeyondTheBurst() {
+        TokenBucket bucket = new TokenBucket(1, 2, clock::get);
+        clock.addAndGet(60 * SECOND);
+        assertThat(bucket.isFull()).isTrue();
+
+        assertThat(bucket.tryAcquire()).isZero();
+        assertThat(bucket.tryAcquire()).isZero();
+        assertThat(bucket.tryAcquire()).isPositive();
+        assertThat(bucket.isFull()).isFalse();
+    }
+
+    @Test
+    void chargesExtraItemsAsDebt() {
+        TokenBucket bucket = new TokenBucket(1, 5, clock::get);
+        assertThat(bucket.tryAcquire()).isZero();
+        bucket.charge(9);
+
+        // Five tokens' worth of debt beyond the burst has to refill first
+        assertThat(bucket.tryAcquire()).isEqualTo(6 * SECOND);
+        clock.addAndGet(6 * SECOND);
+        assertThat(bucket.tryAcquire()).isZero();
+    }
+
+    @Test
+    void admitsExactlyTheBurstUnderContention() throws Exception {
+        TokenBucket bucket = new TokenBucket(1, 100, clock::get);
+        AtomicInteger admitted = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            for (int i = 0; i < 1_000; i++) {
+                executor.execute(() -> {
+                    if (bucket.tryAcquire() == 0) {
+                        admitted.incrementAndGet();
+                    }
+                });
+            }
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+        assertThat(admitted.get()).isEqualTo(100);
+    }
+}
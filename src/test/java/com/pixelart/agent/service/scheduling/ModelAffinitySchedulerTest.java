@@ -0,0 +1,158 @@
+package com.pixelart.agent.service.scheduling;
+
+import com.pixelart.agent.service.quota.Tenant;
+import com.pixelart.agent.service.quota.TenantContext;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ModelAffinitySchedulerTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final List<String> order = new CopyOnWriteArrayList<>();
+    private final List<Thread> threads = new ArrayList<>();
+
+    @AfterEach
+    void joinJobs() throws InterruptedException {
+        for (Thread thread : threads) {
+            thread.join(5000);
+        }
+    }
+
+    @Test
+    void runsQueuedJobsForTheLoadedModelFirst() throws Exception {
+        ModelAffinityScheduler scheduler = new ModelAffinityScheduler(registry, true, 1, 4);
+        CountDownLatch release = occupy(scheduler, "A|default");
+
+        submit(scheduler, "B1", "B|default");
+        submit(scheduler, "A1", "A|default");
+        submit(scheduler, "B2", "B|default");
+        submit(scheduler, "A2", "A|default");
+        release.countDown();
+        joinJobs();
+
+        assertThat(order).containsExactly("A1", "A2", "B1", "B2");
+        assertThat(registry.counter("pixelart.image.model.switches").count()).isEqualTo(1.0);
+        assertThat(registry.counter("pixelart.image.scheduler.reordered").count()).isEqualTo(2.0);
+    }
+
+    @Test
+    void runsAJobOnceItHasBeenBypassedMaxBypassTimes() throws Exception {
+        ModelAffinityScheduler scheduler = new ModelAffinityScheduler(registry, true, 1, 2);
+        CountDownLatch release = occupy(scheduler, "A|default");
+
+        submit(scheduler, "B1", "B|default");
+        submit(scheduler, "A1", "A|default");
+        submit(scheduler, "A2", "A|default");
+        submit(scheduler, "A3", "A|default");
+        release.countDown();
+        joinJobs();
+
+        assertThat(order).containsExactly("A1", "A2", "B1", "A3");
+        assertThat(registry.counter("pixelart.image.model.switches").count()).isEqualTo(2.0);
+    }
+
+    @Test
+    void treatsTheDefaultCheckpointAsTheLoadedOne() throws Exception {
+        ModelAffinityScheduler scheduler = new ModelAffinityScheduler(registry, true, 1, 4);
+        CountDownLatch release = occupy(scheduler, "A|default");
+
+        submit(scheduler, "B", "B|default");
+        submit(scheduler, "default", "default|default");
+        submit(scheduler, "A", "A|default");
+        release.countDown();
+        joinJobs();
+
+        assertThat(order).containsExactly("default", "A", "B");
+        assertThat(registry.counter("pixelart.image.model.switches").count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void stillSwitchesForADifferentLora() throws Exception {
+        ModelAffinityScheduler scheduler = new ModelAffinityScheduler(registry, true, 1, 4);
+        CountDownLatch release = occupy(scheduler, "A|pixel");
+
+        submit(scheduler, "other", "default|default");
+        release.countDown();
+        joinJobs();
+
+        assertThat(order).containsExactly("other");
+        assertThat(registry.counter("pixelart.image.model.switches").count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void sharesTheGpuInProportionToTenantWeight() throws Exception {
+        ModelAffinityScheduler scheduler = new ModelAffinityScheduler(registry, true, 1, 4);
+        Tenant ci = new Tenant("ci", 1);
+        Tenant editor = new Tenant("editor", 3);
+        CountDownLatch release = occupy(scheduler, "A|default");
+
+        for (int i = 1; i <= 4; i++) {
+            submit(scheduler, "ci" + i, "A|default", ci);
+        }
+        for (int i = 1; i <= 4; i++) {
+            submit(scheduler, "editor" + i, "A|default", editor);
+        }
+        release.countDown();
+        joinJobs();
+
+        assertThat(order).containsExactly("editor1", "editor2", "ci1", "editor3", "editor4", "ci2", "ci3", "ci4");
+    }
+
+    /**
+     * Start a job for the model that holds the only slot until the returned latch is released
+     */
+    private CountDownLatch occupy(ModelAffinityScheduler scheduler, String modelKey) throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        start(() -> scheduler.run(modelKey, null, () -> {
+            started.countDown();
+            try {
+                return release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        return release;
+    }
+
+    /**
+     * Queue a job and wait until it is waiting, so jobs queue in submission order
+     */
+    private void submit(ModelAffinityScheduler scheduler, String name, String modelKey) throws InterruptedException {
+        submit(scheduler, name, modelKey, Tenant.DEFAULT);
+    }
+
+    private void submit(ModelAffinityScheduler scheduler, String name, String modelKey, Tenant tenant)
+            throws InterruptedException {
+        double queued = queueSize();
+        start(() -> {
+            TenantContext.set(tenant);
+            scheduler.run(modelKey, null, () -> order.add(name));
+        });
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (queueSize() <= queued && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertThat(queueSize()).isEqualTo(queued + 1);
+    }
+
+    private double queueSize() {
+        return registry.get("pixelart.image.scheduler.queue.size").gauge().value();
+    }
+
+    private void start(Runnable job) {
+        Thread thread = new Thread(job);
+        threads.add(thread);
+        thread.start();
+    }
+}
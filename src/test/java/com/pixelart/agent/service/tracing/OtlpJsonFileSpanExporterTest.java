@@ -0,0 +1,102 @@
+package com.pixelart.agent.service.tracing;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Scope;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OtlpJsonFileSpanExporterTest {
+
+    @TempDir
+    Path directory;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void writesNestedSpansAsOtlpJsonLines() throws Exception {
+        Path file = directory.resolve("traces/spans.jsonl");
+        OtlpJsonFileSpanExporter exporter = new OtlpJsonFileSpanExporter(file, objectMapper);
+        RecentSpanExporter recent = new RecentSpanExporter(10);
+        try (SdkTracerProvider provider = SdkTracerProvider.builder()
+                .addSpanProcessor(SimpleSpanProcessor.create(exporter))
+                .addSpanProcessor(SimpleSpanProcessor.create(recent))
+                .build()) {
+            Tracer tracer = provider.get("pixel-art-agent");
+            Span parent = tracer.spanBuilder("pixelart.image.call").startSpan();
+            try (Scope ignored = parent.makeCurrent()) {
+                tracer.spanBuilder("pixelart.sd.txt2img")
+                        .setAttribute("sd.steps", 50L)
+                        .setAttribute("sd.sampler", "Euler a")
+                        .setAttribute(AttributeKey.booleanKey("pixelart.truncated"), false)
+                        .startSpan()
+                        .setStatus(StatusCode.ERROR, "backend down")
+                        .end();
+            } finally {
+                parent.end();
+            }
+        }
+
+        List<JsonNode> spans = new ArrayList<>();
+        for (String line : Files.readAllLines(file)) {
+            JsonNode request = objectMapper.readTree(line);
+            for (JsonNode resourceSpans : request.path("resourceSpans")) {
+                assertThat(resourceSpans.path("resource").path("attributes").isArray()).isTrue();
+                for (JsonNode scopeSpans : resourceSpans.path("scopeSpans")) {
+                    assertThat(scopeSpans.path("scope").path("name").asText()).isEqualTo("pixel-art-agent");
+                    scopeSpans.path("spans").forEach(spans::add);
+                }
+            }
+        }
+        assertThat(spans).hasSize(2);
+        JsonNode child = spans.get(0);
+        JsonNode parent = spans.get(1);
+
+        assertThat(child.path("name").asText()).isEqualTo("pixelart.sd.txt2img");
+        assertThat(child.path("traceId").asText()).hasSize(32).isEqualTo(parent.path("traceId").asText());
+        assertThat(child.path("parentSpanId").asText()).isEqualTo(parent.path("spanId").asText());
+        assertThat(parent.has("parentSpanId")).isFalse();
+        assertThat(child.path("kind").asInt()).isEqualTo(1);
+        assertThat(child.path("startTimeUnixNano").isTextual()).isTrue();
+        assertThat(child.path("status").path("code").asInt()).isEqualTo(2);
+        assertThat(child.path("status").path("message").asText()).isEqualTo("backend down");
+        assertThat(child.path("attributes").findValues("intValue")).extracting(JsonNode::asText).containsExactly("50");
+        assertThat(child.path("attributes").findValues("stringValue")).extracting(JsonNode::asText).containsExactly("Euler a");
+        assertThat(child.path("attributes").findValues("boolValue")).extracting(JsonNode::asBoolean).containsExactly(false);
+
+        // The in-memory exporter filters the same spans by trace
+        assertThat(recent.spans(child.path("traceId").asText()))
+                .extracting(RecentSpanExporter.RecordedSpan::name)
+                .containsExactlyInAnyOrder("pixelart.image.call", "pixelart.sd.txt2img");
+        assertThat(recent.spans("0".repeat(32))).isEmpty();
+    }
+
+    @Test
+    void keepsOnlyTheMostRecentSpansInMemory() {
+        RecentSpanExporter recent = new RecentSpanExporter(2);
+        try (SdkTracerProvider provider = SdkTracerProvider.builder()
+                .addSpanProcessor(SimpleSpanProcessor.create(recent))
+                .build()) {
+            Tracer tracer = provider.get("pixel-art-agent");
+            for (String name : List.of("first", "second", "third")) {
+                tracer.spanBuilder(name).startSpan().end();
+            }
+        }
+
+        assertThat(recent.spans(null)).extracting(RecentSpanExporter.RecordedSpan::name)
+                .containsExactly("second", "third");
+    }
+}
@@ -0,0 +1,109 @@
+package com.pixelart.agent.service.traffic;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pixelart.agent.model.PixelArtRequest;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TrafficReplayerTest {
+
+    @TempDir
+    Path directory;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<String> playbackHeaders = new CopyOnWriteArrayList<>();
+    private final List<String> bodies = new CopyOnWriteArrayList<>();
+    private HttpServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/api/pixelart/generate", exchange -> {
+            playbackHeaders.add(exchange.getRequestHeaders().getFirst(TrafficContext.PLAYBACK_HEADER));
+            bodies.add(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void replaysAtTheRecordedSpacingScaledBySpeed() throws Exception {
+        Path log = log(0, 400, 800);
+
+        TrafficReplayer.Summary summary = replayer(2.0).replay(log);
+
+        assertThat(summary.sent()).isEqualTo(3);
+        assertThat(summary.failed()).isZero();
+        assertThat(summary.elapsedMs()).isBetween(390L, 3_000L);
+        assertThat(playbackHeaders).containsOnly("llm:800:900,image:4000:51234");
+        assertThat(bodies).allMatch(body -> body.contains("\"description\":\"w1a2b3c w4d5e6f\""));
+    }
+
+    @Test
+    void maxSpeedIgnoresTheRecordedSpacing() throws Exception {
+        Path log = log(0, 5_000, 10_000);
+
+        TrafficReplayer.Summary summary = replayer(0).replay(log);
+
+        assertThat(summary.sent()).isEqualTo(3);
+        assertThat(summary.elapsedMs()).isLessThan(4_000);
+    }
+
+    @Test
+    void playbackHeaderRoundTrips() {
+        List<BackendCall> calls = List.of(new BackendCall("llm", 812, 900), new BackendCall("image", 4012, 51234));
+
+        assertThat(TrafficContext.parseCalls(TrafficContext.formatCalls(calls))).isEqualTo(calls);
+        assertThat(TrafficContext.parseCalls("llm:12:34,garbage,image:x:1")).containsExactly(new BackendCall("llm", 12, 34));
+    }
+
+    private TrafficReplayer replayer(double speed) {
+        return new TrafficReplayer(HttpClient.newHttpClient(), objectMapper,
+                URI.create("http://127.0.0.1:" + server.getAddress().getPort()), speed, 16);
+    }
+
+    private Path log(long... offsetsMs) throws IOException {
+        PixelArtRequest request = new PixelArtRequest();
+        request.setAssetType("character");
+        request.setDescription("w1a2b3c w4d5e6f");
+        List<String> lines = new ArrayList<>();
+        for (long offset : offsetsMs) {
+            lines.add(objectMapper.writeValueAsString(TrafficRecord.builder()
+                    .arrivedAt(1_700_000_000_000L + offset)
+                    .method("POST")
+                    .path("/api/pixelart/generate?mode=full")
+                    .request(request)
+                    .status(200)
+                    .latencyMs(4_900)
+                    .calls(List.of(new BackendCall("llm", 800, 900), new BackendCall("image", 4000, 51234)))
+                    .build()));
+        }
+        Path log = directory.resolve("traffic.jsonl");
+        Files.write(log, lines);
+        return log;
+    }
+}